@@ -138,7 +138,7 @@ public class ApplicationProperties extends Properties {
     }
 
     /**
-     * Getter for a list of ports to scan in {@link de.griefed.monitoring.services.InformationService} for host availability.
+     * Getter for a list of ports to scan in {@link de.griefed.monitoring.services.LivenessService} for host availability.
      * @author Griefed
      * @return List int. Returns a list of ports which will be scanned to determine host availability.
      */
@@ -163,6 +163,125 @@ public class ApplicationProperties extends Properties {
         return ports;
     }
 
+    /**
+     * Getter for the number of seconds a verdict that a host is up is cached by {@link de.griefed.monitoring.services.LivenessService}.
+     * @author Griefed
+     * @return Integer. Returns the number of seconds as an int.
+     */
+    public int getLivenessTtlUp() {
+        return Integer.parseInt(getProperty("de.griefed.monitoring.liveness.ttl.up", "60"));
+    }
+
+    /**
+     * Getter for the number of seconds a verdict that a host is down is cached by {@link de.griefed.monitoring.services.LivenessService}.
+     * @author Griefed
+     * @return Integer. Returns the number of seconds as an int.
+     */
+    public int getLivenessTtlDown() {
+        return Integer.parseInt(getProperty("de.griefed.monitoring.liveness.ttl.down", "30"));
+    }
+
+    /**
+     * Getter for the number of seconds a resolved hostname is cached by {@link de.griefed.monitoring.services.ResolverService}.
+     * @author Griefed
+     * @return Integer. Returns the number of seconds as an int.
+     */
+    public int getDnsTtl() {
+        return Integer.parseInt(getProperty("de.griefed.monitoring.dns.ttl", "300"));
+    }
+
+    /**
+     * Getter for the number of seconds a hostname which could not be resolved is cached by {@link de.griefed.monitoring.services.ResolverService}.
+     * @author Griefed
+     * @return Integer. Returns the number of seconds as an int.
+     */
+    public int getDnsTtlNegative() {
+        return Integer.parseInt(getProperty("de.griefed.monitoring.dns.ttl.negative", "30"));
+    }
+
+    /**
+     * Getter for the maximum number of hostnames cached by {@link de.griefed.monitoring.services.ResolverService}.
+     * @author Griefed
+     * @return Integer. Returns the maximum number of cached hostnames.
+     */
+    public int getDnsSize() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.dns.size", "1000")));
+    }
+
+    /**
+     * Getter for the number of threads {@link de.griefed.monitoring.services.ResolverService} resolves hostnames on.
+     * @author Griefed
+     * @return Integer. Returns the number of threads.
+     */
+    public int getDnsThreads() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.dns.threads", "4")));
+    }
+
+    /**
+     * Getter for the number of seconds after which a stream opened at <code>/api/v1/stream</code> is closed. Clients reconnect
+     * on their own afterwards.
+     * @author Griefed
+     * @return Integer. Returns the timeout in seconds.
+     */
+    public int getStreamTimeout() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.stream.timeout", "1800")));
+    }
+
+    /**
+     * Getter for the number of threads events are written to subscribers of <code>/api/v1/stream</code> with.
+     * @author Griefed
+     * @return Integer. Returns the number of threads as an int.
+     */
+    public int getStreamThreads() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.stream.threads", "4")));
+    }
+
+    /**
+     * Getter for the number of seconds writing a single event to a subscriber of <code>/api/v1/stream</code> may take,
+     * before the subscriber is dropped.
+     * @author Griefed
+     * @return Integer. Returns the timeout in seconds.
+     */
+    public int getStreamSendTimeout() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.stream.send.timeout", "10")));
+    }
+
+    /**
+     * Getter for whether documents carry formatted values like <code>15.63 GB</code> next to the raw numbers.
+     * @author Griefed
+     * @return Boolean. Returns whether formatted values are written.
+     */
+    public boolean isHumanReadable() {
+        return Boolean.parseBoolean(getProperty("de.griefed.monitoring.human-readable", "true"));
+    }
+
+    /**
+     * Getter for how many of the heaviest processes are reported. <code>0</code> disables the list.
+     * @author Griefed
+     * @return Integer. Returns the number of processes.
+     */
+    public int getTopProcesses() {
+        return Math.max(0, Integer.parseInt(getProperty("de.griefed.monitoring.processes.top", "0")));
+    }
+
+    /**
+     * Getter for whether the heaviest processes are ranked by resident memory instead of CPU usage.
+     * @author Griefed
+     * @return Boolean. Returns <code>true</code> if <code>de.griefed.monitoring.processes.sort</code> is <code>rss</code>.
+     */
+    public boolean isTopProcessesByMemory() {
+        return "rss".equalsIgnoreCase(getProperty("de.griefed.monitoring.processes.sort", "cpu"));
+    }
+
+    /**
+     * Getter for the regular expression of network interface names which are not reported.
+     * @author Griefed
+     * @return String. Returns the regular expression matched against the whole name of an interface.
+     */
+    public String getNetworkExclude() {
+        return getProperty("de.griefed.monitoring.network.exclude", "lo|veth.*|docker\\d*|br-.*|virbr.*");
+    }
+
     /**
      * Getter for the number of seconds to wait until a connection timeout is triggered for getting information from agents.
      * @author Griefed
@@ -184,4 +303,249 @@ public class ApplicationProperties extends Properties {
     public int getPollingRate() {
         return Integer.parseInt(getProperty("de.griefed.monitoring.polling", "5000"));
     }
+
+    /**
+     * Getter for the maximum number of agents which are queried at the same time.
+     * @author Griefed
+     * @return Integer. Returns the number of agents to query concurrently.
+     */
+    public int getAgentParallelism() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.agents.parallelism", "32")));
+    }
+
+    /**
+     * Getter for the number of threads which update the information about the host.
+     * @author Griefed
+     * @return Integer. Returns the number of threads.
+     */
+    public int getSchedulingPoolCollection() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.scheduling.pool.collection", "2")));
+    }
+
+    /**
+     * Getter for the number of threads which query the agents on schedule.
+     * @author Griefed
+     * @return Integer. Returns the number of threads.
+     */
+    public int getSchedulingPoolAgents() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.scheduling.pool.agents", "1")));
+    }
+
+    /**
+     * Getter for the number of threads which check for and send email notifications.
+     * @author Griefed
+     * @return Integer. Returns the number of threads.
+     */
+    public int getSchedulingPoolAlerting() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.scheduling.pool.alerting", "1")));
+    }
+
+    /**
+     * Getter for the number of seconds a component may take to update before its information is reported as stale.
+     * @author Griefed
+     * @return Integer. Returns the number of seconds as an int.
+     */
+    public int getTimeoutComponent() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.timeout.component", "10")));
+    }
+
+    /**
+     * Getter for the number of seconds a single agent may take to answer before it is considered unreachable.
+     * @author Griefed
+     * @return Integer. Returns the number of seconds as an int.
+     */
+    public int getTimeoutAgent() {
+        return Integer.parseInt(getProperty("de.griefed.monitoring.timeout.agent", "10"));
+    }
+
+    /**
+     * Getter for the number of seconds a whole sweep over all agents may take before unanswered agents are skipped.
+     * @author Griefed
+     * @return Integer. Returns the number of seconds as an int.
+     */
+    public int getTimeoutSweep() {
+        return Integer.parseInt(getProperty("de.griefed.monitoring.timeout.sweep", "60"));
+    }
+
+    /**
+     * Getter for whether agents should be queried with the non-blocking HTTP client instead of the blocking one.
+     * @author Griefed
+     * @return boolean. <code>true</code> = non-blocking WebClient. <code>false</code> = blocking RestTemplate.
+     */
+    public boolean isHttpAsync() {
+        return Boolean.parseBoolean(getProperty("de.griefed.monitoring.http.async", "true"));
+    }
+
+    /**
+     * Getter for the maximum number of agent requests which are kept in flight at the same time by the non-blocking HTTP client.
+     * @author Griefed
+     * @return Integer. Returns the number of concurrent requests.
+     */
+    public int getHttpPoolSize() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.http.pool.size", "500")));
+    }
+
+    /**
+     * Getter for the maximum number of connections the non-blocking HTTP client opens to a single agent.
+     * @author Griefed
+     * @return Integer. Returns the number of connections per agent.
+     */
+    public int getHttpConnectionsPerHost() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.http.pool.per-host", "2")));
+    }
+
+    /**
+     * Getter for the number of event-loop threads used by the non-blocking HTTP client.
+     * @author Griefed
+     * @return Integer. Returns the number of threads.
+     */
+    public int getHttpThreads() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.http.threads", "2")));
+    }
+
+    /**
+     * Getter for the number of seconds an idle keep-alive connection to an agent is kept open.
+     * @author Griefed
+     * @return Integer. Returns the number of seconds as an int.
+     */
+    public int getHttpIdleTimeout() {
+        return Integer.parseInt(getProperty("de.griefed.monitoring.http.pool.idle", "60"));
+    }
+
+    /**
+     * Getter for the number of seconds notifications are collected before they are sent as one digest.
+     * @author Griefed
+     * @return Integer. Returns the number of seconds as an int.
+     */
+    public int getMailDigestDelay() {
+        return Math.max(0, Integer.parseInt(getProperty("de.griefed.monitoring.mail.digest.delay", "30")));
+    }
+
+    /**
+     * Getter for the maximum number of mails a single recipient receives per hour.
+     * @author Griefed
+     * @return Integer. Returns the number of mails per hour.
+     */
+    public int getMailRate() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.mail.rate", "10")));
+    }
+
+    /**
+     * Getter for the maximum number of notifications waiting to be sent. Notifications beyond that are dropped.
+     * @author Griefed
+     * @return Integer. Returns the number of notifications.
+     */
+    public int getMailQueueCapacity() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.mail.queue", "1000")));
+    }
+
+    /**
+     * Getter for whether the history of all numeric values is kept. Unless set, history is kept on a monitor, but not on
+     * an agent, as the monitor already keeps the history of its agents.
+     * @author Griefed
+     * @return Boolean. <code>true</code> if history is kept.
+     */
+    public boolean isHistoryEnabled() {
+        return Boolean.parseBoolean(getProperty("de.griefed.monitoring.history.enabled", String.valueOf(!isAgent())));
+    }
+
+    /**
+     * Getter for the directory in which the history is kept.
+     * @author Griefed
+     * @return String. The path to the directory.
+     */
+    public String getHistoryDirectory() {
+        return getProperty("de.griefed.monitoring.history.directory", "history");
+    }
+
+    /**
+     * Getter for the number of minutes of samples of a series which are compressed together before they are written to disk.
+     * @author Griefed
+     * @return Integer. Returns the number of minutes as an int.
+     */
+    public int getHistoryChunk() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.history.chunk", "30")));
+    }
+
+    /**
+     * Getter for the number of hours of history kept in one file.
+     * @author Griefed
+     * @return Integer. Returns the number of hours as an int.
+     */
+    public int getHistorySegment() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.history.segment", "6")));
+    }
+
+    /**
+     * Getter for the maximum size of a history file.
+     * @author Griefed
+     * @return Integer. Returns the size in megabytes.
+     */
+    public int getHistorySegmentSize() {
+        return Math.min(2047, Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.history.segment.size", "64"))));
+    }
+
+    /**
+     * Getter for the number of hours history is kept.
+     * @author Griefed
+     * @return Integer. Returns the number of hours as an int.
+     */
+    public int getHistoryRetention() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.history.retention", "48")));
+    }
+
+    /**
+     * Getter for the number of hours aggregates over one minute are kept.
+     * @author Griefed
+     * @return Integer. Returns the number of hours as an int.
+     */
+    public int getHistoryRetentionMinute() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.history.retention.1m", "168")));
+    }
+
+    /**
+     * Getter for the number of hours aggregates over 15 minutes are kept.
+     * @author Griefed
+     * @return Integer. Returns the number of hours as an int.
+     */
+    public int getHistoryRetentionQuarter() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.history.retention.15m", "720")));
+    }
+
+    /**
+     * Getter for the number of hours aggregates over one hour are kept.
+     * @author Griefed
+     * @return Integer. Returns the number of hours as an int.
+     */
+    public int getHistoryRetentionHour() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.history.retention.1h", "8760")));
+    }
+
+    /**
+     * Getter for the number of threads history queries across hosts are run on.
+     * @author Griefed
+     * @return Integer. Returns the number of threads as an int.
+     */
+    public int getHistoryQueryThreads() {
+        return Math.max(1, Integer.parseInt(getProperty("de.griefed.monitoring.history.query.threads", "4")));
+    }
+
+    /**
+     * Getter for the number of values a history query may return at most, that is the number of series times the number
+     * of buckets or samples of each.
+     * @author Griefed
+     * @return Long. Returns the number of values as a long.
+     */
+    public long getHistoryQueryPoints() {
+        return Math.max(1, Long.parseLong(getProperty("de.griefed.monitoring.history.query.points", "1000000")));
+    }
+
+    /**
+     * Getter for the number of hosts listed in every top list of the summary of all agents.
+     * @author Griefed
+     * @return Integer. Returns the number of hosts as an int.
+     */
+    public int getSummaryTop() {
+        return Math.max(0, Integer.parseInt(getProperty("de.griefed.monitoring.summary.top", "10")));
+    }
 }
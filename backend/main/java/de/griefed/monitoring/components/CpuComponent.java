@@ -23,17 +23,20 @@
 package de.griefed.monitoring.components;
 
 import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.CpuInformation;
 import de.griefed.monitoring.models.InformationModel;
+import de.griefed.monitoring.services.HardwareService;
+import de.griefed.monitoring.services.ProcessService;
+import de.griefed.monitoring.utilities.DocumentWriter;
 import de.griefed.monitoring.utilities.MailNotification;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import oshi.SystemInfo;
 import oshi.hardware.CentralProcessor;
 
-import javax.mail.MessagingException;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Class responsible for retrieving all interesting values about the CPU.
@@ -44,18 +47,29 @@ public class CpuComponent implements InformationModel {
 
     private final Logger LOG = LogManager.getLogger(CpuComponent.class);
 
-    private final SystemInfo SYSTEM_INFO = new SystemInfo();
-    private final CentralProcessor CPU = SYSTEM_INFO.getHardware().getProcessor();
+    private final HardwareService HARDWARE_SERVICE;
+    private final ProcessService PROCESS_SERVICE;
+    private final CentralProcessor CPU;
     private final MailNotification MAIL_NOTIFICATION;
     private final ApplicationProperties PROPERTIES;
     private final HostComponent HOST_COMPONENT;
+    private final String MODEL;
+    private final boolean X64;
+    private final int PHYSICAL_CORES;
+    private final int LOGICAL_CORES;
 
-    private String cpuInformation;
-    private String model;
-    private String x64;
+    private volatile CpuInformation cpuInformation;
     private int processes;
-    private int physical_cores;
-    private int logical_cores;
+    private int threads;
+    private List<CpuInformation.Process> topProcesses = Collections.emptyList();
+    private CpuInformation.Load load;
+
+    // Counters of the previous update, to calculate the utilization since then without having to wait in between.
+    private long[] previousTicks;
+    private long[][] previousCoreTicks;
+    private long previousContextSwitches;
+    private long previousInterrupts;
+    private long previousSample;
 
     /**
      * Constructor responsible for DI.
@@ -63,12 +77,25 @@ public class CpuComponent implements InformationModel {
      * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
      * @param injectedHostComponent Instance of {@link HostComponent}.
      * @param injectedMailNotification Instance of {@link MailNotification}.
+     * @param injectedHardwareService Instance of {@link HardwareService}.
+     * @param injectedProcessService Instance of {@link ProcessService}.
      */
     @Autowired
-    public CpuComponent(MailNotification injectedMailNotification, ApplicationProperties injectedApplicationProperties, HostComponent injectedHostComponent) {
+    public CpuComponent(MailNotification injectedMailNotification, ApplicationProperties injectedApplicationProperties, HostComponent injectedHostComponent,
+                        HardwareService injectedHardwareService, ProcessService injectedProcessService) {
+        this.HARDWARE_SERVICE = injectedHardwareService;
+        this.PROCESS_SERVICE = injectedProcessService;
+        this.CPU = HARDWARE_SERVICE.getHardware().getProcessor();
         this.PROPERTIES = injectedApplicationProperties;
         this.MAIL_NOTIFICATION = injectedMailNotification;
         this.HOST_COMPONENT = injectedHostComponent;
+
+        // The CPU does not change while running, so these are only gathered once.
+        this.MODEL = HARDWARE_SERVICE.getProcessorIdentifier().getName();
+        this.X64 = HARDWARE_SERVICE.getProcessorIdentifier().isCpu64bit();
+        this.PHYSICAL_CORES = CPU.getPhysicalProcessorCount();
+        this.LOGICAL_CORES = CPU.getLogicalProcessorCount();
+
         updateValues();
     }
 
@@ -76,18 +103,13 @@ public class CpuComponent implements InformationModel {
      * If the number of processes exceeds <code>de.griefed.monitoring.schedule.email.notification.cpu.processes</code>.
      * @author Griefed
      */
-    @Scheduled(cron = "${de.griefed.monitoring.schedule.email.notification.cpu}")
     @Override
     public void sendNotification() {
         if (processes >= Integer.parseInt(PROPERTIES.getProperty("de.griefed.monitoring.schedule.email.notification.cpu.processes", "500"))) {
-            try {
-                MAIL_NOTIFICATION.sendMailNotification(
-                        "Processes on " + HOST_COMPONENT.getHostName() + " critical!",
-                        "The number of processes on this host has reached " + processes + ". Check this system immediately!"
-                );
-            } catch (MessagingException ex) {
-                LOG.error("Error sending email notification.");
-            }
+            MAIL_NOTIFICATION.sendMailNotification(
+                    "Processes on " + HOST_COMPONENT.getHostName() + " critical!",
+                    "The number of processes on this host has reached " + processes + ". Check this system immediately!"
+            );
         }
     }
 
@@ -97,11 +119,7 @@ public class CpuComponent implements InformationModel {
      */
     @Override
     public void setValues() {
-        this.cpuInformation = "\"model\": \"" + model + "\"," +
-                "\"x64\": \"" + x64 + "\"," +
-                "\"processes\": " + processes + "," +
-                "\"physical_cores\": " + physical_cores + "," +
-                "\"logical_cores\": " + logical_cores;
+        this.cpuInformation = new CpuInformation(MODEL, X64, processes, threads, PHYSICAL_CORES, LOGICAL_CORES, topProcesses, load);
     }
 
     /**
@@ -110,16 +128,84 @@ public class CpuComponent implements InformationModel {
      */
     @Override
     public void updateValues() {
-
-        this.model = CPU.getProcessorIdentifier().getName();
-        this.x64 = String.valueOf(SYSTEM_INFO.getHardware().getProcessor().getProcessorIdentifier().isCpu64bit());
-        this.processes = SYSTEM_INFO.getOperatingSystem().getProcesses().size();
-        this.physical_cores = SYSTEM_INFO.getOperatingSystem().getProcesses().size();
-        this.logical_cores = CPU.getLogicalProcessorCount();
+        this.processes = HARDWARE_SERVICE.getOperatingSystem().getProcessCount();
+        this.threads = HARDWARE_SERVICE.getOperatingSystem().getThreadCount();
+        this.topProcesses = PROCESS_SERVICE.getTopProcesses(PROPERTIES.getTopProcesses(), PROPERTIES.isTopProcessesByMemory());
+        this.load = sampleLoad();
 
         setValues();
     }
 
+    /**
+     * Calculate the utilization of the CPU since the previous call from the tick counters of the CPU. The counters are read
+     * once per call and kept for the next one, so no sampling interval has to be waited for. The first call reports no load.
+     * @author Griefed
+     * @return Instance of {@link CpuInformation.Load}. The utilization since the previous call.
+     */
+    private synchronized CpuInformation.Load sampleLoad() {
+        long now = System.nanoTime();
+        long[] ticks = CPU.getSystemCpuLoadTicks();
+        long[][] coreTicks = CPU.getProcessorCpuLoadTicks();
+        long contextSwitches = CPU.getContextSwitches();
+        long interrupts = CPU.getInterrupts();
+
+        double systemPercent = 0D;
+        double[] corePercents = new double[coreTicks.length];
+        double contextSwitchesPerSecond = 0D;
+        double interruptsPerSecond = 0D;
+
+        if (previousTicks != null) {
+            systemPercent = busyPercent(ticks, previousTicks);
+
+            for (int i = 0; i < coreTicks.length && i < previousCoreTicks.length; i++) {
+                corePercents[i] = busyPercent(coreTicks[i], previousCoreTicks[i]);
+            }
+
+            double seconds = (now - previousSample) / 1e9D;
+            if (seconds > 0D) {
+                contextSwitchesPerSecond = Math.max(0L, contextSwitches - previousContextSwitches) / seconds;
+                interruptsPerSecond = Math.max(0L, interrupts - previousInterrupts) / seconds;
+            }
+        }
+
+        this.previousTicks = ticks;
+        this.previousCoreTicks = coreTicks;
+        this.previousContextSwitches = contextSwitches;
+        this.previousInterrupts = interrupts;
+        this.previousSample = now;
+
+        // Not available on Windows, where OSHI reports negative values.
+        double[] loadAverage = CPU.getSystemLoadAverage(3);
+        if (loadAverage[0] < 0D) {
+            loadAverage = new double[0];
+        }
+
+        return new CpuInformation.Load(systemPercent, corePercents, loadAverage, contextSwitchesPerSecond, interruptsPerSecond);
+    }
+
+    /**
+     * Calculate how many percent of the ticks between two readings were spent busy, that is neither idle nor waiting for IO.
+     * @author Griefed
+     * @param ticks Long array. The current tick counters, indexed by {@link CentralProcessor.TickType}.
+     * @param previous Long array. The previous tick counters.
+     * @return Double. The busy percentage, from 0 to 100.
+     */
+    private double busyPercent(long[] ticks, long[] previous) {
+        long total = 0;
+        long idle = 0;
+
+        for (int i = 0; i < ticks.length; i++) {
+            long delta = Math.max(0L, ticks[i] - previous[i]);
+            total += delta;
+
+            if (i == CentralProcessor.TickType.IDLE.getIndex() || i == CentralProcessor.TickType.IOWAIT.getIndex()) {
+                idle += delta;
+            }
+        }
+
+        return total == 0 ? 0D : 100D * (total - idle) / total;
+    }
+
     /**
      * Getter for the name of this component.
      * @author Griefed
@@ -132,12 +218,23 @@ public class CpuComponent implements InformationModel {
 
     /**
      * Getter for the information about the cpu. Gathers information about the name, whether it's a 64bit cpu, the amount
-     * of processes when queried, the number of physical cores and the number of logical cores.
+     * of processes and threads when queried, the number of physical cores, the number of logical cores, the load since the
+     * previous update and, if configured, the heaviest processes.
      * @author Griefed
      * @return String. Information about the cpu in JSON format.
      */
     @Override
     public String getValues() {
+        return DocumentWriter.write(getInformation());
+    }
+
+    /**
+     * Getter for the information about the cpu.
+     * @author Griefed
+     * @return Instance of {@link CpuInformation}. Information about the cpu.
+     */
+    @Override
+    public CpuInformation getInformation() {
         if (cpuInformation == null) {
             updateValues();
         }
@@ -147,7 +244,7 @@ public class CpuComponent implements InformationModel {
 
     @Override
     public String toString() {
-        return "\"" + getName() + "\": {" + getValues() + "}";
+        return "\"" + getName() + "\": " + getValues();
     }
 
 }
@@ -23,20 +23,16 @@
 package de.griefed.monitoring.components;
 
 import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.DisksInformation;
 import de.griefed.monitoring.models.InformationModel;
+import de.griefed.monitoring.services.FileStoreService;
+import de.griefed.monitoring.utilities.DocumentWriter;
 import de.griefed.monitoring.utilities.MailNotification;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import de.griefed.monitoring.utilities.Units;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import oshi.SystemInfo;
-import oshi.software.os.OSFileStore;
 
-import javax.mail.MessagingException;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -46,17 +42,13 @@ import java.util.List;
 @Service
 public class DiskComponent implements InformationModel {
 
-    private static final Logger LOG = LogManager.getLogger(DiskComponent.class);
-
-    private final SystemInfo SYSTEM_INFO = new SystemInfo();
-    private final List<OSFileStore> DISK_STORES = SYSTEM_INFO.getOperatingSystem().getFileSystem().getFileStores(true);
-    private final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("0.00");
+    private final FileStoreService FILE_STORE_SERVICE;
     private final ApplicationProperties PROPERTIES;
     private final HostComponent HOST_COMPONENT;
     private final MailNotification MAIL_NOTIFICATION;
 
-    private List<HashMap<String, String>> diskInformationList = new ArrayList<>(100);
-    private String diskInformation;
+    private List<DisksInformation.Disk> diskInformationList = new ArrayList<>(100);
+    private volatile DisksInformation diskInformation;
 
     /**
      * Constructor responsible for DI.
@@ -64,9 +56,12 @@ public class DiskComponent implements InformationModel {
      * @param injectedMailNotification Instance of {@link MailNotification}.
      * @param injectedHostComponent Instance of {@link HostComponent}.
      * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     * @param injectedFileStoreService Instance of {@link FileStoreService}.
      */
     @Autowired
-    public DiskComponent(ApplicationProperties injectedApplicationProperties, MailNotification injectedMailNotification, HostComponent injectedHostComponent) {
+    public DiskComponent(ApplicationProperties injectedApplicationProperties, MailNotification injectedMailNotification, HostComponent injectedHostComponent,
+                         FileStoreService injectedFileStoreService) {
+        this.FILE_STORE_SERVICE = injectedFileStoreService;
         this.PROPERTIES = injectedApplicationProperties;
         this.MAIL_NOTIFICATION = injectedMailNotification;
         this.HOST_COMPONENT = injectedHostComponent;
@@ -77,24 +72,19 @@ public class DiskComponent implements InformationModel {
      * If the usage of any disk exceeds <code>de.griefed.monitoring.schedule.email.notification.disk.usage</code>.
      * @author Griefed
      */
-    @Scheduled(cron = "${de.griefed.monitoring.schedule.email.notification.disk}")
     @Override
     public void sendNotification() {
-        for (HashMap<String, String> disk : diskInformationList) {
-
-            if (Float.parseFloat(disk.get("used").replace(" %","").replace(",",".")) >= Float.parseFloat(PROPERTIES.getProperty("de.griefed.monitoring.schedule.email.notification.disk.usage"))) {
+        double threshold = Double.parseDouble(PROPERTIES.getProperty("de.griefed.monitoring.schedule.email.notification.disk.usage", "90.00"));
 
-                try {
+        for (DisksInformation.Disk disk : getInformation().getDisks()) {
 
-                    MAIL_NOTIFICATION.sendMailNotification(
-                            "Disk on " + HOST_COMPONENT.getHostName() + " at critical capacity!",
-                            "The usage for disk " + disk.get("name") + " has reached critical usage levels of " + disk.get("used") + ".\n" +
-                                    "Free space remaining: " + disk.get("free") + "."
-                    );
+            if (disk.getUsedPercent() >= threshold) {
 
-                } catch (MessagingException ex) {
-                    LOG.error("Error sending email notification.");
-                }
+                MAIL_NOTIFICATION.sendMailNotification(
+                        "Disk on " + HOST_COMPONENT.getHostName() + " at critical capacity!",
+                        "The usage for disk " + disk.getName() + " at " + disk.getMount() + " has reached critical usage levels of " + Units.percent(disk.getUsedPercent()) + ".\n" +
+                                "Free space remaining: " + Units.gigabytes(disk.getFreeBytes()) + "."
+                );
 
             }
 
@@ -107,47 +97,17 @@ public class DiskComponent implements InformationModel {
      */
     @Override
     public void setValues() {
+        this.diskInformation = new DisksInformation(diskInformationList);
+    }
 
-        StringBuilder stringBuilder = new StringBuilder(10000);
-
-        if (diskInformationList.size() > 1) {
-
-            stringBuilder.append("{");
-            stringBuilder.append("\"name\": \"").append(diskInformationList.get(0).get("name")).append("\",");
-            stringBuilder.append("\"size\": \"").append(diskInformationList.get(0).get("size")).append("\",");
-            stringBuilder.append("\"free\": \"").append(diskInformationList.get(0).get("free")).append("\",");
-            stringBuilder.append("\"used\": \"").append(diskInformationList.get(0).get("used")).append("\"");
-            stringBuilder.append("},");
-
-            for (int i = 1; i < DISK_STORES.size() -1; i++) {
-
-                stringBuilder.append("{");
-                stringBuilder.append("\"name\": \"").append(diskInformationList.get(i).get("name")).append("\",");
-                stringBuilder.append("\"size\": \"").append(diskInformationList.get(i).get("size")).append("\",");
-                stringBuilder.append("\"free\": \"").append(diskInformationList.get(i).get("free")).append("\",");
-                stringBuilder.append("\"used\": \"").append(diskInformationList.get(i).get("used")).append("\"");
-                stringBuilder.append("},");
-            }
-
-            stringBuilder.append("{");
-            stringBuilder.append("\"name\": \"").append(diskInformationList.get(diskInformationList.size() - 1).get("name")).append("\",");
-            stringBuilder.append("\"size\": \"").append(diskInformationList.get(diskInformationList.size() - 1).get("size")).append("\",");
-            stringBuilder.append("\"free\": \"").append(diskInformationList.get(diskInformationList.size() - 1).get("free")).append("\",");
-            stringBuilder.append("\"used\": \"").append(diskInformationList.get(diskInformationList.size() - 1).get("used")).append("\"");
-            stringBuilder.append("}");
-
-        } else {
-
-            stringBuilder.append("{");
-            stringBuilder.append("\"name\": \"").append(diskInformationList.get(0).get("name")).append("\",");
-            stringBuilder.append("\"size\": \"").append(diskInformationList.get(0).get("size")).append("\",");
-            stringBuilder.append("\"free\": \"").append(diskInformationList.get(0).get("free")).append("\",");
-            stringBuilder.append("\"used\": \"").append(diskInformationList.get(0).get("used")).append("\"");
-            stringBuilder.append("}");
-
-        }
-
-        this.diskInformation = stringBuilder.toString();
+    /**
+     * Rediscover the file stores, to pick up volumes which were mounted or unmounted since.
+     * @author Griefed
+     */
+    @Override
+    public void updateSlowValues() {
+        FILE_STORE_SERVICE.rediscover();
+        updateValues();
     }
 
     /**
@@ -156,58 +116,17 @@ public class DiskComponent implements InformationModel {
      */
     @Override
     public void updateValues() {
-        List<HashMap<String, String>> list = new ArrayList<>(1000);
-
-        if (DISK_STORES.size() > 1) {
-
-            list.add(
-                    new HashMap<String, String>() {
-                        {
-                            put("name", DISK_STORES.get(0).getName() + " " + DISK_STORES.get(0).getLabel());
-                            put("size", (DISK_STORES.get(0).getTotalSpace() / 1073741824) + " GB");
-                            put("free", DECIMAL_FORMAT.format(DISK_STORES.get(0).getFreeSpace() / 1073741824F) + " GB");
-                            put("used", DECIMAL_FORMAT.format(100F - ((100F / DISK_STORES.get(0).getTotalSpace()) * DISK_STORES.get(0).getFreeSpace())) + " %");
-                        }
-            });
-
-            for (int i = 1; i < DISK_STORES.size() -1; i++) {
-
-                int finalI = i;
-                list.add(
-                        new HashMap<String, String>() {
-                            {
-                                put("name", DISK_STORES.get(finalI).getName() + " " + DISK_STORES.get(finalI).getLabel());
-                                put("size", (DISK_STORES.get(finalI).getTotalSpace() / 1073741824) + " GB");
-                                put("free", DECIMAL_FORMAT.format(DISK_STORES.get(finalI).getFreeSpace() / 1073741824F) + " GB");
-                                put("used", DECIMAL_FORMAT.format(100F - ((100F / DISK_STORES.get(finalI).getTotalSpace()) * DISK_STORES.get(finalI).getFreeSpace())) + " %");
-                            }
-                        });
-
-            }
-
-            list.add(
-                    new HashMap<String, String>() {
-                        {
-                            put("name", DISK_STORES.get(DISK_STORES.size() - 1).getName() + " " + DISK_STORES.get(DISK_STORES.size() - 1).getLabel());
-                            put("size", (DISK_STORES.get(DISK_STORES.size() - 1).getTotalSpace() / 1073741824) + " GB");
-                            put("free", DECIMAL_FORMAT.format(DISK_STORES.get(DISK_STORES.size() - 1).getFreeSpace() / 1073741824F) + " GB");
-                            put("used", DECIMAL_FORMAT.format(100F - ((100F / DISK_STORES.get(DISK_STORES.size() - 1).getTotalSpace()) * DISK_STORES.get(DISK_STORES.size() - 1).getFreeSpace())) + " %");
-                        }
-                    });
-
-
-        } else {
-
-            list.add(
-                    new HashMap<String, String>() {
-                        {
-                            put("name", DISK_STORES.get(0).getName() + " " + DISK_STORES.get(0).getLabel());
-                            put("size", (DISK_STORES.get(0).getTotalSpace() / 1073741824) + " GB");
-                            put("free", DECIMAL_FORMAT.format(DISK_STORES.get(0).getFreeSpace() / 1073741824F) + " GB");
-                            put("used", DECIMAL_FORMAT.format(100F - ((100F / DISK_STORES.get(0).getTotalSpace()) * DISK_STORES.get(0).getFreeSpace())) + " %");
-                        }
-                    });
-
+        List<FileStoreService.Store> stores = FILE_STORE_SERVICE.refresh();
+        List<DisksInformation.Disk> list = new ArrayList<>(stores.size());
+
+        for (FileStoreService.Store store : stores) {
+            list.add(new DisksInformation.Disk(
+                    store.getName() + " " + store.getLabel(),
+                    store.getMount(),
+                    store.getTotalBytes(),
+                    store.getFreeBytes(),
+                    PROPERTIES.isHumanReadable()
+            ));
         }
 
         this.diskInformationList = list;
@@ -233,6 +152,16 @@ public class DiskComponent implements InformationModel {
      */
     @Override
     public String getValues() {
+        return DocumentWriter.write(getInformation());
+    }
+
+    /**
+     * Getter for the information about the disk drives.
+     * @author Griefed
+     * @return Instance of {@link DisksInformation}. Information about the disk drives.
+     */
+    @Override
+    public DisksInformation getInformation() {
         if (diskInformation == null) {
             updateValues();
         }
@@ -242,6 +171,6 @@ public class DiskComponent implements InformationModel {
 
     @Override
     public String toString() {
-        return "\"" + getName() + "\": [" + getValues() + "]";
+        return "\"" + getName() + "\": " + getValues();
     }
 }
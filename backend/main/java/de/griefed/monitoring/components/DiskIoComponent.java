@@ -0,0 +1,247 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.components;
+
+import de.griefed.monitoring.models.DiskIoInformation;
+import de.griefed.monitoring.models.InformationModel;
+import de.griefed.monitoring.services.FileStoreService;
+import de.griefed.monitoring.services.HardwareService;
+import de.griefed.monitoring.utilities.DocumentWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import oshi.hardware.HWDiskStore;
+import oshi.hardware.HWPartition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Class responsible for retrieving the input and output of all physical disks. The counters of every disk are kept from
+ * one update to the next, so throughput, operations per second, average service time and busy time are calculated from
+ * the difference of two readings instead of sampling over an interval. The disks and their mount points are rediscovered
+ * on the slow update schedule.
+ * @author Griefed
+ */
+@Service
+public class DiskIoComponent implements InformationModel {
+
+    private final HardwareService HARDWARE_SERVICE;
+    private final FileStoreService FILE_STORE_SERVICE;
+
+    // Counters of every disk at the previous update, by name: bytes read, bytes written, reads, writes, transfer time and
+    // the timestamp of the reading.
+    private final Map<String, long[]> PREVIOUS_COUNTERS = new HashMap<>(16);
+
+    private List<HWDiskStore> diskStores = new ArrayList<>(10);
+    private List<List<String>> mounts = new ArrayList<>(10);
+    private List<DiskIoInformation.Disk> diskIoInformationList = new ArrayList<>(10);
+    private volatile DiskIoInformation diskIoInformation;
+
+    /**
+     * Constructor responsible for DI.
+     * @author Griefed
+     * @param injectedHardwareService Instance of {@link HardwareService}.
+     * @param injectedFileStoreService Instance of {@link FileStoreService}.
+     */
+    @Autowired
+    public DiskIoComponent(HardwareService injectedHardwareService, FileStoreService injectedFileStoreService) {
+        this.HARDWARE_SERVICE = injectedHardwareService;
+        this.FILE_STORE_SERVICE = injectedFileStoreService;
+        updateSlowValues();
+    }
+
+    /**
+     * Rediscover the physical disks and the mount points of their file stores, to pick up disks which were attached or
+     * detached and volumes which were mounted or unmounted since. Then update the input and output of the disks.
+     * @author Griefed
+     */
+    @Override
+    public synchronized void updateSlowValues() {
+        List<FileStoreService.Store> fileStores = FILE_STORE_SERVICE.getStores();
+
+        List<HWDiskStore> disks = new ArrayList<>();
+        List<List<String>> diskMounts = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+
+        for (HWDiskStore disk : HARDWARE_SERVICE.getHardware().getDiskStores()) {
+            // Skip empty devices like unused loop devices.
+            if (disk.getSize() <= 0) {
+                continue;
+            }
+
+            disks.add(disk);
+            diskMounts.add(getMounts(disk, fileStores));
+            names.add(disk.getName());
+        }
+
+        this.diskStores = disks;
+        this.mounts = diskMounts;
+        PREVIOUS_COUNTERS.keySet().retainAll(names);
+
+        updateValues();
+    }
+
+    /**
+     * Retrieve the mount points of all file stores on a disk, either through its partitions or, for disks without partitions,
+     * through the file stores whose volume is the disk itself.
+     * @author Griefed
+     * @param disk Instance of {@link HWDiskStore}. The disk to retrieve the mount points for.
+     * @param fileStores List {@link FileStoreService.Store}. The local file stores of the host.
+     * @return List String. The mount points of the disk.
+     */
+    private List<String> getMounts(HWDiskStore disk, List<FileStoreService.Store> fileStores) {
+        List<String> mounts = new ArrayList<>();
+
+        for (HWPartition partition : disk.getPartitions()) {
+            if (!partition.getMountPoint().isEmpty()) {
+                mounts.add(partition.getMountPoint());
+            }
+        }
+
+        for (FileStoreService.Store store : fileStores) {
+            if (store.getVolume().equals(disk.getName()) && !mounts.contains(store.getMount())) {
+                mounts.add(store.getMount());
+            }
+        }
+
+        return mounts;
+    }
+
+    @Override
+    public void sendNotification() {}
+
+    /**
+     * Set information from previously gathered information
+     * @author Griefed
+     */
+    @Override
+    public void setValues() {
+        this.diskIoInformation = new DiskIoInformation(diskIoInformationList);
+    }
+
+    /**
+     * Update disk input and output information.
+     * @author Griefed
+     */
+    @Override
+    public synchronized void updateValues() {
+        List<DiskIoInformation.Disk> list = new ArrayList<>(diskStores.size());
+
+        for (int i = 0; i < diskStores.size(); i++) {
+            HWDiskStore disk = diskStores.get(i);
+            disk.updateAttributes();
+
+            long[] counters = new long[] {
+                    disk.getReadBytes(),
+                    disk.getWriteBytes(),
+                    disk.getReads(),
+                    disk.getWrites(),
+                    disk.getTransferTime(),
+                    disk.getTimeStamp()
+            };
+
+            double[] rates = new double[4];
+            double averageServiceMillis = 0D;
+            double busyPercent = 0D;
+            long[] previous = PREVIOUS_COUNTERS.get(disk.getName());
+
+            if (previous != null && counters[5] > previous[5]) {
+                long millis = counters[5] - previous[5];
+
+                for (int j = 0; j < rates.length; j++) {
+                    rates[j] = Math.max(0L, counters[j] - previous[j]) * 1000D / millis;
+                }
+
+                long operations = Math.max(0L, counters[2] - previous[2]) + Math.max(0L, counters[3] - previous[3]);
+                long transferTime = Math.max(0L, counters[4] - previous[4]);
+
+                // Time the disk was busy per operation. Waiting in the queue does not count towards the transfer time.
+                if (operations > 0) {
+                    averageServiceMillis = (double) transferTime / operations;
+                }
+
+                busyPercent = Math.min(100D, 100D * transferTime / millis);
+            }
+
+            PREVIOUS_COUNTERS.put(disk.getName(), counters);
+
+            list.add(new DiskIoInformation.Disk(
+                    disk.getName(),
+                    disk.getModel(),
+                    mounts.get(i),
+                    rates,
+                    disk.getCurrentQueueLength(),
+                    averageServiceMillis,
+                    busyPercent
+            ));
+        }
+
+        this.diskIoInformationList = list;
+
+        setValues();
+    }
+
+    /**
+     * Getter for the name of this component.
+     * @author Griefed
+     * @return String. Returns the name of the component.
+     */
+    @Override
+    public String getName() {
+        return "disk_io";
+    }
+
+    /**
+     * Getter for the input and output of the physical disks. Gathers, for each disk, the name, model, mount points, bytes
+     * read and written per second, reads and writes per second, queue length, average service time and busy time.
+     * @author Griefed
+     * @return String. Information about the input and output of the disks in JSON format.
+     */
+    @Override
+    public String getValues() {
+        return DocumentWriter.write(getInformation());
+    }
+
+    /**
+     * Getter for the input and output of the physical disks.
+     * @author Griefed
+     * @return Instance of {@link DiskIoInformation}. Information about the input and output of the disks.
+     */
+    @Override
+    public DiskIoInformation getInformation() {
+        if (diskIoInformation == null) {
+            setValues();
+        }
+
+        return diskIoInformation;
+    }
+
+    @Override
+    public String toString() {
+        return "\"" + getName() + "\": " + getValues();
+    }
+}
@@ -22,16 +22,17 @@
  */
 package de.griefed.monitoring.components;
 
+import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.HostInformation;
 import de.griefed.monitoring.models.InformationModel;
+import de.griefed.monitoring.services.HardwareService;
+import de.griefed.monitoring.utilities.DocumentWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import oshi.SystemInfo;
 import oshi.hardware.NetworkIF;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.List;
+import java.util.*;
+import java.util.regex.Pattern;
 
 /**
  * Class responsible for retrieving all interesting information about the host.
@@ -40,21 +41,30 @@ import java.util.List;
 @Service
 public class HostComponent implements InformationModel {
 
-    private final SystemInfo SYSTEM_INFO = new SystemInfo();
-    private final List<NetworkIF> INTERFACES_LIST = SYSTEM_INFO.getHardware().getNetworkIFs();
+    private final HardwareService HARDWARE_SERVICE;
+    private final Pattern EXCLUDE;
 
-    private List<HashMap<String, String>> interfacesInformationList = new ArrayList<>(100);
-    private String hostInformation;
+    // Counters of every interface at the previous update, by name: bytes received, bytes sent, packets received, packets
+    // sent, receive errors, send errors, dropped incoming packets and the timestamp of the reading.
+    private final Map<String, long[]> PREVIOUS_COUNTERS = new HashMap<>();
+
+    private List<NetworkIF> interfacesList = new ArrayList<>();
+    private List<HostInformation.NetworkInterface> interfacesInformationList = new ArrayList<>(100);
+    private volatile HostInformation hostInformation;
     private String hostName;
     private String domainName;
 
     /**
      * Constructor responsible for DI.
      * @author Griefed
+     * @param injectedHardwareService Instance of {@link HardwareService}.
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
      */
     @Autowired
-    public HostComponent() {
-        updateValues();
+    public HostComponent(HardwareService injectedHardwareService, ApplicationProperties injectedApplicationProperties) {
+        this.HARDWARE_SERVICE = injectedHardwareService;
+        this.EXCLUDE = Pattern.compile(injectedApplicationProperties.getNetworkExclude());
+        updateSlowValues();
     }
 
     @Override
@@ -66,117 +76,86 @@ public class HostComponent implements InformationModel {
      */
     @Override
     public void setValues() {
+        this.hostInformation = new HostInformation(hostName, domainName, interfacesInformationList);
+    }
 
-        StringBuilder stringBuilder = new StringBuilder(10000);
-
-        stringBuilder.append("\"host_name\": \"").append(hostName).append("\",");
-        stringBuilder.append("\"domain_name\": \"").append(domainName).append("\",");
-        stringBuilder.append("\"interfaces\": [");
-        if (interfacesInformationList.size() > 1) {
-
-            stringBuilder.append("{");
-            stringBuilder.append("\"interface_name\": \"").append(interfacesInformationList.get(0).get("interface_name")).append("\",");
-            stringBuilder.append("\"ip\": \"").append(interfacesInformationList.get(0).get("ip")).append("\",");
-            stringBuilder.append("\"subnet_mask\": \"").append(interfacesInformationList.get(0).get("subnet_mask")).append("\",");
-            stringBuilder.append("\"mac\": \"").append(interfacesInformationList.get(0).get("mac")).append("\"");
-            stringBuilder.append("},");
+    /**
+     * Update the host name, domain name and rediscover the network interfaces, then update their traffic. Interfaces excluded
+     * by <code>de.griefed.monitoring.network.exclude</code> are skipped.
+     * @author Griefed
+     */
+    @Override
+    public synchronized void updateSlowValues() {
 
-            for (int i = 1; i < INTERFACES_LIST.size() - 1; i++) {
+        this.hostName = HARDWARE_SERVICE.getOperatingSystem().getNetworkParams().getHostName();
+        this.domainName = HARDWARE_SERVICE.getOperatingSystem().getNetworkParams().getDomainName();
 
-                stringBuilder.append("{");
-                stringBuilder.append("\"interface_name\": \"").append(interfacesInformationList.get(i).get("interface_name")).append("\",");
-                stringBuilder.append("\"ip\": \"").append(interfacesInformationList.get(i).get("ip")).append("\",");
-                stringBuilder.append("\"subnet_mask\": \"").append(interfacesInformationList.get(i).get("subnet_mask")).append("\",");
-                stringBuilder.append("\"mac\": \"").append(interfacesInformationList.get(i).get("mac")).append("\"");
-                stringBuilder.append("},");
+        List<NetworkIF> interfaces = new ArrayList<>();
+        Set<String> names = new HashSet<>();
 
+        for (NetworkIF networkIF : HARDWARE_SERVICE.getHardware().getNetworkIFs()) {
+            if (!EXCLUDE.matcher(networkIF.getName()).matches()) {
+                interfaces.add(networkIF);
+                names.add(networkIF.getName());
             }
-
-            stringBuilder.append("{");
-            stringBuilder.append("\"interface_name\": \"").append(interfacesInformationList.get(interfacesInformationList.size() - 1).get("interface_name")).append("\",");
-            stringBuilder.append("\"ip\": \"").append(interfacesInformationList.get(interfacesInformationList.size() - 1).get("ip")).append("\",");
-            stringBuilder.append("\"subnet_mask\": \"").append(interfacesInformationList.get(interfacesInformationList.size() - 1).get("subnet_mask")).append("\",");
-            stringBuilder.append("\"mac\": \"").append(interfacesInformationList.get(interfacesInformationList.size() - 1).get("mac")).append("\"");
-            stringBuilder.append("}");
-
-        } else {
-
-            stringBuilder.append("{");
-            stringBuilder.append("\"interface_name\": \"").append(interfacesInformationList.get(0).get("interface_name")).append("\",");
-            stringBuilder.append("\"ip\": \"").append(interfacesInformationList.get(0).get("ip")).append("\",");
-            stringBuilder.append("\"subnet_mask\": \"").append(interfacesInformationList.get(0).get("subnet_mask")).append("\",");
-            stringBuilder.append("\"mac\": \"").append(interfacesInformationList.get(0).get("mac")).append("\"");
-            stringBuilder.append("}");
-
         }
 
-        stringBuilder.append("]");
+        this.interfacesList = interfaces;
+        PREVIOUS_COUNTERS.keySet().retainAll(names);
 
-        this.hostInformation = stringBuilder.toString();
+        updateValues();
     }
 
     /**
-     * Update host information.
+     * Update the traffic of the network interfaces.
      * @author Griefed
      */
     @Override
-    public void updateValues() {
-
-        this.hostName = SYSTEM_INFO.getOperatingSystem().getNetworkParams().getHostName();
-        this.domainName = SYSTEM_INFO.getOperatingSystem().getNetworkParams().getDomainName();
-
-        List<HashMap<String, String>> list = new ArrayList<>();
-
-        if (INTERFACES_LIST.size() > 1) {
-
-            list.add(
-                    new HashMap<String, String>() {
-                        {
-                            put("interface_name", INTERFACES_LIST.get(0).getName());
-                            put("ip", getIpAddress(0));
-                            put("subnet_mask", getSubnetMask(0));
-                            put("mac", INTERFACES_LIST.get(0).getMacaddr());
-                        }
-                    });
-
-            for (int i = 1; i < INTERFACES_LIST.size() -1; i++) {
-
-                int finalI = i;
-                list.add(
-                        new HashMap<String, String>() {
-                            {
-                                put("interface_name", INTERFACES_LIST.get(finalI).getName());
-                                put("ip", getIpAddress(finalI));
-                                put("subnet_mask", getSubnetMask(finalI));
-                                put("mac", INTERFACES_LIST.get(finalI).getMacaddr());
-                            }
-                        });
-
+    public synchronized void updateValues() {
+
+        List<HostInformation.NetworkInterface> list = new ArrayList<>(interfacesList.size());
+
+        for (int i = 0; i < interfacesList.size(); i++) {
+            NetworkIF networkIF = interfacesList.get(i);
+            networkIF.updateAttributes();
+
+            long[] counters = new long[] {
+                    networkIF.getBytesRecv(),
+                    networkIF.getBytesSent(),
+                    networkIF.getPacketsRecv(),
+                    networkIF.getPacketsSent(),
+                    networkIF.getInErrors(),
+                    networkIF.getOutErrors(),
+                    networkIF.getInDrops(),
+                    networkIF.getTimeStamp()
+            };
+
+            double[] traffic = new double[4];
+            long[] errors = new long[3];
+            long[] previous = PREVIOUS_COUNTERS.get(networkIF.getName());
+
+            if (previous != null && counters[7] > previous[7]) {
+                double seconds = (counters[7] - previous[7]) / 1000D;
+
+                for (int j = 0; j < traffic.length; j++) {
+                    traffic[j] = Math.max(0L, counters[j] - previous[j]) / seconds;
+                }
+
+                for (int j = 0; j < errors.length; j++) {
+                    errors[j] = Math.max(0L, counters[traffic.length + j] - previous[traffic.length + j]);
+                }
             }
 
-            list.add(
-                    new HashMap<String, String>() {
-                        {
-                            put("interface_name", INTERFACES_LIST.get(INTERFACES_LIST.size() - 1).getName());
-                            put("ip", getIpAddress(INTERFACES_LIST.size() - 1));
-                            put("subnet_mask", getSubnetMask(INTERFACES_LIST.size() - 1));
-                            put("mac", INTERFACES_LIST.get(INTERFACES_LIST.size() - 1).getMacaddr());
-                        }
-                    });
-
-
-        } else {
-
-            list.add(
-                    new HashMap<String, String>() {
-                        {
-                            put("interface_name", INTERFACES_LIST.get(0).getName());
-                            put("ip", getIpAddress(0));
-                            put("subnet_mask", getSubnetMask(0));
-                            put("mac", INTERFACES_LIST.get(0).getMacaddr());
-                        }
-                    });
+            PREVIOUS_COUNTERS.put(networkIF.getName(), counters);
 
+            list.add(new HostInformation.NetworkInterface(
+                    networkIF.getName(),
+                    getIpAddress(i),
+                    getSubnetMask(i),
+                    networkIF.getMacaddr(),
+                    traffic,
+                    errors
+            ));
         }
 
         this.interfacesInformationList = list;
@@ -191,8 +170,8 @@ public class HostComponent implements InformationModel {
      * @return String. Returns the IP address of a network interface.
      */
     private String getIpAddress(int entry) {
-        if (INTERFACES_LIST.size() >= 1) {
-            return Arrays.toString(INTERFACES_LIST.get(entry).getIPv4addr()).replace("[","").replace("]","");
+        if (interfacesList.size() >= 1) {
+            return Arrays.toString(interfacesList.get(entry).getIPv4addr()).replace("[","").replace("]","");
         } else {
             return "";
         }
@@ -205,8 +184,8 @@ public class HostComponent implements InformationModel {
      * @return String. Returns the subnet mask in CIDR notation.
      */
     private String getSubnetMask(int entry) {
-        if (INTERFACES_LIST.size() >= 1) {
-            return Arrays.toString(INTERFACES_LIST.get(entry).getSubnetMasks()).replace("[","").replace("]","");
+        if (interfacesList.size() >= 1) {
+            return Arrays.toString(interfacesList.get(entry).getSubnetMasks()).replace("[","").replace("]","");
         } else {
             return "";
         }
@@ -224,12 +203,23 @@ public class HostComponent implements InformationModel {
 
     /**
      * Getter for the information about the host. Gathers information about the host name, domain name, and for all the network
-     * interfaces respectively, it gathers the name, ipv4 address, subnet mask in CIDR notation and the mac address.
+     * interfaces respectively, it gathers the name, ipv4 address, subnet mask in CIDR notation, the mac address and the traffic,
+     * errors and drops since the previous update. Interfaces excluded by <code>de.griefed.monitoring.network.exclude</code> are skipped.
      * @author Griefed
      * @return String. Information about the host in JSON format.
      */
     @Override
     public String getValues() {
+        return DocumentWriter.write(getInformation());
+    }
+
+    /**
+     * Getter for the information about the host.
+     * @author Griefed
+     * @return Instance of {@link HostInformation}. Information about the host.
+     */
+    @Override
+    public HostInformation getInformation() {
         if (hostInformation == null) {
             setValues();
         }
@@ -243,6 +233,6 @@ public class HostComponent implements InformationModel {
 
     @Override
     public String toString() {
-        return "\"" + getName() + "\": {" + getValues() + "}";
+        return "\"" + getName() + "\": " + getValues();
     }
 }
@@ -22,10 +22,13 @@
  */
 package de.griefed.monitoring.components;
 
+import de.griefed.monitoring.ApplicationProperties;
 import de.griefed.monitoring.models.InformationModel;
+import de.griefed.monitoring.models.OsInformation;
+import de.griefed.monitoring.services.HardwareService;
+import de.griefed.monitoring.utilities.DocumentWriter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import oshi.SystemInfo;
 import oshi.software.os.OperatingSystem;
 
 /**
@@ -35,22 +38,36 @@ import oshi.software.os.OperatingSystem;
 @Service
 public class OsComponent implements InformationModel {
 
-    private final OperatingSystem OS_INFO = new SystemInfo().getOperatingSystem();
+    private final OperatingSystem OS_INFO;
+    private final ApplicationProperties PROPERTIES;
+    private final String MANUFACTURER;
+    private final String OS;
+    private final String VERSION;
+    private final int ARCH;
+    private final long BOOT_TIME;
 
-    private String osInformation;
-    private String manufacturer;
-    private String os;
-    private String version;
-    private String arch;
-    private String uptime;
+    private volatile OsInformation osInformation;
+    private long uptime;
 
     /**
      * Constructor responisble for DI.
      * @author Griefed
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     * @param injectedHardwareService Instance of {@link HardwareService}.
      */
     @Autowired
-    public OsComponent() {
-        updateValues();
+    public OsComponent(ApplicationProperties injectedApplicationProperties, HardwareService injectedHardwareService) {
+        this.OS_INFO = injectedHardwareService.getOperatingSystem();
+        this.PROPERTIES = injectedApplicationProperties;
+
+        // The OS does not change while running, so these are only gathered once.
+        this.MANUFACTURER = OS_INFO.getManufacturer();
+        this.OS = OS_INFO.getFamily();
+        this.VERSION = OS_INFO.getVersionInfo().toString();
+        this.ARCH = OS_INFO.getBitness();
+        this.BOOT_TIME = OS_INFO.getSystemBootTime();
+
+        updateSlowValues();
     }
 
     @Override
@@ -62,24 +79,23 @@ public class OsComponent implements InformationModel {
      */
     @Override
     public void setValues() {
-        this.osInformation = "\"manufacturer\": \"" + manufacturer + "\"," +
-                "\"os\": \"" + os + "\"," +
-                "\"version\": \"" + version + "\"," +
-                "\"arch\": \"" + arch + " bit\"," +
-                "\"uptime\": \"" + uptime + "\"";
+        this.osInformation = new OsInformation(MANUFACTURER, OS, VERSION, ARCH, BOOT_TIME, uptime, PROPERTIES.isHumanReadable());
     }
 
     /**
-     * Update os information.
+     * Nothing about the OS changes quickly. The uptime is counted in hours and updated in {@link #updateSlowValues()}.
+     * @author Griefed
+     */
+    @Override
+    public void updateValues() {}
+
+    /**
+     * Update the uptime of the OS.
      * @author Griefed
      */
     @Override
-    public void updateValues() {
-        this.manufacturer = OS_INFO.getManufacturer();
-        this.os = OS_INFO.getFamily();
-        this.version = OS_INFO.getVersionInfo().toString();
-        this.arch = String.valueOf(OS_INFO.getBitness());
-        this.uptime = OS_INFO.getSystemUptime() / 3600 + " h";
+    public void updateSlowValues() {
+        this.uptime = OS_INFO.getSystemUptime() / 3600;
 
         setValues();
     }
@@ -101,6 +117,16 @@ public class OsComponent implements InformationModel {
      */
     @Override
     public String getValues() {
+        return DocumentWriter.write(getInformation());
+    }
+
+    /**
+     * Getter for the information about the OS.
+     * @author Griefed
+     * @return Instance of {@link OsInformation}. Information about the OS.
+     */
+    @Override
+    public OsInformation getInformation() {
         if (osInformation == null) {
             setValues();
         }
@@ -110,7 +136,7 @@ public class OsComponent implements InformationModel {
 
     @Override
     public String toString() {
-        return "\"" + getName() + "\": {" + getValues() + "}";
+        return "\"" + getName() + "\": " + getValues();
     }
 
 }
@@ -24,22 +24,18 @@ package de.griefed.monitoring.components;
 
 import de.griefed.monitoring.ApplicationProperties;
 import de.griefed.monitoring.models.InformationModel;
+import de.griefed.monitoring.models.MemoryInformation;
+import de.griefed.monitoring.services.HardwareService;
+import de.griefed.monitoring.utilities.DocumentWriter;
 import de.griefed.monitoring.utilities.MailNotification;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import de.griefed.monitoring.utilities.Units;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import oshi.SystemInfo;
-import oshi.hardware.HardwareAbstractionLayer;
+import oshi.hardware.GlobalMemory;
 import oshi.hardware.PhysicalMemory;
 
-import javax.mail.MessagingException;
-import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Class responsible for retrieving all interesting values about the memory.
@@ -48,34 +44,16 @@ import java.util.Map;
 @Service
 public class RamComponent implements InformationModel {
 
-    private static final Logger LOG = LogManager.getLogger(RamComponent.class);
-
-    private final SystemInfo SYSTEM_INFO = new SystemInfo();
-    private final List<PhysicalMemory> PHYSICAL_MEMORY = SYSTEM_INFO.getHardware().getMemory().getPhysicalMemory();
-    private final DecimalFormat DECIMAL_FORMAT = new DecimalFormat("0.00");
-    private final Map<String, String> vmVendor = new HashMap<String, String>() {
-        {
-            put("bhyve bhyve", "bhyve");
-            put("KVMKVMKVM", "KVM");
-            put("TCGTCGTCGTCG", "QEMU");
-            put("Microsoft Hv", "Microsoft Hyper-V or Windows Virtual PC");
-            put("lrpepyh vr", "Parallels");
-            put("VMwareVMware", "VMware");
-            put("XenVMMXenVMM", "Xen HVM");
-            put("ACRNACRNACRN", "Project ACRN");
-            put("QNXQVMBSQG", "QNX Hypervisor");
-        }
-    };
-    private final String[] vmModelArray = new String[] {"Linux KVM","Linux lguest","OpenVZ","Qemu","Microsoft Virtual PC","VMWare","linux-vserver","Xen","FreeBSD Jail","VirtualBox","Parallels","Linux Containers","LXC"};
+    private final HardwareService HARDWARE_SERVICE;
+    private final GlobalMemory MEMORY;
     private final ApplicationProperties PROPERTIES;
     private final HostComponent HOST_COMPONENT;
     private final MailNotification MAIL_NOTIFICATION;
 
-    private List<HashMap<String, String>> ramInformationList = new ArrayList<>(100);
-    private String ramInformation;
-    private String total;
-    private String available;
-    private String used;
+    private List<MemoryInformation.Bank> ramInformationList;
+    private volatile MemoryInformation ramInformation;
+    private long total;
+    private long available;
 
     /**
      * Constructor responsible for DI.
@@ -83,9 +61,13 @@ public class RamComponent implements InformationModel {
      * @param injectedApplicationProperties Instance {@link ApplicationProperties}.
      * @param injectedHostComponent Instance of {@link HostComponent}.
      * @param injectedMailNotification Instance of {@link MailNotification}.
+     * @param injectedHardwareService Instance of {@link HardwareService}.
      */
     @Autowired
-    public RamComponent(ApplicationProperties injectedApplicationProperties, HostComponent injectedHostComponent, MailNotification injectedMailNotification) {
+    public RamComponent(ApplicationProperties injectedApplicationProperties, HostComponent injectedHostComponent, MailNotification injectedMailNotification,
+                        HardwareService injectedHardwareService) {
+        this.HARDWARE_SERVICE = injectedHardwareService;
+        this.MEMORY = HARDWARE_SERVICE.getHardware().getMemory();
         this.PROPERTIES = injectedApplicationProperties;
         this.HOST_COMPONENT = injectedHostComponent;
         this.MAIL_NOTIFICATION = injectedMailNotification;
@@ -93,22 +75,19 @@ public class RamComponent implements InformationModel {
     }
 
     /**
-     * If the memory usage exceeds <code>de.griefed.monitoring.schedule.email.notification.disk.usage</code>.
+     * If the memory usage exceeds <code>de.griefed.monitoring.schedule.email.notification.memory.usage</code>.
      * @author Griefed
      */
-    @Scheduled(cron = "${de.griefed.monitoring.schedule.email.notification.memory}")
     @Override
     public void sendNotification() {
-        if (Float.parseFloat(used.replace(" %","").replace(",",".")) >= Float.parseFloat(PROPERTIES.getProperty("de.griefed.monitoring.schedule.email.notification.disk.usage"))) {
-            try {
-                MAIL_NOTIFICATION.sendMailNotification(
-                        "Disk on " + HOST_COMPONENT.getHostName() + " at critical capacity!",
-                        "Memory usage has reached critical usage levels of " + used + ".\n" +
-                                "Memory remaining: " + available + "."
-                );
-            } catch (MessagingException ex) {
-                LOG.error("Error sending email notification.");
-            }
+        MemoryInformation memory = getInformation();
+
+        if (memory.getUsedPercent() >= Double.parseDouble(PROPERTIES.getProperty("de.griefed.monitoring.schedule.email.notification.memory.usage", "90.00"))) {
+            MAIL_NOTIFICATION.sendMailNotification(
+                    "Memory on " + HOST_COMPONENT.getHostName() + " at critical capacity!",
+                    "Memory usage has reached critical usage levels of " + Units.percent(memory.getUsedPercent()) + ".\n" +
+                            "Memory remaining: " + Units.gigabytes(memory.getAvailableBytes()) + "."
+            );
         }
     }
 
@@ -118,54 +97,7 @@ public class RamComponent implements InformationModel {
      */
     @Override
     public void setValues() {
-
-        StringBuilder stringBuilder = new StringBuilder(10000);
-
-        stringBuilder.append("\"total\": \"").append(total).append("\",");
-        stringBuilder.append("\"available\": \"").append(available).append("\",");
-        stringBuilder.append("\"used\": \"").append(used).append("\",");
-
-        stringBuilder.append("\"physical_memory\": [");
-
-        if (!identifyVM() && PHYSICAL_MEMORY.size() >= 1) {
-
-            if (ramInformationList.size() > 1) {
-
-                stringBuilder.append("{");
-                stringBuilder.append("\"bank\": \"").append(ramInformationList.get(0).get("bank")).append("\",");
-                stringBuilder.append("\"capacity\": \"").append(ramInformationList.get(0).get("capacity")).append("\",");
-                stringBuilder.append("\"type\": \"").append(ramInformationList.get(0).get("type")).append("\"");
-                stringBuilder.append("},");
-
-                for (int i = 1; i < ramInformationList.size() - 1; i++) {
-                    stringBuilder.append("{");
-                    stringBuilder.append("\"bank\": \"").append(ramInformationList.get(i).get("bank")).append("\",");
-                    stringBuilder.append("\"capacity\": \"").append(ramInformationList.get(i).get("capacity")).append("\",");
-                    stringBuilder.append("\"type\": \"").append(ramInformationList.get(i).get("type")).append("\"");
-                    stringBuilder.append("},");
-                }
-
-                stringBuilder.append("{");
-                stringBuilder.append("\"bank\": \"").append(ramInformationList.get(ramInformationList.size() - 1).get("bank")).append("\",");
-                stringBuilder.append("\"capacity\": \"").append(ramInformationList.get(ramInformationList.size() - 1).get("capacity")).append("\",");
-                stringBuilder.append("\"type\": \"").append(ramInformationList.get(ramInformationList.size() - 1).get("type")).append("\"");
-                stringBuilder.append("}");
-
-            } else {
-
-                stringBuilder.append("{");
-                stringBuilder.append("\"bank\": \"").append(ramInformationList.get(0).get("bank")).append("\",");
-                stringBuilder.append("\"capacity\": \"").append(ramInformationList.get(0).get("capacity")).append("\",");
-                stringBuilder.append("\"type\": \"").append(ramInformationList.get(0).get("type")).append("\"");
-                stringBuilder.append("}");
-
-            }
-
-        }
-        
-        stringBuilder.append("]");
-
-        this.ramInformation = stringBuilder.toString();
+        this.ramInformation = new MemoryInformation(total, available, ramInformationList, PROPERTIES.isHumanReadable());
     }
 
     /**
@@ -175,63 +107,25 @@ public class RamComponent implements InformationModel {
     @Override
     public void updateValues() {
 
-        this.total = DECIMAL_FORMAT.format(SYSTEM_INFO.getHardware().getMemory().getTotal() / 1073741824F) + " GB";
-        this.available = DECIMAL_FORMAT.format(SYSTEM_INFO.getHardware().getMemory().getAvailable() / 1073741824F) + " GB";
-        this.used = DECIMAL_FORMAT.format(100F - ((100F / SYSTEM_INFO.getHardware().getMemory().getTotal()) * SYSTEM_INFO.getHardware().getMemory().getAvailable())) + " %";
-
-        List<HashMap<String, String>> list = new ArrayList<>(100);
-
-        if (!identifyVM() && PHYSICAL_MEMORY.size() >= 1) {
-            if (PHYSICAL_MEMORY.size() > 1) {
-
-                list.add(
-                        new HashMap<String, String>() {
-                            {
-                                put("bank", PHYSICAL_MEMORY.get(0).getBankLabel());
-                                put("capacity", (PHYSICAL_MEMORY.get(0).getCapacity() / 1073741824F) + " GB");
-                                put("type", PHYSICAL_MEMORY.get(0).getMemoryType());
-                            }
-                        });
+        this.total = MEMORY.getTotal();
+        this.available = MEMORY.getAvailable();
 
-                for (int i = 1; i < PHYSICAL_MEMORY.size() -1; i++) {
+        // Memory banks do not change while running, so they are only gathered once.
+        if (ramInformationList == null) {
 
-                    int finalI = i;
-                    list.add(
-                            new HashMap<String, String>() {
-                                {
-                                    put("bank", PHYSICAL_MEMORY.get(finalI).getBankLabel());
-                                    put("capacity", (PHYSICAL_MEMORY.get(finalI).getCapacity() / 1073741824F) + " GB");
-                                    put("type", PHYSICAL_MEMORY.get(finalI).getMemoryType());
-                                }
-                            });
-
-                }
-
-                list.add(
-                        new HashMap<String, String>() {
-                            {
-                                put("bank", PHYSICAL_MEMORY.get(PHYSICAL_MEMORY.size() - 1).getBankLabel());
-                                put("capacity", (PHYSICAL_MEMORY.get(PHYSICAL_MEMORY.size() - 1).getCapacity() / 1073741824F) + " GB");
-                                put("type", PHYSICAL_MEMORY.get(PHYSICAL_MEMORY.size() - 1).getMemoryType());
-                            }
-                        });
-
-
-            } else {
-
-                list.add(
-                        new HashMap<String, String>() {
-                            {
-                                put("bank", PHYSICAL_MEMORY.get(0).getBankLabel());
-                                put("capacity", (PHYSICAL_MEMORY.get(0).getCapacity() / 1073741824F) + " GB");
-                                put("type", PHYSICAL_MEMORY.get(0).getMemoryType());
-                            }
-                        });
+            List<MemoryInformation.Bank> list = new ArrayList<>(HARDWARE_SERVICE.getPhysicalMemory().size());
 
+            for (PhysicalMemory memory : HARDWARE_SERVICE.getPhysicalMemory()) {
+                list.add(new MemoryInformation.Bank(
+                        memory.getBankLabel(),
+                        memory.getCapacity(),
+                        memory.getMemoryType(),
+                        PROPERTIES.isHumanReadable()
+                ));
             }
-        }
 
-        this.ramInformationList = list;
+            this.ramInformationList = list;
+        }
 
         setValues();
     }
@@ -254,6 +148,16 @@ public class RamComponent implements InformationModel {
      */
     @Override
     public String getValues() {
+        return DocumentWriter.write(getInformation());
+    }
+
+    /**
+     * Getter for the information about the memory.
+     * @author Griefed
+     * @return Instance of {@link MemoryInformation}. Information about the memory.
+     */
+    @Override
+    public MemoryInformation getInformation() {
         if (ramInformation == null) {
             setValues();
         }
@@ -263,34 +167,6 @@ public class RamComponent implements InformationModel {
 
     @Override
     public String toString() {
-        return "\"" + getName() + "\": {" + getValues() + "}";
-    }
-
-    private boolean identifyVM() {
-        SystemInfo si = new SystemInfo();
-        HardwareAbstractionLayer hw = si.getHardware();
-        // Check CPU Vendor
-        String vendor = hw.getProcessor().getProcessorIdentifier().getVendor().trim();
-        if (vmVendor.containsKey(vendor)) {
-            LOG.info("vendor: " + vendor);
-            return true;
-        }
-
-        // Try well known models
-        String model = hw.getComputerSystem().getModel();
-        for (String vm : vmModelArray) {
-            if (model.contains(vm)) {
-                LOG.info("model: " + model);
-                return true;
-            }
-        }
-        String manufacturer = hw.getComputerSystem().getManufacturer();
-        if ("Microsoft Corporation".equals(manufacturer) && "Virtual Machine".equals(model)) {
-            LOG.info("manufacturer: " + manufacturer);
-            return true;
-        }
-
-        // Couldn't find VM, return empty string
-        return false;
+        return "\"" + getName() + "\": " + getValues();
     }
 }
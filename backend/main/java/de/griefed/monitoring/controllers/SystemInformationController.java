@@ -22,15 +22,42 @@
  */
 package de.griefed.monitoring.controllers;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.services.HistoryService;
 import de.griefed.monitoring.services.InformationService;
+import de.griefed.monitoring.services.ResolverService;
+import de.griefed.monitoring.services.StreamService;
+import de.griefed.monitoring.services.SummaryService;
+import de.griefed.monitoring.models.AgentTable;
+import de.griefed.monitoring.models.Snapshot;
+import de.griefed.monitoring.models.TimeSeries;
+import de.griefed.monitoring.utilities.Schedules;
+import de.griefed.monitoring.utilities.MailNotification;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * RestController providing endpoints for retrieving information about the host and configured agents, if any.
@@ -43,17 +70,39 @@ public class SystemInformationController {
 
     private final InformationService INFORMATION_SERVICE;
     private final ApplicationProperties PROPERTIES;
+    private final ResolverService RESOLVER_SERVICE;
+    private final StreamService STREAM_SERVICE;
+    private final Schedules SCHEDULES;
+    private final MailNotification MAIL_NOTIFICATION;
+    private final HistoryService HISTORY_SERVICE;
+    private final SummaryService SUMMARY_SERVICE;
+    private final JsonFactory JSON_FACTORY = new JsonFactory();
 
     /**
      * Constructor responsible for DI.
      * @author Griefed
      * @param injectedInformationService Instance of {@link InformationService}.
      * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     * @param injectedResolverService Instance of {@link ResolverService}.
+     * @param injectedStreamService Instance of {@link StreamService}.
+     * @param injectedSchedules Instance of {@link Schedules}.
+     * @param injectedMailNotification Instance of {@link MailNotification}.
+     * @param injectedHistoryService Instance of {@link HistoryService}.
+     * @param injectedSummaryService Instance of {@link SummaryService}.
      */
     @Autowired
-    public SystemInformationController(InformationService injectedInformationService, ApplicationProperties injectedApplicationProperties) {
+    public SystemInformationController(InformationService injectedInformationService, ApplicationProperties injectedApplicationProperties,
+                                       ResolverService injectedResolverService, StreamService injectedStreamService,
+                                       Schedules injectedSchedules, MailNotification injectedMailNotification,
+                                       HistoryService injectedHistoryService, SummaryService injectedSummaryService) {
         this.INFORMATION_SERVICE = injectedInformationService;
         this.PROPERTIES = injectedApplicationProperties;
+        this.RESOLVER_SERVICE = injectedResolverService;
+        this.STREAM_SERVICE = injectedStreamService;
+        this.SCHEDULES = injectedSchedules;
+        this.MAIL_NOTIFICATION = injectedMailNotification;
+        this.HISTORY_SERVICE = injectedHistoryService;
+        this.SUMMARY_SERVICE = injectedSummaryService;
     }
 
     /**
@@ -78,31 +127,87 @@ public class SystemInformationController {
         return ResponseEntity.ok("{\"mode\": "+ PROPERTIES.isAgent() + "}");
     }
 
+    /**
+     * GET endpoint for retrieving internal statistics of this instance, like the hit and miss counters of the hostname cache,
+     * the number of stream subscribers, the sequence numbers of the latest host and agents information or how late and how
+     * long the scheduled tasks ran, how many email notifications were sent or dropped and how much history is kept.
+     * @author Griefed
+     * @return String in JSON format. Statistics of this instance. Wrapped in a ResponseEntity as application/json.
+     */
+    @CrossOrigin(origins = "{*}")
+    @RequestMapping(value = "statistics", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> getStatistics() {
+        return ResponseEntity.ok("{\"resolver\": " + RESOLVER_SERVICE.getStatistics() + ",\"stream\": {\"subscribers\": " + STREAM_SERVICE.getSubscriberCount() + "}" +
+                ",\"snapshots\": " + INFORMATION_SERVICE.getStatistics() +
+                ",\"scheduling\": " + SCHEDULES.getStatistics() +
+                ",\"mail\": " + MAIL_NOTIFICATION.getStatistics() +
+                ",\"history\": " + HISTORY_SERVICE.getStatistics() + "}");
+    }
+
     /**
      * GET endpoint for retrieving information about the host this instance is running on.<br>
      * See {@link de.griefed.monitoring.components.CpuComponent}, {@link de.griefed.monitoring.components.DiskComponent},
      * {@link de.griefed.monitoring.components.HostComponent}, {@link de.griefed.monitoring.components.OsComponent},
      * {@link de.griefed.monitoring.components.RamComponent} for details about the information gathered.
+     * Answers <code>304 Not Modified</code> if the client already holds the current information, see {@link #respond(Snapshot, String, String)}.
      * @author Griefed
+     * @param ifNoneMatch String. Optional. The <code>If-None-Match</code> header sent by the client.
+     * @param acceptEncoding String. Optional. The <code>Accept-Encoding</code> header sent by the client.
      * @return String in JSON format. Information about the host of this instance.  Wrapped in a ResponseEntity as application/json.
      */
     @CrossOrigin(origins = "{*}")
     @RequestMapping(value = "host", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> getHostInformation() {
+    public ResponseEntity<byte[]> getHostInformation(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                     @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         // TODO: if agent, require token
-        return ResponseEntity.ok(INFORMATION_SERVICE.retrieveHostInformation());
+        return respond(INFORMATION_SERVICE.retrieveHostInformation(), ifNoneMatch, acceptEncoding);
     }
 
     /**
-     * GET endpoint called by monitors if they are configured as such. Activated on agents if <code>de.griefed.monitoring.agent=true</code>.
+     * GET endpoint for subscribing to updates as server-sent events, instead of polling {@link #getHostInformation(String, String)}
+     * and {@link #getAgentsInformation(String, String, String, String, Integer, Integer, String, String, String)}. A <code>host</code> event is pushed whenever the information about
+     * the host changes, an <code>agents</code> event whenever the information about the agents does. Both carry the same
+     * document the respective endpoint returns. The latest events are sent right after subscribing.
      * @author Griefed
+     * @return Stream of events. Wrapped in a ResponseEntity as text/event-stream.
+     */
+    @CrossOrigin(origins = "{*}")
+    @RequestMapping(value = "stream", method = RequestMethod.GET, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<ResponseBodyEmitter> getStream() {
+        return ResponseEntity.ok()
+                .contentType(STREAM_SERVICE.getMediaType())
+                .cacheControl(CacheControl.noStore())
+                .header("X-Accel-Buffering", "no")
+                .body(STREAM_SERVICE.subscribe());
+    }
+
+    /**
+     * GET endpoint called by monitors if they are configured as such. Activated on agents if <code>de.griefed.monitoring.agent=true</code>.<br>
+     * If the monitor passes the epoch and component versions it knows from a previous call, only components which changed
+     * since are returned, or <code>304 Not Modified</code> if none did.
+     * @author Griefed
+     * @param epoch String. Optional. The epoch of this agent known to the monitor.
+     * @param versions String. Optional. The component versions known to the monitor, in the format <code>host:3,os:1</code>.
+     * @param ifNoneMatch String. Optional. The <code>If-None-Match</code> header sent by the monitor.
+     * @param acceptEncoding String. Optional. The <code>Accept-Encoding</code> header sent by the monitor.
      * @return String in JSON format. Returns information about the agent. Wrapped in a ResponseEntity as application/json.
      */
     @CrossOrigin(origins = "{*}")
     @RequestMapping(value = "agent", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> getAgentInformation() {
+    public ResponseEntity<byte[]> getAgentInformation(@RequestParam(value = "epoch", required = false) String epoch,
+                                                      @RequestParam(value = "versions", required = false) String versions,
+                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         if (PROPERTIES.isAgent()) {
-            return ResponseEntity.ok(INFORMATION_SERVICE.retrieveHostInformation());
+
+            Snapshot information = INFORMATION_SERVICE.retrieveAgentInformation(epoch, versions);
+
+            if (information == null) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            }
+
+            return respond(information, ifNoneMatch, acceptEncoding);
+
         } else {
             return ResponseEntity.badRequest().build();
         }
@@ -114,17 +219,391 @@ public class SystemInformationController {
      * is returned.<br>
      * See {@link de.griefed.monitoring.components.CpuComponent}, {@link de.griefed.monitoring.components.DiskComponent},
      * {@link de.griefed.monitoring.components.HostComponent}, {@link de.griefed.monitoring.components.OsComponent},
-     * {@link de.griefed.monitoring.components.RamComponent} for details about the information gathered.
+     * {@link de.griefed.monitoring.components.RamComponent} for details about the information gathered.<br>
+     * Without any parameters, the documents of all agents are returned. With any of them, only a page of the matching
+     * agents is returned, see {@link AgentTable#query(Collection, String, String, String, int, int, List)}.
      * @author Griefed
+     * @param status String. Optional. Only agents with one of these comma-separated statuses, <code>0</code> for ok,
+     *               <code>1</code> for host down, <code>2</code> for agent unreachable.
+     * @param prefix String. Optional. Only agents whose address or host name starts with it, ignoring case.
+     * @param name String. Optional. Only agents whose address or host name contains it, ignoring case.
+     * @param after String. Optional. Only agents after this one, as returned in <code>next</code> by the previous page.
+     *              A <code>400</code>-error is returned if the agent is not configured.
+     * @param offset Integer. Optional. The number of matching agents to skip.
+     * @param limit Integer. Optional. The maximum number of agents to return, at least <code>1</code>. All if omitted.
+     * @param fields String. Optional. Comma-separated dotted paths of the values to return for every agent, for example
+     *               <code>status,cpu.processes,memory.used</code>. The whole document if omitted.
+     * @param ifNoneMatch String. Optional. The <code>If-None-Match</code> header sent by the client.
+     * @param acceptEncoding String. Optional. The <code>Accept-Encoding</code> header sent by the client.
      * @return String in JSON format. Information about all configured agents. Wrapped in a ResponseEntity as application/json.
      */
     @CrossOrigin(origins = "{*}")
     @RequestMapping(value = "agents", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<String> getAgentsInformation() {
+    public ResponseEntity<byte[]> getAgentsInformation(@RequestParam(value = "status", required = false) String status,
+                                                       @RequestParam(value = "prefix", required = false) String prefix,
+                                                       @RequestParam(value = "name", required = false) String name,
+                                                       @RequestParam(value = "after", required = false) String after,
+                                                       @RequestParam(value = "offset", required = false) Integer offset,
+                                                       @RequestParam(value = "limit", required = false) Integer limit,
+                                                       @RequestParam(value = "fields", required = false) String fields,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (PROPERTIES.isAgent()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        AgentTable table = INFORMATION_SERVICE.retrieveAgentTable();
+
+        if (status == null && prefix == null && name == null && after == null && offset == null && limit == null && fields == null) {
+            return respond(table.getDocument(), ifNoneMatch, acceptEncoding);
+        }
+
+        List<Integer> statuses = new ArrayList<>();
+        if (status != null) {
+            try {
+                for (String code : status.split(",")) {
+                    if (!code.trim().isEmpty()) {
+                        statuses.add(Integer.parseInt(code.trim()));
+                    }
+                }
+            } catch (NumberFormatException ex) {
+                return ResponseEntity.badRequest().build();
+            }
+        }
+
+        if ((offset != null && offset < 0) || (limit != null && limit < 1)) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        String page;
+        try {
+            page = table.query(statuses, prefix, name, after,
+                    offset == null ? 0 : offset,
+                    limit == null ? Math.max(1, table.size()) : limit,
+                    fields == null ? null : Arrays.asList(fields.split(",")));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return respond(new Snapshot(page), ifNoneMatch, acceptEncoding);
+    }
+
+    /**
+     * GET endpoint for retrieving a summary of all configured agents, like how many hosts are down or above the disk and
+     * memory usage thresholds, the total and available memory and disk space, histograms of the CPU load, memory usage and
+     * highest disk usage of all hosts, and the hosts with the highest values. Kept up to date as every agent answers, so
+     * it is small and cheap no matter how large the fleet is. <code>de.griefed.monitoring.agent</code> must be set to
+     * <code>false</code> in order for this endpoint to return information, otherwise a <code>400</code>-error is returned.
+     * Answers <code>304 Not Modified</code> if the client already holds the current summary, see {@link #respond(Snapshot, String, String)}.
+     * @author Griefed
+     * @param ifNoneMatch String. Optional. The <code>If-None-Match</code> header sent by the client.
+     * @param acceptEncoding String. Optional. The <code>Accept-Encoding</code> header sent by the client.
+     * @return String in JSON format. Summary of all configured agents. Wrapped in a ResponseEntity as application/json.
+     */
+    @CrossOrigin(origins = "{*}")
+    @RequestMapping(value = "summary", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getSummary(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         if (!PROPERTIES.isAgent()) {
-            return ResponseEntity.ok(INFORMATION_SERVICE.retrieveAgentsInformation());
+            return respond(SUMMARY_SERVICE.getSummary(), ifNoneMatch, acceptEncoding);
         } else {
             return ResponseEntity.badRequest().build();
         }
     }
+
+    /**
+     * GET endpoint for retrieving the history of one or more series, aggregated into buckets of <code>step</code> milliseconds.
+     * Long ranges are answered from aggregates over one minute, 15 minutes or one hour, whichever is the coarsest which still
+     * satisfies <code>step</code> and covers <code>from</code>. Every series is returned as a columnar object, see
+     * {@link TimeSeries#writeTo(JsonGenerator)}, and streamed as it is written. Queries which would return more than
+     * <code>de.griefed.monitoring.history.query.points</code> values are answered with a <code>400</code>-error.
+     * @author Griefed
+     * @param agent String. Optional. The host, <code>host</code> for this instance or the address of an agent. All if omitted or <code>*</code>.
+     * @param component String. Optional. The component, for example <code>cpu</code>. All if omitted or <code>*</code>.
+     * @param metric String. Optional. The metric within the component, for example <code>load.system_percent</code>. All if omitted or <code>*</code>.
+     * @param from Long. Optional. Start of the range in milliseconds since the epoch. One hour before <code>to</code> if omitted.
+     * @param to Long. Optional. End of the range in milliseconds since the epoch. Now if omitted.
+     * @param step Long. Optional. The length of a bucket in milliseconds. Raw samples if omitted or <code>0</code>.
+     * @param aggregation String. Optional. How the samples in a bucket are aggregated, <code>min</code>, <code>max</code>,
+     *                    <code>avg</code> or <code>last</code>. <code>avg</code> if omitted.
+     * @param acceptEncoding String. Optional. The <code>Accept-Encoding</code> header sent by the client.
+     * @return String in JSON format. <code>{"from":...,"to":...,"series":[...]}</code>. Wrapped in a ResponseEntity as application/json.
+     */
+    @CrossOrigin(origins = "{*}")
+    @RequestMapping(value = "history", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getHistory(@RequestParam(value = "agent", required = false) String agent,
+                                                            @RequestParam(value = "component", required = false) String component,
+                                                            @RequestParam(value = "metric", required = false) String metric,
+                                                            @RequestParam(value = "from", required = false) Long from,
+                                                            @RequestParam(value = "to", required = false) Long to,
+                                                            @RequestParam(value = "step", required = false, defaultValue = "0") long step,
+                                                            @RequestParam(value = "aggregation", required = false, defaultValue = "avg") String aggregation,
+                                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+
+        long end = to == null ? System.currentTimeMillis() : to;
+        long start = from == null ? end - TimeUnit.HOURS.toMillis(1) : from;
+        HistoryService.Aggregation function = parse(HistoryService.Aggregation.class, aggregation);
+
+        if (!HISTORY_SERVICE.isEnabled() || function == null || start > end || step < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<TimeSeries> series;
+        try {
+            series = HISTORY_SERVICE.query(agent, component, metric, start, end, step, function);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return stream(start, end, series, acceptEncoding);
+    }
+
+    /**
+     * GET endpoint for retrieving the history of a metric across hosts, for example the 95th percentile of the usage of all
+     * disks of all agents. Every series is aggregated into buckets as by {@link #getHistory(String, String, String, Long, Long, long, String, String)},
+     * then the buckets of all hosts are combined by <code>function</code>, so one series is returned for every component and metric,
+     * with <code>*</code> as the agent. Large fleets are combined in parallel. Queries which would read more than
+     * <code>de.griefed.monitoring.history.query.points</code> values are answered with a <code>400</code>-error.
+     * @author Griefed
+     * @param agent String. Optional. The host, <code>host</code> for this instance or the address of an agent. All if omitted or <code>*</code>.
+     * @param component String. Optional. The component, for example <code>disks</code>. All if omitted or <code>*</code>.
+     * @param metric String. Optional. The metric within the component, for example <code>usage</code>. All if omitted or <code>*</code>.
+     * @param from Long. Optional. Start of the range in milliseconds since the epoch. One hour before <code>to</code> if omitted.
+     * @param to Long. Optional. End of the range in milliseconds since the epoch. Now if omitted.
+     * @param step Long. Optional. The length of a bucket in milliseconds, at least one minute. About 500 buckets if omitted.
+     * @param aggregation String. Optional. How the samples of a host in a bucket are aggregated, <code>min</code>, <code>max</code>,
+     *                    <code>avg</code> or <code>last</code>. <code>avg</code> if omitted.
+     * @param statistic String. Optional. How the buckets of all hosts are combined, <code>min</code>, <code>max</code>, <code>avg</code>,
+     *                  <code>sum</code>, <code>count</code>, <code>p50</code>, <code>p90</code>, <code>p95</code> or <code>p99</code>.
+     *                  <code>avg</code> if omitted.
+     * @param acceptEncoding String. Optional. The <code>Accept-Encoding</code> header sent by the client.
+     * @return String in JSON format. <code>{"from":...,"to":...,"series":[...]}</code>. Wrapped in a ResponseEntity as application/json.
+     * @throws InterruptedException if interrupted while combining the hosts.
+     */
+    @CrossOrigin(origins = "{*}")
+    @RequestMapping(value = "history/fleet", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getFleetHistory(@RequestParam(value = "agent", required = false) String agent,
+                                                                 @RequestParam(value = "component", required = false) String component,
+                                                                 @RequestParam(value = "metric", required = false) String metric,
+                                                                 @RequestParam(value = "from", required = false) Long from,
+                                                                 @RequestParam(value = "to", required = false) Long to,
+                                                                 @RequestParam(value = "step", required = false) Long step,
+                                                                 @RequestParam(value = "aggregation", required = false, defaultValue = "avg") String aggregation,
+                                                                 @RequestParam(value = "function", required = false, defaultValue = "avg") String statistic,
+                                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) throws InterruptedException {
+
+        long end = to == null ? System.currentTimeMillis() : to;
+        long start = from == null ? end - TimeUnit.HOURS.toMillis(1) : from;
+        long bucket = step == null ? Math.max(TimeUnit.MINUTES.toMillis(1), (end - start) / 500) : step;
+        HistoryService.Aggregation function = parse(HistoryService.Aggregation.class, aggregation);
+        HistoryService.Statistic combination = parse(HistoryService.Statistic.class, statistic);
+
+        if (!HISTORY_SERVICE.isEnabled() || function == null || combination == null || start > end || bucket < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<TimeSeries> series;
+        try {
+            series = HISTORY_SERVICE.aggregate(agent, component, metric, start, end, bucket, function, combination);
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        return stream(start, end, series, acceptEncoding);
+    }
+
+    /**
+     * GET endpoint for retrieving which series history is kept of, to find out what can be passed to {@link #getHistory(String, String, String, Long, Long, long, String, String)}.
+     * @author Griefed
+     * @param agent String. Optional. The host. All if omitted or <code>*</code>.
+     * @param component String. Optional. The component. All if omitted or <code>*</code>.
+     * @param metric String. Optional. The metric within the component. All if omitted or <code>*</code>.
+     * @param acceptEncoding String. Optional. The <code>Accept-Encoding</code> header sent by the client.
+     * @return String in JSON format. <code>{"series":[{"agent":...,"component":...,"metric":...},...]}</code>. Wrapped in a ResponseEntity as application/json.
+     */
+    @CrossOrigin(origins = "{*}")
+    @RequestMapping(value = "history/series", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getHistorySeries(@RequestParam(value = "agent", required = false) String agent,
+                                                                  @RequestParam(value = "component", required = false) String component,
+                                                                  @RequestParam(value = "metric", required = false) String metric,
+                                                                  @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (!HISTORY_SERVICE.isEnabled()) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<String[]> series = HISTORY_SERVICE.getSeries(agent, component, metric);
+
+        return stream(acceptEncoding, generator -> {
+            generator.writeArrayFieldStart("series");
+            for (String[] name : series) {
+                generator.writeStartObject();
+                generator.writeStringField("agent", name[0]);
+                generator.writeStringField("component", name[1]);
+                generator.writeStringField("metric", name[2]);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        });
+    }
+
+    /**
+     * Parse the name of a constant of an enum, ignoring case.
+     * @author Griefed
+     * @param type The enum to parse.
+     * @param name String. The name of the constant.
+     * @param <E> The type of the enum.
+     * @return The constant, or <code>null</code> if there is none by that name.
+     */
+    private <E extends Enum<E>> E parse(Class<E> type, String name) {
+        try {
+            return Enum.valueOf(type, name.trim().toUpperCase());
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Build the response for the result of a history query.
+     * @author Griefed
+     * @param from Long. Start of the range in milliseconds since the epoch.
+     * @param to Long. End of the range in milliseconds since the epoch.
+     * @param series List of {@link TimeSeries} to respond with.
+     * @param acceptEncoding String. The <code>Accept-Encoding</code> header sent by the client, may be <code>null</code>.
+     * @return The series, written as they are sent, wrapped in a ResponseEntity.
+     */
+    private ResponseEntity<StreamingResponseBody> stream(long from, long to, List<TimeSeries> series, String acceptEncoding) {
+        return stream(acceptEncoding, generator -> {
+            generator.writeNumberField("from", from);
+            generator.writeNumberField("to", to);
+            generator.writeArrayFieldStart("series");
+            for (TimeSeries timeSeries : series) {
+                timeSeries.writeTo(generator);
+            }
+            generator.writeEndArray();
+        });
+    }
+
+    /**
+     * Build a response whose body is a JSON object written straight to the client, instead of being built in memory first.
+     * The body is gzip-compressed if the client accepts it.
+     * @author Griefed
+     * @param acceptEncoding String. The <code>Accept-Encoding</code> header sent by the client, may be <code>null</code>.
+     * @param fields Writes the fields of the object.
+     * @return The object, wrapped in a ResponseEntity.
+     */
+    private ResponseEntity<StreamingResponseBody> stream(String acceptEncoding, Fields fields) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        if (gzip) {
+            builder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        return builder.body(outputStream -> {
+            OutputStream output = gzip ? new GZIPOutputStream(outputStream, 8192) : outputStream;
+
+            try (JsonGenerator generator = JSON_FACTORY.createGenerator(output)) {
+                generator.writeStartObject();
+                fields.write(generator);
+                generator.writeEndObject();
+            }
+        });
+    }
+
+    /**
+     * Writes the fields of a JSON object.
+     * @author Griefed
+     */
+    @FunctionalInterface
+    private interface Fields {
+
+        /**
+         * Write the fields.
+         * @author Griefed
+         * @param generator Instance of {@link JsonGenerator} to write to.
+         * @throws IOException if the fields could not be written.
+         */
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * Build the response for a snapshot. If the client already holds it, as indicated by a matching <code>If-None-Match</code>,
+     * <code>304 Not Modified</code> without a body is returned. Otherwise the body is returned gzip-compressed if the client
+     * accepts it. The compressed body is cached in the snapshot, so it is only compressed once no matter how many clients ask.
+     * Both bodies carry their own ETag, the one of the body the client would receive now is sent along with a 304 as well.
+     * @author Griefed
+     * @param snapshot Instance of {@link Snapshot}. The document to respond with.
+     * @param ifNoneMatch String. The <code>If-None-Match</code> header sent by the client, may be <code>null</code>.
+     * @param acceptEncoding String. The <code>Accept-Encoding</code> header sent by the client, may be <code>null</code>.
+     * @return byte array. The document, wrapped in a ResponseEntity.
+     */
+    private ResponseEntity<byte[]> respond(Snapshot snapshot, String ifNoneMatch, String acceptEncoding) {
+
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = gzip ? snapshot.getGzipEtag() : snapshot.getEtag();
+
+        if (snapshot.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT_ENCODING).build();
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(snapshot.getGzip());
+        }
+
+        return builder.body(snapshot.getBytes());
+    }
+
+    /**
+     * Check whether a client accepts gzip-compressed bodies. Every coding in <code>Accept-Encoding</code> is matched as a
+     * whole, so codings which merely contain <code>gzip</code> do not count, and a quality of <code>0</code> refuses it.
+     * <code>gzip</code> is accepted if it is listed with a quality above <code>0</code>, or if it is not listed and
+     * <code>*</code> is.
+     * @author Griefed
+     * @param acceptEncoding String. The <code>Accept-Encoding</code> header sent by the client, may be <code>null</code>.
+     * @return Boolean. <code>true</code> if the body may be gzip-compressed.
+     */
+    private boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        double gzip = -1;
+        double any = -1;
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase();
+            double quality = 1;
+
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim().toLowerCase();
+
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException ex) {
+                        quality = 0;
+                    }
+                }
+            }
+
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = Math.max(gzip, quality);
+            } else if (name.equals("*")) {
+                any = Math.max(any, quality);
+            }
+        }
+
+        return gzip >= 0 ? gzip > 0 : any > 0;
+    }
 }
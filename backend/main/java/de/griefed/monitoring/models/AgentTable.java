@@ -0,0 +1,327 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * An immutable table of the documents of all agents, as gathered by one sweep, together with the document of all agents
+ * as served by <code>/api/v1/agents</code>. Agents are indexed by their status and by their address and host name, so
+ * pages of agents with a given status or name can be served without going over every document. Documents are parsed
+ * once by the sweep and shared with the other consumers. Rows of documents which did not change since the previous sweep
+ * are kept.
+ * @author Griefed
+ */
+public final class AgentTable {
+
+    private static final Logger LOG = LogManager.getLogger(AgentTable.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Snapshot DOCUMENT;
+    private final Row[] ROWS;
+    private final Map<String, Integer> POSITIONS;
+    private final Map<Integer, BitSet> STATUSES = new HashMap<>();
+    private final TreeMap<String, BitSet> NAMES = new TreeMap<>();
+
+    /**
+     * Constructor for a table without any agents.
+     * @author Griefed
+     * @param document Instance of {@link Snapshot}. The document served by <code>/api/v1/agents</code>.
+     */
+    public AgentTable(Snapshot document) {
+        this(document, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), null);
+    }
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param document Instance of {@link Snapshot}. The document served by <code>/api/v1/agents</code>.
+     * @param agents List String. The agents, in the configured order.
+     * @param documents List String in JSON format. The document of every agent, in the same order.
+     * @param roots List of the parsed document of every agent, in the same order, shared with the other consumers of the
+     *              documents so they are only parsed once. Documents whose entry is <code>null</code> are parsed here.
+     * @param previous The table of the previous sweep, or <code>null</code>. Rows of agents whose documents did not change are taken from it.
+     */
+    public AgentTable(Snapshot document, List<String> agents, List<String> documents, List<JsonNode> roots, AgentTable previous) {
+        this.DOCUMENT = document;
+        this.ROWS = new Row[agents.size()];
+        this.POSITIONS = new HashMap<>(agents.size() * 2);
+
+        for (int position = 0; position < ROWS.length; position++) {
+            String agent = agents.get(position);
+            Row row = previous == null ? null : previous.getRow(agent);
+
+            if (row == null || !row.DOCUMENT.equals(documents.get(position))) {
+                row = new Row(agent, documents.get(position), roots.get(position));
+            }
+
+            ROWS[position] = row;
+            POSITIONS.put(agent, position);
+            STATUSES.computeIfAbsent(row.STATUS, status -> new BitSet(ROWS.length)).set(position);
+            NAMES.computeIfAbsent(agent.toLowerCase(), name -> new BitSet(ROWS.length)).set(position);
+
+            if (!row.HOST_NAME.isEmpty()) {
+                NAMES.computeIfAbsent(row.HOST_NAME, name -> new BitSet(ROWS.length)).set(position);
+            }
+        }
+    }
+
+    /**
+     * Getter for the document served by <code>/api/v1/agents</code>.
+     * @author Griefed
+     * @return Instance of {@link Snapshot}. The documents of all agents.
+     */
+    public Snapshot getDocument() {
+        return DOCUMENT;
+    }
+
+    /**
+     * Getter for the number of agents.
+     * @author Griefed
+     * @return Integer. The number of agents in this table.
+     */
+    public int size() {
+        return ROWS.length;
+    }
+
+    /**
+     * Getter for the row of an agent.
+     * @author Griefed
+     * @param agent String. The agent.
+     * @return The row, or <code>null</code> if the agent is not in this table.
+     */
+    private Row getRow(String agent) {
+        Integer position = POSITIONS.get(agent);
+        return position == null ? null : ROWS[position];
+    }
+
+    /**
+     * Query a page of agents, in the configured order.
+     * @author Griefed
+     * @param statuses Collection of Integer. Only agents with one of these statuses. All if <code>null</code> or empty.
+     * @param prefix String. Only agents whose address or host name starts with it, ignoring case. All if <code>null</code>.
+     * @param name String. Only agents whose address or host name contains it, ignoring case. All if <code>null</code>.
+     * @param after String. Only agents after this one, as returned in <code>next</code> by the previous page. From the first agent if <code>null</code> or empty.
+     * @param offset Integer. The number of matching agents to skip, after <code>after</code>.
+     * @param limit Integer. The maximum number of agents to return, at least <code>1</code>.
+     * @param fields List String. The dotted paths of the values to return for every agent, for example <code>cpu.processes</code>.
+     *               Paths into lists return the value of every element. The address of the agent is always returned. The
+     *               whole document if <code>null</code> or empty.
+     * @return String in JSON format. <code>{"total":...,"next":...,"agents":[...]}</code>, where <code>total</code> is the number
+     * of matching agents and <code>next</code> the agent to pass as <code>after</code> for the next page, or <code>null</code> if this is the last one.
+     * @throws IllegalArgumentException if <code>after</code> is not in this table, for example because it is no longer
+     * configured, if <code>offset</code> is negative or if <code>limit</code> is less than <code>1</code>.
+     */
+    public String query(Collection<Integer> statuses, String prefix, String name, String after, int offset, int limit, List<String> fields) {
+        if (offset < 0 || limit < 1) {
+            throw new IllegalArgumentException("Invalid page of " + limit + " agents at offset " + offset + ".");
+        }
+
+        // An unknown agent would otherwise restart from the first page, handing clients the same agents over and over.
+        int start = 0;
+        if (after != null && !after.isEmpty()) {
+            Integer previous = POSITIONS.get(after);
+            if (previous == null) {
+                throw new IllegalArgumentException("Unknown agent " + after + ".");
+            }
+            start = previous + 1;
+        }
+
+        BitSet matches = new BitSet(ROWS.length);
+        matches.set(0, ROWS.length);
+
+        if (statuses != null && !statuses.isEmpty()) {
+            BitSet selected = new BitSet(ROWS.length);
+            for (Integer status : statuses) {
+                selected.or(STATUSES.getOrDefault(status, new BitSet()));
+            }
+            matches.and(selected);
+        }
+
+        if (prefix != null && !prefix.isEmpty()) {
+            String lower = prefix.toLowerCase();
+            BitSet selected = new BitSet(ROWS.length);
+            NAMES.subMap(lower, true, lower + Character.MAX_VALUE, true).values().forEach(selected::or);
+            matches.and(selected);
+        }
+
+        if (name != null && !name.isEmpty()) {
+            String lower = name.toLowerCase();
+            for (int position = matches.nextSetBit(0); position >= 0; position = matches.nextSetBit(position + 1)) {
+                if (!ROWS[position].AGENT.toLowerCase().contains(lower) && !ROWS[position].HOST_NAME.contains(lower)) {
+                    matches.clear(position);
+                }
+            }
+        }
+
+        int total = matches.cardinality();
+
+        int position = matches.nextSetBit(start);
+        for (int skipped = 0; skipped < offset && position >= 0; skipped++) {
+            position = matches.nextSetBit(position + 1);
+        }
+
+        List<String[]> paths = new ArrayList<>();
+        boolean projected = false;
+        if (fields != null) {
+            for (String field : fields) {
+                projected |= !field.trim().isEmpty();
+                if (!field.trim().isEmpty() && !field.trim().equals("agent")) {
+                    paths.add(field.trim().split("\\."));
+                }
+            }
+        }
+
+        StringWriter writer = new StringWriter(4096);
+
+        try (JsonGenerator generator = MAPPER.getFactory().createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeNumberField("total", total);
+            generator.writeArrayFieldStart("agents");
+
+            Row last = null;
+            for (int returned = 0; returned < limit && position >= 0; returned++) {
+                last = ROWS[position];
+
+                if (!projected) {
+                    generator.writeRawValue(last.DOCUMENT);
+                } else {
+                    generator.writeStartObject();
+                    generator.writeStringField("agent", last.AGENT);
+                    for (String[] path : paths) {
+                        JsonNode value = project(last.NODE, path, 0);
+                        if (!value.isMissingNode()) {
+                            generator.writeFieldName(String.join(".", path));
+                            generator.writeTree(value);
+                        }
+                    }
+                    generator.writeEndObject();
+                }
+
+                position = matches.nextSetBit(position + 1);
+            }
+
+            generator.writeEndArray();
+            generator.writeStringField("next", position >= 0 && last != null ? last.AGENT : null);
+            generator.writeEndObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return writer.toString();
+    }
+
+    /**
+     * Select the value at a dotted path in a document. If a list is encountered, the rest of the path is selected in every
+     * one of its elements, unless the next part of the path is the position of an element.
+     * @author Griefed
+     * @param node The document, or the part of it the path continues in.
+     * @param path String array. The parts of the path.
+     * @param depth Integer. The part of the path to continue with.
+     * @return The selected value, a list of them, or a missing node if there is none.
+     */
+    private static JsonNode project(JsonNode node, String[] path, int depth) {
+        if (depth == path.length) {
+            return node;
+        }
+
+        if (node.isArray()) {
+
+            if (path[depth].matches("\\d+")) {
+                return project(node.path(Integer.parseInt(path[depth])), path, depth + 1);
+            }
+
+            ArrayNode values = JsonNodeFactory.instance.arrayNode();
+            for (JsonNode element : node) {
+                JsonNode value = project(element, path, depth);
+                if (!value.isMissingNode()) {
+                    values.add(value);
+                }
+            }
+            return values;
+
+        }
+
+        if (!node.isObject()) {
+            return MissingNode.getInstance();
+        }
+
+        return project(node.path(path[depth]), path, depth + 1);
+    }
+
+    /**
+     * The document of one agent, together with the values it is indexed by.
+     * @author Griefed
+     */
+    private static final class Row {
+
+        private final String AGENT;
+        private final String DOCUMENT;
+        private final int STATUS;
+        private final String HOST_NAME;
+        private final JsonNode NODE;
+
+        /**
+         * Constructor of the row of an agent.
+         * @author Griefed
+         * @param agent String. The agent.
+         * @param document String in JSON format. The document of the agent.
+         * @param root The parsed document, or <code>null</code> to parse it here.
+         */
+        private Row(String agent, String document, JsonNode root) {
+            this.AGENT = agent;
+            this.DOCUMENT = document;
+            this.NODE = root != null ? root : parse(agent, document);
+            this.STATUS = NODE.path("status").asInt(2);
+            this.HOST_NAME = NODE.path("host").path("host_name").asText("").toLowerCase();
+        }
+
+        /**
+         * Parse the document of an agent.
+         * @author Griefed
+         * @param agent String. The agent the document belongs to.
+         * @param document String in JSON format. The document of the agent.
+         * @return The parsed document, or a missing node if it is malformed, so the agent is listed as unreachable.
+         */
+        private static JsonNode parse(String agent, String document) {
+            try {
+                return MAPPER.readTree(document);
+            } catch (IOException ex) {
+                LOG.error("Could not parse document of agent " + agent + ".", ex);
+                return MissingNode.getInstance();
+            }
+        }
+    }
+}
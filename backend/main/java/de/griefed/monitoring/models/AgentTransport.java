@@ -0,0 +1,51 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport used by a monitor to retrieve the information of its agents.
+ * @author Griefed
+ */
+public interface AgentTransport {
+
+    /**
+     * Retrieve <code>/api/v1/agent</code> from the given agent. The returned future completes exceptionally if the agent
+     * could not be reached or did not answer with either <code>200 OK</code> or <code>304 Not Modified</code>.
+     * @author Griefed
+     * @param agent String. The address of the agent, for example <code>http://127.0.0.1:8080</code>.
+     * @param query String. The query to append to the request, starting with <code>?</code>, or an empty string.
+     * @return CompletableFuture ResponseEntity String. The response of the agent.
+     */
+    CompletableFuture<ResponseEntity<String>> fetch(String agent, String query);
+
+    /**
+     * Release all resources held by this transport.
+     * @author Griefed
+     */
+    void close();
+
+}
@@ -0,0 +1,44 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Immutable information gathered by a component at one point in time. Implementations must implement <code>equals</code>
+ * and <code>hashCode</code> by value, so unchanged information can be recognized without serializing it.
+ * @author Griefed
+ */
+@FunctionalInterface
+public interface ComponentInformation {
+
+    /**
+     * Write this information as a single JSON value.
+     * @author Griefed
+     * @param generator Instance of {@link JsonGenerator} to write to.
+     * @throws IOException if the generator fails to write.
+     */
+    void writeTo(JsonGenerator generator) throws IOException;
+}
@@ -0,0 +1,372 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable information about the CPU.
+ * @author Griefed
+ */
+public final class CpuInformation implements ComponentInformation {
+
+    private final String MODEL;
+    private final boolean X64;
+    private final int PROCESSES;
+    private final int THREADS;
+    private final int PHYSICAL_CORES;
+    private final int LOGICAL_CORES;
+    private final List<Process> TOP_PROCESSES;
+    private final Load LOAD;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param model String. The name of the CPU.
+     * @param x64 Boolean. Whether the CPU is a 64bit CPU.
+     * @param processes Integer. The number of processes.
+     * @param threads Integer. The number of threads.
+     * @param physicalCores Integer. The number of physical cores.
+     * @param logicalCores Integer. The number of logical cores.
+     * @param topProcesses List {@link Process}. The heaviest processes, empty if not gathered.
+     * @param load Instance of {@link Load}. The utilization of the CPU since the previous update.
+     */
+    public CpuInformation(String model, boolean x64, int processes, int threads, int physicalCores, int logicalCores, List<Process> topProcesses,
+                          Load load) {
+        this.MODEL = model;
+        this.X64 = x64;
+        this.PROCESSES = processes;
+        this.THREADS = threads;
+        this.PHYSICAL_CORES = physicalCores;
+        this.LOGICAL_CORES = logicalCores;
+        this.TOP_PROCESSES = Collections.unmodifiableList(new ArrayList<>(topProcesses));
+        this.LOAD = load;
+    }
+
+    /**
+     * Getter for the name of the CPU.
+     * @author Griefed
+     * @return String. The model of the CPU.
+     */
+    public String getModel() {
+        return MODEL;
+    }
+
+    /**
+     * Getter for whether the CPU is a 64bit CPU.
+     * @author Griefed
+     * @return Boolean. <code>true</code> if the CPU is a 64bit CPU.
+     */
+    public boolean isX64() {
+        return X64;
+    }
+
+    /**
+     * Getter for the number of processes.
+     * @author Griefed
+     * @return Integer. The number of processes running on the host.
+     */
+    public int getProcesses() {
+        return PROCESSES;
+    }
+
+    /**
+     * Getter for the number of threads.
+     * @author Griefed
+     * @return Integer. The number of threads running on the host.
+     */
+    public int getThreads() {
+        return THREADS;
+    }
+
+    /**
+     * Getter for the number of physical cores.
+     * @author Griefed
+     * @return Integer. The number of physical cores.
+     */
+    public int getPhysicalCores() {
+        return PHYSICAL_CORES;
+    }
+
+    /**
+     * Getter for the number of logical cores.
+     * @author Griefed
+     * @return Integer. The number of logical cores.
+     */
+    public int getLogicalCores() {
+        return LOGICAL_CORES;
+    }
+
+    /**
+     * Getter for the heaviest processes.
+     * @author Griefed
+     * @return List {@link Process}. The heaviest processes, the heaviest first. Empty if none are reported.
+     */
+    public List<Process> getTopProcesses() {
+        return TOP_PROCESSES;
+    }
+
+    /**
+     * Getter for the utilization of the CPU.
+     * @author Griefed
+     * @return {@link Load}. The utilization since the previous update.
+     */
+    public Load getLoad() {
+        return LOAD;
+    }
+
+    @Override
+    public void writeTo(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("model", MODEL);
+        generator.writeStringField("x64", String.valueOf(X64));
+        generator.writeNumberField("processes", PROCESSES);
+        generator.writeNumberField("threads", THREADS);
+        generator.writeNumberField("physical_cores", PHYSICAL_CORES);
+        generator.writeNumberField("logical_cores", LOGICAL_CORES);
+        generator.writeFieldName("load");
+        LOAD.writeTo(generator);
+        if (!TOP_PROCESSES.isEmpty()) {
+            generator.writeArrayFieldStart("top_processes");
+            for (Process process : TOP_PROCESSES) {
+                process.writeTo(generator);
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CpuInformation)) return false;
+        CpuInformation that = (CpuInformation) o;
+        return X64 == that.X64 && PROCESSES == that.PROCESSES && THREADS == that.THREADS && PHYSICAL_CORES == that.PHYSICAL_CORES &&
+                LOGICAL_CORES == that.LOGICAL_CORES && Objects.equals(MODEL, that.MODEL) && TOP_PROCESSES.equals(that.TOP_PROCESSES) && LOAD.equals(that.LOAD);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(MODEL, X64, PROCESSES, THREADS, PHYSICAL_CORES, LOGICAL_CORES, TOP_PROCESSES, LOAD);
+    }
+
+    /**
+     * Immutable utilization of the CPU over the interval between two updates.
+     * @author Griefed
+     */
+    public static final class Load implements ComponentInformation {
+
+        private final double SYSTEM_PERCENT;
+        private final double[] CORE_PERCENTS;
+        private final double[] LOAD_AVERAGE;
+        private final double CONTEXT_SWITCHES_PER_SECOND;
+        private final double INTERRUPTS_PER_SECOND;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param systemPercent Double. The utilization of all cores together, from 0 to 100.
+         * @param corePercents Double array. The utilization of every logical core, from 0 to 100. Not copied, must not be modified afterwards.
+         * @param loadAverage Double array. The load average over 1, 5 and 15 minutes. Empty if not available on this OS.
+         * @param contextSwitchesPerSecond Double. The context switches per second.
+         * @param interruptsPerSecond Double. The interrupts per second.
+         */
+        public Load(double systemPercent, double[] corePercents, double[] loadAverage, double contextSwitchesPerSecond, double interruptsPerSecond) {
+            this.SYSTEM_PERCENT = systemPercent;
+            this.CORE_PERCENTS = corePercents;
+            this.LOAD_AVERAGE = loadAverage;
+            this.CONTEXT_SWITCHES_PER_SECOND = contextSwitchesPerSecond;
+            this.INTERRUPTS_PER_SECOND = interruptsPerSecond;
+        }
+
+        /**
+         * Getter for the utilization of all cores together.
+         * @author Griefed
+         * @return Double. The utilization, from 0 to 100.
+         */
+        public double getSystemPercent() {
+            return SYSTEM_PERCENT;
+        }
+
+        /**
+         * Getter for the utilization of a single logical core.
+         * @author Griefed
+         * @param core Integer. The index of the core, from <code>0</code> to {@link #getCores()} exclusive.
+         * @return Double. The utilization of the core, from 0 to 100.
+         */
+        public double getCorePercent(int core) {
+            return CORE_PERCENTS[core];
+        }
+
+        /**
+         * Getter for the number of logical cores a utilization is known for.
+         * @author Griefed
+         * @return Integer. The number of logical cores.
+         */
+        public int getCores() {
+            return CORE_PERCENTS.length;
+        }
+
+        /**
+         * Getter for the context switches per second.
+         * @author Griefed
+         * @return Double. The context switches per second.
+         */
+        public double getContextSwitchesPerSecond() {
+            return CONTEXT_SWITCHES_PER_SECOND;
+        }
+
+        /**
+         * Getter for the interrupts per second.
+         * @author Griefed
+         * @return Double. The interrupts per second.
+         */
+        public double getInterruptsPerSecond() {
+            return INTERRUPTS_PER_SECOND;
+        }
+
+        @Override
+        public void writeTo(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("system_percent", SYSTEM_PERCENT);
+            generator.writeFieldName("core_percent");
+            generator.writeArray(CORE_PERCENTS, 0, CORE_PERCENTS.length);
+            generator.writeFieldName("load_average");
+            generator.writeArray(LOAD_AVERAGE, 0, LOAD_AVERAGE.length);
+            generator.writeNumberField("context_switches_per_second", CONTEXT_SWITCHES_PER_SECOND);
+            generator.writeNumberField("interrupts_per_second", INTERRUPTS_PER_SECOND);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Load)) return false;
+            Load that = (Load) o;
+            return Double.compare(SYSTEM_PERCENT, that.SYSTEM_PERCENT) == 0 && Arrays.equals(CORE_PERCENTS, that.CORE_PERCENTS) &&
+                    Arrays.equals(LOAD_AVERAGE, that.LOAD_AVERAGE) &&
+                    Double.compare(CONTEXT_SWITCHES_PER_SECOND, that.CONTEXT_SWITCHES_PER_SECOND) == 0 &&
+                    Double.compare(INTERRUPTS_PER_SECOND, that.INTERRUPTS_PER_SECOND) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(SYSTEM_PERCENT, Arrays.hashCode(CORE_PERCENTS), Arrays.hashCode(LOAD_AVERAGE),
+                    CONTEXT_SWITCHES_PER_SECOND, INTERRUPTS_PER_SECOND);
+        }
+    }
+
+    /**
+     * Immutable information about a single process.
+     * @author Griefed
+     */
+    public static final class Process implements ComponentInformation {
+
+        private final int PID;
+        private final String NAME;
+        private final double CPU_PERCENT;
+        private final long RSS_BYTES;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param pid Integer. The ID of the process.
+         * @param name String. The name of the process.
+         * @param cpuPercent Double. The CPU usage of the process, where 100 is one fully used core.
+         * @param rssBytes Long. The resident memory of the process in bytes.
+         */
+        public Process(int pid, String name, double cpuPercent, long rssBytes) {
+            this.PID = pid;
+            this.NAME = name;
+            this.CPU_PERCENT = cpuPercent;
+            this.RSS_BYTES = rssBytes;
+        }
+
+        /**
+         * Getter for the ID of the process.
+         * @author Griefed
+         * @return Integer. The ID of the process.
+         */
+        public int getPid() {
+            return PID;
+        }
+
+        /**
+         * Getter for the name of the process.
+         * @author Griefed
+         * @return String. The name of the process.
+         */
+        public String getName() {
+            return NAME;
+        }
+
+        /**
+         * Getter for the CPU usage of the process.
+         * @author Griefed
+         * @return Double. The CPU usage of the process, where 100 is one fully used core.
+         */
+        public double getCpuPercent() {
+            return CPU_PERCENT;
+        }
+
+        /**
+         * Getter for the resident memory of the process.
+         * @author Griefed
+         * @return Long. The resident memory of the process in bytes.
+         */
+        public long getRssBytes() {
+            return RSS_BYTES;
+        }
+
+        @Override
+        public void writeTo(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("pid", PID);
+            generator.writeStringField("name", NAME);
+            generator.writeNumberField("cpu_percent", CPU_PERCENT);
+            generator.writeNumberField("rss_bytes", RSS_BYTES);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Process)) return false;
+            Process that = (Process) o;
+            return PID == that.PID && Double.compare(CPU_PERCENT, that.CPU_PERCENT) == 0 && RSS_BYTES == that.RSS_BYTES &&
+                    Objects.equals(NAME, that.NAME);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(PID, NAME, CPU_PERCENT, RSS_BYTES);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable information about the input and output of all physical disks. Written as a JSON array with one object per disk.
+ * @author Griefed
+ */
+public final class DiskIoInformation implements ComponentInformation {
+
+    private final List<Disk> DISKS;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param disks List {@link Disk}. The physical disks.
+     */
+    public DiskIoInformation(List<Disk> disks) {
+        this.DISKS = Collections.unmodifiableList(new ArrayList<>(disks));
+    }
+
+    /**
+     * Getter for the physical disks.
+     * @author Griefed
+     * @return List {@link Disk}. The physical disks.
+     */
+    public List<Disk> getDisks() {
+        return DISKS;
+    }
+
+    @Override
+    public void writeTo(JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (Disk disk : DISKS) {
+            disk.writeTo(generator);
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DiskIoInformation)) return false;
+        return DISKS.equals(((DiskIoInformation) o).DISKS);
+    }
+
+    @Override
+    public int hashCode() {
+        return DISKS.hashCode();
+    }
+
+    /**
+     * Immutable input and output of a single physical disk since the previous update.
+     * @author Griefed
+     */
+    public static final class Disk implements ComponentInformation {
+
+        private final String NAME;
+        private final String MODEL;
+        private final List<String> MOUNTS;
+        private final double READ_BYTES_PER_SECOND;
+        private final double WRITE_BYTES_PER_SECOND;
+        private final double READS_PER_SECOND;
+        private final double WRITES_PER_SECOND;
+        private final long QUEUE_LENGTH;
+        private final double AVERAGE_SERVICE_MILLIS;
+        private final double BUSY_PERCENT;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param name String. The name of the disk, for example <code>/dev/sda</code>.
+         * @param model String. The model of the disk.
+         * @param mounts List String. The mount points of the file stores on this disk.
+         * @param rates Double array. Bytes read, bytes written, reads and writes per second, in that order.
+         * @param queueLength Long. The number of requests waiting for the disk at the time of the update.
+         * @param averageServiceMillis Double. The average time in milliseconds the disk was busy per read or write. This is the
+         *                             service time, the time spent waiting in the queue before is not included.
+         * @param busyPercent Double. How many percent of the time the disk was busy, from 0 to 100.
+         */
+        public Disk(String name, String model, List<String> mounts, double[] rates, long queueLength, double averageServiceMillis,
+                    double busyPercent) {
+            this.NAME = name;
+            this.MODEL = model;
+            this.MOUNTS = Collections.unmodifiableList(new ArrayList<>(mounts));
+            this.READ_BYTES_PER_SECOND = rates[0];
+            this.WRITE_BYTES_PER_SECOND = rates[1];
+            this.READS_PER_SECOND = rates[2];
+            this.WRITES_PER_SECOND = rates[3];
+            this.QUEUE_LENGTH = queueLength;
+            this.AVERAGE_SERVICE_MILLIS = averageServiceMillis;
+            this.BUSY_PERCENT = busyPercent;
+        }
+
+        /**
+         * Getter for the name of the disk.
+         * @author Griefed
+         * @return String. The name of the disk, for example <code>/dev/sda</code>.
+         */
+        public String getName() {
+            return NAME;
+        }
+
+        /**
+         * Getter for the mount points of the file stores on this disk.
+         * @author Griefed
+         * @return List String. The mount points.
+         */
+        public List<String> getMounts() {
+            return MOUNTS;
+        }
+
+        /**
+         * Getter for the bytes read per second.
+         * @author Griefed
+         * @return Double. The bytes read per second since the previous update.
+         */
+        public double getReadBytesPerSecond() {
+            return READ_BYTES_PER_SECOND;
+        }
+
+        /**
+         * Getter for the bytes written per second.
+         * @author Griefed
+         * @return Double. The bytes written per second since the previous update.
+         */
+        public double getWriteBytesPerSecond() {
+            return WRITE_BYTES_PER_SECOND;
+        }
+
+        /**
+         * Getter for the queue length.
+         * @author Griefed
+         * @return Long. The number of requests waiting for the disk at the time of the update.
+         */
+        public long getQueueLength() {
+            return QUEUE_LENGTH;
+        }
+
+        /**
+         * Getter for the average service time of a read or write. The time requests spent waiting in the queue is not included, so
+         * this is not the latency an application sees.
+         * @author Griefed
+         * @return Double. The average time in milliseconds the disk was busy per read or write since the previous update.
+         */
+        public double getAverageServiceMillis() {
+            return AVERAGE_SERVICE_MILLIS;
+        }
+
+        /**
+         * Getter for the busy time of the disk.
+         * @author Griefed
+         * @return Double. How many percent of the time the disk was busy since the previous update, from 0 to 100.
+         */
+        public double getBusyPercent() {
+            return BUSY_PERCENT;
+        }
+
+        @Override
+        public void writeTo(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", NAME);
+            generator.writeStringField("model", MODEL);
+            generator.writeArrayFieldStart("mounts");
+            for (String mount : MOUNTS) {
+                generator.writeString(mount);
+            }
+            generator.writeEndArray();
+            generator.writeNumberField("read_bytes_per_second", READ_BYTES_PER_SECOND);
+            generator.writeNumberField("write_bytes_per_second", WRITE_BYTES_PER_SECOND);
+            generator.writeNumberField("reads_per_second", READS_PER_SECOND);
+            generator.writeNumberField("writes_per_second", WRITES_PER_SECOND);
+            generator.writeNumberField("queue_length", QUEUE_LENGTH);
+            generator.writeNumberField("average_service_ms", AVERAGE_SERVICE_MILLIS);
+            generator.writeNumberField("busy_percent", BUSY_PERCENT);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Disk)) return false;
+            Disk that = (Disk) o;
+            return Double.compare(READ_BYTES_PER_SECOND, that.READ_BYTES_PER_SECOND) == 0 &&
+                    Double.compare(WRITE_BYTES_PER_SECOND, that.WRITE_BYTES_PER_SECOND) == 0 &&
+                    Double.compare(READS_PER_SECOND, that.READS_PER_SECOND) == 0 &&
+                    Double.compare(WRITES_PER_SECOND, that.WRITES_PER_SECOND) == 0 &&
+                    QUEUE_LENGTH == that.QUEUE_LENGTH &&
+                    Double.compare(AVERAGE_SERVICE_MILLIS, that.AVERAGE_SERVICE_MILLIS) == 0 &&
+                    Double.compare(BUSY_PERCENT, that.BUSY_PERCENT) == 0 &&
+                    Objects.equals(NAME, that.NAME) && Objects.equals(MODEL, that.MODEL) && MOUNTS.equals(that.MOUNTS);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(NAME, MODEL, MOUNTS, READ_BYTES_PER_SECOND, WRITE_BYTES_PER_SECOND, READS_PER_SECOND, WRITES_PER_SECOND,
+                    QUEUE_LENGTH, AVERAGE_SERVICE_MILLIS, BUSY_PERCENT);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import de.griefed.monitoring.utilities.Units;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable information about all disk drives. Written as a JSON array with one object per disk.
+ * @author Griefed
+ */
+public final class DisksInformation implements ComponentInformation {
+
+    private final List<Disk> DISKS;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param disks List {@link Disk}. The disk drives.
+     */
+    public DisksInformation(List<Disk> disks) {
+        this.DISKS = Collections.unmodifiableList(new ArrayList<>(disks));
+    }
+
+    /**
+     * Getter for the disk drives.
+     * @author Griefed
+     * @return List {@link Disk}. The disk drives. Unmodifiable.
+     */
+    public List<Disk> getDisks() {
+        return DISKS;
+    }
+
+    @Override
+    public void writeTo(JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        for (Disk disk : DISKS) {
+            disk.writeTo(generator);
+        }
+        generator.writeEndArray();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DisksInformation)) return false;
+        return DISKS.equals(((DisksInformation) o).DISKS);
+    }
+
+    @Override
+    public int hashCode() {
+        return DISKS.hashCode();
+    }
+
+    /**
+     * Immutable information about a single disk drive. Sizes are kept in bytes, the usage in percent.
+     * @author Griefed
+     */
+    public static final class Disk implements ComponentInformation {
+
+        private final String NAME;
+        private final String MOUNT;
+        private final long TOTAL_BYTES;
+        private final long FREE_BYTES;
+        private final boolean HUMAN_READABLE;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param name String. The name and label of the disk.
+         * @param mount String. The mount point of the disk.
+         * @param totalBytes Long. The total size of the disk in bytes.
+         * @param freeBytes Long. The free space of the disk in bytes.
+         * @param humanReadable Boolean. Whether to also write formatted values, for clients which display them as they are.
+         */
+        public Disk(String name, String mount, long totalBytes, long freeBytes, boolean humanReadable) {
+            this.NAME = name;
+            this.MOUNT = mount;
+            this.TOTAL_BYTES = totalBytes;
+            this.FREE_BYTES = freeBytes;
+            this.HUMAN_READABLE = humanReadable;
+        }
+
+        /**
+         * Getter for the name of the disk.
+         * @author Griefed
+         * @return String. The name and label of the disk.
+         */
+        public String getName() {
+            return NAME;
+        }
+
+        /**
+         * Getter for the mount point of the disk. Unlike the name, it is unique among the disks of a host.
+         * @author Griefed
+         * @return String. The mount point of the disk.
+         */
+        public String getMount() {
+            return MOUNT;
+        }
+
+        /**
+         * Getter for the total size of the disk.
+         * @author Griefed
+         * @return Long. The total size in bytes.
+         */
+        public long getTotalBytes() {
+            return TOTAL_BYTES;
+        }
+
+        /**
+         * Getter for the free space of the disk.
+         * @author Griefed
+         * @return Long. The free space in bytes.
+         */
+        public long getFreeBytes() {
+            return FREE_BYTES;
+        }
+
+        /**
+         * Getter for how much of the disk is used.
+         * @author Griefed
+         * @return Double. The used space in percent of the total size, from 0 to 100.
+         */
+        public double getUsedPercent() {
+            return Units.usedPercent(TOTAL_BYTES, FREE_BYTES);
+        }
+
+        @Override
+        public void writeTo(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("name", NAME);
+            generator.writeStringField("mount", MOUNT);
+            generator.writeNumberField("total_bytes", TOTAL_BYTES);
+            generator.writeNumberField("free_bytes", FREE_BYTES);
+            generator.writeNumberField("used_percent", getUsedPercent());
+            if (HUMAN_READABLE) {
+                generator.writeStringField("size", Units.gigabytes(TOTAL_BYTES));
+                generator.writeStringField("free", Units.gigabytes(FREE_BYTES));
+                generator.writeStringField("used", Units.percent(getUsedPercent()));
+            }
+            generator.writeEndObject();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Disk)) return false;
+            Disk that = (Disk) o;
+            return TOTAL_BYTES == that.TOTAL_BYTES && FREE_BYTES == that.FREE_BYTES && HUMAN_READABLE == that.HUMAN_READABLE &&
+                    Objects.equals(NAME, that.NAME) && Objects.equals(MOUNT, that.MOUNT);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(NAME, MOUNT, TOTAL_BYTES, FREE_BYTES, HUMAN_READABLE);
+        }
+    }
+}
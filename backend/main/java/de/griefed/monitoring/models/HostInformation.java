@@ -0,0 +1,270 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable information about the host and its network interfaces.
+ * @author Griefed
+ */
+public final class HostInformation implements ComponentInformation {
+
+    private final String HOST_NAME;
+    private final String DOMAIN_NAME;
+    private final List<NetworkInterface> INTERFACES;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param hostName String. The name of the host.
+     * @param domainName String. The domain of the host.
+     * @param interfaces List {@link NetworkInterface}. The network interfaces of the host.
+     */
+    public HostInformation(String hostName, String domainName, List<NetworkInterface> interfaces) {
+        this.HOST_NAME = hostName;
+        this.DOMAIN_NAME = domainName;
+        this.INTERFACES = Collections.unmodifiableList(new ArrayList<>(interfaces));
+    }
+
+    /**
+     * Getter for the name of the host.
+     * @author Griefed
+     * @return String. The name of the host.
+     */
+    public String getHostName() {
+        return HOST_NAME;
+    }
+
+    /**
+     * Getter for the domain of the host.
+     * @author Griefed
+     * @return String. The domain of the host.
+     */
+    public String getDomainName() {
+        return DOMAIN_NAME;
+    }
+
+    /**
+     * Getter for the network interfaces of the host.
+     * @author Griefed
+     * @return List {@link NetworkInterface}. The network interfaces. Unmodifiable.
+     */
+    public List<NetworkInterface> getInterfaces() {
+        return INTERFACES;
+    }
+
+    @Override
+    public void writeTo(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("host_name", HOST_NAME);
+        generator.writeStringField("domain_name", DOMAIN_NAME);
+        generator.writeArrayFieldStart("interfaces");
+        for (NetworkInterface networkInterface : INTERFACES) {
+            networkInterface.writeTo(generator);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HostInformation)) return false;
+        HostInformation that = (HostInformation) o;
+        return Objects.equals(HOST_NAME, that.HOST_NAME) && Objects.equals(DOMAIN_NAME, that.DOMAIN_NAME) &&
+                INTERFACES.equals(that.INTERFACES);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(HOST_NAME, DOMAIN_NAME, INTERFACES);
+    }
+
+    /**
+     * Immutable information about a single network interface.
+     * @author Griefed
+     */
+    public static final class NetworkInterface implements ComponentInformation {
+
+        private final String NAME;
+        private final String IP;
+        private final String SUBNET_MASK;
+        private final String MAC;
+        private final double RX_BYTES_PER_SECOND;
+        private final double TX_BYTES_PER_SECOND;
+        private final double RX_PACKETS_PER_SECOND;
+        private final double TX_PACKETS_PER_SECOND;
+        private final long RX_ERRORS;
+        private final long TX_ERRORS;
+        private final long RX_DROPS;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param name String. The name of the interface.
+         * @param ip String. The IPv4 addresses of the interface, comma separated.
+         * @param subnetMask String. The subnet masks of the interface in CIDR notation, comma separated.
+         * @param mac String. The MAC address of the interface.
+         * @param traffic Double array. Bytes received, bytes sent, packets received and packets sent per second, in that order.
+         * @param errors Long array. Receive errors, send errors and dropped incoming packets since the previous update, in that order.
+         */
+        public NetworkInterface(String name, String ip, String subnetMask, String mac, double[] traffic, long[] errors) {
+            this.NAME = name;
+            this.IP = ip;
+            this.SUBNET_MASK = subnetMask;
+            this.MAC = mac;
+            this.RX_BYTES_PER_SECOND = traffic[0];
+            this.TX_BYTES_PER_SECOND = traffic[1];
+            this.RX_PACKETS_PER_SECOND = traffic[2];
+            this.TX_PACKETS_PER_SECOND = traffic[3];
+            this.RX_ERRORS = errors[0];
+            this.TX_ERRORS = errors[1];
+            this.RX_DROPS = errors[2];
+        }
+
+        /**
+         * Getter for the name of the interface.
+         * @author Griefed
+         * @return String. The name of the interface.
+         */
+        public String getName() {
+            return NAME;
+        }
+
+        /**
+         * Getter for the IPv4 addresses of the interface.
+         * @author Griefed
+         * @return String. The addresses, comma separated.
+         */
+        public String getIp() {
+            return IP;
+        }
+
+        /**
+         * Getter for the subnet masks of the interface.
+         * @author Griefed
+         * @return String. The subnet masks in CIDR notation, comma separated.
+         */
+        public String getSubnetMask() {
+            return SUBNET_MASK;
+        }
+
+        /**
+         * Getter for the MAC address of the interface.
+         * @author Griefed
+         * @return String. The MAC address.
+         */
+        public String getMac() {
+            return MAC;
+        }
+
+        /**
+         * Getter for the received bytes per second.
+         * @author Griefed
+         * @return Double. The bytes received per second since the previous update.
+         */
+        public double getRxBytesPerSecond() {
+            return RX_BYTES_PER_SECOND;
+        }
+
+        /**
+         * Getter for the transmitted bytes per second.
+         * @author Griefed
+         * @return Double. The bytes transmitted per second since the previous update.
+         */
+        public double getTxBytesPerSecond() {
+            return TX_BYTES_PER_SECOND;
+        }
+
+        /**
+         * Getter for the receive errors.
+         * @author Griefed
+         * @return Long. The receive errors since the previous update.
+         */
+        public long getRxErrors() {
+            return RX_ERRORS;
+        }
+
+        /**
+         * Getter for the transmit errors.
+         * @author Griefed
+         * @return Long. The transmit errors since the previous update.
+         */
+        public long getTxErrors() {
+            return TX_ERRORS;
+        }
+
+        /**
+         * Getter for the dropped incoming packets.
+         * @author Griefed
+         * @return Long. The incoming packets dropped since the previous update.
+         */
+        public long getRxDrops() {
+            return RX_DROPS;
+        }
+
+        @Override
+        public void writeTo(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("interface_name", NAME);
+            generator.writeStringField("ip", IP);
+            generator.writeStringField("subnet_mask", SUBNET_MASK);
+            generator.writeStringField("mac", MAC);
+            generator.writeNumberField("rx_bytes_per_second", RX_BYTES_PER_SECOND);
+            generator.writeNumberField("tx_bytes_per_second", TX_BYTES_PER_SECOND);
+            generator.writeNumberField("rx_packets_per_second", RX_PACKETS_PER_SECOND);
+            generator.writeNumberField("tx_packets_per_second", TX_PACKETS_PER_SECOND);
+            generator.writeNumberField("rx_errors", RX_ERRORS);
+            generator.writeNumberField("tx_errors", TX_ERRORS);
+            generator.writeNumberField("rx_drops", RX_DROPS);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof NetworkInterface)) return false;
+            NetworkInterface that = (NetworkInterface) o;
+            return Objects.equals(NAME, that.NAME) && Objects.equals(IP, that.IP) &&
+                    Objects.equals(SUBNET_MASK, that.SUBNET_MASK) && Objects.equals(MAC, that.MAC) &&
+                    Double.compare(RX_BYTES_PER_SECOND, that.RX_BYTES_PER_SECOND) == 0 &&
+                    Double.compare(TX_BYTES_PER_SECOND, that.TX_BYTES_PER_SECOND) == 0 &&
+                    Double.compare(RX_PACKETS_PER_SECOND, that.RX_PACKETS_PER_SECOND) == 0 &&
+                    Double.compare(TX_PACKETS_PER_SECOND, that.TX_PACKETS_PER_SECOND) == 0 &&
+                    RX_ERRORS == that.RX_ERRORS && TX_ERRORS == that.TX_ERRORS && RX_DROPS == that.RX_DROPS;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(NAME, IP, SUBNET_MASK, MAC, RX_BYTES_PER_SECOND, TX_BYTES_PER_SECOND, RX_PACKETS_PER_SECOND,
+                    TX_PACKETS_PER_SECOND, RX_ERRORS, TX_ERRORS, RX_DROPS);
+        }
+    }
+}
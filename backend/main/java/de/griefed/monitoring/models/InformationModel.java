@@ -22,17 +22,39 @@
  */
 package de.griefed.monitoring.models;
 
+/**
+ * Component gathering information about one aspect of the host, for example the CPU or the disk drives.
+ * @author Griefed
+ */
 public interface InformationModel {
 
     void sendNotification();
 
     void setValues();
 
+    /**
+     * Update the values which change quickly, like usages and rates. Called on every <code>de.griefed.monitoring.schedule.update</code>.
+     * Values which never change while Monitoring runs are gathered once when the component is created instead.
+     * @author Griefed
+     */
     void updateValues();
 
+    /**
+     * Update the values which change slowly, like mounts, network interfaces or names. Called on every
+     * <code>de.griefed.monitoring.schedule.update.slow</code>. Does nothing by default.
+     * @author Griefed
+     */
+    default void updateSlowValues() {}
+
     String getName();
 
     String getValues();
 
+    /**
+     * Getter for the information last gathered by this component.
+     * @author Griefed
+     * @return Instance of {@link ComponentInformation}. The information, immutable.
+     */
+    ComponentInformation getInformation();
 
 }
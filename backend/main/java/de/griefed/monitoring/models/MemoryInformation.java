@@ -0,0 +1,209 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import de.griefed.monitoring.utilities.Units;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable information about the memory and, if available, the physical memory banks. Sizes are kept in bytes, the
+ * usage in percent.
+ * @author Griefed
+ */
+public final class MemoryInformation implements ComponentInformation {
+
+    private final long TOTAL_BYTES;
+    private final long AVAILABLE_BYTES;
+    private final List<Bank> BANKS;
+    private final boolean HUMAN_READABLE;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param totalBytes Long. The total memory in bytes.
+     * @param availableBytes Long. The available memory in bytes.
+     * @param banks List {@link Bank}. The physical memory banks. Empty if not available, for example in virtual machines.
+     * @param humanReadable Boolean. Whether to also write formatted values, for clients which display them as they are.
+     */
+    public MemoryInformation(long totalBytes, long availableBytes, List<Bank> banks, boolean humanReadable) {
+        this.TOTAL_BYTES = totalBytes;
+        this.AVAILABLE_BYTES = availableBytes;
+        this.BANKS = Collections.unmodifiableList(new ArrayList<>(banks));
+        this.HUMAN_READABLE = humanReadable;
+    }
+
+    /**
+     * Getter for the total memory.
+     * @author Griefed
+     * @return Long. The total memory in bytes.
+     */
+    public long getTotalBytes() {
+        return TOTAL_BYTES;
+    }
+
+    /**
+     * Getter for the available memory.
+     * @author Griefed
+     * @return Long. The available memory in bytes.
+     */
+    public long getAvailableBytes() {
+        return AVAILABLE_BYTES;
+    }
+
+    /**
+     * Getter for how much of the memory is used.
+     * @author Griefed
+     * @return Double. The used memory in percent of the total memory, from 0 to 100.
+     */
+    public double getUsedPercent() {
+        return Units.usedPercent(TOTAL_BYTES, AVAILABLE_BYTES);
+    }
+
+    /**
+     * Getter for the physical memory banks.
+     * @author Griefed
+     * @return List {@link Bank}. The memory banks. Empty if not available.
+     */
+    public List<Bank> getBanks() {
+        return BANKS;
+    }
+
+    @Override
+    public void writeTo(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("total_bytes", TOTAL_BYTES);
+        generator.writeNumberField("available_bytes", AVAILABLE_BYTES);
+        generator.writeNumberField("used_percent", getUsedPercent());
+        if (HUMAN_READABLE) {
+            generator.writeStringField("total", Units.gigabytes(TOTAL_BYTES));
+            generator.writeStringField("available", Units.gigabytes(AVAILABLE_BYTES));
+            generator.writeStringField("used", Units.percent(getUsedPercent()));
+        }
+        generator.writeArrayFieldStart("physical_memory");
+        for (Bank bank : BANKS) {
+            bank.writeTo(generator);
+        }
+        generator.writeEndArray();
+        generator.writeEndObject();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MemoryInformation)) return false;
+        MemoryInformation that = (MemoryInformation) o;
+        return TOTAL_BYTES == that.TOTAL_BYTES && AVAILABLE_BYTES == that.AVAILABLE_BYTES && HUMAN_READABLE == that.HUMAN_READABLE &&
+                BANKS.equals(that.BANKS);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(TOTAL_BYTES, AVAILABLE_BYTES, BANKS, HUMAN_READABLE);
+    }
+
+    /**
+     * Immutable information about a single physical memory bank.
+     * @author Griefed
+     */
+    public static final class Bank implements ComponentInformation {
+
+        private final String BANK;
+        private final long CAPACITY_BYTES;
+        private final String TYPE;
+        private final boolean HUMAN_READABLE;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param bank String. The label of the bank.
+         * @param capacityBytes Long. The capacity of the bank in bytes.
+         * @param type String. The type of memory.
+         * @param humanReadable Boolean. Whether to also write formatted values, for clients which display them as they are.
+         */
+        public Bank(String bank, long capacityBytes, String type, boolean humanReadable) {
+            this.BANK = bank;
+            this.CAPACITY_BYTES = capacityBytes;
+            this.TYPE = type;
+            this.HUMAN_READABLE = humanReadable;
+        }
+
+        /**
+         * Getter for the label of the bank.
+         * @author Griefed
+         * @return String. The label of the bank.
+         */
+        public String getBank() {
+            return BANK;
+        }
+
+        /**
+         * Getter for the capacity of the bank.
+         * @author Griefed
+         * @return Long. The capacity in bytes.
+         */
+        public long getCapacityBytes() {
+            return CAPACITY_BYTES;
+        }
+
+        /**
+         * Getter for the type of memory.
+         * @author Griefed
+         * @return String. The type of memory, for example <code>DDR4</code>.
+         */
+        public String getType() {
+            return TYPE;
+        }
+
+        @Override
+        public void writeTo(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeStringField("bank", BANK);
+            generator.writeNumberField("capacity_bytes", CAPACITY_BYTES);
+            if (HUMAN_READABLE) {
+                generator.writeStringField("capacity", Units.gigabytes(CAPACITY_BYTES));
+            }
+            generator.writeStringField("type", TYPE);
+            generator.writeEndObject();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Bank)) return false;
+            Bank that = (Bank) o;
+            return CAPACITY_BYTES == that.CAPACITY_BYTES && HUMAN_READABLE == that.HUMAN_READABLE &&
+                    Objects.equals(BANK, that.BANK) && Objects.equals(TYPE, that.TYPE);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(BANK, CAPACITY_BYTES, TYPE, HUMAN_READABLE);
+        }
+    }
+}
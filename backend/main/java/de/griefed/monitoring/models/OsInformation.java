@@ -0,0 +1,150 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Immutable information about the operating system. The uptime is kept in full hours, so the information only changes
+ * once an hour instead of with every update.
+ * @author Griefed
+ */
+public final class OsInformation implements ComponentInformation {
+
+    private final String MANUFACTURER;
+    private final String OS;
+    private final String VERSION;
+    private final int BITNESS;
+    private final long BOOT_TIME;
+    private final long UPTIME_HOURS;
+    private final boolean HUMAN_READABLE;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param manufacturer String. The manufacturer of the OS.
+     * @param os String. The family of the OS.
+     * @param version String. The version of the OS.
+     * @param bitness Integer. The bitness of the OS.
+     * @param bootTime Long. When the OS was booted, in seconds since the epoch.
+     * @param uptimeHours Long. For how many full hours the OS has been up.
+     * @param humanReadable Boolean. Whether to also write formatted values, for clients which display them as they are.
+     */
+    public OsInformation(String manufacturer, String os, String version, int bitness, long bootTime, long uptimeHours, boolean humanReadable) {
+        this.MANUFACTURER = manufacturer;
+        this.OS = os;
+        this.VERSION = version;
+        this.BITNESS = bitness;
+        this.BOOT_TIME = bootTime;
+        this.UPTIME_HOURS = uptimeHours;
+        this.HUMAN_READABLE = humanReadable;
+    }
+
+    /**
+     * Getter for the manufacturer of the OS.
+     * @author Griefed
+     * @return String. The manufacturer of the OS.
+     */
+    public String getManufacturer() {
+        return MANUFACTURER;
+    }
+
+    /**
+     * Getter for the family of the OS.
+     * @author Griefed
+     * @return String. The family of the OS.
+     */
+    public String getOs() {
+        return OS;
+    }
+
+    /**
+     * Getter for the version of the OS.
+     * @author Griefed
+     * @return String. The version of the OS.
+     */
+    public String getVersion() {
+        return VERSION;
+    }
+
+    /**
+     * Getter for the bitness of the OS.
+     * @author Griefed
+     * @return Integer. The bitness of the OS, for example <code>64</code>.
+     */
+    public int getBitness() {
+        return BITNESS;
+    }
+
+    /**
+     * Getter for when the OS was booted.
+     * @author Griefed
+     * @return Long. Seconds since the epoch.
+     */
+    public long getBootTime() {
+        return BOOT_TIME;
+    }
+
+    /**
+     * Getter for how long the OS has been up.
+     * @author Griefed
+     * @return Long. The number of full hours since the OS was booted.
+     */
+    public long getUptimeHours() {
+        return UPTIME_HOURS;
+    }
+
+    @Override
+    public void writeTo(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("manufacturer", MANUFACTURER);
+        generator.writeStringField("os", OS);
+        generator.writeStringField("version", VERSION);
+        generator.writeNumberField("bitness", BITNESS);
+        generator.writeNumberField("boot_time", BOOT_TIME);
+        generator.writeNumberField("uptime_hours", UPTIME_HOURS);
+        if (HUMAN_READABLE) {
+            generator.writeStringField("arch", BITNESS + " bit");
+            generator.writeStringField("uptime", UPTIME_HOURS + " h");
+        }
+        generator.writeEndObject();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof OsInformation)) return false;
+        OsInformation that = (OsInformation) o;
+        return BITNESS == that.BITNESS && BOOT_TIME == that.BOOT_TIME && UPTIME_HOURS == that.UPTIME_HOURS && HUMAN_READABLE == that.HUMAN_READABLE &&
+                Objects.equals(MANUFACTURER, that.MANUFACTURER) &&
+                Objects.equals(OS, that.OS) && Objects.equals(VERSION, that.VERSION);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(MANUFACTURER, OS, VERSION, BITNESS, BOOT_TIME, UPTIME_HOURS, HUMAN_READABLE);
+    }
+}
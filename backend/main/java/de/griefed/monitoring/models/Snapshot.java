@@ -0,0 +1,148 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import org.springframework.util.DigestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * An immutable, serialized document as served by the REST endpoints. The encoded body and its ETag are computed once
+ * when the snapshot is created, the gzip-compressed body once when it is first requested, so serving the same snapshot
+ * repeatedly costs neither hashing nor compression.
+ * @author Griefed
+ */
+public class Snapshot {
+
+    private final String JSON;
+    private final byte[] BYTES;
+    private final String ETAG;
+    private final String GZIP_ETAG;
+
+    private volatile byte[] gzip;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param json String in JSON format. The document.
+     */
+    public Snapshot(String json) {
+        this.JSON = json;
+        this.BYTES = json.getBytes(StandardCharsets.UTF_8);
+        String digest = DigestUtils.md5DigestAsHex(BYTES);
+        this.ETAG = "\"" + digest + "\"";
+        this.GZIP_ETAG = "\"" + digest + "-gzip\"";
+    }
+
+    /**
+     * Getter for the document.
+     * @author Griefed
+     * @return String in JSON format. The document.
+     */
+    public String getJson() {
+        return JSON;
+    }
+
+    /**
+     * Getter for the UTF-8 encoded document.
+     * @author Griefed
+     * @return byte array. The encoded document. Must not be modified.
+     */
+    public byte[] getBytes() {
+        return BYTES;
+    }
+
+    /**
+     * Getter for the gzip-compressed document. Compressed on first access and kept from then on.
+     * @author Griefed
+     * @return byte array. The compressed document. Must not be modified.
+     */
+    public byte[] getGzip() {
+        byte[] compressed = gzip;
+
+        if (compressed == null) {
+
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(BYTES.length / 4 + 64);
+
+            try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+                gzipOutputStream.write(BYTES);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+
+            compressed = outputStream.toByteArray();
+            gzip = compressed;
+        }
+
+        return compressed;
+    }
+
+    /**
+     * Getter for the strong ETag of the document, including quotes.
+     * @author Griefed
+     * @return String. The ETag of the document.
+     */
+    public String getEtag() {
+        return ETAG;
+    }
+
+    /**
+     * Getter for the strong ETag of the gzip-compressed document, including quotes. Differs from {@link #getEtag()}, as
+     * the compressed body is a different representation of the document.
+     * @author Griefed
+     * @return String. The ETag of the compressed document.
+     */
+    public String getGzipEtag() {
+        return GZIP_ETAG;
+    }
+
+    /**
+     * Check whether the value of an <code>If-None-Match</code> header matches this snapshot, in either encoding.
+     * @author Griefed
+     * @param ifNoneMatch String. The value of the header, may be <code>null</code>.
+     * @return Boolean. <code>true</code> if the client already holds this snapshot.
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+
+        for (String tag : ifNoneMatch.split(",")) {
+            String trimmed = tag.trim();
+
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+
+            if (trimmed.equals("*") || trimmed.equals(ETAG) || trimmed.equals(GZIP_ETAG)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
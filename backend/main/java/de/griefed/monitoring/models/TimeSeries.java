@@ -0,0 +1,140 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+
+/**
+ * Immutable samples of a single series within a range of time, either raw or aggregated, as returned by history queries. A series is identified
+ * by the host it belongs to, the component which gathered it and the metric within that component, for example
+ * <code>host</code>, <code>cpu</code> and <code>load.system_percent</code>.
+ * @author Griefed
+ */
+public final class TimeSeries {
+
+    private final String SOURCE;
+    private final String COMPONENT;
+    private final String METRIC;
+    private final long RESOLUTION;
+    private final long[] TIMESTAMPS;
+    private final double[] VALUES;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param source String. The host the series belongs to. <code>host</code> for this instance, the address of the agent otherwise.
+     * @param component String. The component which gathered the series.
+     * @param metric String. The metric within the component. Empty for values which make up a whole component.
+     * @param resolution Long. The length of the buckets the samples were aggregated into, in milliseconds. <code>0</code> for raw samples.
+     * @param timestamps long array. The timestamps of the samples, or the start of their buckets, in milliseconds since the epoch, ascending. Not copied.
+     * @param values double array. The values of the samples. Not copied.
+     */
+    public TimeSeries(String source, String component, String metric, long resolution, long[] timestamps, double[] values) {
+        this.SOURCE = source;
+        this.COMPONENT = component;
+        this.METRIC = metric;
+        this.RESOLUTION = resolution;
+        this.TIMESTAMPS = timestamps;
+        this.VALUES = values;
+    }
+
+    /**
+     * Getter for the host the series belongs to.
+     * @author Griefed
+     * @return String. <code>host</code> for this instance, the address of the agent otherwise.
+     */
+    public String getSource() {
+        return SOURCE;
+    }
+
+    /**
+     * Getter for the component which gathered the series.
+     * @author Griefed
+     * @return String. The name of the component.
+     */
+    public String getComponent() {
+        return COMPONENT;
+    }
+
+    /**
+     * Getter for the metric within the component.
+     * @author Griefed
+     * @return String. The path of the metric, empty for values which make up a whole component.
+     */
+    public String getMetric() {
+        return METRIC;
+    }
+
+    /**
+     * Getter for the length of the buckets the samples were aggregated into.
+     * @author Griefed
+     * @return Long. Milliseconds, <code>0</code> for raw samples.
+     */
+    public long getResolution() {
+        return RESOLUTION;
+    }
+
+    /**
+     * Getter for the timestamps of the samples.
+     * @author Griefed
+     * @return long array. Milliseconds since the epoch, ascending. Must not be modified.
+     */
+    public long[] getTimestamps() {
+        return TIMESTAMPS;
+    }
+
+    /**
+     * Getter for the values of the samples.
+     * @author Griefed
+     * @return double array. The values, in the order of the timestamps. Must not be modified.
+     */
+    public double[] getValues() {
+        return VALUES;
+    }
+
+    /**
+     * Write this series as a columnar JSON object, the timestamps and the values each in an array of their own, so long
+     * series do not repeat field names for every sample.
+     * <code>{"agent":"host","component":"cpu","metric":"load.system_percent","step":60000,"timestamps":[...],"values":[...]}</code>
+     * @author Griefed
+     * @param generator Instance of {@link JsonGenerator} to write to.
+     * @throws IOException if the series could not be written.
+     */
+    public void writeTo(JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("agent", SOURCE);
+        generator.writeStringField("component", COMPONENT);
+        generator.writeStringField("metric", METRIC);
+        generator.writeNumberField("step", RESOLUTION);
+
+        generator.writeFieldName("timestamps");
+        generator.writeArray(TIMESTAMPS, 0, TIMESTAMPS.length);
+
+        generator.writeFieldName("values");
+        generator.writeArray(VALUES, 0, VALUES.length);
+
+        generator.writeEndObject();
+    }
+}
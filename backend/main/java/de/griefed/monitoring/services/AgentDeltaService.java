@@ -0,0 +1,191 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.griefed.monitoring.utilities.DocumentWriter;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class responsible for the monitor side of the delta protocol between monitors and agents. For every agent, the last
+ * known epoch, the versions of its components and the components themselves are kept. The next request to that agent
+ * sends the versions along, so the agent only answers with the components which changed since, or with
+ * <code>304 Not Modified</code> if nothing changed at all. Agents which do not support the delta protocol always answer
+ * with all of their components, which is handled just the same.
+ * @author Griefed
+ */
+@Service
+public class AgentDeltaService {
+
+    private static final Set<String> PROTOCOL_FIELDS = new HashSet<>(Arrays.asList("epoch", "versions", "delta"));
+
+    private final ObjectMapper MAPPER = new ObjectMapper();
+    private final Map<String, AgentState> STATES = new ConcurrentHashMap<>(100);
+
+    /**
+     * Build the query string for the next request to the given agent.
+     * @author Griefed
+     * @param agent String. The agent to query.
+     * @return String. The query, starting with <code>?</code>, or an empty string if nothing is known about the agent yet.
+     */
+    public String query(String agent) {
+        AgentState state = STATES.get(agent);
+
+        if (state == null || state.EPOCH == null || state.VERSIONS.isEmpty()) {
+            return "";
+        }
+
+        StringJoiner versions = new StringJoiner(",");
+        state.VERSIONS.forEach((component, version) -> versions.add(component + ":" + version));
+
+        return "?epoch=" + state.EPOCH + "&versions=" + versions;
+    }
+
+    /**
+     * Merge the answer of an agent into what is known about it and build its document.
+     * @author Griefed
+     * @param agent String. The agent which answered.
+     * @param body String. The body of the agents response.
+     * @return String in JSON format. The complete document of the agent.
+     * @throws IllegalArgumentException if the body is not a JSON object.
+     */
+    public String merge(String agent, String body) {
+        JsonNode root;
+
+        try {
+
+            root = MAPPER.readTree(body);
+
+        } catch (JsonProcessingException ex) {
+
+            throw new IllegalArgumentException("Malformed response from agent " + agent, ex);
+
+        }
+
+        if (root == null || !root.isObject()) {
+            throw new IllegalArgumentException("Malformed response from agent " + agent);
+        }
+
+        AgentState previous = STATES.get(agent);
+        String epoch = root.path("epoch").textValue();
+        boolean delta = root.path("delta").asBoolean(false) && previous != null && epoch != null && epoch.equals(previous.EPOCH);
+
+        Map<String, String> fragments = delta ? new LinkedHashMap<>(previous.FRAGMENTS) : new LinkedHashMap<>();
+        Map<String, Long> versions = new LinkedHashMap<>();
+
+        root.path("versions").fields().forEachRemaining(version -> versions.put(version.getKey(), version.getValue().asLong()));
+
+        Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+
+            if (!PROTOCOL_FIELDS.contains(field.getKey())) {
+                fragments.put(field.getKey(), field.getValue().toString());
+            }
+        }
+
+        AgentState state = new AgentState(epoch, versions, fragments, buildDocument(agent, fragments));
+        STATES.put(agent, state);
+
+        return state.DOCUMENT;
+    }
+
+    /**
+     * Retrieve the document of an agent which answered with <code>304 Not Modified</code>.
+     * @author Griefed
+     * @param agent String. The agent which answered.
+     * @return String in JSON format. The complete document of the agent, as of its last change.
+     * @throws IllegalStateException if nothing is known about the agent.
+     */
+    public String notModified(String agent) {
+        AgentState state = STATES.get(agent);
+
+        if (state == null) {
+            throw new IllegalStateException("Agent " + agent + " answered 304 to an unconditional request.");
+        }
+
+        return state.DOCUMENT;
+    }
+
+    /**
+     * Take everything known about agents which are no longer configured out of memory.
+     * @author Griefed
+     * @param agents Collection of the agents which are configured.
+     */
+    public void retain(Collection<String> agents) {
+        STATES.keySet().retainAll(new HashSet<>(agents));
+    }
+
+    /**
+     * Build the document of an agent from its components. The names of the components are written by the generator, so
+     * they are escaped no matter what the agent sent, and the components are embedded as they were received.
+     * @author Griefed
+     * @param agent String. The agent.
+     * @param fragments Map of the serialized components, by name.
+     * @return String in JSON format. The complete document of the agent.
+     */
+    private String buildDocument(String agent, Map<String, String> fragments) {
+        return DocumentWriter.write(generator -> {
+            generator.writeStartObject();
+            generator.writeStringField("agent", agent);
+            generator.writeBooleanField("dialog", false);
+            for (Map.Entry<String, String> fragment : fragments.entrySet()) {
+                generator.writeFieldName(fragment.getKey());
+                generator.writeRawValue(fragment.getValue());
+            }
+            generator.writeEndObject();
+        });
+    }
+
+    /**
+     * Everything known about an agent after its last answer.
+     * @author Griefed
+     */
+    private static class AgentState {
+
+        private final String EPOCH;
+        private final Map<String, Long> VERSIONS;
+        private final Map<String, String> FRAGMENTS;
+        private final String DOCUMENT;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param epoch String. The epoch the agent answered with.
+         * @param versions Map String Long. The version of every component, by name.
+         * @param fragments Map String String. The JSON of every component, by name.
+         * @param document String. The full document assembled from the fragments.
+         */
+        private AgentState(String epoch, Map<String, Long> versions, Map<String, String> fragments, String document) {
+            this.EPOCH = epoch;
+            this.VERSIONS = versions;
+            this.FRAGMENTS = fragments;
+            this.DOCUMENT = document;
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.ApplicationProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Class responsible for polling all configured agents concurrently. At most <code>de.griefed.monitoring.agents.parallelism</code>
+ * agents are queried at the same time, every agent gets <code>de.griefed.monitoring.timeout.agent</code> seconds to answer
+ * and the whole sweep is cut off after <code>de.griefed.monitoring.timeout.sweep</code> seconds. Agents which did not answer
+ * in time are replaced by the document provided by the caller, so the resulting list always matches the configured order.
+ * @author Griefed
+ */
+@Service
+public class AgentPollingService {
+
+    private static final Logger LOG = LogManager.getLogger(AgentPollingService.class);
+
+    private final ApplicationProperties PROPERTIES;
+    private final ExecutorService EXECUTOR;
+    private final ScheduledExecutorService WATCHDOG;
+
+    /**
+     * Constructor responsible for DI.
+     * @author Griefed
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     */
+    @Autowired
+    public AgentPollingService(ApplicationProperties injectedApplicationProperties) {
+        this.PROPERTIES = injectedApplicationProperties;
+
+        CustomizableThreadFactory pollThreads = new CustomizableThreadFactory("agent-poll-");
+        pollThreads.setDaemon(true);
+        this.EXECUTOR = Executors.newFixedThreadPool(PROPERTIES.getAgentParallelism(), pollThreads);
+
+        CustomizableThreadFactory watchdogThreads = new CustomizableThreadFactory("agent-watchdog-");
+        watchdogThreads.setDaemon(true);
+        this.WATCHDOG = Executors.newSingleThreadScheduledExecutor(watchdogThreads);
+
+        // A failing agent costs a connect and a read for its request, then another connect for probing its host.
+        int worstCase = 2 * PROPERTIES.getTimeoutConnect() + PROPERTIES.getTimeoutRead();
+        if (PROPERTIES.getTimeoutAgent() <= worstCase) {
+            LOG.warn("de.griefed.monitoring.timeout.agent is " + PROPERTIES.getTimeoutAgent() + " seconds, but a failing agent may take up to "
+                    + worstCase + " seconds. Agents which are down may be reported as timed out instead.");
+        }
+    }
+
+    /**
+     * Query all passed agents with the given blocking fetcher, running at most <code>de.griefed.monitoring.agents.parallelism</code>
+     * fetches at the same time. The per-agent deadline of a fetch starts once a polling thread picked it up, not while it
+     * waits for one. An agent which did not answer in time is replaced by its fallback right away, but its polling thread
+     * is interrupted and only handed to the next agent once it is actually free, so a hung agent does not make the agents
+     * after it wait in the queue while their deadlines run.
+     * @author Griefed
+     * @param agents List String. The agents to query, in the order in which their documents should be returned.
+     * @param fetcher Function which retrieves the JSON document of a single agent. May block.
+     * @param fallback Function which provides the JSON document for an agent which did not answer in time.
+     * @param listener Told about the document of every agent as soon as it is known, see {@link SlotListener}.
+     * @return List String. The documents of all agents, in the same order as <code>agents</code>.
+     */
+    public List<String> poll(List<String> agents, Function<String, String> fetcher, Function<String, String> fallback, SlotListener listener) {
+        return sweep(agents, agent -> {
+
+            Fetch fetch = new Fetch();
+            Future<?> task = EXECUTOR.submit(() -> {
+                fetch.STARTED.complete(null);
+                try {
+                    fetch.RESULT.complete(fetcher.apply(agent));
+                } catch (RuntimeException ex) {
+                    fetch.RESULT.completeExceptionally(ex);
+                } finally {
+                    fetch.FINISHED.complete(null);
+                }
+            });
+
+            fetch.cancel = () -> {
+                // A task which never started never finishes on its own.
+                if (task.cancel(true) && !fetch.STARTED.isDone()) {
+                    fetch.FINISHED.complete(null);
+                }
+            };
+
+            return fetch;
+
+        }, fallback, listener, PROPERTIES.getAgentParallelism());
+    }
+
+    /**
+     * Query all passed agents with the given asynchronous fetcher, keeping at most <code>concurrency</code> fetches in
+     * flight. The per-agent deadline starts once the fetch for the agent was started, the sweep deadline starts
+     * with the call of this method.
+     * @author Griefed
+     * @param agents List String. The agents to query, in the order in which their documents should be returned.
+     * @param fetcher Function which starts the retrieval of the JSON document of a single agent.
+     * @param fallback Function which provides the JSON document for an agent which did not answer in time.
+     * @param listener Told about the document of every agent as soon as it is known, see {@link SlotListener}.
+     * @param concurrency Integer. The maximum number of fetches in flight.
+     * @return List String. The documents of all agents, in the same order as <code>agents</code>.
+     */
+    public List<String> pollAsync(List<String> agents, Function<String, CompletableFuture<String>> fetcher, Function<String, String> fallback,
+                                  SlotListener listener, int concurrency) {
+        return sweep(agents, agent -> {
+
+            Fetch fetch = new Fetch();
+            CompletableFuture<String> future = fetcher.apply(agent);
+
+            fetch.STARTED.complete(null);
+            future.whenComplete((document, throwable) -> {
+                if (throwable != null) {
+                    fetch.RESULT.completeExceptionally(throwable);
+                } else {
+                    fetch.RESULT.complete(document);
+                }
+                fetch.FINISHED.complete(null);
+            });
+            fetch.cancel = () -> future.cancel(true);
+
+            return fetch;
+
+        }, fallback, listener, concurrency);
+    }
+
+    /**
+     * Query all passed agents, keeping at most <code>concurrency</code> fetches running. A fetch counts as running until
+     * it finished, even if its agent was already replaced by its fallback.
+     * @author Griefed
+     * @param agents List String. The agents to query, in the order in which their documents should be returned.
+     * @param starter Function which starts the fetch of a single agent.
+     * @param fallback Function which provides the JSON document for an agent which did not answer in time.
+     * @param listener Told about the document which filled the slot of an agent.
+     * @param concurrency Integer. The maximum number of fetches running.
+     * @return List String. The documents of all agents, in the same order as <code>agents</code>.
+     */
+    private List<String> sweep(List<String> agents, Function<String, Fetch> starter, Function<String, String> fallback,
+                               SlotListener listener, int concurrency) {
+        long start = System.nanoTime();
+
+        List<Slot> slots = new ArrayList<>(agents.size());
+        for (int i = 0; i < agents.size(); i++) {
+            slots.add(new Slot(i, agents.get(i)));
+        }
+
+        Sweep sweep = new Sweep(slots, starter, fallback, listener);
+        for (int i = 0; i < Math.min(concurrency, agents.size()); i++) {
+            launch(sweep);
+        }
+
+        try {
+
+            CompletableFuture.allOf(slots.stream().map(slot -> slot.DOCUMENT).toArray(CompletableFuture<?>[]::new))
+                    .get(PROPERTIES.getTimeoutSweep(), TimeUnit.SECONDS);
+
+        } catch (TimeoutException ex) {
+
+            LOG.warn("Sweep over " + agents.size() + " agents did not finish within " + PROPERTIES.getTimeoutSweep() + " seconds.");
+
+        } catch (InterruptedException ex) {
+
+            LOG.error("Interrupted while waiting for agents.", ex);
+            Thread.currentThread().interrupt();
+
+        } catch (ExecutionException ex) {
+
+            LOG.error("Error waiting for agents.", ex);
+
+        }
+
+        // Stop launching new fetches, fill every slot which is still open and cancel the fetches behind them.
+        sweep.NEXT.set(agents.size());
+
+        List<String> documents = new ArrayList<>(agents.size());
+        for (Slot slot : slots) {
+            if (fill(slot, fallback.apply(slot.AGENT), listener) && slot.fetch != null) {
+                slot.fetch.cancel.run();
+            }
+            documents.add(slot.DOCUMENT.join());
+        }
+
+        LOG.info("Polled " + agents.size() + " agents in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms.");
+
+        return documents;
+    }
+
+    /**
+     * Fill the slot of an agent, unless it was filled already. The listener is told before the slot completes, so every
+     * document returned by a sweep was handled by it, and a document which arrives after the slot was filled is not.
+     * @author Griefed
+     * @param slot The slot of the agent.
+     * @param document String in JSON format. The document to fill the slot with.
+     * @param listener Told about the document if it fills the slot.
+     * @return Boolean. <code>true</code> if the slot was filled with the document.
+     */
+    private boolean fill(Slot slot, String document, SlotListener listener) {
+        if (!slot.CLAIMED.compareAndSet(false, true)) {
+            return false;
+        }
+
+        try {
+            listener.filled(slot.INDEX, document);
+        } catch (RuntimeException ex) {
+            LOG.error("Error handling document of agent " + slot.AGENT, ex);
+        } finally {
+            slot.DOCUMENT.complete(document);
+        }
+
+        return true;
+    }
+
+    /**
+     * Start the fetch for the next agent which has not been started yet, if any. Fetches which complete right away, or
+     * can not be started at all, ask for the next agent while it is being started. Only one thread starts fetches of a
+     * sweep at a time, any other one leaves its request to it, so the stack does not grow with the number of agents no
+     * matter how many fetches complete synchronously.
+     * @author Griefed
+     * @param sweep The sweep to start the next fetch of.
+     */
+    private void launch(Sweep sweep) {
+        if (sweep.LAUNCHES.getAndIncrement() > 0) {
+            return;
+        }
+
+        do {
+            launchNext(sweep);
+        } while (sweep.LAUNCHES.decrementAndGet() > 0);
+    }
+
+    /**
+     * Start the fetch for the next agent which has not been started yet, if any. Once that fetch finished, the next agent
+     * is started. The slot of the agent is filled by the fetch, or by the watchdog if the fetch did not complete within
+     * <code>de.griefed.monitoring.timeout.agent</code> seconds after it started running. Only called by {@link #launch(Sweep)}.
+     * @author Griefed
+     * @param sweep The sweep to start the next fetch of.
+     */
+    private void launchNext(Sweep sweep) {
+        int index = sweep.NEXT.getAndIncrement();
+        if (index >= sweep.SLOTS.size()) {
+            return;
+        }
+
+        Slot slot = sweep.SLOTS.get(index);
+        String agent = slot.AGENT;
+
+        Fetch fetch;
+        try {
+
+            fetch = sweep.STARTER.apply(agent);
+
+        } catch (RuntimeException ex) {
+
+            LOG.error("Error starting retrieval for agent " + agent, ex);
+            fill(slot, sweep.FALLBACK.apply(agent), sweep.LISTENER);
+            launch(sweep);
+            return;
+
+        }
+
+        slot.fetch = fetch;
+        fetch.FINISHED.whenComplete((nothing, throwable) -> launch(sweep));
+
+        fetch.STARTED.thenRun(() -> {
+            ScheduledFuture<?> watchdog = WATCHDOG.schedule(() -> {
+                if (fill(slot, sweep.FALLBACK.apply(agent), sweep.LISTENER)) {
+                    LOG.warn("Agent " + agent + " did not answer within " + PROPERTIES.getTimeoutAgent() + " seconds.");
+                    fetch.cancel.run();
+                }
+            }, PROPERTIES.getTimeoutAgent(), TimeUnit.SECONDS);
+
+            fetch.RESULT.whenComplete((document, throwable) -> watchdog.cancel(false));
+        });
+
+        fetch.RESULT.whenComplete((document, throwable) -> {
+            if (throwable != null) {
+                LOG.error("Error retrieving information for agent " + agent, throwable);
+                fill(slot, sweep.FALLBACK.apply(agent), sweep.LISTENER);
+            } else {
+                fill(slot, document, sweep.LISTENER);
+            }
+        });
+    }
+
+    /**
+     * Getter for the executor running blocking work of agent sweeps.
+     * @author Griefed
+     * @return Executor. Returns the executor of the polling threads.
+     */
+    public Executor getExecutor() {
+        return EXECUTOR;
+    }
+
+    /**
+     * Stop all polling threads when the application shuts down.
+     * @author Griefed
+     */
+    @PreDestroy
+    public void shutdown() {
+        EXECUTOR.shutdownNow();
+        WATCHDOG.shutdownNow();
+    }
+
+    /**
+     * The fetch of the document of a single agent.
+     * @author Griefed
+     */
+    private static final class Fetch {
+
+        // Completed once the fetch runs, which starts its deadline.
+        private final CompletableFuture<Void> STARTED = new CompletableFuture<>();
+        private final CompletableFuture<String> RESULT = new CompletableFuture<>();
+        // Completed once the fetch no longer occupies a polling thread or connection.
+        private final CompletableFuture<Void> FINISHED = new CompletableFuture<>();
+
+        private volatile Runnable cancel = () -> {};
+    }
+
+    /**
+     * One pass over all agents: their slots, how fetches are started and which agent is next.
+     * @author Griefed
+     */
+    private static final class Sweep {
+
+        private final List<Slot> SLOTS;
+        private final Function<String, Fetch> STARTER;
+        private final Function<String, String> FALLBACK;
+        private final SlotListener LISTENER;
+        private final AtomicInteger NEXT = new AtomicInteger(0);
+        // Fetches to start which were asked for, but not started yet. Only the thread which raised it from 0 starts them.
+        private final AtomicInteger LAUNCHES = new AtomicInteger(0);
+
+        /**
+         * Constructor of a sweep which did not start any fetch yet.
+         * @author Griefed
+         * @param slots List of slots, one for each agent.
+         * @param starter Function which starts the fetch of a single agent.
+         * @param fallback Function which provides the JSON document for an agent which did not answer in time.
+         * @param listener Told about the document which filled the slot of an agent.
+         */
+        private Sweep(List<Slot> slots, Function<String, Fetch> starter, Function<String, String> fallback, SlotListener listener) {
+            this.SLOTS = slots;
+            this.STARTER = starter;
+            this.FALLBACK = fallback;
+            this.LISTENER = listener;
+        }
+    }
+
+    /**
+     * The place of one agent in the result of a sweep. Filled exactly once, by its fetch, by the watchdog or at the end of
+     * the sweep, whichever comes first.
+     * @author Griefed
+     */
+    private static final class Slot {
+
+        private final int INDEX;
+        private final String AGENT;
+        private final AtomicBoolean CLAIMED = new AtomicBoolean(false);
+        private final CompletableFuture<String> DOCUMENT = new CompletableFuture<>();
+
+        private volatile Fetch fetch;
+
+        /**
+         * Constructor of an empty slot.
+         * @author Griefed
+         * @param index Integer. Position of the agent in the list of agents.
+         * @param agent String. The agent.
+         */
+        private Slot(int index, String agent) {
+            this.INDEX = index;
+            this.AGENT = agent;
+        }
+    }
+
+    /**
+     * Told about the document which filled the slot of an agent in a sweep. Called exactly once for every agent, before
+     * the sweep returns, but possibly on another thread and while the sweep is still running. A document which arrives
+     * after the agent was replaced by its fallback is not passed on.
+     * @author Griefed
+     */
+    @FunctionalInterface
+    public interface SlotListener {
+
+        /**
+         * Handle the document of an agent.
+         * @author Griefed
+         * @param index Integer. Position of the agent in the list of agents passed to the sweep.
+         * @param document String in JSON format. The document of the agent, or its fallback.
+         */
+        void filled(int index, String document);
+    }
+}
@@ -0,0 +1,82 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import io.netty.resolver.AddressResolver;
+import io.netty.resolver.AddressResolverGroup;
+import io.netty.resolver.InetNameResolver;
+import io.netty.resolver.InetSocketAddressResolver;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.Promise;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Netty {@link AddressResolverGroup} which resolves hostnames through {@link ResolverService}, so the non-blocking HTTP
+ * client shares the cache with the rest of Monitoring and never blocks its event-loop on a lookup.
+ * @author Griefed
+ */
+public class CachingAddressResolverGroup extends AddressResolverGroup<InetSocketAddress> {
+
+    private final ResolverService RESOLVER_SERVICE;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param injectedResolverService Instance of {@link ResolverService}.
+     */
+    public CachingAddressResolverGroup(ResolverService injectedResolverService) {
+        this.RESOLVER_SERVICE = injectedResolverService;
+    }
+
+    @Override
+    protected AddressResolver<InetSocketAddress> newResolver(EventExecutor executor) {
+        return new InetSocketAddressResolver(executor, new InetNameResolver(executor) {
+
+            @Override
+            protected void doResolve(String inetHost, Promise<InetAddress> promise) {
+                RESOLVER_SERVICE.resolveAllAsync(inetHost).whenComplete((addresses, throwable) -> {
+                    if (throwable != null) {
+                        promise.tryFailure(throwable);
+                    } else {
+                        promise.trySuccess(addresses[0]);
+                    }
+                });
+            }
+
+            @Override
+            protected void doResolveAll(String inetHost, Promise<List<InetAddress>> promise) {
+                RESOLVER_SERVICE.resolveAllAsync(inetHost).whenComplete((addresses, throwable) -> {
+                    if (throwable != null) {
+                        promise.tryFailure(throwable);
+                    } else {
+                        promise.trySuccess(Arrays.asList(addresses));
+                    }
+                });
+            }
+        });
+    }
+}
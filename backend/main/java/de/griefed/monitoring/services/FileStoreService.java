@@ -0,0 +1,261 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import oshi.software.os.OSFileStore;
+import oshi.software.os.linux.LinuxOperatingSystem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Class responsible for keeping track of the file stores of the host. The usage of every known store is refreshed on every
+ * call to {@link #refresh()}, while the list of stores itself is only rediscovered when the mount table changed or when
+ * {@link #rediscover()} is called on the slow update schedule. Rediscovered stores are diffed against the known ones by their
+ * mount point, so stores which did not change are kept as they are.<br>
+ * On Linux, whether the mount table changed is checked by hashing <code>/proc/self/mountinfo</code>, and the usage is read
+ * directly for the mount point of every store. {@link OSFileStore#updateAttributes()} parses the whole mount table for every
+ * single store there, which adds up on hosts with hundreds of bind mounts. On other systems, {@link OSFileStore#updateAttributes()}
+ * is used.
+ * @author Griefed
+ */
+@Service
+public class FileStoreService {
+
+    private static final Logger LOG = LogManager.getLogger(FileStoreService.class);
+
+    private final HardwareService HARDWARE_SERVICE;
+    private final File MOUNTINFO = new File("/proc/self/mountinfo");
+    private final CRC32 CRC = new CRC32();
+    private final boolean LINUX;
+
+    private byte[] buffer = new byte[16384];
+    private long mountTableHash = -1;
+    private volatile List<Store> stores = Collections.emptyList();
+
+    /**
+     * Constructor responsible for DI.
+     * @author Griefed
+     * @param injectedHardwareService Instance of {@link HardwareService}.
+     */
+    @Autowired
+    public FileStoreService(HardwareService injectedHardwareService) {
+        this.HARDWARE_SERVICE = injectedHardwareService;
+        this.LINUX = HARDWARE_SERVICE.getOperatingSystem() instanceof LinuxOperatingSystem && MOUNTINFO.canRead();
+        rediscover();
+    }
+
+    /**
+     * Getter for the file stores as of the last refresh.
+     * @author Griefed
+     * @return List {@link Store}. The local file stores of the host.
+     */
+    public List<Store> getStores() {
+        return stores;
+    }
+
+    /**
+     * Rediscover the file stores if the mount table changed, then refresh the usage of every store.
+     * @author Griefed
+     * @return List {@link Store}. The local file stores of the host, with their current usage.
+     */
+    public synchronized List<Store> refresh() {
+        if (LINUX && hashMountTable() != mountTableHash) {
+            rediscover();
+        }
+
+        for (Store store : stores) {
+            store.update(LINUX);
+        }
+
+        return stores;
+    }
+
+    /**
+     * Retrieve the file stores from the OS and merge them with the known ones. Known stores whose mount point still exists
+     * are kept, new ones are added and the ones which are gone are dropped.
+     * @author Griefed
+     */
+    public synchronized void rediscover() {
+        if (LINUX) {
+            this.mountTableHash = hashMountTable();
+        }
+
+        Map<String, Store> known = new HashMap<>(stores.size() * 2);
+        for (Store store : stores) {
+            known.put(store.getMount(), store);
+        }
+
+        List<OSFileStore> discovered = HARDWARE_SERVICE.getOperatingSystem().getFileSystem().getFileStores(true);
+        List<Store> merged = new ArrayList<>(discovered.size());
+        int added = 0;
+
+        for (OSFileStore fileStore : discovered) {
+            Store store = known.remove(fileStore.getMount());
+
+            if (store == null || !store.getVolume().equals(fileStore.getVolume())) {
+                store = new Store(fileStore);
+                added++;
+            }
+
+            merged.add(store);
+        }
+
+        if (added > 0 || !known.isEmpty()) {
+            LOG.debug("File stores changed. Added " + added + ", removed " + known.size() + ".");
+        }
+
+        this.stores = Collections.unmodifiableList(merged);
+    }
+
+    /**
+     * Hash the current content of <code>/proc/self/mountinfo</code>. The file is read into a buffer which is reused and
+     * grown as needed.
+     * @author Griefed
+     * @return Long. The CRC32 of the mount table, or <code>-1</code> if it could not be read.
+     */
+    private long hashMountTable() {
+        int length = 0;
+
+        try (FileInputStream stream = new FileInputStream(MOUNTINFO)) {
+            int read;
+
+            while ((read = stream.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+
+        } catch (IOException ex) {
+            LOG.debug("Could not read " + MOUNTINFO + ".", ex);
+            return -1;
+        }
+
+        CRC.reset();
+        CRC.update(buffer, 0, length);
+        return CRC.getValue();
+    }
+
+    /**
+     * A file store with its usage as of the last refresh.
+     * @author Griefed
+     */
+    public static final class Store {
+
+        private final OSFileStore FILE_STORE;
+        private final File MOUNT;
+
+        private volatile long totalBytes;
+        private volatile long freeBytes;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param fileStore Instance of {@link OSFileStore}. The file store as discovered by OSHI.
+         */
+        private Store(OSFileStore fileStore) {
+            this.FILE_STORE = fileStore;
+            this.MOUNT = new File(fileStore.getMount());
+            this.totalBytes = fileStore.getTotalSpace();
+            this.freeBytes = fileStore.getFreeSpace();
+        }
+
+        /**
+         * Refresh the usage of this store.
+         * @author Griefed
+         * @param direct Boolean. Whether to read the usage of the mount point directly instead of through OSHI.
+         */
+        private void update(boolean direct) {
+            if (direct) {
+                this.totalBytes = MOUNT.getTotalSpace();
+                this.freeBytes = MOUNT.getFreeSpace();
+            } else if (FILE_STORE.updateAttributes()) {
+                this.totalBytes = FILE_STORE.getTotalSpace();
+                this.freeBytes = FILE_STORE.getFreeSpace();
+            }
+        }
+
+        /**
+         * Getter for the name of the store.
+         * @author Griefed
+         * @return String. The name of the store as reported by the OS.
+         */
+        public String getName() {
+            return FILE_STORE.getName();
+        }
+
+        /**
+         * Getter for the label of the store.
+         * @author Griefed
+         * @return String. The label of the store, empty if it has none.
+         */
+        public String getLabel() {
+            return FILE_STORE.getLabel();
+        }
+
+        /**
+         * Getter for the volume of the store.
+         * @author Griefed
+         * @return String. The device or volume the store resides on, for example <code>/dev/sda1</code>.
+         */
+        public String getVolume() {
+            return FILE_STORE.getVolume();
+        }
+
+        /**
+         * Getter for the mount point of the store.
+         * @author Griefed
+         * @return String. The mount point, unique among the stores of the host.
+         */
+        public String getMount() {
+            return FILE_STORE.getMount();
+        }
+
+        /**
+         * Getter for the size of the store.
+         * @author Griefed
+         * @return Long. The total space in bytes as of the last refresh.
+         */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * Getter for the free space of the store.
+         * @author Griefed
+         * @return Long. The free space in bytes as of the last refresh.
+         */
+        public long getFreeBytes() {
+            return freeBytes;
+        }
+    }
+}
@@ -0,0 +1,216 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import oshi.SystemInfo;
+import oshi.hardware.CentralProcessor;
+import oshi.hardware.ComputerSystem;
+import oshi.hardware.HardwareAbstractionLayer;
+import oshi.hardware.PhysicalMemory;
+import oshi.software.os.OperatingSystem;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class responsible for providing access to the hardware and operating system to all components. Only one {@link SystemInfo}
+ * is created for the whole application, and facts which do not change while Monitoring runs, like whether the host is a
+ * virtual machine, the CPU identifier or the installed memory banks, are probed once on first access and kept from then on.
+ * Probing those can mean reading sysfs or running dmidecode, which is noticeable on small hosts if done on every update.
+ * @author Griefed
+ */
+@Service
+public class HardwareService {
+
+    private static final Logger LOG = LogManager.getLogger(HardwareService.class);
+
+    private final Map<String, String> VM_VENDORS = new HashMap<String, String>() {
+        {
+            put("bhyve bhyve", "bhyve");
+            put("KVMKVMKVM", "KVM");
+            put("TCGTCGTCGTCG", "QEMU");
+            put("Microsoft Hv", "Microsoft Hyper-V or Windows Virtual PC");
+            put("lrpepyh vr", "Parallels");
+            put("VMwareVMware", "VMware");
+            put("XenVMMXenVMM", "Xen HVM");
+            put("ACRNACRNACRN", "Project ACRN");
+            put("QNXQVMBSQG", "QNX Hypervisor");
+        }
+    };
+    private final String[] VM_MODELS = new String[] {"Linux KVM","Linux lguest","OpenVZ","Qemu","Microsoft Virtual PC","VMWare","linux-vserver","Xen","FreeBSD Jail","VirtualBox","Parallels","Linux Containers","LXC"};
+
+    private volatile SystemInfo systemInfo;
+    private volatile CentralProcessor.ProcessorIdentifier processorIdentifier;
+    private volatile List<PhysicalMemory> physicalMemory;
+    private volatile String virtualMachine;
+
+    /**
+     * Getter for the shared {@link SystemInfo}, created on first access.
+     * @author Griefed
+     * @return SystemInfo. The shared instance.
+     */
+    public SystemInfo getSystemInfo() {
+        SystemInfo instance = systemInfo;
+
+        if (instance == null) {
+            synchronized (this) {
+                instance = systemInfo;
+
+                if (instance == null) {
+                    instance = new SystemInfo();
+                    systemInfo = instance;
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Getter for the hardware of the host.
+     * @author Griefed
+     * @return HardwareAbstractionLayer. The hardware of the host.
+     */
+    public HardwareAbstractionLayer getHardware() {
+        return getSystemInfo().getHardware();
+    }
+
+    /**
+     * Getter for the operating system of the host.
+     * @author Griefed
+     * @return OperatingSystem. The operating system of the host.
+     */
+    public OperatingSystem getOperatingSystem() {
+        return getSystemInfo().getOperatingSystem();
+    }
+
+    /**
+     * Getter for the identifier of the CPU, probed once.
+     * @author Griefed
+     * @return ProcessorIdentifier. Vendor, name, family and bitness of the CPU.
+     */
+    public CentralProcessor.ProcessorIdentifier getProcessorIdentifier() {
+        CentralProcessor.ProcessorIdentifier identifier = processorIdentifier;
+
+        if (identifier == null) {
+            identifier = getHardware().getProcessor().getProcessorIdentifier();
+            processorIdentifier = identifier;
+        }
+
+        return identifier;
+    }
+
+    /**
+     * Getter for the installed memory banks, probed once. Always empty on virtual machines, as the banks reported there
+     * are made up by the hypervisor.
+     * @author Griefed
+     * @return List {@link PhysicalMemory}. The memory banks, unmodifiable.
+     */
+    public List<PhysicalMemory> getPhysicalMemory() {
+        List<PhysicalMemory> banks = physicalMemory;
+
+        if (banks == null) {
+            banks = isVirtualMachine() ? Collections.emptyList() : Collections.unmodifiableList(getHardware().getMemory().getPhysicalMemory());
+            physicalMemory = banks;
+        }
+
+        return banks;
+    }
+
+    /**
+     * Check whether the host is a virtual machine, probed once.
+     * @author Griefed
+     * @return Boolean. <code>true</code> if the host is a virtual machine.
+     */
+    public boolean isVirtualMachine() {
+        return !getVirtualMachine().isEmpty();
+    }
+
+    /**
+     * Getter for what identified the host as a virtual machine, probed once.
+     * @author Griefed
+     * @return String. The hypervisor, model or manufacturer identifying the virtual machine. Empty if the host is not a virtual machine.
+     */
+    public String getVirtualMachine() {
+        String vm = virtualMachine;
+
+        if (vm == null) {
+            vm = identifyVM();
+            virtualMachine = vm;
+        }
+
+        return vm;
+    }
+
+    /**
+     * Log what was found about the host once the application started.
+     * @author Griefed
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void report() {
+        CentralProcessor.ProcessorIdentifier identifier = getProcessorIdentifier();
+        String vm = getVirtualMachine();
+        List<PhysicalMemory> banks = getPhysicalMemory();
+
+        LOG.info("Host: " + getOperatingSystem() + ", " + identifier.getName().trim() + ", " +
+                getHardware().getProcessor().getLogicalProcessorCount() + " logical cores, " +
+                banks.size() + " memory banks" + (vm.isEmpty() ? "" : ", virtual machine (" + vm + ")") + ".");
+    }
+
+    /**
+     * Identify whether the host is a virtual machine, by the vendor of the CPU and the model or manufacturer of the system.
+     * @author Griefed
+     * @return String. What identified the host as a virtual machine, or an empty string.
+     */
+    private String identifyVM() {
+        // Check CPU Vendor
+        String vendor = getProcessorIdentifier().getVendor().trim();
+        if (VM_VENDORS.containsKey(vendor)) {
+            return VM_VENDORS.get(vendor);
+        }
+
+        // Try well known models
+        ComputerSystem computerSystem = getHardware().getComputerSystem();
+        String model = computerSystem.getModel();
+        for (String vm : VM_MODELS) {
+            if (model.contains(vm)) {
+                return model;
+            }
+        }
+
+        String manufacturer = computerSystem.getManufacturer();
+        if ("Microsoft Corporation".equals(manufacturer) && "Virtual Machine".equals(model)) {
+            return manufacturer + " " + model;
+        }
+
+        // Couldn't find VM, return empty string
+        return "";
+    }
+}
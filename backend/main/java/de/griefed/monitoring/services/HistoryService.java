@@ -0,0 +1,1106 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.TimeSeries;
+import de.griefed.monitoring.utilities.TimeSeriesRollup;
+import de.griefed.monitoring.utilities.TimeSeriesStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class responsible for keeping the history of all numeric values of this host and, on a monitor, of all agents. Every
+ * document is broken down into its numeric values, each of which makes up a series identified by the host, the component
+ * and the dotted path of the value within the component. Elements of lists are identified by their name, if they have one, or
+ * their position otherwise, so the usage of a disk stays in the same series no matter where the disk is listed.<br>
+ * Samples are kept in a {@link TimeSeriesStore} in <code>de.griefed.monitoring.history.directory</code>. Along with every
+ * sample, the aggregates of its series over one minute, 15 minutes and one hour are updated, each kept in a
+ * {@link TimeSeriesRollup} of their own, with a retention of their own. Queries are answered from the coarsest of them
+ * which still satisfies the requested resolution, so long ranges are not answered from raw samples.<br>
+ * Documents are broken down and stored by a background thread, so recording them does not hold up updates or agent sweeps.
+ * @author Griefed
+ */
+@Service
+public class HistoryService {
+
+    private static final Logger LOG = LogManager.getLogger(HistoryService.class);
+    private static final Set<String> IGNORED = new HashSet<>(Arrays.asList("versions", "epoch", "delta", "dialog"));
+    // The busiest processes change all the time, every one of them would make up a new series.
+    private static final Set<String> IGNORED_EVERYWHERE = new HashSet<>(Collections.singletonList("top_processes"));
+    // Fields identifying an element of a list, in order of preference. Disks are identified by their mount point, as several
+    // of them may share a name.
+    private static final List<String> NAMES = Arrays.asList("mount", "name", "interface_name");
+
+    private final ObjectMapper MAPPER = new ObjectMapper();
+    private final ApplicationProperties PROPERTIES;
+    private final TimeSeriesStore STORE;
+    private final long RETENTION;
+    private final List<TimeSeriesRollup> ROLLUPS = new ArrayList<>();
+    private final ThreadPoolExecutor RECORDER;
+    private final AtomicLong DROPPED = new AtomicLong(0);
+    private final ExecutorService QUERY;
+    private final int QUERY_THREADS;
+
+    private String[][] names = new String[0][];
+
+    /**
+     * Constructor responsible for our DI and opening the stores.
+     * @author Griefed
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     */
+    @Autowired
+    public HistoryService(ApplicationProperties injectedApplicationProperties) {
+        this.PROPERTIES = injectedApplicationProperties;
+        this.RETENTION = TimeUnit.HOURS.toSeconds(PROPERTIES.getHistoryRetention());
+
+        TimeSeriesStore store = null;
+
+        if (PROPERTIES.isHistoryEnabled()) {
+            Path directory = Paths.get(PROPERTIES.getHistoryDirectory());
+
+            try {
+
+                store = new TimeSeriesStore(
+                        directory,
+                        TimeUnit.MINUTES.toSeconds(PROPERTIES.getHistoryChunk()),
+                        TimeUnit.HOURS.toSeconds(PROPERTIES.getHistorySegment()),
+                        PROPERTIES.getHistorySegmentSize() * 1048576,
+                        RETENTION
+                );
+
+                ROLLUPS.add(openRollup(directory, "1m", TimeUnit.MINUTES.toSeconds(1), PROPERTIES.getHistoryRetentionMinute()));
+                ROLLUPS.add(openRollup(directory, "15m", TimeUnit.MINUTES.toSeconds(15), PROPERTIES.getHistoryRetentionQuarter()));
+                ROLLUPS.add(openRollup(directory, "1h", TimeUnit.HOURS.toSeconds(1), PROPERTIES.getHistoryRetentionHour()));
+
+                resumeRollups(store);
+
+            } catch (IOException ex) {
+
+                LOG.error("Could not open history in " + PROPERTIES.getHistoryDirectory() + ". History disabled.", ex);
+
+                if (store != null) {
+                    store.close();
+                    store = null;
+                }
+                ROLLUPS.forEach(TimeSeriesRollup::close);
+                ROLLUPS.clear();
+
+            }
+        } else {
+            LOG.info("History disabled.");
+        }
+
+        this.STORE = store;
+
+        CustomizableThreadFactory recorderThreads = new CustomizableThreadFactory("history-");
+        recorderThreads.setDaemon(true);
+        this.RECORDER = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(10000), recorderThreads,
+                (runnable, executor) -> DROPPED.incrementAndGet());
+
+        CustomizableThreadFactory queryThreads = new CustomizableThreadFactory("history-query-");
+        queryThreads.setDaemon(true);
+        this.QUERY_THREADS = PROPERTIES.getHistoryQueryThreads();
+        this.QUERY = Executors.newFixedThreadPool(QUERY_THREADS, queryThreads);
+    }
+
+    /**
+     * Open the store of a rollup in a subdirectory of the history. Chunks of a rollup hold up to 360 buckets, but at
+     * most a day, so not too much is lost if the application is killed.
+     * @author Griefed
+     * @param directory Path to the directory of the history.
+     * @param name String. The name of the rollup, also the name of its subdirectory.
+     * @param resolution Long. The length of a bucket, in seconds.
+     * @param retention Integer. How long aggregates are kept, in hours.
+     * @return The rollup.
+     * @throws IOException if the store could not be opened.
+     */
+    private TimeSeriesRollup openRollup(Path directory, String name, long resolution, int retention) throws IOException {
+        long chunk = Math.min(resolution * 360, TimeUnit.DAYS.toSeconds(1));
+
+        return new TimeSeriesRollup(name, resolution, TimeUnit.HOURS.toSeconds(retention), new TimeSeriesStore(
+                directory.resolve(name),
+                chunk,
+                chunk * 28,
+                PROPERTIES.getHistorySegmentSize() * 1048576,
+                TimeUnit.HOURS.toSeconds(retention)
+        ));
+    }
+
+    /**
+     * Add the raw samples of the current bucket of every rollup to the rollup again, as buckets which are not complete
+     * are not written when the history is closed. Every bucket before the one holding the newest sample was written
+     * already. Buckets which passed while the application was not running are written right away.
+     * @author Griefed
+     * @param store The store of the raw samples.
+     */
+    private void resumeRollups(TimeSeriesStore store) {
+        long newest = store.getNewestSecond();
+
+        if (newest == Long.MIN_VALUE) {
+            return;
+        }
+
+        long[] starts = new long[ROLLUPS.size()];
+        long from = newest;
+        for (int i = 0; i < ROLLUPS.size(); i++) {
+            starts[i] = Math.floorDiv(newest, ROLLUPS.get(i).getResolution()) * ROLLUPS.get(i).getResolution();
+            from = Math.min(from, starts[i]);
+        }
+
+        List<String> keys = store.getKeys();
+        boolean[] selected = new boolean[keys.size()];
+        Arrays.fill(selected, true);
+
+        store.read(selected, from, newest, (id, second, value) -> {
+            for (int i = 0; i < ROLLUPS.size(); i++) {
+                if (second >= starts[i]) {
+                    try {
+                        ROLLUPS.get(i).add(id, keys.get(id), second, value);
+                    } catch (IOException ex) {
+                        LOG.error("Could not resume " + ROLLUPS.get(i).getName() + " aggregates of " + keys.get(id) + ".", ex);
+                    }
+                }
+            }
+        });
+
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        for (TimeSeriesRollup rollup : ROLLUPS) {
+            rollup.seal(now);
+        }
+    }
+
+    /**
+     * Getter for whether history is kept.
+     * @author Griefed
+     * @return Boolean. <code>true</code> if history is enabled and the store could be opened.
+     */
+    public boolean isEnabled() {
+        return STORE != null;
+    }
+
+    /**
+     * Record all numeric values of a document as samples taken now. The document is parsed and stored in the background.
+     * @author Griefed
+     * @param source String. The host the document belongs to. <code>host</code> for this instance, the address of the agent otherwise.
+     * @param document String in JSON format. The document of the host.
+     */
+    public void record(String source, String document) {
+        if (STORE == null) {
+            return;
+        }
+
+        long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+
+        RECORDER.execute(() -> {
+            JsonNode root;
+            try {
+                root = MAPPER.readTree(document);
+            } catch (IOException ex) {
+                LOG.error("Could not parse history of " + source + ".", ex);
+                root = MissingNode.getInstance();
+            }
+
+            write(source, second, root);
+        });
+    }
+
+    /**
+     * Record all numeric values of a document which was already parsed as samples taken now. The document is stored in
+     * the background, so it must not be changed afterwards.
+     * @author Griefed
+     * @param source String. The host the document belongs to. <code>host</code> for this instance, the address of the agent otherwise.
+     * @param root The parsed document of the host.
+     */
+    public void record(String source, JsonNode root) {
+        if (STORE == null) {
+            return;
+        }
+
+        long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+
+        RECORDER.execute(() -> write(source, second, root));
+    }
+
+    /**
+     * Store all numeric values of a document, update the aggregates of their series and seal whatever has passed.
+     * @author Griefed
+     * @param source String. The host the document belongs to.
+     * @param second Long. The time the document was recorded at, in seconds since the epoch.
+     * @param root The parsed document of the host.
+     */
+    private void write(String source, long second, JsonNode root) {
+        try {
+
+            String prefix = sanitize(source) + "\t";
+
+            flatten(root, new StringBuilder(64), (path, value) -> {
+                String key = prefix + path;
+                int id = STORE.id(key);
+
+                if (STORE.append(id, second, value)) {
+                    for (TimeSeriesRollup rollup : ROLLUPS) {
+                        rollup.add(id, key, second, value);
+                    }
+                }
+            });
+
+        } catch (IOException ex) {
+
+            LOG.error("Could not record history of " + source + ".", ex);
+
+        }
+
+        STORE.seal(second);
+        for (TimeSeriesRollup rollup : ROLLUPS) {
+            rollup.seal(second);
+        }
+    }
+
+    /**
+     * Walk a document and pass every numeric value along with its path.
+     * @author Griefed
+     * @param node The node to walk.
+     * @param path The path of the node. Restored before returning.
+     * @param consumer Receives every numeric value.
+     * @throws IOException if the consumer could not store a value.
+     */
+    private void flatten(JsonNode node, StringBuilder path, ValueConsumer consumer) throws IOException {
+        if (node.isNumber()) {
+
+            consumer.accept(path.toString(), node.doubleValue());
+
+        } else if (node.isObject()) {
+
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+
+                if ((path.length() == 0 && IGNORED.contains(field.getKey())) || IGNORED_EVERYWHERE.contains(field.getKey())) {
+                    continue;
+                }
+
+                int length = path.length();
+                flatten(field.getValue(), append(path, field.getKey()), consumer);
+                path.setLength(length);
+            }
+
+        } else if (node.isArray()) {
+
+            for (int i = 0; i < node.size(); i++) {
+                JsonNode element = node.get(i);
+
+                int length = path.length();
+                flatten(element, append(path, nameOf(element, i)), consumer);
+                path.setLength(length);
+            }
+
+        }
+    }
+
+    /**
+     * Getter for the name identifying an element of a list.
+     * @author Griefed
+     * @param element The element.
+     * @param index Integer. The position of the element in its list.
+     * @return String. The name of the element, or its position if it has no name.
+     */
+    private String nameOf(JsonNode element, int index) {
+        for (String field : NAMES) {
+            JsonNode name = element.get(field);
+
+            if (name != null && name.isTextual() && !name.textValue().trim().isEmpty()) {
+                return name.textValue().trim();
+            }
+        }
+
+        return String.valueOf(index);
+    }
+
+    /**
+     * Append a segment to a path, separated by a dot.
+     * @author Griefed
+     * @param path The path to append to.
+     * @param segment String. The segment to append.
+     * @return The path.
+     */
+    private StringBuilder append(StringBuilder path, String segment) {
+        if (path.length() > 0) {
+            path.append('.');
+        }
+        return path.append(sanitize(segment));
+    }
+
+    /**
+     * Remove characters which would break the series index from a part of a key.
+     * @author Griefed
+     * @param part String. The part of a key.
+     * @return String. The part with tabs and line breaks replaced by spaces.
+     */
+    private String sanitize(String part) {
+        return part.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * Query the samples of all series matching the given selectors within a range of time. With a step, samples are
+     * aggregated into buckets of that length, timestamped with their start. They are read from the coarsest rollup whose
+     * resolution does not exceed the step, or, if that rollup does not reach back to the start of the range, the finest
+     * one which does. Without a step, raw samples are returned as long as they reach back far enough. Buckets which the
+     * rollup has not written yet are aggregated from raw samples. The start of the range is rounded down to the start of its bucket.
+     * @author Griefed
+     * @param source String. The host, <code>null</code> or <code>*</code> for all.
+     * @param component String. The component, <code>null</code> or <code>*</code> for all.
+     * @param metric String. The metric, <code>null</code> or <code>*</code> for all.
+     * @param from Long. Start of the range, inclusive, in milliseconds since the epoch.
+     * @param to Long. End of the range, inclusive, in milliseconds since the epoch.
+     * @param step Long. The length of a bucket in milliseconds, <code>0</code> for raw samples.
+     * @param aggregation How the samples in a bucket are aggregated.
+     * @return List of {@link TimeSeries}. Every matching series which has samples in the range.
+     * @throws IllegalArgumentException if the query would return more than <code>de.griefed.monitoring.history.query.points</code> values.
+     */
+    public List<TimeSeries> query(String source, String component, String metric, long from, long to, long step, Aggregation aggregation) {
+        if (STORE == null) {
+            return Collections.emptyList();
+        }
+
+        String[][] names = getNames();
+        boolean[] selected = select(names, source, component, metric);
+
+        long fromSecond = Math.floorDiv(from, 1000);
+        long toSecond = Math.floorDiv(to, 1000);
+        TimeSeriesRollup rollup = plan(fromSecond, TimeUnit.MILLISECONDS.toSeconds(step));
+        long resolution = Math.max(TimeUnit.MILLISECONDS.toSeconds(step), rollup == null ? 0 : rollup.getResolution());
+
+        limit(selected, fromSecond, toSecond, resolution);
+
+        Bucket[] buckets = read(names, selected, rollup, resolution, fromSecond, toSecond, aggregation);
+
+        List<TimeSeries> series = new ArrayList<>();
+        for (int id = 0; id < names.length; id++) {
+            if (buckets[id] != null && buckets[id].finish() > 0) {
+                series.add(new TimeSeries(names[id][0], names[id][1], names[id][2], TimeUnit.SECONDS.toMillis(resolution),
+                        Arrays.copyOf(buckets[id].SAMPLES.timestamps, buckets[id].SAMPLES.size),
+                        Arrays.copyOf(buckets[id].SAMPLES.values, buckets[id].SAMPLES.size)));
+            }
+        }
+
+        return series;
+    }
+
+    /**
+     * Aggregate all series matching the given selectors across hosts, for example the 95th percentile of the usage of
+     * every disk of every agent. Every series is first aggregated into buckets as by
+     * {@link #query(String, String, String, long, long, long, Aggregation)}, then the buckets of all series of the same
+     * component and metric are combined. The matching series are split into partitions, which are read and grouped in
+     * parallel on <code>de.griefed.monitoring.history.query.threads</code> threads.
+     * @author Griefed
+     * @param source String. The host, <code>null</code> or <code>*</code> for all.
+     * @param component String. The component, <code>null</code> or <code>*</code> for all.
+     * @param metric String. The metric, <code>null</code> or <code>*</code> for all.
+     * @param from Long. Start of the range, inclusive, in milliseconds since the epoch.
+     * @param to Long. End of the range, inclusive, in milliseconds since the epoch.
+     * @param step Long. The length of a bucket in milliseconds. At least one minute, as raw samples of different hosts
+     *             are not taken at the same time.
+     * @param aggregation How the samples of a series in a bucket are aggregated.
+     * @param statistic How the buckets of all series are combined.
+     * @return List of {@link TimeSeries}. One for every component and metric, with the host set to <code>*</code>.
+     * @throws InterruptedException if interrupted while waiting for the partitions.
+     * @throws IllegalArgumentException if the query would read more than <code>de.griefed.monitoring.history.query.points</code> values.
+     */
+    public List<TimeSeries> aggregate(String source, String component, String metric, long from, long to, long step,
+                                      Aggregation aggregation, Statistic statistic) throws InterruptedException {
+        if (STORE == null) {
+            return Collections.emptyList();
+        }
+
+        String[][] names = getNames();
+        boolean[] selected = select(names, source, component, metric);
+
+        long fromSecond = Math.floorDiv(from, 1000);
+        long toSecond = Math.floorDiv(to, 1000);
+        long stepSecond = Math.max(TimeUnit.MILLISECONDS.toSeconds(step), TimeUnit.MINUTES.toSeconds(1));
+        TimeSeriesRollup rollup = plan(fromSecond, stepSecond);
+        long resolution = Math.max(stepSecond, rollup == null ? 0 : rollup.getResolution());
+
+        int count = limit(selected, fromSecond, toSecond, resolution);
+
+        // Small queries are not worth handing over to other threads.
+        int partitions = Math.max(1, Math.min(QUERY_THREADS, count / 64));
+        List<Future<Map<String, Map<Long, Values>>>> futures = new ArrayList<>(partitions);
+
+        for (int partition = 0, id = 0; partition < partitions; partition++) {
+            boolean[] part = new boolean[names.length];
+            int size = count / partitions + (partition < count % partitions ? 1 : 0);
+
+            for (int taken = 0; taken < size && id < names.length; id++) {
+                if (selected[id]) {
+                    part[id] = true;
+                    taken++;
+                }
+            }
+
+            if (partitions == 1) {
+                futures.add(CompletableFuture.completedFuture(group(names, read(names, part, rollup, resolution, fromSecond, toSecond, aggregation))));
+            } else {
+                futures.add(QUERY.submit(() -> group(names, read(names, part, rollup, resolution, fromSecond, toSecond, aggregation))));
+            }
+        }
+
+        Map<String, Map<Long, Values>> groups = new TreeMap<>();
+
+        try {
+
+            for (Future<Map<String, Map<Long, Values>>> future : futures) {
+                future.get().forEach((group, buckets) -> {
+                    Map<Long, Values> merged = groups.computeIfAbsent(group, key -> new HashMap<>());
+                    buckets.forEach((timestamp, values) -> merged.merge(timestamp, values, Values::addAll));
+                });
+            }
+
+        } catch (ExecutionException ex) {
+
+            throw new IllegalStateException("Could not aggregate history.", ex.getCause());
+
+        } catch (InterruptedException ex) {
+
+            futures.forEach(future -> future.cancel(true));
+            throw ex;
+
+        }
+
+        List<TimeSeries> series = new ArrayList<>(groups.size());
+        groups.forEach((group, buckets) -> {
+            long[] timestamps = buckets.keySet().stream().mapToLong(Long::longValue).sorted().toArray();
+            double[] values = new double[timestamps.length];
+
+            for (int i = 0; i < timestamps.length; i++) {
+                values[i] = buckets.get(timestamps[i]).compute(statistic);
+            }
+
+            int tab = group.indexOf('\t');
+            series.add(new TimeSeries("*", group.substring(0, tab), group.substring(tab + 1), TimeUnit.SECONDS.toMillis(resolution), timestamps, values));
+        });
+
+        return series;
+    }
+
+    /**
+     * Group the buckets of several series by component and metric, and by the start of the bucket.
+     * @author Griefed
+     * @param names The names of all series, by id.
+     * @param buckets The buckets of the series, by id.
+     * @return Map of the values of all series in every bucket, by start of the bucket, by component and metric.
+     */
+    private Map<String, Map<Long, Values>> group(String[][] names, Bucket[] buckets) {
+        Map<String, Map<Long, Values>> groups = new HashMap<>();
+
+        for (int id = 0; id < buckets.length; id++) {
+            if (buckets[id] != null && buckets[id].finish() > 0) {
+                Map<Long, Values> group = groups.computeIfAbsent(names[id][1] + "\t" + names[id][2], key -> new HashMap<>());
+                Samples samples = buckets[id].SAMPLES;
+
+                for (int i = 0; i < samples.size; i++) {
+                    group.computeIfAbsent(samples.timestamps[i], key -> new Values()).add(samples.values[i]);
+                }
+            }
+        }
+
+        return groups;
+    }
+
+    /**
+     * Select the series matching the given selectors.
+     * @author Griefed
+     * @param names The names of all series, by id.
+     * @param source String. The host, <code>null</code> or <code>*</code> for all.
+     * @param component String. The component, <code>null</code> or <code>*</code> for all.
+     * @param metric String. The metric, <code>null</code> or <code>*</code> for all.
+     * @return boolean array. Whether a series is selected, by id.
+     */
+    private boolean[] select(String[][] names, String source, String component, String metric) {
+        boolean[] selected = new boolean[names.length];
+
+        for (int id = 0; id < names.length; id++) {
+            selected[id] = matches(source, names[id][0]) && matches(component, names[id][1]) && matches(metric, names[id][2]);
+        }
+
+        return selected;
+    }
+
+    /**
+     * Read the selected series, from the given rollup or from raw samples, and aggregate them into buckets.
+     * @author Griefed
+     * @param names The names of all series, by id.
+     * @param selected Whether a series is selected, by id.
+     * @param rollup The rollup to read from, <code>null</code> for raw samples.
+     * @param resolution Long. The length of a bucket, in seconds. <code>0</code> for raw samples.
+     * @param from Long. Start of the range, in seconds since the epoch.
+     * @param to Long. End of the range, in seconds since the epoch.
+     * @param aggregation How the samples in a bucket are aggregated.
+     * @return The buckets of the selected series, by id. Not finished yet.
+     */
+    private Bucket[] read(String[][] names, boolean[] selected, TimeSeriesRollup rollup, long resolution, long from, long to, Aggregation aggregation) {
+        Bucket[] buckets = new Bucket[names.length];
+        for (int id = 0; id < names.length; id++) {
+            if (selected[id]) {
+                buckets[id] = new Bucket(resolution, aggregation);
+            }
+        }
+
+        if (rollup == null) {
+
+            STORE.read(selected, from, to, (id, second, value) -> buckets[id].add(second, value, 1));
+
+        } else {
+
+            // The current bucket of a rollup, and possibly the previous one, are not written yet, so they are read from raw samples.
+            long written = Math.floorDiv(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()), rollup.getResolution()) * rollup.getResolution() - rollup.getResolution();
+            long aligned = resolution == 0 ? from : Math.floorDiv(from, resolution) * resolution;
+
+            readRollup(rollup, names, selected, aligned, Math.min(to, written - 1), resolution, aggregation, buckets);
+
+            if (to >= written) {
+                STORE.read(selected, Math.max(aligned, written), to, (id, second, value) -> buckets[id].add(second, value, 1));
+            }
+
+        }
+
+        return buckets;
+    }
+
+    /**
+     * Getter for the names of all series matching the given selectors.
+     * @author Griefed
+     * @param source String. The host, <code>null</code> or <code>*</code> for all.
+     * @param component String. The component, <code>null</code> or <code>*</code> for all.
+     * @param metric String. The metric, <code>null</code> or <code>*</code> for all.
+     * @return List of String arrays. Host, component and metric of every matching series.
+     */
+    public List<String[]> getSeries(String source, String component, String metric) {
+        if (STORE == null) {
+            return Collections.emptyList();
+        }
+
+        String[][] names = getNames();
+        boolean[] selected = select(names, source, component, metric);
+        List<String[]> series = new ArrayList<>();
+
+        for (int id = 0; id < names.length; id++) {
+            if (selected[id]) {
+                series.add(Arrays.copyOf(names[id], 3));
+            }
+        }
+
+        return series;
+    }
+
+    /**
+     * Check that a query does not return more values than allowed, before anything is read. Every selected series counts
+     * with one value per bucket in the range. Raw samples are counted as one per polling interval, as which every host
+     * is sampled.
+     * @author Griefed
+     * @param selected Whether a series is selected, by id.
+     * @param from Long. Start of the range, in seconds since the epoch.
+     * @param to Long. End of the range, in seconds since the epoch.
+     * @param resolution Long. The length of a bucket in seconds, <code>0</code> for raw samples.
+     * @return Integer. The number of selected series.
+     * @throws IllegalArgumentException if the query would return more than <code>de.griefed.monitoring.history.query.points</code> values.
+     */
+    private int limit(boolean[] selected, long from, long to, long resolution) {
+        int count = 0;
+        for (boolean isSelected : selected) {
+            if (isSelected) {
+                count++;
+            }
+        }
+
+        long interval = resolution > 0 ? resolution : Math.max(1, TimeUnit.MILLISECONDS.toSeconds(PROPERTIES.getPollingRate()));
+        long points = (to - from) / interval + 1;
+        long allowed = PROPERTIES.getHistoryQueryPoints();
+
+        if (count > 0 && points > allowed / count) {
+            throw new IllegalArgumentException("Query of " + count + " series with " + points + " values each exceeds " + allowed + " values.");
+        }
+
+        return count;
+    }
+
+    /**
+     * Pick the rollup to answer a query from. This is the coarsest rollup whose resolution does not exceed the step. If
+     * its retention does not reach back to the start of the range, the next coarser one is taken, until one does.
+     * @author Griefed
+     * @param from Long. Start of the range, in seconds since the epoch.
+     * @param step Long. The requested resolution, in seconds.
+     * @return The rollup, or <code>null</code> for raw samples.
+     */
+    private TimeSeriesRollup plan(long from, long step) {
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        int index = -1;
+
+        for (int i = 0; i < ROLLUPS.size(); i++) {
+            if (ROLLUPS.get(i).getResolution() <= step) {
+                index = i;
+            }
+        }
+
+        while (index + 1 < ROLLUPS.size() && from < now - (index < 0 ? RETENTION : ROLLUPS.get(index).getRetention())) {
+            index++;
+        }
+
+        return index < 0 ? null : ROLLUPS.get(index);
+    }
+
+    /**
+     * Read the aggregates of the selected series from a rollup. Averages are weighted by the number of samples they
+     * were taken over, so buckets which span several buckets of the rollup average correctly.
+     * @author Griefed
+     * @param rollup The rollup to read from.
+     * @param names The names of all series, by id.
+     * @param selected Whether a series is selected, by id.
+     * @param from Long. Start of the range, in seconds since the epoch.
+     * @param to Long. End of the range, in seconds since the epoch.
+     * @param resolution Long. The length of a bucket, in seconds.
+     * @param aggregation How the samples in a bucket are aggregated.
+     * @param buckets Receives the aggregates, by id of the aggregated series.
+     */
+    private void readRollup(TimeSeriesRollup rollup, String[][] names, boolean[] selected, long from, long to, long resolution,
+                            Aggregation aggregation, Bucket[] buckets) {
+        TimeSeriesStore store = rollup.getStore();
+        int length = store.getSize();
+
+        // Counts are only needed if a bucket spans several buckets of the rollup, otherwise every bucket has a single average.
+        boolean weighted = aggregation == Aggregation.AVG && resolution > rollup.getResolution();
+
+        // Which aggregated series an aggregate belongs to, by id of the aggregate, and whether it is a count.
+        int[] owners = new int[length];
+        boolean[] weights = new boolean[length];
+        boolean[] aggregates = new boolean[length];
+
+        for (int id = 0; id < names.length; id++) {
+            if (selected[id]) {
+                String key = names[id][3] + "\t";
+
+                int value = store.find(key + TimeSeriesRollup.AGGREGATES[aggregation.AGGREGATE]);
+                if (value >= 0 && value < length) {
+                    owners[value] = id;
+                    aggregates[value] = true;
+                }
+
+                if (weighted) {
+                    int count = store.find(key + TimeSeriesRollup.AGGREGATES[TimeSeriesRollup.COUNT]);
+                    if (count >= 0 && count < length) {
+                        owners[count] = id;
+                        weights[count] = true;
+                        aggregates[count] = true;
+                    }
+                }
+            }
+        }
+
+        if (!weighted) {
+
+            store.read(aggregates, from, to, (id, second, value) -> buckets[owners[id]].add(second, value, 1));
+
+        } else {
+
+            // Averages and their counts arrive interleaved, they are matched by their timestamps afterwards.
+            Samples[] averages = new Samples[names.length];
+            Samples[] counts = new Samples[names.length];
+
+            store.read(aggregates, from, to, (id, second, value) -> {
+                Samples[] target = weights[id] ? counts : averages;
+
+                if (target[owners[id]] == null) {
+                    target[owners[id]] = new Samples();
+                }
+                target[owners[id]].add(second, value);
+            });
+
+            for (int id = 0; id < names.length; id++) {
+                if (averages[id] != null && counts[id] != null) {
+                    Samples average = averages[id];
+                    Samples weight = counts[id];
+
+                    for (int i = 0, j = 0; i < average.size && j < weight.size; ) {
+                        if (average.timestamps[i] == weight.timestamps[j]) {
+                            buckets[id].add(average.timestamps[i], average.values[i], weight.values[j]);
+                            i++;
+                            j++;
+                        } else if (average.timestamps[i] < weight.timestamps[j]) {
+                            i++;
+                        } else {
+                            j++;
+                        }
+                    }
+                }
+            }
+
+        }
+    }
+
+    /**
+     * Getter for the names of all series. Keys are only split once, the names of new series are added on demand.
+     * @author Griefed
+     * @return Array of host, component, metric and key, by id.
+     */
+    private synchronized String[][] getNames() {
+        List<String> keys = STORE.getKeys();
+
+        if (keys.size() > names.length) {
+            String[][] extended = Arrays.copyOf(names, keys.size());
+
+            for (int id = names.length; id < keys.size(); id++) {
+                extended[id] = split(keys.get(id));
+            }
+
+            names = extended;
+        }
+
+        return names;
+    }
+
+    /**
+     * Split the key of a series into host, component and metric.
+     * @author Griefed
+     * @param key String. The key of the series.
+     * @return String array. Host, component, metric and the key itself.
+     */
+    private String[] split(String key) {
+        int tab = key.indexOf('\t');
+        int separator = key.indexOf('.', tab + 1);
+
+        if (separator < 0) {
+            return new String[] {key.substring(0, tab), key.substring(tab + 1), "", key};
+        }
+
+        return new String[] {key.substring(0, tab), key.substring(tab + 1, separator), key.substring(separator + 1), key};
+    }
+
+    /**
+     * Check whether a name matches a selector.
+     * @author Griefed
+     * @param selector String. The selector, <code>null</code>, empty or <code>*</code> for any.
+     * @param name String. The name.
+     * @return Boolean. <code>true</code> if the name matches.
+     */
+    private boolean matches(String selector, String name) {
+        return selector == null || selector.isEmpty() || selector.equals("*") || selector.equals(name);
+    }
+
+    /**
+     * Getter for the statistics of the history.
+     * @author Griefed
+     * @return String in JSON format. The number of documents waiting to be stored and dropped because too many were
+     * waiting, and the statistics of the raw samples and every rollup. <code>null</code> if history is disabled.
+     */
+    public String getStatistics() {
+        if (STORE == null) {
+            return "null";
+        }
+
+        StringBuilder statistics = new StringBuilder(512);
+        statistics.append("{\"pending\": ").append(RECORDER.getQueue().size())
+                .append(",\"dropped\": ").append(DROPPED.get())
+                .append(",\"raw\": ").append(STORE.getStatistics());
+
+        for (TimeSeriesRollup rollup : ROLLUPS) {
+            statistics.append(",\"").append(rollup.getName()).append("\": ").append(rollup.getStore().getStatistics());
+        }
+
+        return statistics.append("}").toString();
+    }
+
+    /**
+     * Store the documents still waiting, write all samples and aggregates to disk and close the stores when the
+     * application shuts down.
+     * @author Griefed
+     */
+    @PreDestroy
+    public void shutdown() {
+        QUERY.shutdownNow();
+        RECORDER.shutdown();
+
+        try {
+            if (!RECORDER.awaitTermination(10, TimeUnit.SECONDS)) {
+                LOG.warn("Documents still waiting to be recorded were dropped.");
+                RECORDER.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (STORE != null) {
+            ROLLUPS.forEach(TimeSeriesRollup::close);
+            STORE.close();
+        }
+    }
+
+    /**
+     * How the samples in a bucket are aggregated.
+     * @author Griefed
+     */
+    public enum Aggregation {
+        MIN(TimeSeriesRollup.MIN),
+        MAX(TimeSeriesRollup.MAX),
+        AVG(TimeSeriesRollup.AVG),
+        LAST(TimeSeriesRollup.LAST);
+
+        private final int AGGREGATE;
+
+        /**
+         * Constructor of an aggregation.
+         * @author Griefed
+         * @param aggregate Integer. Index of the matching aggregate of a {@link TimeSeriesRollup}.
+         */
+        Aggregation(int aggregate) {
+            this.AGGREGATE = aggregate;
+        }
+    }
+
+    /**
+     * How the buckets of several series are combined by {@link #aggregate(String, String, String, long, long, long, Aggregation, Statistic)}.
+     * Percentiles are nearest-rank percentiles.
+     * @author Griefed
+     */
+    public enum Statistic {
+        MIN,
+        MAX,
+        AVG,
+        SUM,
+        COUNT,
+        P50,
+        P90,
+        P95,
+        P99
+    }
+
+    /**
+     * The values of several series in one bucket.
+     * @author Griefed
+     */
+    private static final class Values {
+
+        private double[] values = new double[16];
+        private int size = 0;
+
+        /**
+         * Add the value of a series, growing the array as needed.
+         * @author Griefed
+         * @param value Double. The value of a series in this bucket.
+         */
+        private void add(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        /**
+         * Add the values of another partition of series in the same bucket.
+         * @author Griefed
+         * @param other The values to add.
+         * @return These values, now including the others.
+         */
+        private Values addAll(Values other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Combine the values. Percentiles are nearest-rank percentiles of the sorted values.
+         * @author Griefed
+         * @param statistic How the values are combined.
+         * @return Double. The combined value, <code>0</code> if there are no values.
+         */
+        private double compute(Statistic statistic) {
+            switch (statistic) {
+                case MIN:
+                    return Arrays.stream(values, 0, size).min().orElse(0);
+                case MAX:
+                    return Arrays.stream(values, 0, size).max().orElse(0);
+                case SUM:
+                    return Arrays.stream(values, 0, size).sum();
+                case COUNT:
+                    return size;
+                case AVG:
+                    return Arrays.stream(values, 0, size).average().orElse(0);
+                default:
+                    double[] sorted = Arrays.copyOf(values, size);
+                    Arrays.sort(sorted);
+                    int percentile = Integer.parseInt(statistic.name().substring(1));
+                    return sorted[Math.max(0, (int) Math.ceil(percentile / 100.0 * size) - 1)];
+            }
+        }
+    }
+
+    /**
+     * Receives the numeric values of a document.
+     * @author Griefed
+     */
+    @FunctionalInterface
+    private interface ValueConsumer {
+
+        void accept(String path, double value) throws IOException;
+    }
+
+    /**
+     * Aggregates the samples of one series into buckets of a fixed length. Samples must arrive in order. Without a
+     * length, every sample is passed on as it is.
+     * @author Griefed
+     */
+    private static final class Bucket {
+
+        private final long RESOLUTION;
+        private final Aggregation AGGREGATION;
+        private final Samples SAMPLES = new Samples();
+
+        private long start;
+        private double min;
+        private double max;
+        private double sum;
+        private double weight;
+        private double last;
+        private boolean empty = true;
+
+        /**
+         * Constructor of a bucket, empty until the first sample is added.
+         * @author Griefed
+         * @param resolution Long. The length of a bucket in seconds, <code>0</code> to pass every sample on as it is.
+         * @param aggregation How the samples in a bucket are aggregated.
+         */
+        private Bucket(long resolution, Aggregation aggregation) {
+            this.RESOLUTION = resolution;
+            this.AGGREGATION = aggregation;
+        }
+
+        /**
+         * Add a sample. If it belongs to a later bucket than the current one, the current one is finished first. Samples
+         * which are not a number are skipped.
+         * @author Griefed
+         * @param second Long. Time of the sample, in seconds since the epoch.
+         * @param value Double. Value of the sample.
+         * @param samples Double. The number of samples the value was taken over, which weighs it in averages.
+         */
+        private void add(long second, double value, double samples) {
+            if (Double.isNaN(value)) {
+                return;
+            }
+
+            long bucket = RESOLUTION == 0 ? second : Math.floorDiv(second, RESOLUTION) * RESOLUTION;
+
+            if (!empty && bucket != start) {
+                finish();
+            }
+
+            if (empty) {
+                start = bucket;
+                min = value;
+                max = value;
+                sum = 0;
+                weight = 0;
+                empty = false;
+            }
+
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            sum += value * samples;
+            weight += samples;
+            last = value;
+        }
+
+        /**
+         * Finish the current bucket, if any, and append its aggregated value to the samples of the series.
+         * @author Griefed
+         * @return Integer. The number of samples of the series so far.
+         */
+        private int finish() {
+            if (!empty) {
+                double value;
+
+                switch (AGGREGATION) {
+                    case MIN:
+                        value = min;
+                        break;
+                    case MAX:
+                        value = max;
+                        break;
+                    case LAST:
+                        value = last;
+                        break;
+                    default:
+                        value = weight > 0 ? sum / weight : last;
+                        break;
+                }
+
+                SAMPLES.add(TimeUnit.SECONDS.toMillis(start), value);
+                empty = true;
+            }
+
+            return SAMPLES.size;
+        }
+    }
+
+    /**
+     * Samples of one series collected by a query.
+     * @author Griefed
+     */
+    private static final class Samples {
+
+        private long[] timestamps = new long[64];
+        private double[] values = new double[64];
+        private int size = 0;
+
+        /**
+         * Append a sample, growing the arrays as needed.
+         * @author Griefed
+         * @param timestamp Long. Timestamp of the sample, in milliseconds since the epoch.
+         * @param value Double. Value of the sample.
+         */
+        private void add(long timestamp, double value) {
+            if (size == timestamps.length) {
+                timestamps = Arrays.copyOf(timestamps, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            timestamps[size] = timestamp;
+            values[size] = value;
+            size++;
+        }
+    }
+}
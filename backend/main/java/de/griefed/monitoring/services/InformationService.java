@@ -22,26 +22,40 @@
  */
 package de.griefed.monitoring.services;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import de.griefed.monitoring.ApplicationProperties;
 import de.griefed.monitoring.components.*;
+import de.griefed.monitoring.models.AgentTable;
+import de.griefed.monitoring.models.AgentTransport;
+import de.griefed.monitoring.models.ComponentInformation;
+import de.griefed.monitoring.models.InformationModel;
+import de.griefed.monitoring.models.Snapshot;
+import de.griefed.monitoring.utilities.DocumentWriter;
 import de.griefed.monitoring.utilities.MailNotification;
+import de.griefed.monitoring.utilities.SnapshotHolder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
-import javax.mail.MessagingException;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
-import java.net.InetAddress;
-import java.net.InetSocketAddress;
-import java.net.Socket;
-import java.net.UnknownHostException;
-import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /**
  * Class responsible for collecting information from all components and building a JSON string with them.
@@ -54,248 +68,600 @@ public class InformationService {
 
     private final CpuComponent CPU_COMPONENT;
     private final DiskComponent DISK_COMPONENT;
+    private final DiskIoComponent DISK_IO_COMPONENT;
     private final HostComponent HOST_COMPONENT;
     private final OsComponent OS_COMPONENT;
     private final RamComponent RAM_COMPONENT;
     private final ApplicationProperties PROPERTIES;
-    private final RestTemplate REST_TEMPLATE;
+    private final ObjectMapper MAPPER = new ObjectMapper();
+    private final AgentTransport AGENT_TRANSPORT;
     private final MailNotification MAIL_NOTIFICATION;
-    private final String OK = "{\"status\": " + 0 + ",\"message\": \"Everything in order.\",";
-    private final String AGENT_OK = "{\"agent\": \"%s\",\"dialog\": false,";
+    private final AgentPollingService AGENT_POLLING_SERVICE;
+    private final LivenessService LIVENESS_SERVICE;
+    private final AgentDeltaService AGENT_DELTA_SERVICE;
+    private final StreamService STREAM_SERVICE;
+    private final HistoryService HISTORY_SERVICE;
+    private final SummaryService SUMMARY_SERVICE;
+    private final List<InformationModel> COMPONENTS;
+    private final ExecutorService COLLECTOR;
+    private final Tier FAST;
+    private final Tier SLOW;
+    private final String EPOCH = Long.toHexString(System.currentTimeMillis());
     private final String AGENT_DOWN = "{\"status\": " + 1 + ",\"message\": \"Host down or unreachable.\",\"agent\": \"%s\"}";
     private final String AGENT_UNREACHABLE = "{\"status\": " + 2 + ",\"message\": \"Host up, but agent not reachable.\",\"agent\": \"%s\"}";
+    private final String AGENT_TIMEOUT = "{\"status\": " + 2 + ",\"message\": \"Agent did not answer in time.\",\"agent\": \"%s\"}";
 
-    private String agentInformation = "";
-    private String hostInformation = "";
+    private final SnapshotHolder<VersionedComponents> HOST_INFORMATION = new SnapshotHolder<>();
+    private final SnapshotHolder<AgentTable> AGENTS_INFORMATION = new SnapshotHolder<>();
 
     /**
      * Constructor responsible for DI.
      * @author Griefed
      * @param injectedCpuComponent Instance of {@link CpuComponent}.
      * @param injectedDiskComponent Instance of {@link DiskComponent}.
+     * @param injectedDiskIoComponent Instance of {@link DiskIoComponent}.
      * @param injectedHostComponent Instance of {@link HostComponent}.
      * @param injectedOsComponent Instance of {@link OsComponent}.
      * @param injectedRamComponent Instance of {@link RamComponent}.
      * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
      * @param injectedMailNotification Instance of {@link MailNotification}.
+     * @param injectedAgentPollingService Instance of {@link AgentPollingService}.
+     * @param injectedLivenessService Instance of {@link LivenessService}.
+     * @param injectedResolverService Instance of {@link ResolverService}.
+     * @param injectedAgentDeltaService Instance of {@link AgentDeltaService}.
+     * @param injectedStreamService Instance of {@link StreamService}.
+     * @param injectedHistoryService Instance of {@link HistoryService}.
+     * @param injectedSummaryService Instance of {@link SummaryService}.
      */
     @Autowired
-    public InformationService(CpuComponent injectedCpuComponent, DiskComponent injectedDiskComponent, HostComponent injectedHostComponent,
-                              OsComponent injectedOsComponent, RamComponent injectedRamComponent, ApplicationProperties injectedApplicationProperties,
-                              MailNotification injectedMailNotification
+    public InformationService(CpuComponent injectedCpuComponent, DiskComponent injectedDiskComponent, DiskIoComponent injectedDiskIoComponent,
+                              HostComponent injectedHostComponent, OsComponent injectedOsComponent, RamComponent injectedRamComponent, ApplicationProperties injectedApplicationProperties,
+                              MailNotification injectedMailNotification, AgentPollingService injectedAgentPollingService,
+                              LivenessService injectedLivenessService, ResolverService injectedResolverService,
+                              AgentDeltaService injectedAgentDeltaService, StreamService injectedStreamService,
+                              HistoryService injectedHistoryService, SummaryService injectedSummaryService
     ) {
         this.CPU_COMPONENT = injectedCpuComponent;
         this.DISK_COMPONENT = injectedDiskComponent;
+        this.DISK_IO_COMPONENT = injectedDiskIoComponent;
         this.HOST_COMPONENT = injectedHostComponent;
         this.OS_COMPONENT = injectedOsComponent;
         this.RAM_COMPONENT = injectedRamComponent;
         this.PROPERTIES = injectedApplicationProperties;
-        this.REST_TEMPLATE = new RestTemplateBuilder()
-                .setConnectTimeout(Duration.ofSeconds(PROPERTIES.getTimeoutConnect()))
-                .setReadTimeout(Duration.ofSeconds(PROPERTIES.getTimeoutRead()))
-                .build();
+        if (PROPERTIES.isHttpAsync()) {
+            this.AGENT_TRANSPORT = new WebClientAgentTransport(PROPERTIES, injectedResolverService);
+        } else {
+            this.AGENT_TRANSPORT = new RestTemplateAgentTransport(PROPERTIES);
+        }
         this.MAIL_NOTIFICATION = injectedMailNotification;
+        this.AGENT_POLLING_SERVICE = injectedAgentPollingService;
+        this.LIVENESS_SERVICE = injectedLivenessService;
+        this.AGENT_DELTA_SERVICE = injectedAgentDeltaService;
+        this.STREAM_SERVICE = injectedStreamService;
+        this.HISTORY_SERVICE = injectedHistoryService;
+        this.SUMMARY_SERVICE = injectedSummaryService;
+        this.COMPONENTS = Arrays.asList(HOST_COMPONENT, OS_COMPONENT, CPU_COMPONENT, DISK_COMPONENT, DISK_IO_COMPONENT, RAM_COMPONENT);
+
+        // One thread per component and tier is enough, as a component is never updated again on a tier while a previous
+        // update on that tier still runs.
+        CustomizableThreadFactory collectorThreads = new CustomizableThreadFactory("collect-");
+        collectorThreads.setDaemon(true);
+        this.COLLECTOR = Executors.newFixedThreadPool(COMPONENTS.size() * 2, collectorThreads);
+        this.FAST = new Tier(COMPONENTS.size());
+        this.SLOW = new Tier(COMPONENTS.size());
     }
 
     /**
-     * Retrieve all information about the host.
+     * Release the connections of the agent transport and the collector threads when the application shuts down.
      * @author Griefed
      */
-    public void setHostInformation() {
-        this.hostInformation = OK +
-                HOST_COMPONENT.toString() + "," +
-                OS_COMPONENT.toString() + "," +
-                CPU_COMPONENT.toString() + "," +
-                DISK_COMPONENT.toString() + "," +
-                RAM_COMPONENT.toString() + "}";
+    @PreDestroy
+    public void shutdown() {
+        AGENT_TRANSPORT.close();
+        COLLECTOR.shutdownNow();
     }
 
     /**
-     * Update host information.
+     * Retrieve all information about the host. Every component whose information changed since the last call gets a new
+     * version, for use in {@link #retrieveAgentInformation(String, String)}. Only changed components are serialized again,
+     * the others are embedded as they were serialized before. If no component changed at all, the documents are kept as
+     * they are. A component which became stale, or is no longer stale, counts as changed.<br>
+     * The components, their versions and the documents built from them are published together, so readers never see
+     * a document which does not match the versions.
      * @author Griefed
      */
-    @Scheduled(cron = "${de.griefed.monitoring.schedule.update}")
-    private void updateHostInformation() {
-        HOST_COMPONENT.updateValues();
-        OS_COMPONENT.updateValues();
-        CPU_COMPONENT.updateValues();
-        DISK_COMPONENT.updateValues();
-        RAM_COMPONENT.updateValues();
+    public synchronized void setHostInformation() {
+        SnapshotHolder.Published<VersionedComponents> published = HOST_INFORMATION.get();
+        VersionedComponents previous = published == null ? null : published.getValue();
+
+        ComponentInformation[] information = new ComponentInformation[COMPONENTS.size()];
+        String[] values = new String[COMPONENTS.size()];
+        long[] versions = new long[COMPONENTS.size()];
+        boolean[] stale = getStale();
+        boolean changed = previous == null;
+
+        for (int i = 0; i < COMPONENTS.size(); i++) {
+            information[i] = COMPONENTS.get(i).getInformation();
+
+            if (previous != null && information[i].equals(previous.INFORMATION[i]) && stale[i] == previous.STALE[i]) {
+                values[i] = previous.VALUES[i];
+                versions[i] = previous.VERSIONS[i];
+            } else {
+                values[i] = DocumentWriter.write(information[i]);
+                versions[i] = previous == null ? 1 : previous.VERSIONS[i] + 1;
+                changed = true;
+            }
+        }
 
-        setHostInformation();
+        if (!changed) {
+            return;
+        }
+
+        VersionedComponents current = new VersionedComponents(information, values, versions, stale);
+
+        Snapshot agentDocument = new Snapshot(buildAgentDocument(current, false, Collections.emptyMap()));
+        Snapshot hostDocument = new Snapshot(DocumentWriter.write(generator -> {
+            generator.writeStartObject();
+            writeStatus(generator);
+            writeStale(generator, current);
+            for (int i = 0; i < COMPONENTS.size(); i++) {
+                generator.writeFieldName(COMPONENTS.get(i).getName());
+                generator.writeRawValue(current.VALUES[i]);
+            }
+            generator.writeEndObject();
+        }));
+
+        HOST_INFORMATION.publish(new VersionedComponents(current, hostDocument, agentDocument));
+
+        STREAM_SERVICE.publish("host", hostDocument);
     }
 
     /**
-     * Retrieve all information about the host.
+     * Update the values of all components which change quickly, like usages, loads and rates, and record them in the
+     * history. Runs on <code>de.griefed.monitoring.schedule.update</code>.
      * @author Griefed
-     * @return String in JSON format. Returns all information about the host.
      */
-    public String retrieveHostInformation() {
+    public void updateHostInformation() {
+        collect(FAST, InformationModel::updateValues);
+        setHostInformation();
 
-        if (hostInformation == null || hostInformation.length() == 0) {
-            updateHostInformation();
+        SnapshotHolder.Published<VersionedComponents> published = HOST_INFORMATION.get();
+        if (published != null) {
+            HISTORY_SERVICE.record("host", published.getValue().HOST_DOCUMENT.getJson());
         }
+    }
 
-        return hostInformation;
+    /**
+     * Update the values of all components which change slowly, like mounts, network interfaces and names. Runs on
+     * <code>de.griefed.monitoring.schedule.update.slow</code>.
+     * @author Griefed
+     */
+    public void updateSlowHostInformation() {
+        collect(SLOW, InformationModel::updateSlowValues);
+        setHostInformation();
     }
 
     /**
-     * Retrieve all information about the configured agent(s) and stores it in memory for retrieval by {@link #retrieveAgentsInformation()}.
+     * Update all components at the same time and wait for them for at most <code>de.griefed.monitoring.timeout.component</code>
+     * seconds. A component which did not finish in time, or failed, keeps its previous information and is marked as stale.
+     * Its update keeps running in the background, and the component is skipped on this tier until it finished, so a hung
+     * component occupies no more than one thread per tier. The fast and the slow tier keep track of their updates separately,
+     * so a slow update which is still running neither stands in for a fast one nor the other way around.
      * @author Griefed
+     * @param tier The tier to update, either the fast or the slow one.
+     * @param update The update to run for every component.
      */
-    public void setAgentsInformation() {
-        StringBuilder stringBuilder = new StringBuilder();
+    private void collect(Tier tier, Consumer<InformationModel> update) {
+        synchronized (tier) {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(PROPERTIES.getTimeoutComponent());
+
+            for (int i = 0; i < COMPONENTS.size(); i++) {
+                if (tier.PENDING[i] == null || tier.PENDING[i].isDone()) {
+                    InformationModel component = COMPONENTS.get(i);
+                    tier.PENDING[i] = COLLECTOR.submit(() -> update.accept(component));
+                }
+            }
 
-        // If agent-configuration is default, do not retrieve anything.
-        if (PROPERTIES.getAgents().get(0).split(",")[0].equals("127.0.0.1") && PROPERTIES.getAgents().size() == 1) {
+            for (int i = 0; i < COMPONENTS.size(); i++) {
+                boolean stale = true;
 
-            LOG.warn("WARNING! Agents are not configured! Not retrieving information.");
+                try {
 
-            this.agentInformation = "{\"status\": " + 1 + ",\"message\": \"Agents are not configured! Not retrieving information.\"}";
+                    tier.PENDING[i].get(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    stale = false;
 
-        } else {
+                } catch (TimeoutException ex) {
 
-            stringBuilder.append("{\"agents").append("\": [");
+                    LOG.warn("Component " + COMPONENTS.get(i).getName() + " did not update in time. Reporting its previous information.");
 
-            // Retrieve all information for all agents if more than one is configured
-            if (PROPERTIES.getAgents().size() > 1) {
+                } catch (ExecutionException ex) {
 
+                    LOG.error("Error updating component " + COMPONENTS.get(i).getName() + ".", ex.getCause());
 
+                } catch (InterruptedException ex) {
 
-                stringBuilder.append(getResponse(PROPERTIES.getAgents().get(0).split(",")[0])).append(",");
+                    Thread.currentThread().interrupt();
 
-                for (int i = 1; i < PROPERTIES.getAgents().size() - 1; i++) {
+                }
 
-                    stringBuilder.append(getResponse(PROPERTIES.getAgents().get(i).split(",")[0])).append(",");
+                synchronized (tier.STALE) {
+                    tier.STALE[i] = stale;
+                }
+            }
+        }
+    }
 
+    /**
+     * Getter for which components did not finish their last update on either tier.
+     * @author Griefed
+     * @return Boolean array. The stale flag of every component.
+     */
+    private boolean[] getStale() {
+        boolean[] stale = new boolean[COMPONENTS.size()];
+
+        for (Tier tier : new Tier[] {FAST, SLOW}) {
+            synchronized (tier.STALE) {
+                for (int i = 0; i < stale.length; i++) {
+                    stale[i] |= tier.STALE[i];
                 }
+            }
+        }
 
-                stringBuilder.append(getResponse(PROPERTIES.getAgents().get(PROPERTIES.getAgents().size() - 1).split(",")[0]));
+        return stale;
+    }
 
+    /**
+     * Retrieve the latest components, their versions and documents. If nothing was gathered yet, the components are
+     * updated once, no matter how many requests arrive at the same time.
+     * @author Griefed
+     * @return The latest components.
+     */
+    private VersionedComponents retrieveVersionedComponents() {
+        return HOST_INFORMATION.getOrRefresh(this::updateHostInformation).getValue();
+    }
 
+    /**
+     * Retrieve all information about the host.
+     * @author Griefed
+     * @return Snapshot of the JSON document. Returns all information about the host.
+     */
+    public Snapshot retrieveHostInformation() {
+        return retrieveVersionedComponents().HOST_DOCUMENT;
+    }
 
-                // Retrieve information for agent if only one is configured
-            } else {
+    /**
+     * Retrieve the information about the host for a monitor. If the monitor passes the epoch and component versions it
+     * already knows, only the components which changed since are returned, or <code>null</code> if none did. If the
+     * epoch does not match, for example because this agent restarted, all components are returned.
+     * @author Griefed
+     * @param epoch String. The epoch the monitor knows, or <code>null</code>.
+     * @param versions String. The versions the monitor knows, in the format <code>host:3,os:1</code>, or <code>null</code>.
+     * @return Snapshot of the JSON document. Returns the changed information about the host, or <code>null</code> if nothing changed.
+     */
+    public Snapshot retrieveAgentInformation(String epoch, String versions) {
+        VersionedComponents current = retrieveVersionedComponents();
+
+        if (!EPOCH.equals(epoch) || versions == null) {
+            return current.AGENT_DOCUMENT;
+        }
 
-                stringBuilder.append(getResponse(PROPERTIES.getAgents().get(0).split(",")[0]));
+        Map<String, Long> known = new HashMap<>(COMPONENTS.size());
+        for (String version : versions.split(",")) {
+            String[] entry = version.split(":");
 
+            if (entry.length == 2) {
+                try {
+                    known.put(entry[0], Long.parseLong(entry[1]));
+                } catch (NumberFormatException ignored) {}
             }
+        }
 
-            stringBuilder.append("]}");
+        String document = buildAgentDocument(current, true, known);
 
-            this.agentInformation = stringBuilder.toString();
+        return document == null ? null : new Snapshot(document);
+    }
+
+    /**
+     * Build the document an agent answers a monitor with.
+     * @author Griefed
+     * @param current The current components and their versions.
+     * @param delta Boolean. Whether to only include components whose version differs from <code>known</code>.
+     * @param known Map of the component versions known to the monitor, by name.
+     * @return String in JSON format. The document, or <code>null</code> if this is a delta and nothing changed.
+     */
+    private String buildAgentDocument(VersionedComponents current, boolean delta, Map<String, Long> known) {
+        boolean[] changed = new boolean[COMPONENTS.size()];
+        boolean anyChanged = false;
 
+        for (int i = 0; i < COMPONENTS.size(); i++) {
+            changed[i] = !delta || !Long.valueOf(current.VERSIONS[i]).equals(known.get(COMPONENTS.get(i).getName()));
+            anyChanged |= changed[i];
         }
 
-        LOG.info("Retrieved information.");
+        if (!anyChanged) {
+            return null;
+        }
+
+        return DocumentWriter.write(generator -> {
+            generator.writeStartObject();
+            writeStatus(generator);
+            generator.writeStringField("epoch", EPOCH);
+            generator.writeBooleanField("delta", delta);
+            writeStale(generator, current);
 
+            generator.writeObjectFieldStart("versions");
+            for (int i = 0; i < COMPONENTS.size(); i++) {
+                generator.writeNumberField(COMPONENTS.get(i).getName(), current.VERSIONS[i]);
+            }
+            generator.writeEndObject();
+
+            for (int i = 0; i < COMPONENTS.size(); i++) {
+                if (changed[i]) {
+                    generator.writeFieldName(COMPONENTS.get(i).getName());
+                    generator.writeRawValue(current.VALUES[i]);
+                }
+            }
+            generator.writeEndObject();
+        });
     }
 
     /**
-     * Retrieve agents information.
+     * Write the status and message of a healthy host.
      * @author Griefed
-     * @return String in JSON format. Returns information about the configured agent(s).
+     * @param generator Instance of {@link JsonGenerator} to write to.
+     * @throws IOException if the generator fails to write.
      */
-    public String retrieveAgentsInformation() {
+    private void writeStatus(JsonGenerator generator) throws IOException {
+        generator.writeNumberField("status", 0);
+        generator.writeStringField("message", "Everything in order.");
+    }
 
-        if (agentInformation == null || agentInformation.length() == 0) {
-            setAgentsInformation();
+    /**
+     * Write the names of the components whose information is stale, because their last update did not finish in time.
+     * Always written, even if empty, so monitors which merge delta documents do not keep an outdated list.
+     * @author Griefed
+     * @param generator Instance of {@link JsonGenerator} to write to.
+     * @param current The current components and their stale flags.
+     * @throws IOException if the generator fails to write.
+     */
+    private void writeStale(JsonGenerator generator, VersionedComponents current) throws IOException {
+        generator.writeArrayFieldStart("stale");
+        for (int i = 0; i < COMPONENTS.size(); i++) {
+            if (current.STALE[i]) {
+                generator.writeString(COMPONENTS.get(i).getName());
+            }
         }
-
-        return agentInformation;
+        generator.writeEndArray();
     }
 
     /**
-     * Get information from an agent. If the HttpStatus is OK, the response is returned. If it is not, status 1 is returned,
-     * indicating that the agent has problems.
+     * Retrieve all information about the configured agent(s) and stores it in memory for retrieval by {@link #retrieveAgentsInformation()}.
+     * The information of every agent is recorded in the history, and added to the summary of all agents as soon as it arrives.
      * @author Griefed
-     * @param agent The agent to query.
-     * @return String in JSON format. Returns the information gathered from the agent.
      */
-    private String getResponse(String agent) {
-        // TODO: Implement token passing
-        ResponseEntity<String> response;
-        InetAddress address;
+    public void setAgentsInformation() {
+        StringBuilder stringBuilder = new StringBuilder();
+        AgentTable agentsInformation;
 
-        try {
+        // If agent-configuration is default, do not retrieve anything.
+        if (PROPERTIES.getAgents().get(0).split(",")[0].equals("127.0.0.1") && PROPERTIES.getAgents().size() == 1) {
 
-            String ping = agent.replace("http://","").replace("https://","");
+            LOG.warn("WARNING! Agents are not configured! Not retrieving information.");
+
+            agentsInformation = new AgentTable(new Snapshot("{\"status\": " + 1 + ",\"message\": \"Agents are not configured! Not retrieving information.\"}"));
+
+        } else {
+
+            stringBuilder.append("{\"agents").append("\": [");
 
-            if (ping.contains(":")) {
-                ping = ping.replace(ping.substring(ping.lastIndexOf(":")), "");
+            List<String> agents = new ArrayList<>(PROPERTIES.getAgents().size());
+            PROPERTIES.getAgents().forEach(agent -> agents.add(agent.split(",")[0]));
+
+            // Every document is parsed once, as soon as it fills the slot of its agent, and summarized right away.
+            JsonNode[] roots = new JsonNode[agents.size()];
+            AgentPollingService.SlotListener listener = (index, document) -> {
+                roots[index] = parse(agents.get(index), document);
+                SUMMARY_SERVICE.update(agents.get(index), document, roots[index]);
+            };
+
+            // Retrieve all information for all agents concurrently, keeping the configured order
+            List<String> documents;
+            if (PROPERTIES.isHttpAsync()) {
+                documents = AGENT_POLLING_SERVICE.pollAsync(agents, this::getResponseAsync,
+                        agent -> String.format(AGENT_TIMEOUT, agent), listener, PROPERTIES.getHttpPoolSize());
+            } else {
+                documents = AGENT_POLLING_SERVICE.poll(agents, this::getResponse,
+                        agent -> String.format(AGENT_TIMEOUT, agent), listener);
             }
 
-            LOG.info("Ping address: " + ping);
+            stringBuilder.append(String.join(",", documents));
 
-            address = InetAddress.getByName(ping);
+            for (int i = 0; i < agents.size(); i++) {
+                HISTORY_SERVICE.record(agents.get(i), roots[i]);
+            }
 
-        } catch (UnknownHostException ex) {
+            SUMMARY_SERVICE.retain(agents);
+            AGENT_DELTA_SERVICE.retain(agents);
 
-            LOG.error("Host " + agent + " unreachable or down.", ex);
-            return String.format(AGENT_DOWN, agent);
+            stringBuilder.append("]}");
+
+            SnapshotHolder.Published<AgentTable> previous = AGENTS_INFORMATION.get();
+            agentsInformation = new AgentTable(new Snapshot(stringBuilder.toString()), agents, documents, Arrays.asList(roots),
+                    previous == null ? null : previous.getValue());
 
         }
 
-        boolean reachable = false;
+        AGENTS_INFORMATION.publish(agentsInformation);
+        STREAM_SERVICE.publish("agents", agentsInformation.getDocument());
+        STREAM_SERVICE.publish("summary", SUMMARY_SERVICE.getSummary());
 
-        if (address != null) {
+        LOG.info("Retrieved information.");
 
-            try {
+    }
 
-                if (address.isReachable(PROPERTIES.getTimeoutConnect() * 1000)) {
-                    reachable = true;
-                }
+    /**
+     * Parse the document of an agent.
+     * @author Griefed
+     * @param agent String. The agent the document belongs to.
+     * @param document String in JSON format. The document of the agent.
+     * @return The parsed document, or a missing node if it is malformed.
+     */
+    private JsonNode parse(String agent, String document) {
+        try {
+            return MAPPER.readTree(document);
+        } catch (IOException ex) {
+            LOG.error("Could not parse document of agent " + agent + ".", ex);
+            return MissingNode.getInstance();
+        }
+    }
 
-            } catch (IOException ignored) {}
+    /**
+     * Retrieve agents information. If the agents were not queried yet, they are queried once, no matter how many requests
+     * arrive at the same time.
+     * @author Griefed
+     * @return Snapshot of the JSON document. Returns information about the configured agent(s).
+     */
+    public Snapshot retrieveAgentsInformation() {
+        return retrieveAgentTable().getDocument();
+    }
 
-            if (!reachable) {
+    /**
+     * Retrieve the table of all agents, to query pages of them. If the agents were not queried yet, they are queried once,
+     * no matter how many requests arrive at the same time.
+     * @author Griefed
+     * @return Instance of {@link AgentTable}. The documents of the configured agent(s), indexed.
+     */
+    public AgentTable retrieveAgentTable() {
+        return AGENTS_INFORMATION.getOrRefresh(this::setAgentsInformation).getValue();
+    }
 
-                for (int port : PROPERTIES.getPorts()) {
+    /**
+     * Getter for the sequence numbers and timestamps of the latest host and agents information.
+     * @author Griefed
+     * @return String in JSON format. The sequence number and publication time of both, <code>0</code> if not published yet.
+     */
+    public String getStatistics() {
+        return "{\"host\": " + getStatistics(HOST_INFORMATION.get()) + ",\"agents\": " + getStatistics(AGENTS_INFORMATION.get()) + "}";
+    }
 
-                    try (Socket soc = new Socket()) {
+    /**
+     * Getter for the sequence number and timestamp of a published value.
+     * @author Griefed
+     * @param published The published value, or <code>null</code>.
+     * @return String in JSON format. The sequence number and publication time, <code>0</code> if not published yet.
+     */
+    private String getStatistics(SnapshotHolder.Published<?> published) {
+        if (published == null) {
+            return "{\"sequence\": 0,\"timestamp\": 0}";
+        }
 
-                        soc.connect(new InetSocketAddress(address, port), 1000);
-                        reachable = true;
+        return "{\"sequence\": " + published.getSequence() + ",\"timestamp\": " + published.getTimestamp() + "}";
+    }
 
-                    } catch (IOException ignored) {}
+    /**
+     * Get information from an agent. If the HttpStatus is OK, the response is returned. If it is not, the host of the
+     * agent is probed by {@link LivenessService} to tell whether the host or only the agent is down. Blocks until the
+     * agent answered.
+     * @author Griefed
+     * @param agent The agent to query.
+     * @return String in JSON format. Returns the information gathered from the agent.
+     */
+    private String getResponse(String agent) {
+        // TODO: Implement token passing
+        LOG.info(String.format("Retrieving information for %s", agent));
 
-                }
-            }
+        try {
 
-        } else {
+            String document = toAgentDocument(agent, AGENT_TRANSPORT.fetch(agent, AGENT_DELTA_SERVICE.query(agent)).get());
+            LIVENESS_SERVICE.forget(agent);
+            return document;
 
-            LOG.error("Host " + agent + " unreachable or down.");
-            sendNotification(agent,1);
-            return String.format(AGENT_DOWN, agent);
+        } catch (InterruptedException ex) {
 
-        }
+            Thread.currentThread().interrupt();
+            return String.format(AGENT_UNREACHABLE, agent);
 
-        if (reachable) {
+        } catch (Exception ex) {
 
             try {
 
-                LOG.info(String.format("Retrieving information for %s", agent));
+                return toFailureDocument(agent, LIVENESS_SERVICE.probe(agent).get());
 
-                response = REST_TEMPLATE.getForEntity(agent + "/api/v1/agent", String.class);
+            } catch (InterruptedException ie) {
 
-                if (response.getStatusCode() == HttpStatus.OK) {
+                Thread.currentThread().interrupt();
+                return String.format(AGENT_UNREACHABLE, agent);
 
-                    return String.format(AGENT_OK, agent) + response.getBody().substring(1);
+            } catch (ExecutionException ee) {
 
-                } else {
+                return toFailureDocument(agent, false);
 
-                    LOG.error("Host " + agent + " reachable, but agent not.");
-                    sendNotification(agent,0);
-                    return String.format(AGENT_UNREACHABLE, agent);
+            }
+        }
+    }
 
-                }
+    /**
+     * Get information from an agent without blocking while waiting for its answer. A healthy agent costs exactly one
+     * HTTP request on the event-loop of the {@link AgentTransport}. Only if that fails, the host is probed and notifications
+     * are sent on the polling threads.
+     * @author Griefed
+     * @param agent The agent to query.
+     * @return CompletableFuture String in JSON format. Completes with the information gathered from the agent.
+     */
+    private CompletableFuture<String> getResponseAsync(String agent) {
+        LOG.info(String.format("Retrieving information for %s", agent));
 
-            } catch (Exception ex) {
+        return AGENT_TRANSPORT.fetch(agent, AGENT_DELTA_SERVICE.query(agent))
+                .thenApply(response -> toAgentDocument(agent, response))
+                .handle((document, throwable) -> {
 
-                LOG.error("Host " + agent + " reachable, but agent not.");
-                sendNotification(agent,0);
-                return String.format(AGENT_UNREACHABLE, agent);
-            }
+                    if (throwable == null) {
+                        LIVENESS_SERVICE.forget(agent);
+                        return CompletableFuture.completedFuture(document);
+                    }
+
+                    return CompletableFuture.supplyAsync(() -> LIVENESS_SERVICE.probe(agent), AGENT_POLLING_SERVICE.getExecutor())
+                            .thenCompose(Function.identity())
+                            .exceptionally(ex -> false)
+                            .thenApplyAsync(alive -> toFailureDocument(agent, alive), AGENT_POLLING_SERVICE.getExecutor());
+
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /**
+     * Build the document for an agent from its response, merging only the components it reported as changed.
+     * @author Griefed
+     * @param agent String. The agent which answered.
+     * @param response ResponseEntity String. The response of the agent.
+     * @return String in JSON format. Returns the information gathered from the agent.
+     * @throws IllegalArgumentException if the body is empty or malformed.
+     */
+    private String toAgentDocument(String agent, ResponseEntity<String> response) {
+        if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+            return AGENT_DELTA_SERVICE.notModified(agent);
+        }
+
+        if (response.getBody() == null || response.getBody().length() < 2) {
+            throw new IllegalArgumentException("Empty response from agent " + agent);
+        }
+
+        return AGENT_DELTA_SERVICE.merge(agent, response.getBody());
+    }
+
+    /**
+     * Build the document for an agent which did not answer and send the matching notification.
+     * @author Griefed
+     * @param agent String. The agent which did not answer.
+     * @param alive Boolean. Whether the host of the agent is up.
+     * @return String in JSON format. Returns the status of the agent.
+     */
+    private String toFailureDocument(String agent, boolean alive) {
+        if (alive) {
+
+            LOG.error("Host " + agent + " reachable, but agent not.");
+            sendNotification(agent,0);
+            return String.format(AGENT_UNREACHABLE, agent);
 
         } else {
 
@@ -304,8 +670,6 @@ public class InformationService {
             return String.format(AGENT_DOWN, agent);
 
         }
-
-
     }
 
     /**
@@ -316,36 +680,97 @@ public class InformationService {
      */
     private void sendNotification(String agent, int status) {
 
-        try {
-
-            switch (status) {
-                // Host up, but agent down
-                case 0:
-                    MAIL_NOTIFICATION.sendMailNotification(
-                            "WARNING! Agent unreachable!",
-                            "The host " + agent + " is reachable, but the agent is not. Is an agent setup or down?"
-                    );
-                    break;
-
-                // Host down
-                case 1:
-                    MAIL_NOTIFICATION.sendMailNotification(
-                            "CRITICAL! Host down!",
-                            "The host " + agent + " is unreachable or down!"
-                    );
-                    break;
-
-                // you what mate?
-                default:
-                    LOG.debug("Unknown status: " + status);
-                    break;
-            }
+        switch (status) {
+            // Host up, but agent down
+            case 0:
+                MAIL_NOTIFICATION.sendMailNotification(
+                        "WARNING! Agent unreachable!",
+                        "The host " + agent + " is reachable, but the agent is not. Is an agent setup or down?"
+                );
+                break;
+
+            // Host down
+            case 1:
+                MAIL_NOTIFICATION.sendMailNotification(
+                        "CRITICAL! Host down!",
+                        "The host " + agent + " is unreachable or down!"
+                );
+                break;
+
+            // you what mate?
+            default:
+                LOG.debug("Unknown status: " + status);
+                break;
+        }
 
-        } catch (MessagingException ex) {
+    }
 
-            LOG.error("Error sending notification for agent " + agent, ex);
+    /**
+     * The updates of one tier, either the fast or the slow one, which are still running or finished last, together with
+     * which components did not finish their last update on this tier.
+     * @author Griefed
+     */
+    private static final class Tier {
+
+        private final Future<?>[] PENDING;
+        private final boolean[] STALE;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param size Integer. The number of components.
+         */
+        private Tier(int size) {
+            this.PENDING = new Future<?>[size];
+            this.STALE = new boolean[size];
+        }
+    }
 
+    /**
+     * Information of all components, serialized and as gathered, together with the version of each component and the
+     * host and agent documents built from them.
+     * @author Griefed
+     */
+    private static class VersionedComponents {
+
+        private final ComponentInformation[] INFORMATION;
+        private final String[] VALUES;
+        private final long[] VERSIONS;
+        private final boolean[] STALE;
+        private final Snapshot HOST_DOCUMENT;
+        private final Snapshot AGENT_DOCUMENT;
+
+        /**
+         * Constructor for the components without documents.
+         * @author Griefed
+         * @param information Array of {@link ComponentInformation}. The information of every component.
+         * @param values String array. The information of every component in JSON format.
+         * @param versions Long array. The version of every component.
+         * @param stale Boolean array. Whether every component did not finish its last update.
+         */
+        private VersionedComponents(ComponentInformation[] information, String[] values, long[] versions, boolean[] stale) {
+            this.INFORMATION = information;
+            this.VALUES = values;
+            this.VERSIONS = versions;
+            this.STALE = stale;
+            this.HOST_DOCUMENT = null;
+            this.AGENT_DOCUMENT = null;
         }
 
+        /**
+         * Constructor for the components together with the documents built from them.
+         * @author Griefed
+         * @param components {@link VersionedComponents}. The components the documents were built from.
+         * @param hostDocument {@link Snapshot}. The host document.
+         * @param agentDocument {@link Snapshot}. The full agent document.
+         */
+        private VersionedComponents(VersionedComponents components, Snapshot hostDocument, Snapshot agentDocument) {
+            this.INFORMATION = components.INFORMATION;
+            this.VALUES = components.VALUES;
+            this.VERSIONS = components.VERSIONS;
+            this.STALE = components.STALE;
+            this.HOST_DOCUMENT = hostDocument;
+            this.AGENT_DOCUMENT = agentDocument;
+        }
     }
 }
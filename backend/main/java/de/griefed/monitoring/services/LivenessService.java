@@ -0,0 +1,410 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.ApplicationProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class responsible for determining whether the host of an agent is up. Hosts are probed by connecting to all ports
+ * configured in <code>de.griefed.monitoring.scan.ports</code>, plus the port of the agent itself, at the same time using
+ * non-blocking sockets on a single selector thread. A host counts as up as soon as any port accepts the connection or
+ * actively refuses it. Verdicts are cached for <code>de.griefed.monitoring.liveness.ttl.up</code> and
+ * <code>de.griefed.monitoring.liveness.ttl.down</code> seconds respectively.
+ * @author Griefed
+ */
+@Service
+public class LivenessService {
+
+    private static final Logger LOG = LogManager.getLogger(LivenessService.class);
+
+    private final ApplicationProperties PROPERTIES;
+    private final ResolverService RESOLVER_SERVICE;
+    private final Map<String, Verdict> VERDICTS = new ConcurrentHashMap<>(100);
+    private final Queue<Probe> REGISTRATIONS = new ConcurrentLinkedQueue<>();
+    private final List<Probe> PENDING = new ArrayList<>(100);
+    private final Selector SELECTOR;
+    private final Thread SELECTOR_THREAD;
+
+    private volatile boolean running = true;
+
+    /**
+     * Constructor responsible for DI. Opens the selector and starts the thread driving all probes.
+     * @author Griefed
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     * @param injectedResolverService Instance of {@link ResolverService}.
+     * @throws IOException if the selector could not be opened.
+     */
+    @Autowired
+    public LivenessService(ApplicationProperties injectedApplicationProperties, ResolverService injectedResolverService) throws IOException {
+        this.PROPERTIES = injectedApplicationProperties;
+        this.RESOLVER_SERVICE = injectedResolverService;
+        this.SELECTOR = Selector.open();
+        this.SELECTOR_THREAD = new Thread(this::run, "liveness-selector");
+        this.SELECTOR_THREAD.setDaemon(true);
+        this.SELECTOR_THREAD.start();
+    }
+
+    /**
+     * Check whether the host of the given agent is up. Returns the cached verdict if it has not expired yet, otherwise
+     * starts a new probe. Concurrent calls for the same host share one probe. Name resolution happens on the calling thread,
+     * through {@link ResolverService}.
+     * @author Griefed
+     * @param agent String. The address of the agent, for example <code>http://127.0.0.1:8080</code>.
+     * @return CompletableFuture Boolean. Completes with <code>true</code> if the host is up.
+     */
+    public CompletableFuture<Boolean> probe(String agent) {
+        URI uri = URI.create(agent);
+        String host = uri.getHost() != null ? uri.getHost() : agent;
+
+        Verdict verdict = VERDICTS.compute(host, (key, existing) -> {
+            if (existing != null && !existing.isExpired()) {
+                return existing;
+            }
+            return new Verdict();
+        });
+
+        if (verdict.claim()) {
+            startProbe(host, agentPort(uri), verdict);
+        }
+
+        return verdict.RESULT;
+    }
+
+    /**
+     * Drop the cached verdict for the host of the given agent, for example because the agent just answered.
+     * @author Griefed
+     * @param agent String. The address of the agent, for example <code>http://127.0.0.1:8080</code>.
+     */
+    public void forget(String agent) {
+        String host = URI.create(agent).getHost();
+        if (host != null) {
+            VERDICTS.remove(host);
+        }
+    }
+
+    /**
+     * Resolve the host and hand the probe over to the selector thread.
+     * @author Griefed
+     * @param host String. The host to probe.
+     * @param agentPort Integer. The port of the agent itself, or <code>-1</code> if unknown.
+     * @param verdict The verdict to complete once the probe finished.
+     */
+    private void startProbe(String host, int agentPort, Verdict verdict) {
+        InetAddress address;
+
+        try {
+
+            address = RESOLVER_SERVICE.resolve(host);
+
+        } catch (UnknownHostException ex) {
+
+            LOG.error("Host " + host + " could not be resolved.");
+            verdict.complete(false, PROPERTIES.getLivenessTtlDown());
+            return;
+
+        }
+
+        Set<Integer> ports = new LinkedHashSet<>(PROPERTIES.getPorts());
+        if (agentPort > 0) {
+            ports.add(agentPort);
+        }
+
+        REGISTRATIONS.add(new Probe(address, ports, verdict, System.nanoTime() + TimeUnit.SECONDS.toNanos(PROPERTIES.getTimeoutConnect())));
+        SELECTOR.wakeup();
+    }
+
+    /**
+     * Loop of the selector thread. Registers new probes, finishes connections and expires probes which timed out.
+     * @author Griefed
+     */
+    private void run() {
+        while (running) {
+
+            try {
+
+                SELECTOR.select(100);
+
+            } catch (IOException ex) {
+
+                LOG.error("Error waiting for liveness probes.", ex);
+
+            }
+
+            Probe probe;
+            while ((probe = REGISTRATIONS.poll()) != null) {
+                register(probe);
+            }
+
+            Iterator<SelectionKey> keys = SELECTOR.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                finishConnect(key);
+            }
+
+            long now = System.nanoTime();
+            Iterator<Probe> pending = PENDING.iterator();
+            while (pending.hasNext()) {
+                Probe next = pending.next();
+
+                if (next.done) {
+                    pending.remove();
+                } else if (now - next.DEADLINE > 0) {
+                    next.finish(false);
+                    pending.remove();
+                }
+            }
+        }
+
+        PENDING.forEach(probe -> probe.finish(false));
+    }
+
+    /**
+     * Start non-blocking connects to all ports of a probe.
+     * @author Griefed
+     * @param probe The probe to register.
+     */
+    private void register(Probe probe) {
+        for (int port : probe.PORTS) {
+
+            try {
+
+                SocketChannel channel = SocketChannel.open();
+                probe.CHANNELS.add(channel);
+                channel.configureBlocking(false);
+
+                if (channel.connect(new InetSocketAddress(probe.ADDRESS, port))) {
+                    probe.finish(true);
+                    return;
+                }
+
+                channel.register(SELECTOR, SelectionKey.OP_CONNECT, probe);
+
+            } catch (IOException ex) {
+
+                probe.portFailed(ex);
+                if (probe.done) {
+                    return;
+                }
+
+            }
+        }
+
+        PENDING.add(probe);
+    }
+
+    /**
+     * Finish a connect which the selector reported as ready.
+     * @author Griefed
+     * @param key The key of the channel which is ready.
+     */
+    private void finishConnect(SelectionKey key) {
+        Probe probe = (Probe) key.attachment();
+
+        if (probe.done) {
+            return;
+        }
+
+        try {
+
+            if (((SocketChannel) key.channel()).finishConnect()) {
+                probe.finish(true);
+            }
+
+        } catch (IOException ex) {
+
+            probe.portFailed(ex);
+
+        }
+    }
+
+    /**
+     * Determine the port of an agent from its address.
+     * @author Griefed
+     * @param uri The address of the agent.
+     * @return Integer. The port of the agent, or <code>-1</code> if it can not be determined.
+     */
+    private int agentPort(URI uri) {
+        if (uri.getPort() > 0) {
+            return uri.getPort();
+        } else if ("https".equalsIgnoreCase(uri.getScheme())) {
+            return 443;
+        } else if ("http".equalsIgnoreCase(uri.getScheme())) {
+            return 80;
+        }
+        return -1;
+    }
+
+    /**
+     * Stop the selector thread when the application shuts down.
+     * @author Griefed
+     * @throws InterruptedException if interrupted while waiting for the selector thread.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        SELECTOR.wakeup();
+        SELECTOR_THREAD.join(1000);
+
+        try {
+            SELECTOR.close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Cached verdict about a host. The result is shared by everyone asking while the probe is running.
+     * @author Griefed
+     */
+    private static class Verdict {
+
+        private final CompletableFuture<Boolean> RESULT = new CompletableFuture<>();
+
+        private boolean claimed = false;
+        private volatile long expires = Long.MAX_VALUE;
+
+        /**
+         * Claim this verdict for probing. Only the first caller gets to start the probe.
+         * @author Griefed
+         * @return Boolean. <code>true</code> if the caller has to start the probe.
+         */
+        private synchronized boolean claim() {
+            if (claimed) {
+                return false;
+            }
+            claimed = true;
+            return true;
+        }
+
+        /**
+         * Complete this verdict and keep it for the given time.
+         * @author Griefed
+         * @param alive Boolean. Whether any of the probed ports accepted a connection.
+         * @param ttlSeconds Integer. For how many seconds the verdict stays valid.
+         */
+        private void complete(boolean alive, int ttlSeconds) {
+            this.expires = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+            RESULT.complete(alive);
+        }
+
+        /**
+         * Check whether this verdict was completed and is older than its time to live.
+         * @author Griefed
+         * @return Boolean. <code>true</code> if the host has to be probed again.
+         */
+        private boolean isExpired() {
+            return RESULT.isDone() && System.nanoTime() - expires > 0;
+        }
+    }
+
+    /**
+     * A running probe of one host across several ports. Only accessed by the selector thread once registered.
+     * @author Griefed
+     */
+    private class Probe {
+
+        private final InetAddress ADDRESS;
+        private final Set<Integer> PORTS;
+        private final Verdict VERDICT;
+        private final long DEADLINE;
+        private final List<SocketChannel> CHANNELS;
+
+        private int failedPorts = 0;
+        private boolean done = false;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param address {@link InetAddress}. The host to probe.
+         * @param ports Set Integer. The ports to try on the host.
+         * @param verdict {@link Verdict}. The verdict to complete once the probe finishes.
+         * @param deadline Long. The {@link System#nanoTime()} after which the probe fails.
+         */
+        private Probe(InetAddress address, Set<Integer> ports, Verdict verdict, long deadline) {
+            this.ADDRESS = address;
+            this.PORTS = ports;
+            this.VERDICT = verdict;
+            this.DEADLINE = deadline;
+            this.CHANNELS = new ArrayList<>(ports.size());
+        }
+
+        /**
+         * Record a failed port. A refused connection still proves that the host is up. The message of the exception depends
+         * on the locale of the system, so it is not looked at: a connect fails with a {@link ConnectException} either because
+         * it was refused or because the system gave up waiting for an answer, which takes far longer than any deadline of a
+         * probe. Unreachable hosts and networks fail with other exceptions.
+         * @author Griefed
+         * @param ex The exception the connect failed with.
+         */
+        private void portFailed(IOException ex) {
+            if (ex instanceof ConnectException && System.nanoTime() - DEADLINE < 0) {
+                finish(true);
+            } else if (++failedPorts >= PORTS.size()) {
+                finish(false);
+            }
+        }
+
+        /**
+         * Complete the verdict of this probe and close all of its channels.
+         * @author Griefed
+         * @param alive Boolean. Whether the host is up.
+         */
+        private void finish(boolean alive) {
+            if (done) {
+                return;
+            }
+            done = true;
+
+            for (SocketChannel channel : CHANNELS) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {}
+            }
+
+            if (!alive) {
+                LOG.debug("No port of " + ADDRESS + " answered.");
+            }
+
+            VERDICT.complete(alive, alive ? PROPERTIES.getLivenessTtlUp() : PROPERTIES.getLivenessTtlDown());
+        }
+    }
+}
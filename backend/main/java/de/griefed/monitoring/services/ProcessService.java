@@ -0,0 +1,263 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.models.CpuInformation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import oshi.software.os.OSProcess;
+import oshi.software.os.OperatingSystem;
+import oshi.software.os.linux.LinuxOperatingSystem;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Class responsible for finding the processes using the most CPU or memory. On Linux, only <code>/proc/[pid]/stat</code>
+ * is read for every process, into a buffer which is reused, and the CPU time of every process is remembered between calls,
+ * so the CPU usage is the one since the previous call instead of since the process started. Names are only decoded for
+ * processes which make it into the result. On other systems, the process list of OSHI is used.
+ * @author Griefed
+ */
+@Service
+public class ProcessService {
+
+    private static final Logger LOG = LogManager.getLogger(ProcessService.class);
+
+    private final HardwareService HARDWARE_SERVICE;
+    private final File PROC = new File("/proc");
+    private final byte[] BUFFER = new byte[4096];
+    private final boolean LINUX;
+
+    private Map<Integer, Long> previousTicks = new HashMap<>(1024);
+    private Map<Integer, Long> currentTicks = new HashMap<>(1024);
+    private long previousSample = 0;
+
+    /**
+     * Constructor responsible for DI.
+     * @author Griefed
+     * @param injectedHardwareService Instance of {@link HardwareService}.
+     */
+    @Autowired
+    public ProcessService(HardwareService injectedHardwareService) {
+        this.HARDWARE_SERVICE = injectedHardwareService;
+        this.LINUX = HARDWARE_SERVICE.getOperatingSystem() instanceof LinuxOperatingSystem && new File("/proc/self/stat").canRead();
+    }
+
+    /**
+     * Find the processes using the most CPU or memory.
+     * @author Griefed
+     * @param limit Integer. How many processes to return.
+     * @param byMemory Boolean. Whether to rank by resident memory instead of CPU usage.
+     * @return List {@link CpuInformation.Process}. The processes, the heaviest first. Empty on the first call when ranking by CPU
+     * usage on Linux, as the usage is only known once a second sample exists.
+     */
+    public synchronized List<CpuInformation.Process> getTopProcesses(int limit, boolean byMemory) {
+        if (limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        if (LINUX) {
+            return scanProc(limit, byMemory);
+        }
+
+        List<CpuInformation.Process> processes = new ArrayList<>(limit);
+        for (OSProcess process : HARDWARE_SERVICE.getOperatingSystem().getProcesses(null,
+                byMemory ? OperatingSystem.ProcessSorting.RSS_DESC : OperatingSystem.ProcessSorting.CPU_DESC, limit)) {
+
+            processes.add(new CpuInformation.Process(process.getProcessID(), process.getName(),
+                    process.getProcessCpuLoadCumulative() * 100D, process.getResidentSetSize()));
+        }
+
+        return processes;
+    }
+
+    /**
+     * Scan <code>/proc</code> for the heaviest processes, keeping only the current candidates in a bounded heap.
+     * @author Griefed
+     * @param limit Integer. How many processes to return.
+     * @param byMemory Boolean. Whether to rank by resident memory instead of CPU usage.
+     * @return List {@link CpuInformation.Process}. The processes, the heaviest first. Empty on the first scan when ranking by CPU usage.
+     */
+    private List<CpuInformation.Process> scanProc(int limit, boolean byMemory) {
+        long now = System.nanoTime();
+        // Without an earlier sample there is no interval to measure CPU usage over, so only the ticks are recorded.
+        boolean firstSample = previousSample == 0;
+        double elapsedTicks = firstSample ? 0D : (now - previousSample) / 1e9D * LinuxOperatingSystem.getHz();
+        long pageSize = HARDWARE_SERVICE.getHardware().getMemory().getPageSize();
+
+        Comparator<CpuInformation.Process> comparator = byMemory
+                ? Comparator.comparingLong(CpuInformation.Process::getRssBytes)
+                : Comparator.comparingDouble(CpuInformation.Process::getCpuPercent);
+        PriorityQueue<CpuInformation.Process> heap = new PriorityQueue<>(limit + 1, comparator);
+
+        String[] entries = PROC.list();
+        if (entries == null) {
+            return Collections.emptyList();
+        }
+
+        for (String entry : entries) {
+            if (entry.isEmpty() || !Character.isDigit(entry.charAt(0))) {
+                continue;
+            }
+
+            int length = read(PROC.getPath() + "/" + entry + "/stat");
+            int nameEnd = lastIndexOf(')', length);
+            if (nameEnd < 0) {
+                continue;
+            }
+
+            // Fields after the name, starting with the state as field 3: utime is 14, stime 15, rss 24.
+            long utime = field(nameEnd + 2, length, 14 - 3);
+            long stime = field(nameEnd + 2, length, 15 - 3);
+            long rss = field(nameEnd + 2, length, 24 - 3);
+
+            int pid;
+            try {
+                pid = Integer.parseInt(entry);
+            } catch (NumberFormatException ex) {
+                continue;
+            }
+
+            long ticks = utime + stime;
+            currentTicks.put(pid, ticks);
+
+            if (firstSample && !byMemory) {
+                continue;
+            }
+
+            Long before = previousTicks.get(pid);
+            double cpuPercent = before == null || elapsedTicks <= 0D ? 0D : (ticks - before) / elapsedTicks * 100D;
+            long rssBytes = rss * pageSize;
+
+            if (heap.size() == limit) {
+                CpuInformation.Process lightest = heap.peek();
+                if (byMemory ? rssBytes <= lightest.getRssBytes() : cpuPercent <= lightest.getCpuPercent()) {
+                    continue;
+                }
+            }
+
+            int nameStart = indexOf('(', length);
+            String name = nameStart < 0 ? "" : new String(BUFFER, nameStart + 1, nameEnd - nameStart - 1, StandardCharsets.UTF_8);
+
+            heap.add(new CpuInformation.Process(pid, name, cpuPercent, rssBytes));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        Map<Integer, Long> swap = previousTicks;
+        previousTicks = currentTicks;
+        currentTicks = swap;
+        currentTicks.clear();
+        previousSample = now;
+
+        List<CpuInformation.Process> processes = new ArrayList<>(heap);
+        processes.sort(comparator.reversed());
+        return processes;
+    }
+
+    /**
+     * Read a file into the shared buffer.
+     * @author Griefed
+     * @param path String. The file to read.
+     * @return Integer. The number of bytes read, <code>0</code> if the file could not be read, for example because the process ended.
+     */
+    private int read(String path) {
+        try (FileInputStream inputStream = new FileInputStream(path)) {
+
+            int length = 0;
+            int read;
+            while (length < BUFFER.length && (read = inputStream.read(BUFFER, length, BUFFER.length - length)) > 0) {
+                length += read;
+            }
+            return length;
+
+        } catch (IOException ex) {
+            LOG.trace("Could not read " + path, ex);
+            return 0;
+        }
+    }
+
+    /**
+     * Find the first occurrence of a character in the shared buffer.
+     * @author Griefed
+     * @param character Char. The character to look for.
+     * @param length Integer. The number of valid bytes in the buffer.
+     * @return Integer. The index of the character, <code>-1</code> if it was not found.
+     */
+    private int indexOf(char character, int length) {
+        for (int i = 0; i < length; i++) {
+            if (BUFFER[i] == character) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Find the last occurrence of a character in the shared buffer.
+     * @author Griefed
+     * @param character Char. The character to look for.
+     * @param length Integer. The number of valid bytes in the buffer.
+     * @return Integer. The index of the character, <code>-1</code> if it was not found.
+     */
+    private int lastIndexOf(char character, int length) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (BUFFER[i] == character) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse a numeric, space separated field from the shared buffer.
+     * @author Griefed
+     * @param start Integer. Where the first field starts.
+     * @param length Integer. The number of valid bytes in the buffer.
+     * @param index Integer. The index of the field to parse, counted from <code>start</code>.
+     * @return Long. The value of the field, <code>0</code> if it does not exist or is not numeric.
+     */
+    private long field(int start, int length, int index) {
+        int position = start;
+
+        for (int i = 0; i < index && position < length; position++) {
+            if (BUFFER[position] == ' ') {
+                i++;
+            }
+        }
+
+        long value = 0;
+        for (; position < length && BUFFER[position] >= '0' && BUFFER[position] <= '9'; position++) {
+            value = value * 10 + (BUFFER[position] - '0');
+        }
+
+        return value;
+    }
+}
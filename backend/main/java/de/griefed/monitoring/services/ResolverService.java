@@ -0,0 +1,303 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.ApplicationProperties;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Class responsible for resolving the hostnames of agents. Successful lookups are cached for
+ * <code>de.griefed.monitoring.dns.ttl</code> seconds, failed ones for <code>de.griefed.monitoring.dns.ttl.negative</code>
+ * seconds. Entries which are used after 80% of their lifetime are refreshed in the background, so frequently used names
+ * never expire while in use. At most <code>de.griefed.monitoring.dns.size</code> names are kept, evicting the one used
+ * least recently.
+ * @author Griefed
+ */
+@Service
+public class ResolverService {
+
+    private static final Logger LOG = LogManager.getLogger(ResolverService.class);
+
+    private final ApplicationProperties PROPERTIES;
+    private final Map<String, Entry> CACHE = new ConcurrentHashMap<>(100);
+    private final ExecutorService EXECUTOR;
+
+    private final AtomicLong HITS = new AtomicLong();
+    private final AtomicLong NEGATIVE_HITS = new AtomicLong();
+    private final AtomicLong MISSES = new AtomicLong();
+    private final AtomicLong REFRESHES = new AtomicLong();
+    private final AtomicLong EVICTIONS = new AtomicLong();
+
+    /**
+     * Constructor responsible for DI.
+     * @author Griefed
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     */
+    @Autowired
+    public ResolverService(ApplicationProperties injectedApplicationProperties) {
+        this.PROPERTIES = injectedApplicationProperties;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("dns-");
+        threadFactory.setDaemon(true);
+        this.EXECUTOR = Executors.newFixedThreadPool(PROPERTIES.getDnsThreads(), threadFactory);
+    }
+
+    /**
+     * Resolve the first address of a host, blocking on a cache miss.
+     * @author Griefed
+     * @param host String. The hostname to resolve.
+     * @return InetAddress. The first address of the host.
+     * @throws UnknownHostException if the host could not be resolved, now or within the negative TTL.
+     */
+    public InetAddress resolve(String host) throws UnknownHostException {
+        return resolveAll(host)[0];
+    }
+
+    /**
+     * Resolve all addresses of a host, blocking on a cache miss.
+     * @author Griefed
+     * @param host String. The hostname to resolve.
+     * @return InetAddress array. All addresses of the host.
+     * @throws UnknownHostException if the host could not be resolved, now or within the negative TTL.
+     */
+    public InetAddress[] resolveAll(String host) throws UnknownHostException {
+        Entry entry = cached(host);
+
+        if (entry == null) {
+            entry = load(host);
+        }
+
+        return entry.get();
+    }
+
+    /**
+     * Resolve all addresses of a host without blocking the caller. Cache hits complete immediately, misses are resolved
+     * on the resolver threads.
+     * @author Griefed
+     * @param host String. The hostname to resolve.
+     * @return CompletableFuture InetAddress array. Completes with all addresses of the host, or exceptionally with an
+     * {@link UnknownHostException}.
+     */
+    public CompletableFuture<InetAddress[]> resolveAllAsync(String host) {
+        Entry entry = cached(host);
+
+        if (entry != null) {
+            return entry.toFuture();
+        }
+
+        CompletableFuture<InetAddress[]> result = new CompletableFuture<>();
+
+        EXECUTOR.execute(() -> {
+            try {
+                result.complete(load(host).get());
+            } catch (UnknownHostException ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Look up a host in the cache, counting hits and misses and scheduling a refresh if the entry is about to expire.
+     * @author Griefed
+     * @param host String. The hostname to look up.
+     * @return The cached entry, or <code>null</code> if there is none or it expired.
+     */
+    private Entry cached(String host) {
+        Entry entry = CACHE.get(host);
+        long now = System.nanoTime();
+
+        if (entry == null || now - entry.EXPIRES >= 0) {
+            MISSES.incrementAndGet();
+            return null;
+        }
+
+        entry.lastAccess = now;
+
+        if (entry.FAILURE != null) {
+            NEGATIVE_HITS.incrementAndGet();
+        } else {
+            HITS.incrementAndGet();
+
+            if (now - entry.REFRESH_AT >= 0 && entry.REFRESHING.compareAndSet(false, true)) {
+                REFRESHES.incrementAndGet();
+                EXECUTOR.execute(() -> load(host));
+            }
+        }
+
+        return entry;
+    }
+
+    /**
+     * Resolve a host and store the outcome in the cache.
+     * @author Griefed
+     * @param host String. The hostname to resolve.
+     * @return The new entry.
+     */
+    private Entry load(String host) {
+        long now = System.nanoTime();
+        Entry entry;
+
+        try {
+
+            entry = new Entry(InetAddress.getAllByName(host), null, now, PROPERTIES.getDnsTtl());
+
+        } catch (UnknownHostException ex) {
+
+            LOG.debug("Could not resolve " + host);
+            entry = new Entry(null, ex, now, PROPERTIES.getDnsTtlNegative());
+
+        }
+
+        CACHE.put(host, entry);
+
+        if (CACHE.size() > PROPERTIES.getDnsSize()) {
+            evict();
+        }
+
+        return entry;
+    }
+
+    /**
+     * Remove the least recently used entries until the cache is within its size limit again.
+     * @author Griefed
+     */
+    private void evict() {
+        while (CACHE.size() > PROPERTIES.getDnsSize()) {
+
+            String oldest = null;
+            long oldestAccess = Long.MAX_VALUE;
+
+            for (Map.Entry<String, Entry> candidate : CACHE.entrySet()) {
+                if (oldest == null || candidate.getValue().lastAccess - oldestAccess < 0) {
+                    oldest = candidate.getKey();
+                    oldestAccess = candidate.getValue().lastAccess;
+                }
+            }
+
+            if (oldest == null || CACHE.remove(oldest) == null) {
+                return;
+            }
+
+            EVICTIONS.incrementAndGet();
+        }
+    }
+
+    /**
+     * Getter for the statistics of this cache.
+     * @author Griefed
+     * @return String in JSON format. Size of the cache as well as hits, negative hits, misses, refreshes and evictions
+     * since startup.
+     */
+    public String getStatistics() {
+        return "{\"size\": " + CACHE.size() + "," +
+                "\"hits\": " + HITS.get() + "," +
+                "\"negative_hits\": " + NEGATIVE_HITS.get() + "," +
+                "\"misses\": " + MISSES.get() + "," +
+                "\"refreshes\": " + REFRESHES.get() + "," +
+                "\"evictions\": " + EVICTIONS.get() + "}";
+    }
+
+    /**
+     * Stop the resolver threads when the application shuts down.
+     * @author Griefed
+     */
+    @PreDestroy
+    public void shutdown() {
+        EXECUTOR.shutdownNow();
+    }
+
+    /**
+     * Outcome of a single lookup, either the addresses of the host or the exception the lookup failed with.
+     * @author Griefed
+     */
+    private static class Entry {
+
+        private final InetAddress[] ADDRESSES;
+        private final UnknownHostException FAILURE;
+        private final long EXPIRES;
+        private final long REFRESH_AT;
+        private final AtomicBoolean REFRESHING = new AtomicBoolean(false);
+
+        private volatile long lastAccess;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param addresses {@link InetAddress} array. The addresses of the host, <code>null</code> if the lookup failed.
+         * @param failure {@link UnknownHostException}. The exception the lookup failed with, <code>null</code> if it succeeded.
+         * @param now Long. The {@link System#nanoTime()} of the lookup.
+         * @param ttlSeconds Integer. For how many seconds the outcome stays valid.
+         */
+        private Entry(InetAddress[] addresses, UnknownHostException failure, long now, int ttlSeconds) {
+            this.ADDRESSES = addresses;
+            this.FAILURE = failure;
+            this.EXPIRES = now + TimeUnit.SECONDS.toNanos(ttlSeconds);
+            this.REFRESH_AT = now + TimeUnit.SECONDS.toNanos(ttlSeconds) * 8 / 10;
+            this.lastAccess = now;
+        }
+
+        /**
+         * Getter for the addresses of the host.
+         * @author Griefed
+         * @return {@link InetAddress} array. The addresses of the host.
+         * @throws UnknownHostException if the lookup failed.
+         */
+        private InetAddress[] get() throws UnknownHostException {
+            if (FAILURE != null) {
+                throw FAILURE;
+            }
+            return ADDRESSES;
+        }
+
+        /**
+         * Wrap the outcome of the lookup in a completed future.
+         * @author Griefed
+         * @return {@link CompletableFuture} with the addresses of the host, completed exceptionally if the lookup failed.
+         */
+        private CompletableFuture<InetAddress[]> toFuture() {
+            CompletableFuture<InetAddress[]> future = new CompletableFuture<>();
+
+            if (FAILURE != null) {
+                future.completeExceptionally(FAILURE);
+            } else {
+                future.complete(ADDRESSES);
+            }
+
+            return future;
+        }
+    }
+}
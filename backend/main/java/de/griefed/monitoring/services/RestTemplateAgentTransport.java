@@ -0,0 +1,89 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.AgentTransport;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Blocking {@link AgentTransport} backed by a {@link RestTemplate}. Every request occupies the calling thread until the
+ * agent answered or a timeout was triggered.
+ * @author Griefed
+ */
+public class RestTemplateAgentTransport implements AgentTransport {
+
+    private final RestTemplate REST_TEMPLATE;
+
+    /**
+     * Constructor setting up the {@link RestTemplate} with the configured connect and read timeouts.
+     * @author Griefed
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     */
+    public RestTemplateAgentTransport(ApplicationProperties injectedApplicationProperties) {
+        this.REST_TEMPLATE = new RestTemplateBuilder()
+                .setConnectTimeout(Duration.ofSeconds(injectedApplicationProperties.getTimeoutConnect()))
+                .setReadTimeout(Duration.ofSeconds(injectedApplicationProperties.getTimeoutRead()))
+                .build();
+    }
+
+    /**
+     * Retrieve the information of the given agent on the calling thread. The returned future is already completed.
+     * @author Griefed
+     * @param agent String. The address of the agent, for example <code>http://127.0.0.1:8080</code>.
+     * @param query String. The query to append to the request, starting with <code>?</code>, or an empty string.
+     * @return CompletableFuture ResponseEntity String. The response of the agent.
+     */
+    @Override
+    public CompletableFuture<ResponseEntity<String>> fetch(String agent, String query) {
+        CompletableFuture<ResponseEntity<String>> result = new CompletableFuture<>();
+
+        try {
+
+            ResponseEntity<String> response = REST_TEMPLATE.getForEntity(URI.create(agent + "/api/v1/agent" + query), String.class);
+
+            if (response.getStatusCode() == HttpStatus.OK || response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                result.complete(response);
+            } else {
+                result.completeExceptionally(new IllegalStateException("Agent " + agent + " answered with " + response.getStatusCode()));
+            }
+
+        } catch (Exception ex) {
+
+            result.completeExceptionally(ex);
+
+        }
+
+        return result;
+    }
+
+    @Override
+    public void close() {}
+}
@@ -0,0 +1,308 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.Snapshot;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class responsible for pushing new information to subscribed clients as server-sent events. Every document is published
+ * under an event name, <code>host</code> or <code>agents</code>, and only pushed if it differs from the one pushed last.
+ * The event is encoded once and the same buffer is written to every subscriber, so the cost of a push does not grow with
+ * the size of the document times the number of open dashboards.<br>
+ * Every subscriber is written to on its own, by a small pool of threads, so a slow client only holds up itself. Events
+ * it did not take yet are replaced by newer ones of the same name, and a subscriber which takes longer than
+ * <code>de.griefed.monitoring.stream.send.timeout</code> seconds for a single event is dropped. Writes themselves are
+ * bounded by the same timeout, see {@link de.griefed.monitoring.utilities.ConnectorTimeouts}, so a client which stops
+ * reading only holds up its sender thread until then.
+ * @author Griefed
+ */
+@Service
+public class StreamService {
+
+    private static final Logger LOG = LogManager.getLogger(StreamService.class);
+    private static final MediaType EVENT_STREAM = new MediaType("text", "event-stream", StandardCharsets.UTF_8);
+
+    private final ApplicationProperties PROPERTIES;
+    private final ExecutorService SENDER;
+    private final ScheduledExecutorService WATCHDOG;
+    private final long SEND_TIMEOUT;
+    private final Map<ResponseBodyEmitter, Subscriber> SUBSCRIBERS = new ConcurrentHashMap<>();
+    private final Map<String, Snapshot> PUBLISHED = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> EVENTS = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor responsible for DI.
+     * @author Griefed
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     */
+    @Autowired
+    public StreamService(ApplicationProperties injectedApplicationProperties) {
+        this.PROPERTIES = injectedApplicationProperties;
+
+        CustomizableThreadFactory senderThreads = new CustomizableThreadFactory("stream-");
+        senderThreads.setDaemon(true);
+        this.SENDER = Executors.newFixedThreadPool(PROPERTIES.getStreamThreads(), senderThreads);
+        this.SEND_TIMEOUT = TimeUnit.SECONDS.toNanos(PROPERTIES.getStreamSendTimeout());
+
+        CustomizableThreadFactory watchdogThreads = new CustomizableThreadFactory("stream-watchdog-");
+        watchdogThreads.setDaemon(true);
+        this.WATCHDOG = Executors.newSingleThreadScheduledExecutor(watchdogThreads);
+        this.WATCHDOG.scheduleWithFixedDelay(this::dropStalled, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Getter for the content type of the stream.
+     * @author Griefed
+     * @return MediaType. <code>text/event-stream</code>.
+     */
+    public MediaType getMediaType() {
+        return EVENT_STREAM;
+    }
+
+    /**
+     * Register a new subscriber. The subscriber immediately receives the latest event of every name, so it does not have
+     * to wait for the next change before it can show anything. The connection is closed after
+     * <code>de.griefed.monitoring.stream.timeout</code> seconds, after which clients are expected to reconnect.
+     * @author Griefed
+     * @return ResponseBodyEmitter. The emitter to return from the controller.
+     */
+    public ResponseBodyEmitter subscribe() {
+        return subscribe(new ResponseBodyEmitter(PROPERTIES.getStreamTimeout() * 1000L));
+    }
+
+    /**
+     * Register an emitter as a new subscriber and send it the latest event of every name.
+     * @author Griefed
+     * @param emitter {@link ResponseBodyEmitter}. The emitter to send the events of the subscriber to.
+     * @return ResponseBodyEmitter. The emitter, registered.
+     */
+    ResponseBodyEmitter subscribe(ResponseBodyEmitter emitter) {
+        emitter.onCompletion(() -> SUBSCRIBERS.remove(emitter));
+        emitter.onTimeout(() -> SUBSCRIBERS.remove(emitter));
+        emitter.onError(throwable -> SUBSCRIBERS.remove(emitter));
+
+        Subscriber subscriber = new Subscriber(emitter);
+        SUBSCRIBERS.put(emitter, subscriber);
+
+        EVENTS.forEach(subscriber::offer);
+
+        return emitter;
+    }
+
+    /**
+     * Publish a document to all subscribers, unless it equals the document published last under the same name.
+     * @author Griefed
+     * @param name String. The name of the event.
+     * @param snapshot Instance of {@link Snapshot}. The document to publish.
+     */
+    public void publish(String name, Snapshot snapshot) {
+        Snapshot previous = PUBLISHED.put(name, snapshot);
+
+        if (previous != null && previous.getEtag().equals(snapshot.getEtag())) {
+            return;
+        }
+
+        byte[] event = encode(name, snapshot);
+        EVENTS.put(name, event);
+
+        SUBSCRIBERS.values().forEach(subscriber -> subscriber.offer(name, event));
+    }
+
+    /**
+     * Getter for the number of currently connected subscribers.
+     * @author Griefed
+     * @return Integer. The number of subscribers.
+     */
+    public int getSubscriberCount() {
+        return SUBSCRIBERS.size();
+    }
+
+    /**
+     * Encode a document as a server-sent event. Line breaks can only occur as whitespace between JSON tokens, as they
+     * are escaped inside strings, so they are replaced by spaces to keep the document on a single <code>data</code> line.
+     * @author Griefed
+     * @param name String. The name of the event.
+     * @param snapshot Instance of {@link Snapshot}. The document to encode.
+     * @return byte array. The complete event, including the terminating blank line.
+     */
+    private byte[] encode(String name, Snapshot snapshot) {
+        byte[] data = snapshot.getBytes();
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(data.length + name.length() + 20);
+
+        byte[] header = ("event: " + name + "\ndata: ").getBytes(StandardCharsets.UTF_8);
+        outputStream.write(header, 0, header.length);
+
+        for (byte character : data) {
+            outputStream.write(character == '\n' || character == '\r' ? ' ' : character);
+        }
+
+        outputStream.write('\n');
+        outputStream.write('\n');
+
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Drop all subscribers which are stuck writing an event for longer than <code>de.griefed.monitoring.stream.send.timeout</code>
+     * seconds. They receive no further events, and their streams are completed by their sender thread once the write
+     * returned, so the client reconnects. The emitter is not touched here, as it is locked for as long as the write is
+     * stuck, and waiting for it would keep every other stalled subscriber from being dropped.
+     * @author Griefed
+     */
+    private void dropStalled() {
+        long now = System.nanoTime();
+        Iterator<Subscriber> iterator = SUBSCRIBERS.values().iterator();
+
+        while (iterator.hasNext()) {
+            Subscriber subscriber = iterator.next();
+            long since = subscriber.sendingSince;
+
+            if (since != 0 && now - since > SEND_TIMEOUT) {
+                LOG.debug("Dropping subscriber which did not take an event within " + TimeUnit.NANOSECONDS.toSeconds(SEND_TIMEOUT) + " seconds.");
+                subscriber.dropped = true;
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Close all open streams and stop the sender when the application shuts down.
+     * @author Griefed
+     */
+    @PreDestroy
+    public void shutdown() {
+        SUBSCRIBERS.keySet().forEach(ResponseBodyEmitter::complete);
+        SUBSCRIBERS.clear();
+        WATCHDOG.shutdownNow();
+        SENDER.shutdownNow();
+    }
+
+    /**
+     * A subscriber together with the events it was not sent yet, at most one per name. At most one thread writes to a
+     * subscriber at a time.
+     * @author Griefed
+     */
+    private final class Subscriber {
+
+        private final ResponseBodyEmitter EMITTER;
+        private final Map<String, byte[]> PENDING = new LinkedHashMap<>();
+
+        private boolean draining = false;
+        private volatile long sendingSince = 0;
+        private volatile boolean dropped = false;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param emitter {@link ResponseBodyEmitter}. The emitter to send the events of this subscriber to.
+         */
+        private Subscriber(ResponseBodyEmitter emitter) {
+            this.EMITTER = emitter;
+        }
+
+        /**
+         * Queue an event for this subscriber, replacing an event of the same name it was not sent yet.
+         * @author Griefed
+         * @param name String. The name of the event.
+         * @param event byte array. The encoded event.
+         */
+        private void offer(String name, byte[] event) {
+            synchronized (this) {
+                PENDING.put(name, event);
+
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+
+            SENDER.execute(this::drain);
+        }
+
+        /**
+         * Write all pending events to this subscriber. Subscribers which can not be written to are dropped. Subscribers
+         * dropped by the watchdog while a write was stuck are completed once it returned.
+         * @author Griefed
+         */
+        private void drain() {
+            while (true) {
+                byte[] event;
+
+                synchronized (this) {
+                    Iterator<byte[]> iterator = PENDING.values().iterator();
+
+                    if (!iterator.hasNext() || !SUBSCRIBERS.containsKey(EMITTER)) {
+                        PENDING.clear();
+                        draining = false;
+                        return;
+                    }
+
+                    event = iterator.next();
+                    iterator.remove();
+                }
+
+                try {
+
+                    sendingSince = System.nanoTime();
+                    EMITTER.send(event, EVENT_STREAM);
+
+                } catch (IOException | IllegalStateException ex) {
+
+                    // The container completes the emitter itself once the write failed.
+                    LOG.debug("Dropping subscriber.", ex);
+                    SUBSCRIBERS.remove(EMITTER);
+
+                } finally {
+
+                    sendingSince = 0;
+
+                }
+
+                if (dropped) {
+                    EMITTER.complete();
+                }
+            }
+        }
+    }
+}
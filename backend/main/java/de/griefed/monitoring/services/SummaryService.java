@@ -0,0 +1,381 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.Snapshot;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Class responsible for the summary of all agents on a monitor, like how many hosts are down, how many are above the
+ * disk or memory usage thresholds, how much memory is free across the fleet, how the loads are distributed and which
+ * hosts are the busiest. Instead of going over the documents of all agents whenever the summary is requested, every
+ * agent contributes its values as soon as its document arrives: its previous contribution is taken back out of the
+ * counters, histograms and top lists, and its current one is added. The summary document is only built when it is
+ * requested after something changed.
+ * @author Griefed
+ */
+@Service
+public class SummaryService {
+
+    private static final int BUCKETS = 10;
+    private static final String[] STATUS = {"ok", "host_down", "agent_unreachable"};
+
+    private final JsonFactory JSON_FACTORY = new JsonFactory();
+    private final int TOP;
+    private final double DISK_THRESHOLD;
+    private final double MEMORY_THRESHOLD;
+    private final Map<String, Agent> AGENTS = new HashMap<>(100);
+    private final Metric CPU = new Metric(agent -> agent.CPU);
+    private final Metric MEMORY = new Metric(agent -> agent.MEMORY);
+    private final Metric DISK = new Metric(agent -> agent.DISK);
+    private final long[] STATUSES = new long[STATUS.length];
+
+    private long processes = 0;
+    private long memoryTotal = 0;
+    private long memoryAvailable = 0;
+    private long memoryAbove = 0;
+    private long diskTotal = 0;
+    private long diskFree = 0;
+    private long disksAbove = 0;
+    private long hostsDiskAbove = 0;
+    private long updated = 0;
+    private Snapshot summary = null;
+
+    /**
+     * Constructor responsible for DI.
+     * @author Griefed
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     */
+    @Autowired
+    public SummaryService(ApplicationProperties injectedApplicationProperties) {
+        this.TOP = injectedApplicationProperties.getSummaryTop();
+        this.DISK_THRESHOLD = Double.parseDouble(injectedApplicationProperties.getProperty("de.griefed.monitoring.schedule.email.notification.disk.usage", "90.00"));
+        this.MEMORY_THRESHOLD = Double.parseDouble(injectedApplicationProperties.getProperty("de.griefed.monitoring.schedule.email.notification.memory.usage", "90.00"));
+    }
+
+    /**
+     * Replace the contribution of an agent with the values of its current document. Documents which did not change since
+     * the last update of the agent are skipped.
+     * @author Griefed
+     * @param agent String. The agent the document belongs to.
+     * @param document String in JSON format. The document of the agent, or the status document if it did not answer.
+     * @param root The document, already parsed by the caller so it is only parsed once for every consumer.
+     */
+    public void update(String agent, String document, JsonNode root) {
+        synchronized (this) {
+            Agent previous = AGENTS.get(agent);
+            if (previous != null && previous.DOCUMENT.equals(document)) {
+                return;
+            }
+        }
+
+        Agent current = new Agent(agent, document, root);
+
+        synchronized (this) {
+            Agent previous = AGENTS.put(agent, current);
+            if (previous != null) {
+                add(previous, -1);
+            }
+            add(current, 1);
+            updated = System.currentTimeMillis();
+            summary = null;
+        }
+    }
+
+    /**
+     * Take the contributions of all agents which are no longer configured out of the summary.
+     * @author Griefed
+     * @param agents Collection of the agents which are configured.
+     */
+    public synchronized void retain(Collection<String> agents) {
+        Set<String> configured = new HashSet<>(agents);
+        Iterator<Agent> iterator = AGENTS.values().iterator();
+
+        while (iterator.hasNext()) {
+            Agent agent = iterator.next();
+            if (!configured.contains(agent.NAME)) {
+                iterator.remove();
+                add(agent, -1);
+                summary = null;
+            }
+        }
+    }
+
+    /**
+     * Add or remove the contribution of an agent.
+     * @author Griefed
+     * @param agent The agent.
+     * @param sign Integer. <code>1</code> to add the contribution, <code>-1</code> to remove it.
+     */
+    private void add(Agent agent, int sign) {
+        STATUSES[agent.STATUS] += sign;
+        processes += sign * agent.PROCESSES;
+        memoryTotal += sign * agent.MEMORY_TOTAL;
+        memoryAvailable += sign * agent.MEMORY_AVAILABLE;
+        memoryAbove += agent.MEMORY >= MEMORY_THRESHOLD ? sign : 0;
+        diskTotal += sign * agent.DISK_TOTAL;
+        diskFree += sign * agent.DISK_FREE;
+        disksAbove += sign * agent.DISKS_ABOVE;
+        hostsDiskAbove += agent.DISKS_ABOVE > 0 ? sign : 0;
+
+        CPU.add(agent, sign);
+        MEMORY.add(agent, sign);
+        DISK.add(agent, sign);
+    }
+
+    /**
+     * Getter for the summary of all agents. Built once after every change, no matter how often it is requested.
+     * @author Griefed
+     * @return Snapshot of the JSON document. The fleet-wide counters, histograms and top lists.
+     */
+    public synchronized Snapshot getSummary() {
+        if (summary == null) {
+            summary = new Snapshot(buildSummary());
+        }
+
+        return summary;
+    }
+
+    /**
+     * Build the summary document.
+     * @author Griefed
+     * @return String in JSON format. The summary of all agents.
+     */
+    private String buildSummary() {
+        StringWriter writer = new StringWriter(4096);
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeNumberField("agents", AGENTS.size());
+            generator.writeNumberField("updated", updated);
+
+            generator.writeObjectFieldStart("status");
+            for (int status = 0; status < STATUS.length; status++) {
+                generator.writeNumberField(STATUS[status], STATUSES[status]);
+            }
+            generator.writeEndObject();
+
+            generator.writeObjectFieldStart("cpu");
+            generator.writeNumberField("processes", processes);
+            CPU.writeTo(generator);
+            generator.writeEndObject();
+
+            generator.writeObjectFieldStart("memory");
+            generator.writeNumberField("total_bytes", memoryTotal);
+            generator.writeNumberField("available_bytes", memoryAvailable);
+            generator.writeNumberField("used_percent", memoryTotal > 0 ? 100.0 - memoryAvailable * 100.0 / memoryTotal : 0);
+            generator.writeNumberField("hosts_above_threshold", memoryAbove);
+            MEMORY.writeTo(generator);
+            generator.writeEndObject();
+
+            generator.writeObjectFieldStart("disks");
+            generator.writeNumberField("total_bytes", diskTotal);
+            generator.writeNumberField("free_bytes", diskFree);
+            generator.writeNumberField("used_percent", diskTotal > 0 ? 100.0 - diskFree * 100.0 / diskTotal : 0);
+            generator.writeNumberField("disks_above_threshold", disksAbove);
+            generator.writeNumberField("hosts_above_threshold", hostsDiskAbove);
+            DISK.writeTo(generator);
+            generator.writeEndObject();
+
+            generator.writeEndObject();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        return writer.toString();
+    }
+
+    /**
+     * The values an agent contributes to the summary, taken from one of its documents.
+     * @author Griefed
+     */
+    private final class Agent {
+
+        private final String NAME;
+        private final String DOCUMENT;
+        private final int STATUS;
+        private final double CPU;
+        private final long PROCESSES;
+        private final double MEMORY;
+        private final long MEMORY_TOTAL;
+        private final long MEMORY_AVAILABLE;
+        private final double DISK;
+        private final long DISK_TOTAL;
+        private final long DISK_FREE;
+        private final int DISKS_ABOVE;
+
+        /**
+         * Constructor reading the values an agent contributes from its document. Hosts which are not up only contribute their status.
+         * @author Griefed
+         * @param name String. The agent.
+         * @param document String in JSON format. The document of the agent, kept to skip unchanged documents.
+         * @param root The parsed document of the agent.
+         */
+        private Agent(String name, String document, JsonNode root) {
+            this.NAME = name;
+            this.DOCUMENT = document;
+
+            int status = root.path("status").asInt(2);
+            this.STATUS = status >= 0 && status < SummaryService.STATUS.length ? status : 2;
+
+            // Hosts which are down keep contributing to the status only.
+            boolean up = this.STATUS == 0;
+
+            this.CPU = up ? root.path("cpu").path("load").path("system_percent").asDouble(Double.NaN) : Double.NaN;
+            this.PROCESSES = up ? root.path("cpu").path("processes").asLong(0) : 0;
+
+            JsonNode memory = root.path("memory");
+            this.MEMORY = up ? memory.path("used_percent").asDouble(Double.NaN) : Double.NaN;
+            this.MEMORY_TOTAL = up ? memory.path("total_bytes").asLong(0) : 0;
+            this.MEMORY_AVAILABLE = up ? memory.path("available_bytes").asLong(0) : 0;
+
+            double disk = Double.NaN;
+            long total = 0;
+            long free = 0;
+            int above = 0;
+
+            if (up) {
+                for (JsonNode node : root.path("disks")) {
+                    double used = node.path("used_percent").asDouble(Double.NaN);
+
+                    if (!Double.isNaN(used)) {
+                        disk = Double.isNaN(disk) ? used : Math.max(disk, used);
+                        above += used >= DISK_THRESHOLD ? 1 : 0;
+                    }
+
+                    total += node.path("total_bytes").asLong(0);
+                    free += node.path("free_bytes").asLong(0);
+                }
+            }
+
+            this.DISK = disk;
+            this.DISK_TOTAL = total;
+            this.DISK_FREE = free;
+            this.DISKS_ABOVE = above;
+        }
+    }
+
+    /**
+     * Reads the value of a metric from the contribution of an agent.
+     * @author Griefed
+     */
+    @FunctionalInterface
+    private interface Extractor {
+
+        /**
+         * Read the value.
+         * @author Griefed
+         * @param agent The agent.
+         * @return Double. The value in percent, <code>NaN</code> if the agent did not report it.
+         */
+        double get(Agent agent);
+    }
+
+    /**
+     * Fleet-wide aggregates of one metric in percent: how many hosts reported it, their sum, how many fall into every
+     * tenth of the range, and the hosts with the highest values, kept sorted.
+     * @author Griefed
+     */
+    private final class Metric {
+
+        private final Extractor EXTRACTOR;
+        private final long[] HISTOGRAM = new long[BUCKETS];
+        private final TreeSet<Agent> SORTED;
+
+        private long count = 0;
+        private double sum = 0;
+
+        /**
+         * Constructor of a metric without any hosts.
+         * @author Griefed
+         * @param extractor Reads the value of the metric from the contribution of an agent.
+         */
+        private Metric(Extractor extractor) {
+            this.EXTRACTOR = extractor;
+            this.SORTED = new TreeSet<>(Comparator.comparingDouble(EXTRACTOR::get).reversed().thenComparing(agent -> agent.NAME));
+        }
+
+        /**
+         * Add or remove the value of an agent. Agents which did not report the metric are skipped.
+         * @author Griefed
+         * @param agent The agent.
+         * @param sign Integer. <code>1</code> to add the value, <code>-1</code> to remove it.
+         */
+        private void add(Agent agent, int sign) {
+            double value = EXTRACTOR.get(agent);
+
+            if (Double.isNaN(value)) {
+                return;
+            }
+
+            count += sign;
+            sum += sign * value;
+            HISTOGRAM[Math.max(0, Math.min(BUCKETS - 1, (int) (value / (100 / BUCKETS))))] += sign;
+
+            if (sign > 0) {
+                SORTED.add(agent);
+            } else {
+                SORTED.remove(agent);
+            }
+        }
+
+        /**
+         * Write the number of hosts reporting the metric, their average, the histogram and the top list as fields of the
+         * current object.
+         * @author Griefed
+         * @param generator Instance of {@link JsonGenerator} to write to.
+         * @throws IOException if the generator fails to write.
+         */
+        private void writeTo(JsonGenerator generator) throws IOException {
+            generator.writeNumberField("reporting", count);
+            generator.writeNumberField("average_percent", count > 0 ? sum / count : 0);
+
+            generator.writeArrayFieldStart("histogram");
+            for (long hosts : HISTOGRAM) {
+                generator.writeNumber(hosts);
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("top");
+            Iterator<Agent> iterator = SORTED.iterator();
+            for (int i = 0; i < TOP && iterator.hasNext(); i++) {
+                Agent agent = iterator.next();
+                generator.writeStartObject();
+                generator.writeStringField("agent", agent.NAME);
+                generator.writeNumberField("percent", EXTRACTOR.get(agent));
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.AgentTransport;
+import io.netty.channel.ChannelOption;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking {@link AgentTransport} backed by a {@link WebClient} running on Reactor Netty. All requests share one
+ * keep-alive connection pool and a small number of event-loop threads, so hundreds of agents can be queried at the same
+ * time without a thread per request.
+ * @author Griefed
+ */
+public class WebClientAgentTransport implements AgentTransport {
+
+    private final ConnectionProvider CONNECTION_PROVIDER;
+    private final LoopResources LOOP_RESOURCES;
+    private final WebClient WEB_CLIENT;
+
+    /**
+     * Constructor setting up the connection pool, event-loop and {@link WebClient}.
+     * @author Griefed
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     * @param injectedResolverService Instance of {@link ResolverService}, used to resolve the hostnames of agents.
+     */
+    public WebClientAgentTransport(ApplicationProperties injectedApplicationProperties, ResolverService injectedResolverService) {
+
+        // Reactor Netty keeps one pool per remote address, so maxConnections is the limit per agent.
+        this.CONNECTION_PROVIDER = ConnectionProvider.builder("agents")
+                .maxConnections(injectedApplicationProperties.getHttpConnectionsPerHost())
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(Duration.ofSeconds(injectedApplicationProperties.getTimeoutAgent()))
+                .maxIdleTime(Duration.ofSeconds(injectedApplicationProperties.getHttpIdleTimeout()))
+                .build();
+
+        this.LOOP_RESOURCES = LoopResources.create("agent-http", injectedApplicationProperties.getHttpThreads(), true);
+
+        HttpClient httpClient = HttpClient.create(CONNECTION_PROVIDER)
+                .runOn(LOOP_RESOURCES)
+                .resolver(new CachingAddressResolverGroup(injectedResolverService))
+                .keepAlive(true)
+                .compress(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, injectedApplicationProperties.getTimeoutConnect() * 1000)
+                .responseTimeout(Duration.ofSeconds(injectedApplicationProperties.getTimeoutRead()));
+
+        this.WEB_CLIENT = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build();
+    }
+
+    /**
+     * Start retrieving the information of the given agent. The returned future completes on an event-loop thread, so
+     * dependent stages must not block.
+     * @author Griefed
+     * @param agent String. The address of the agent, for example <code>http://127.0.0.1:8080</code>.
+     * @param query String. The query to append to the request, starting with <code>?</code>, or an empty string.
+     * @return CompletableFuture ResponseEntity String. The response of the agent.
+     */
+    @Override
+    public CompletableFuture<ResponseEntity<String>> fetch(String agent, String query) {
+        return WEB_CLIENT.get()
+                .uri(URI.create(agent + "/api/v1/agent" + query))
+                .retrieve()
+                .toEntity(String.class)
+                .toFuture();
+    }
+
+    /**
+     * Close all pooled connections and stop the event-loop threads.
+     * @author Griefed
+     */
+    @Override
+    public void close() {
+        CONNECTION_PROVIDER.dispose();
+        LOOP_RESOURCES.dispose();
+    }
+}
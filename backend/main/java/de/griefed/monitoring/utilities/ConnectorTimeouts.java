@@ -0,0 +1,88 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import de.griefed.monitoring.ApplicationProperties;
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.AbstractProtocol;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class responsible for bounding how long a write to a client may block. Tomcat fails a blocking write once the client
+ * did not take any data for the connection timeout of the connector, which is 60 seconds by default. Subscribers of
+ * <code>/api/v1/stream</code> which stopped reading would tie up a sender thread for that long, so the timeout is lowered
+ * to <code>de.griefed.monitoring.stream.send.timeout</code> seconds, unless it is configured lower already. The keep-alive
+ * timeout of idle connections defaults to the connection timeout, so it is kept as it was.
+ * @author Griefed
+ */
+@Configuration
+public class ConnectorTimeouts implements WebServerFactoryCustomizer<TomcatServletWebServerFactory> {
+
+    private static final Logger LOG = LogManager.getLogger(ConnectorTimeouts.class);
+
+    private final ApplicationProperties PROPERTIES;
+
+    /**
+     * Constructor responsible for DI.
+     * @author Griefed
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     */
+    public ConnectorTimeouts(ApplicationProperties injectedApplicationProperties) {
+        this.PROPERTIES = injectedApplicationProperties;
+    }
+
+    @Override
+    public void customize(TomcatServletWebServerFactory factory) {
+        factory.addConnectorCustomizers(this::limitWriteTimeout);
+    }
+
+    /**
+     * Lower the connection timeout of a connector, which Tomcat also uses as the timeout of every write.
+     * @author Griefed
+     * @param connector The connector to configure.
+     */
+    private void limitWriteTimeout(Connector connector) {
+        if (!(connector.getProtocolHandler() instanceof AbstractProtocol)) {
+            return;
+        }
+
+        AbstractProtocol<?> protocol = (AbstractProtocol<?>) connector.getProtocolHandler();
+        int timeout = (int) TimeUnit.SECONDS.toMillis(PROPERTIES.getStreamSendTimeout());
+
+        if (protocol.getConnectionTimeout() > 0 && protocol.getConnectionTimeout() <= timeout) {
+            return;
+        }
+
+        int keepAlive = protocol.getKeepAliveTimeout();
+        protocol.setConnectionTimeout(timeout);
+        protocol.setKeepAliveTimeout(keepAlive);
+
+        LOG.debug("Writes to clients time out after " + timeout + " ms.");
+    }
+}
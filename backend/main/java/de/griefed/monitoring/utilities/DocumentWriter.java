@@ -0,0 +1,75 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import de.griefed.monitoring.models.ComponentInformation;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Serializes information into JSON with a streaming generator. Every thread writes into its own buffer which is reused
+ * between calls, so serializing costs one string for the result and nothing else which needs to be collected.
+ * @author Griefed
+ */
+public final class DocumentWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final ThreadLocal<StringWriter> BUFFER = ThreadLocal.withInitial(() -> new StringWriter(16384));
+
+    /**
+     * Constructor. Not to be instantiated, all methods are static.
+     * @author Griefed
+     */
+    private DocumentWriter() {}
+
+    /**
+     * Serialize the passed information. Anything can be written in one pass by passing a lambda, for example a whole
+     * document made up of fragments which were serialized earlier and are embedded with {@link JsonGenerator#writeRawValue(String)}.
+     * @author Griefed
+     * @param information Instance of {@link ComponentInformation} to serialize.
+     * @return String in JSON format. The serialized information.
+     */
+    public static String write(ComponentInformation information) {
+        StringWriter stringWriter = BUFFER.get();
+        stringWriter.getBuffer().setLength(0);
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(stringWriter)) {
+            information.writeTo(generator);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+
+        String json = stringWriter.toString();
+
+        // Do not keep huge buffers around after an exceptionally large document.
+        if (stringWriter.getBuffer().capacity() > 1048576) {
+            BUFFER.remove();
+        }
+
+        return json;
+    }
+}
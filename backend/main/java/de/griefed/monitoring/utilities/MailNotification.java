@@ -23,32 +23,62 @@
 package de.griefed.monitoring.utilities;
 
 import de.griefed.monitoring.ApplicationProperties;
-import de.griefed.monitoring.components.RamComponent;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
 
-
+import javax.annotation.PreDestroy;
 import javax.mail.*;
 import javax.mail.internet.InternetAddress;
 import javax.mail.internet.MimeMessage;
-import java.util.Date;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This class provides the sendMailNotification method to send an email with the passed body to the configured
- * email-recipients.
+ * email-recipients.<br>
+ * Notifications are only queued by the caller. A background sender collects everything which arrives within
+ * <code>de.griefed.monitoring.mail.digest.delay</code> seconds into one digest per recipient and sends it over one SMTP
+ * connection, which is kept open between digests. Every recipient receives at most <code>de.griefed.monitoring.mail.rate</code>
+ * mails per hour, notifications beyond that are kept for the next digest the recipient may receive.
  * @author Griefed
  */
 @Service
 public class MailNotification {
 
     private static final Logger LOG = LogManager.getLogger(MailNotification.class);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
 
     private final ApplicationProperties PROPERTIES;
-    private final Message MESSAGE;
+    private final Session SESSION;
+    private final BlockingQueue<Notification> QUEUE;
+    private final Map<Address, List<Notification>> PENDING = new LinkedHashMap<>();
+    private final Map<Address, Deque<Long>> SENT = new HashMap<>();
+    private final AtomicLong QUEUED = new AtomicLong(0);
+    private final AtomicLong DROPPED = new AtomicLong(0);
+    private final AtomicLong DIGESTS = new AtomicLong(0);
+    private final AtomicLong FAILED = new AtomicLong(0);
+    private final AtomicLong HELD = new AtomicLong(0);
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
     private final boolean mailEnabled;
+    private final Address FROM;
+    private final Address[] RECIPIENTS;
+    private final long DIGEST_DELAY;
+    private final int RATE;
+    private final int CAPACITY;
+    private final ExecutorService SENDER;
+
+    private Transport transport;
 
     /**
      * Constructor responsible for our DI and setting up the email-notification system.
@@ -58,7 +88,7 @@ public class MailNotification {
     @Autowired
     public MailNotification(ApplicationProperties injectedApplicationProperties) {
         this.PROPERTIES = injectedApplicationProperties;
-        Session SESSION = Session.getInstance(PROPERTIES, new Authenticator() {
+        this.SESSION = Session.getInstance(PROPERTIES, new Authenticator() {
             protected PasswordAuthentication getPasswordAuthentication() {
                 return new PasswordAuthentication(
                         PROPERTIES.getProperty("mail.user", "example@example.com"),
@@ -66,9 +96,14 @@ public class MailNotification {
             }
         });
 
-        this.MESSAGE = new MimeMessage(SESSION);
+        this.DIGEST_DELAY = TimeUnit.SECONDS.toMillis(PROPERTIES.getMailDigestDelay());
+        this.RATE = PROPERTIES.getMailRate();
+        this.CAPACITY = PROPERTIES.getMailQueueCapacity();
+        this.QUEUE = new LinkedBlockingQueue<>(CAPACITY);
 
         boolean mailing = false;
+        Address from = null;
+        Address[] recipients = new Address[0];
 
         try {
 
@@ -84,9 +119,8 @@ public class MailNotification {
 
             } else {
 
-                InternetAddress internetAddress = new InternetAddress(PROPERTIES.getProperty("mail.from","monitoring@example.com"));
-                this.MESSAGE.setFrom(internetAddress);
-                this.MESSAGE.setRecipients(Message.RecipientType.TO, InternetAddress.parse(PROPERTIES.getProperty("mail.recipients","example@example.com")));
+                from = new InternetAddress(PROPERTIES.getProperty("mail.from","monitoring@example.com"));
+                recipients = InternetAddress.parse(PROPERTIES.getProperty("mail.recipients","example@example.com"));
 
                 mailing = true;
 
@@ -106,26 +140,255 @@ public class MailNotification {
             }
 
         }
+
+        this.FROM = from;
+        this.RECIPIENTS = recipients;
+
+        CustomizableThreadFactory senderThreads = new CustomizableThreadFactory("mail-");
+        senderThreads.setDaemon(true);
+        this.SENDER = Executors.newSingleThreadExecutor(senderThreads);
+
+        if (this.mailEnabled) {
+            SENDER.execute(this::send);
+        }
     }
 
     /**
-     * Email the configured recipients with the passed subject and body.
+     * Queue a notification for the configured recipients with the passed subject and body. Returns immediately, the mail is
+     * sent in the background as part of the next digest. If the queue is full, the notification is dropped.
      * @author Griefed
      * @param subject String. Subject of the mail to send.
      * @param content String. The content which should make up the mails body.
-     * @throws MessagingException Exception thrown if an error occurs sending the email.
      */
-    public void sendMailNotification(String subject, String content) throws MessagingException {
+    public void sendMailNotification(String subject, String content) {
         if (this.mailEnabled) {
 
-            Message message = this.MESSAGE;
+            if (QUEUE.offer(new Notification(subject, content))) {
+                QUEUED.incrementAndGet();
+            } else {
+                DROPPED.incrementAndGet();
+                LOG.warn("Notification queue full. Dropping notification: " + subject);
+            }
+
+        }
+    }
+
+    /**
+     * Wait for notifications, collect everything which arrives within the digest delay and deliver the digests, until
+     * the application shuts down.
+     * @author Griefed
+     */
+    private void send() {
+        List<Notification> arrived = new ArrayList<>();
+
+        try {
+
+            while (!Thread.currentThread().isInterrupted()) {
+
+                // Wake up for notifications held back by the rate limit, even if nothing new arrives.
+                Notification next = PENDING.isEmpty() ? QUEUE.take() : QUEUE.poll(DIGEST_DELAY, TimeUnit.MILLISECONDS);
+
+                // Hold a notification right away, so it counts as waiting while the digest delay passes.
+                if (next != null) {
+                    hold(next);
+                    Thread.sleep(DIGEST_DELAY);
+                }
+
+                QUEUE.drainTo(arrived);
+
+                for (Notification notification : arrived) {
+                    hold(notification);
+                }
+
+                arrived.clear();
+                deliver();
+            }
+
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeTransport();
+        }
+    }
+
+    /**
+     * Keep a notification for every recipient until it is delivered. At most as many notifications as fit into the queue
+     * are kept per recipient, older ones are dropped first.
+     * @author Griefed
+     * @param notification The notification.
+     */
+    private void hold(Notification notification) {
+        for (Address recipient : RECIPIENTS) {
+            List<Notification> pending = PENDING.computeIfAbsent(recipient, key -> new ArrayList<>());
+
+            if (pending.size() >= CAPACITY) {
+                pending.remove(0);
+                DROPPED.incrementAndGet();
+            } else {
+                HELD.incrementAndGet();
+            }
+
+            pending.add(notification);
+        }
+    }
+
+    /**
+     * Send a digest of their pending notifications to every recipient which did not exceed its rate limit. Notifications
+     * of recipients which did, or whose digest could not be sent, are kept for the next attempt.
+     * @author Griefed
+     */
+    private void deliver() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Address, List<Notification>>> entries = PENDING.entrySet().iterator();
+
+        while (entries.hasNext()) {
+            Map.Entry<Address, List<Notification>> entry = entries.next();
+            Deque<Long> sent = SENT.computeIfAbsent(entry.getKey(), key -> new ArrayDeque<>());
+
+            while (!sent.isEmpty() && now - sent.peekFirst() >= HOUR) {
+                sent.pollFirst();
+            }
+
+            if (sent.size() >= RATE) {
+                LOG.debug("Rate limit reached for " + entry.getKey() + ". Holding " + entry.getValue().size() + " notification(s).");
+                continue;
+            }
+
+            try {
+
+                Message message = createDigest(entry.getKey(), entry.getValue());
+                getTransport().sendMessage(message, message.getAllRecipients());
 
-            message.setSubject(subject);
-            message.setContent(content, "text/html");
-            message.setSentDate(new Date());
+                sent.addLast(now);
+                DIGESTS.incrementAndGet();
+                HELD.addAndGet(-entry.getValue().size());
+                entries.remove();
+
+            } catch (MessagingException ex) {
+
+                FAILED.incrementAndGet();
+                LOG.error("Error sending email notification to " + entry.getKey() + ".", ex);
+                closeTransport();
+                return;
+
+            }
+        }
+    }
+
+    /**
+     * Create the mail for a recipient. A single notification is sent as it is, several are combined into one digest.
+     * @author Griefed
+     * @param recipient The recipient.
+     * @param notifications The notifications for the recipient, oldest first.
+     * @return The mail.
+     * @throws MessagingException if the mail could not be created.
+     */
+    private Message createDigest(Address recipient, List<Notification> notifications) throws MessagingException {
+        Message message = new MimeMessage(SESSION);
+        message.setFrom(FROM);
+        message.setRecipient(Message.RecipientType.TO, recipient);
+        message.setSentDate(new Date());
+
+        if (notifications.size() == 1) {
+
+            message.setSubject(notifications.get(0).SUBJECT);
+            message.setContent(notifications.get(0).CONTENT, "text/html");
+
+        } else {
+
+            StringBuilder content = new StringBuilder(notifications.size() * 200);
+            for (Notification notification : notifications) {
+                content.append("<p><b>").append(dateFormat.format(new Date(notification.TIME))).append(" - ")
+                        .append(HtmlUtils.htmlEscape(notification.SUBJECT)).append("</b><br>")
+                        .append(HtmlUtils.htmlEscape(notification.CONTENT).replace("\n", "<br>")).append("</p>");
+            }
+
+            message.setSubject(notifications.get(0).SUBJECT + " (and " + (notifications.size() - 1) + " more)");
+            message.setContent(content.toString(), "text/html");
+
+        }
+
+        return message;
+    }
+
+    /**
+     * Getter for the SMTP connection, which is opened on first use and kept open for the next digests. Reconnects if the
+     * server closed it meanwhile.
+     * @author Griefed
+     * @return The connected transport.
+     * @throws MessagingException if no connection could be made.
+     */
+    private Transport getTransport() throws MessagingException {
+        if (transport == null) {
+            transport = SESSION.getTransport("smtp");
+        }
+
+        if (!transport.isConnected()) {
+            transport.connect();
+        }
+
+        return transport;
+    }
+
+    /**
+     * Close the SMTP connection, if it is open.
+     * @author Griefed
+     */
+    private void closeTransport() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException ex) {
+                LOG.debug("Error closing SMTP connection.", ex);
+            }
+            transport = null;
+        }
+    }
+
+    /**
+     * Getter for the statistics of the notifications.
+     * @author Griefed
+     * @return String in JSON format. How many notifications were queued and dropped, how many digests were sent and
+     * failed, and how many notifications are waiting, either in the queue or held for the next digest. A held notification
+     * counts once per recipient it was not delivered to yet.
+     */
+    public String getStatistics() {
+        return "{\"enabled\": " + mailEnabled +
+                ",\"queued\": " + QUEUED.get() +
+                ",\"dropped\": " + DROPPED.get() +
+                ",\"digests\": " + DIGESTS.get() +
+                ",\"failed\": " + FAILED.get() +
+                ",\"waiting\": " + (QUEUE.size() + HELD.get()) + "}";
+    }
+
+    /**
+     * Stop the sender when the application shuts down. Notifications which were not sent yet are lost.
+     * @author Griefed
+     */
+    @PreDestroy
+    public void shutdown() {
+        SENDER.shutdownNow();
+    }
+
+    /**
+     * A notification waiting to be sent.
+     * @author Griefed
+     */
+    private static final class Notification {
 
-            Transport.send(message);
+        private final String SUBJECT;
+        private final String CONTENT;
+        private final long TIME = System.currentTimeMillis();
 
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param subject String. The subject of the notification.
+         * @param content String. The body of the notification.
+         */
+        private Notification(String subject, String content) {
+            this.SUBJECT = subject;
+            this.CONTENT = content;
         }
     }
 }
@@ -0,0 +1,213 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.TriggerContext;
+
+import java.util.Date;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A task which runs on a schedule, in the pool of its group instead of on the thread of the scheduler. The scheduler only
+ * hands the task over, so a long run never delays other tasks. Runs of the same task never overlap: if the task is still
+ * running when it is due again, the run is either skipped or coalesced into one more run right after the current one,
+ * depending on its {@link Overrun} policy.<br>
+ * How late every run started compared to its schedule, how long it took and how often runs were skipped or coalesced
+ * is counted for {@link #getStatistics()}.
+ * @author Griefed
+ */
+public final class ScheduledJob implements Trigger {
+
+    private static final Logger LOG = LogManager.getLogger(ScheduledJob.class);
+
+    /**
+     * What to do when a task is due while it is still running.
+     */
+    public enum Overrun {
+        /**
+         * Drop the run. For tasks which are due again soon anyway.
+         */
+        SKIP,
+        /**
+         * Run once more right after the current run, no matter how often the task was due meanwhile.
+         */
+        COALESCE
+    }
+
+    private final String NAME;
+    private final String GROUP;
+    private final Runnable TASK;
+    private final Trigger TRIGGER;
+    private final Executor EXECUTOR;
+    private final Overrun OVERRUN;
+    private final AtomicBoolean RUNNING = new AtomicBoolean(false);
+    private final AtomicBoolean PENDING = new AtomicBoolean(false);
+    private final AtomicLong RUNS = new AtomicLong(0);
+    private final AtomicLong SKIPPED = new AtomicLong(0);
+    private final AtomicLong COALESCED = new AtomicLong(0);
+    private final AtomicLong FAILED = new AtomicLong(0);
+
+    private volatile long due;
+    private volatile long lastLag;
+    private volatile long lastDuration;
+    private volatile long maxDuration;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param name String. The name of the task, for logs and statistics.
+     * @param group String. The name of the pool the task runs in.
+     * @param task The task to run.
+     * @param trigger The schedule of the task.
+     * @param executor The pool to run the task in.
+     * @param overrun What to do when the task is due while it is still running.
+     */
+    public ScheduledJob(String name, String group, Runnable task, Trigger trigger, Executor executor, Overrun overrun) {
+        this.NAME = name;
+        this.GROUP = group;
+        this.TASK = task;
+        this.TRIGGER = trigger;
+        this.EXECUTOR = executor;
+        this.OVERRUN = overrun;
+    }
+
+    /**
+     * Calculate the next time the task is due, and remember it to measure how late the run starts.
+     * @author Griefed
+     * @param triggerContext The context of the scheduler.
+     * @return Date. The next time the task is due, or <code>null</code> if it is never due again.
+     */
+    @Override
+    public Date nextExecutionTime(TriggerContext triggerContext) {
+        Date next = TRIGGER.nextExecutionTime(triggerContext);
+
+        if (next != null) {
+            this.due = next.getTime();
+        }
+
+        return next;
+    }
+
+    /**
+     * Called by the scheduler when the task is due. Hands the task over to its pool, unless it is still running.
+     * @author Griefed
+     */
+    public void fire() {
+        long scheduled = due == 0 ? System.currentTimeMillis() : due;
+
+        if (!RUNNING.compareAndSet(false, true)) {
+
+            if (OVERRUN == Overrun.COALESCE) {
+                PENDING.set(true);
+                COALESCED.incrementAndGet();
+            } else {
+                SKIPPED.incrementAndGet();
+                LOG.debug("Skipping " + NAME + ", the previous run is still going.");
+            }
+
+            return;
+        }
+
+        try {
+            EXECUTOR.execute(() -> run(scheduled));
+        } catch (RejectedExecutionException ex) {
+            RUNNING.set(false);
+            LOG.warn("Could not run " + NAME + ", the " + GROUP + " pool is shut down.");
+        }
+    }
+
+    /**
+     * Run the task, and run it again as long as it was due meanwhile and coalesced.
+     * @author Griefed
+     * @param scheduled Long. When the run was due, in milliseconds since the epoch.
+     */
+    private void run(long scheduled) {
+        try {
+
+            do {
+                PENDING.set(false);
+
+                long start = System.currentTimeMillis();
+                this.lastLag = Math.max(0L, start - scheduled);
+
+                try {
+                    TASK.run();
+                } catch (RuntimeException ex) {
+                    FAILED.incrementAndGet();
+                    LOG.error("Error running " + NAME + ".", ex);
+                }
+
+                long duration = System.currentTimeMillis() - start;
+                this.lastDuration = duration;
+                this.maxDuration = Math.max(maxDuration, duration);
+                RUNS.incrementAndGet();
+
+                // A coalesced run is due as soon as the current one is done.
+                scheduled = System.currentTimeMillis();
+
+            } while (PENDING.get());
+
+        } finally {
+            RUNNING.set(false);
+        }
+
+        // Due while the flag was being cleared.
+        if (PENDING.get()) {
+            fire();
+        }
+    }
+
+    /**
+     * Getter for the name of this task.
+     * @author Griefed
+     * @return String. The name of the task, as used in logs and statistics.
+     */
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Getter for the statistics of this task.
+     * @author Griefed
+     * @return String in JSON format. The group, whether the task is running, how often it ran, failed, was skipped or
+     * coalesced, how many milliseconds the last run started late, and how many milliseconds the last and longest run took.
+     */
+    public String getStatistics() {
+        return "{\"group\": \"" + GROUP + "\"" +
+                ",\"overrun\": \"" + OVERRUN.name().toLowerCase() + "\"" +
+                ",\"running\": " + RUNNING.get() +
+                ",\"runs\": " + RUNS.get() +
+                ",\"failed\": " + FAILED.get() +
+                ",\"skipped\": " + SKIPPED.get() +
+                ",\"coalesced\": " + COALESCED.get() +
+                ",\"last_lag_ms\": " + lastLag +
+                ",\"last_duration_ms\": " + lastDuration +
+                ",\"max_duration_ms\": " + maxDuration + "}";
+    }
+}
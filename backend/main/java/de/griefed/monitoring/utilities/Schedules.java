@@ -23,17 +23,41 @@
 package de.griefed.monitoring.utilities;
 
 import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.components.CpuComponent;
+import de.griefed.monitoring.components.DiskComponent;
+import de.griefed.monitoring.components.RamComponent;
 import de.griefed.monitoring.services.InformationService;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.scheduling.support.CronTrigger;
 
+import javax.annotation.PreDestroy;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Class responsible for scheduling all recurring tasks. The scheduler itself only keeps time, every task runs in the pool
+ * of its group: collection for updating the information about the host, agents for querying the agents and alerting for
+ * email notifications. A long agent sweep therefore never delays the host update or the notifications, and vice versa.
+ * See {@link ScheduledJob} for what happens when a task is due while it is still running. The cronjobs are resolved through
+ * the {@link Environment} of Spring, so system properties, command line arguments and every application.properties override
+ * the defaults from the bundled one.
+ * @author Griefed
+ */
 @Configuration
-public class Schedules {
+public class Schedules implements SchedulingConfigurer {
 
     private static final Logger LOG = LogManager.getLogger(Schedules.class);
 
@@ -41,17 +65,143 @@ public class Schedules {
 
     private final InformationService INFORMATION_SERVICE;
     private final ApplicationProperties PROPERTIES;
+    private final Environment ENVIRONMENT;
+    private final CpuComponent CPU_COMPONENT;
+    private final DiskComponent DISK_COMPONENT;
+    private final RamComponent RAM_COMPONENT;
+    private final ThreadPoolTaskScheduler SCHEDULER;
+    private final ExecutorService COLLECTION;
+    private final ExecutorService AGENTS;
+    private final ExecutorService ALERTING;
+    private final List<ScheduledJob> JOBS = new CopyOnWriteArrayList<>();
 
-    public Schedules(InformationService injectedInformationService, ApplicationProperties injectedApplicationProperties) {
+    /**
+     * Constructor responsible for DI.
+     * @author Griefed
+     * @param injectedInformationService Instance of {@link InformationService}.
+     * @param injectedApplicationProperties Instance of {@link ApplicationProperties}.
+     * @param injectedCpuComponent Instance of {@link CpuComponent}.
+     * @param injectedDiskComponent Instance of {@link DiskComponent}.
+     * @param injectedRamComponent Instance of {@link RamComponent}.
+     * @param injectedEnvironment Instance of {@link Environment}.
+     */
+    public Schedules(InformationService injectedInformationService, ApplicationProperties injectedApplicationProperties,
+                     CpuComponent injectedCpuComponent, DiskComponent injectedDiskComponent, RamComponent injectedRamComponent,
+                     Environment injectedEnvironment) {
         this.INFORMATION_SERVICE = injectedInformationService;
         this.PROPERTIES = injectedApplicationProperties;
+        this.ENVIRONMENT = injectedEnvironment;
+        this.CPU_COMPONENT = injectedCpuComponent;
+        this.DISK_COMPONENT = injectedDiskComponent;
+        this.RAM_COMPONENT = injectedRamComponent;
+
+        this.SCHEDULER = new ThreadPoolTaskScheduler();
+        this.SCHEDULER.setThreadNamePrefix("scheduler-");
+        this.SCHEDULER.setDaemon(true);
+        this.SCHEDULER.initialize();
+
+        this.COLLECTION = createPool("collection-", PROPERTIES.getSchedulingPoolCollection());
+        this.AGENTS = createPool("agents-", PROPERTIES.getSchedulingPoolAgents());
+        this.ALERTING = createPool("alerting-", PROPERTIES.getSchedulingPoolAlerting());
     }
 
-    @Scheduled(cron = "${de.griefed.monitoring.schedule.agents}")
+    /**
+     * Create the pool for a group of tasks.
+     * @author Griefed
+     * @param prefix String. The prefix of the names of the threads.
+     * @param threads Integer. The number of threads.
+     * @return ExecutorService. The pool.
+     */
+    private ExecutorService createPool(String prefix, int threads) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+
+    /**
+     * Register all tasks with their schedules and pools.
+     * @author Griefed
+     * @param taskRegistrar The registrar of Spring.
+     */
+    @Override
+    public void configureTasks(ScheduledTaskRegistrar taskRegistrar) {
+        taskRegistrar.setTaskScheduler(SCHEDULER);
+
+        schedule(taskRegistrar, "update", "collection", "de.griefed.monitoring.schedule.update",
+                INFORMATION_SERVICE::updateHostInformation, COLLECTION, ScheduledJob.Overrun.SKIP);
+        schedule(taskRegistrar, "update.slow", "collection", "de.griefed.monitoring.schedule.update.slow",
+                INFORMATION_SERVICE::updateSlowHostInformation, COLLECTION, ScheduledJob.Overrun.COALESCE);
+        schedule(taskRegistrar, "agents", "agents", "de.griefed.monitoring.schedule.agents",
+                this::refreshAgentsInformation, AGENTS, ScheduledJob.Overrun.SKIP);
+        schedule(taskRegistrar, "notification.cpu", "alerting", "de.griefed.monitoring.schedule.email.notification.cpu",
+                CPU_COMPONENT::sendNotification, ALERTING, ScheduledJob.Overrun.COALESCE);
+        schedule(taskRegistrar, "notification.disk", "alerting", "de.griefed.monitoring.schedule.email.notification.disk",
+                DISK_COMPONENT::sendNotification, ALERTING, ScheduledJob.Overrun.COALESCE);
+        schedule(taskRegistrar, "notification.memory", "alerting", "de.griefed.monitoring.schedule.email.notification.memory",
+                RAM_COMPONENT::sendNotification, ALERTING, ScheduledJob.Overrun.COALESCE);
+    }
+
+    /**
+     * Register a task, unless its cronjob is set to <code>-</code>.
+     * @author Griefed
+     * @param taskRegistrar The registrar of Spring.
+     * @param name String. The name of the task, for logs and statistics.
+     * @param group String. The name of the pool the task runs in.
+     * @param property String. The property holding the cronjob of the task.
+     * @param task The task.
+     * @param pool The pool to run the task in.
+     * @param overrun What to do when the task is due while it is still running.
+     */
+    private void schedule(ScheduledTaskRegistrar taskRegistrar, String name, String group, String property, Runnable task,
+                          ExecutorService pool, ScheduledJob.Overrun overrun) {
+        String expression = ENVIRONMENT.getRequiredProperty(property).trim();
+
+        if (Scheduled.CRON_DISABLED.equals(expression)) {
+            LOG.info("Task " + name + " is disabled.");
+            return;
+        }
+
+        ScheduledJob job = new ScheduledJob(name, group, task, new CronTrigger(expression), pool, overrun);
+
+        JOBS.add(job);
+        taskRegistrar.addTriggerTask(job::fire, job);
+    }
+
+    /**
+     * Query all agents, if this instance is a monitor.
+     * @author Griefed
+     */
     public void refreshAgentsInformation() {
         if (!PROPERTIES.isAgent()) {
             LOG.debug("Current Time: " + dateFormat.format(new Date()) + " - Refreshing agents information.");
             INFORMATION_SERVICE.setAgentsInformation();
         }
     }
+
+    /**
+     * Getter for the statistics of all scheduled tasks.
+     * @author Griefed
+     * @return String in JSON format. The statistics of every task, by name. See {@link ScheduledJob#getStatistics()}.
+     */
+    public String getStatistics() {
+        StringJoiner statistics = new StringJoiner(",", "{", "}");
+
+        for (ScheduledJob job : JOBS) {
+            statistics.add("\"" + job.getName() + "\": " + job.getStatistics());
+        }
+
+        return statistics.toString();
+    }
+
+    /**
+     * Stop the scheduler and all pools when the application shuts down.
+     * @author Griefed
+     */
+    @PreDestroy
+    public void shutdown() {
+        SCHEDULER.shutdown();
+        COLLECTION.shutdownNow();
+        AGENTS.shutdownNow();
+        ALERTING.shutdownNow();
+    }
 }
@@ -0,0 +1,143 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the latest published value of something which is built by one thread and read by many, like the documents served
+ * by the REST endpoints. Readers never lock, they always see one complete value together with the sequence number and
+ * time it was published at. If nothing was published yet, {@link #getOrRefresh(Runnable)} makes sure only one caller runs
+ * the refresh while all others wait for its result, instead of every caller refreshing on its own.
+ * @author Griefed
+ * @param <T> The type of the value. Should be immutable.
+ */
+public final class SnapshotHolder<T> {
+
+    private final AtomicReference<Published<T>> CURRENT = new AtomicReference<>();
+    private final Object REFRESH = new Object();
+
+    /**
+     * Getter for the latest published value.
+     * @author Griefed
+     * @return Instance of {@link Published}. The latest value, or <code>null</code> if nothing was published yet.
+     */
+    public Published<T> get() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Getter for the latest published value. If nothing was published yet, the refresh is run to publish one. Concurrent
+     * callers wait for the one refresh which is running instead of starting their own.
+     * @author Griefed
+     * @param refresh The refresh which publishes a value to this holder.
+     * @return Instance of {@link Published}. The latest value, or <code>null</code> if the refresh did not publish one.
+     */
+    public Published<T> getOrRefresh(Runnable refresh) {
+        Published<T> published = CURRENT.get();
+
+        if (published == null) {
+            synchronized (REFRESH) {
+                published = CURRENT.get();
+
+                if (published == null) {
+                    refresh.run();
+                    published = CURRENT.get();
+                }
+            }
+        }
+
+        return published;
+    }
+
+    /**
+     * Publish a new value. It replaces the previous one for all readers at once, with the next sequence number.
+     * @author Griefed
+     * @param value The value to publish.
+     * @return Instance of {@link Published}. The published value.
+     */
+    public Published<T> publish(T value) {
+        Published<T> previous;
+        Published<T> next;
+
+        do {
+            previous = CURRENT.get();
+            next = new Published<>(value, previous == null ? 1 : previous.SEQUENCE + 1, System.currentTimeMillis());
+        } while (!CURRENT.compareAndSet(previous, next));
+
+        return next;
+    }
+
+    /**
+     * An immutable value together with when it was published.
+     * @author Griefed
+     * @param <T> The type of the value.
+     */
+    public static final class Published<T> {
+
+        private final T VALUE;
+        private final long SEQUENCE;
+        private final long TIMESTAMP;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param value The published value.
+         * @param sequence Long. The sequence number of the value.
+         * @param timestamp Long. The time the value was published at, in milliseconds since the epoch.
+         */
+        private Published(T value, long sequence, long timestamp) {
+            this.VALUE = value;
+            this.SEQUENCE = sequence;
+            this.TIMESTAMP = timestamp;
+        }
+
+        /**
+         * Getter for the published value.
+         * @author Griefed
+         * @return The published value.
+         */
+        public T getValue() {
+            return VALUE;
+        }
+
+        /**
+         * Getter for the sequence number of this value. The first value published to a holder has the number <code>1</code>,
+         * every value published after it the next one.
+         * @author Griefed
+         * @return Long. The sequence number.
+         */
+        public long getSequence() {
+            return SEQUENCE;
+        }
+
+        /**
+         * Getter for the time this value was published at.
+         * @author Griefed
+         * @return Long. Milliseconds since the epoch.
+         */
+        public long getTimestamp() {
+            return TIMESTAMP;
+        }
+    }
+}
@@ -0,0 +1,380 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A compressed block of samples of a single series, covering one window of time. Timestamps are stored as seconds,
+ * encoded as the difference between consecutive deltas, which is <code>0</code> for regularly scheduled samples and
+ * costs a single bit. Values are XORed with their predecessor and only the meaningful bits of the result are stored,
+ * so a value which did not change costs a single bit as well, and slowly changing values a few more.<br>
+ * A chunk is written by a single thread. {@link #read(ByteBuffer, int, int, SampleConsumer)} decodes a chunk from
+ * wherever its bytes are, be it the heap or a memory-mapped segment.
+ * @author Griefed
+ */
+public class TimeSeriesChunk {
+
+    private final long WINDOW;
+
+    private byte[] bytes = new byte[32];
+    private int bits = 0;
+    private int count = 0;
+
+    private long firstSecond;
+    private long lastSecond;
+    private long lastDelta = 0;
+    private long lastValue;
+    private int lastLeading = -1;
+    private int lastTrailing = 0;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param window Long. Start of the window of time this chunk covers, in seconds since the epoch.
+     */
+    public TimeSeriesChunk(long window) {
+        this.WINDOW = window;
+    }
+
+    /**
+     * Append a sample. Timestamps must increase.
+     * @author Griefed
+     * @param second Long. Timestamp of the sample, in seconds since the epoch.
+     * @param value Double. Value of the sample.
+     */
+    public void append(long second, double value) {
+        long raw = Double.doubleToRawLongBits(value);
+
+        if (count == 0) {
+
+            writeBits(second, 64);
+            writeBits(raw, 64);
+            firstSecond = second;
+
+        } else {
+
+            long delta = second - lastSecond;
+            writeTimestamp(delta - lastDelta);
+            writeValue(raw ^ lastValue);
+            lastDelta = delta;
+
+        }
+
+        lastSecond = second;
+        lastValue = raw;
+        count++;
+    }
+
+    /**
+     * Encode the difference between two consecutive deltas in as few bits as possible.
+     * @author Griefed
+     * @param deltaOfDelta Long. The difference.
+     */
+    private void writeTimestamp(long deltaOfDelta) {
+        if (deltaOfDelta == 0) {
+            writeBits(0, 1);
+        } else if (deltaOfDelta >= -63 && deltaOfDelta <= 64) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta, 7);
+        } else if (deltaOfDelta >= -255 && deltaOfDelta <= 256) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta, 9);
+        } else if (deltaOfDelta >= -2047 && deltaOfDelta <= 2048) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta, 12);
+        } else {
+            writeBits(0b1111, 4);
+            writeBits(deltaOfDelta, 32);
+        }
+    }
+
+    /**
+     * Encode the XOR of a value with its predecessor. If the meaningful bits fit into those of the previous value, only
+     * they are written. Otherwise, the number of leading zeros and meaningful bits is written first.
+     * @author Griefed
+     * @param xor Long. The XOR of both values.
+     */
+    private void writeValue(long xor) {
+        if (xor == 0) {
+            writeBits(0, 1);
+            return;
+        }
+
+        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailing = Long.numberOfTrailingZeros(xor);
+
+        if (lastLeading != -1 && leading >= lastLeading && trailing >= lastTrailing) {
+
+            writeBits(0b10, 2);
+            writeBits(xor >>> lastTrailing, 64 - lastLeading - lastTrailing);
+
+        } else {
+
+            int meaningful = 64 - leading - trailing;
+
+            writeBits(0b11, 2);
+            writeBits(leading, 5);
+            writeBits(meaningful - 1, 6);
+            writeBits(xor >>> trailing, meaningful);
+
+            lastLeading = leading;
+            lastTrailing = trailing;
+
+        }
+    }
+
+    /**
+     * Write the lowest bits of a value, most significant first.
+     * @author Griefed
+     * @param value Long. The value to write.
+     * @param length Integer. The number of bits to write.
+     */
+    private void writeBits(long value, int length) {
+        if (bits + length > bytes.length * 8) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, (bits + length) / 8 + 1));
+        }
+
+        while (length > 0) {
+            int free = 8 - (bits & 7);
+            int take = Math.min(free, length);
+            int chunk = (int) ((value >>> (length - take)) & ((1 << take) - 1));
+
+            bytes[bits >>> 3] |= (byte) (chunk << (free - take));
+
+            bits += take;
+            length -= take;
+        }
+    }
+
+    /**
+     * Getter for the start of the window of time this chunk covers.
+     * @author Griefed
+     * @return Long. Seconds since the epoch.
+     */
+    public long getWindow() {
+        return WINDOW;
+    }
+
+    /**
+     * Getter for the timestamp of the first sample.
+     * @author Griefed
+     * @return Long. Seconds since the epoch.
+     */
+    public long getFirstSecond() {
+        return firstSecond;
+    }
+
+    /**
+     * Getter for the timestamp of the last sample.
+     * @author Griefed
+     * @return Long. Seconds since the epoch.
+     */
+    public long getLastSecond() {
+        return lastSecond;
+    }
+
+    /**
+     * Getter for the number of samples in this chunk.
+     * @author Griefed
+     * @return Integer. The number of samples.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Getter for the encoded samples.
+     * @author Griefed
+     * @return byte array. A copy of the encoded samples, as many bytes as needed.
+     */
+    public byte[] toBytes() {
+        return Arrays.copyOf(bytes, (bits + 7) >>> 3);
+    }
+
+    /**
+     * Decode the samples written to this chunk so far which lie in the given range.
+     * @author Griefed
+     * @param from Long. Start of the range, inclusive, in seconds since the epoch.
+     * @param to Long. End of the range, inclusive, in seconds since the epoch.
+     * @param consumer Receives every sample in range, in order.
+     */
+    public void read(long from, long to, SampleConsumer consumer) {
+        read(ByteBuffer.wrap(bytes), 0, count, from, to, consumer);
+    }
+
+    /**
+     * Decode the samples of a chunk which lie in the given range. Decoding stops at the first sample past the range.
+     * @author Griefed
+     * @param buffer Buffer holding the chunk. Only read with absolute gets, so it may be shared.
+     * @param offset Integer. Position of the first byte of the chunk in the buffer.
+     * @param count Integer. The number of samples in the chunk.
+     * @param from Long. Start of the range, inclusive, in seconds since the epoch.
+     * @param to Long. End of the range, inclusive, in seconds since the epoch.
+     * @param consumer Receives every sample in range, in order.
+     */
+    public static void read(ByteBuffer buffer, int offset, int count, long from, long to, SampleConsumer consumer) {
+        if (count == 0) {
+            return;
+        }
+
+        BitReader reader = new BitReader(buffer, offset);
+
+        long second = reader.read(64);
+        long value = reader.read(64);
+        long delta = 0;
+        int leading = 0;
+        int trailing = 0;
+
+        if (second > to) {
+            return;
+        }
+        if (second >= from) {
+            consumer.accept(second, Double.longBitsToDouble(value));
+        }
+
+        for (int i = 1; i < count; i++) {
+
+            if (reader.read(1) == 1) {
+                if (reader.read(1) == 0) {
+                    delta += reader.readSigned(7);
+                } else if (reader.read(1) == 0) {
+                    delta += reader.readSigned(9);
+                } else if (reader.read(1) == 0) {
+                    delta += reader.readSigned(12);
+                } else {
+                    delta += reader.readSigned(32);
+                }
+            }
+            second += delta;
+
+            if (reader.read(1) == 1) {
+                if (reader.read(1) == 1) {
+                    leading = (int) reader.read(5);
+                    trailing = 64 - leading - ((int) reader.read(6) + 1);
+                }
+                value ^= reader.read(64 - leading - trailing) << trailing;
+            }
+
+            if (second > to) {
+                return;
+            }
+            if (second >= from) {
+                consumer.accept(second, Double.longBitsToDouble(value));
+            }
+        }
+    }
+
+    /**
+     * Receives decoded samples.
+     * @author Griefed
+     */
+    @FunctionalInterface
+    public interface SampleConsumer {
+
+        /**
+         * Receive a sample.
+         * @author Griefed
+         * @param second Long. Timestamp of the sample, in seconds since the epoch.
+         * @param value Double. Value of the sample.
+         */
+        void accept(long second, double value);
+    }
+
+    /**
+     * Reads bits from a buffer, most significant first. Bits are taken from a word of up to 64 bits, which is refilled
+     * with a single read from the buffer where possible.
+     * @author Griefed
+     */
+    private static final class BitReader {
+
+        private final ByteBuffer BUFFER;
+
+        private int position;
+        private long word = 0;
+        private int available = 0;
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param buffer Buffer holding the chunk.
+         * @param offset Integer. Position of the first byte of the chunk in the buffer.
+         */
+        private BitReader(ByteBuffer buffer, int offset) {
+            this.BUFFER = buffer;
+            this.position = offset;
+        }
+
+        /**
+         * Read the next bits as an unsigned value.
+         * @author Griefed
+         * @param length Integer. The number of bits to read, up to 64.
+         * @return Long. The bits, right-aligned.
+         */
+        private long read(int length) {
+            long value = 0;
+
+            while (length > 0) {
+                if (available == 0) {
+                    if (position + 8 <= BUFFER.limit()) {
+                        word = BUFFER.getLong(position);
+                        position += 8;
+                        available = 64;
+                    } else {
+                        word = (long) (BUFFER.get(position) & 0xFF) << 56;
+                        position++;
+                        available = 8;
+                    }
+                }
+
+                int take = Math.min(available, length);
+
+                // Shifts by 64 are no shifts at all in Java, but then the value is still empty and the word used up.
+                value = (value << take) | (word >>> (64 - take));
+                word <<= take;
+                available -= take;
+                length -= take;
+            }
+
+            return value;
+        }
+
+        /**
+         * Read the next bits as a signed value, as written for the difference between two deltas.
+         * @author Griefed
+         * @param length Integer. The number of bits to read.
+         * @return Long. The value.
+         */
+        private long readSigned(int length) {
+            long value = read(length);
+
+            // Values are stored in the range -(2^(length-1) - 1) to 2^(length-1).
+            if (value > (1L << (length - 1))) {
+                value -= 1L << length;
+            }
+
+            return value;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Aggregates the samples of many series into buckets of a fixed resolution, for example one minute, and keeps the
+ * aggregates in a {@link TimeSeriesStore} of their own. Every bucket of a series is stored as its minimum, maximum,
+ * average, last value and number of samples, each in a series of its own whose key is the key of the aggregated series
+ * followed by a tab and the name of the aggregate. All of them are timestamped with the start of the bucket.<br>
+ * Aggregates are updated with every sample, so a bucket is written as soon as the first sample of the next bucket arrives,
+ * or once it has passed. A bucket which is not complete yet is never written, not even when the rollup is closed, as the
+ * samples which arrive after a restart could not be added to it anymore. Instead, the owner adds the samples of the
+ * current bucket again after a restart. Samples are added by a single thread.
+ * @author Griefed
+ */
+public class TimeSeriesRollup {
+
+    private static final Logger LOG = LogManager.getLogger(TimeSeriesRollup.class);
+
+    public static final int MIN = 0;
+    public static final int MAX = 1;
+    public static final int AVG = 2;
+    public static final int LAST = 3;
+    public static final int COUNT = 4;
+    public static final String[] AGGREGATES = {"min", "max", "avg", "last", "count"};
+
+    private final String NAME;
+    private final long RESOLUTION;
+    private final long RETENTION;
+    private final TimeSeriesStore STORE;
+
+    private String[] keys = new String[1024];
+    private int[][] ids = new int[1024][];
+    private long[] buckets = new long[1024];
+    private double[] mins = new double[1024];
+    private double[] maxs = new double[1024];
+    private double[] sums = new double[1024];
+    private double[] lasts = new double[1024];
+    private int[] counts = new int[1024];
+    private int size = 0;
+    private long sealed = Long.MIN_VALUE;
+
+    /**
+     * Constructor.
+     * @author Griefed
+     * @param name String. The name of this rollup, for example <code>1m</code>.
+     * @param resolution Long. The length of a bucket, in seconds.
+     * @param retention Long. How long aggregates are kept, in seconds.
+     * @param store The store to keep the aggregates in.
+     */
+    public TimeSeriesRollup(String name, long resolution, long retention, TimeSeriesStore store) {
+        this.NAME = name;
+        this.RESOLUTION = resolution;
+        this.RETENTION = retention;
+        this.STORE = store;
+    }
+
+    /**
+     * Add a sample of a series. Samples which are not numbers are ignored.
+     * @author Griefed
+     * @param id Integer. The id of the series in the store of the samples.
+     * @param key String. The key of the series.
+     * @param second Long. Timestamp of the sample, in seconds since the epoch.
+     * @param value Double. Value of the sample.
+     * @throws IOException if the series of a new aggregate could not be created.
+     */
+    public void add(int id, String key, long second, double value) throws IOException {
+        if (Double.isNaN(value)) {
+            return;
+        }
+
+        if (id >= keys.length) {
+            grow(Math.max(id + 1, keys.length * 2));
+        }
+
+        keys[id] = key;
+        size = Math.max(size, id + 1);
+
+        long bucket = Math.floorDiv(second, RESOLUTION) * RESOLUTION;
+
+        if (counts[id] > 0 && buckets[id] != bucket) {
+            write(id);
+        }
+
+        if (counts[id] == 0) {
+            buckets[id] = bucket;
+            mins[id] = value;
+            maxs[id] = value;
+            sums[id] = 0;
+        }
+
+        mins[id] = Math.min(mins[id], value);
+        maxs[id] = Math.max(maxs[id], value);
+        sums[id] += value;
+        lasts[id] = value;
+        counts[id]++;
+    }
+
+    /**
+     * Grow the arrays holding the aggregates of the current buckets.
+     * @author Griefed
+     * @param length Integer. The new length.
+     */
+    private void grow(int length) {
+        keys = Arrays.copyOf(keys, length);
+        ids = Arrays.copyOf(ids, length);
+        buckets = Arrays.copyOf(buckets, length);
+        mins = Arrays.copyOf(mins, length);
+        maxs = Arrays.copyOf(maxs, length);
+        sums = Arrays.copyOf(sums, length);
+        lasts = Arrays.copyOf(lasts, length);
+        counts = Arrays.copyOf(counts, length);
+    }
+
+    /**
+     * Write the aggregates of the current bucket of a series and start over.
+     * @author Griefed
+     * @param id Integer. The id of the series.
+     * @throws IOException if the series of a new aggregate could not be created.
+     */
+    private void write(int id) throws IOException {
+        if (ids[id] == null) {
+            int[] aggregates = new int[AGGREGATES.length];
+
+            for (int i = 0; i < AGGREGATES.length; i++) {
+                aggregates[i] = STORE.id(keys[id] + "\t" + AGGREGATES[i]);
+            }
+
+            ids[id] = aggregates;
+        }
+
+        STORE.append(ids[id][MIN], buckets[id], mins[id]);
+        STORE.append(ids[id][MAX], buckets[id], maxs[id]);
+        STORE.append(ids[id][AVG], buckets[id], sums[id] / counts[id]);
+        STORE.append(ids[id][LAST], buckets[id], lasts[id]);
+        STORE.append(ids[id][COUNT], buckets[id], counts[id]);
+
+        counts[id] = 0;
+    }
+
+    /**
+     * Write every bucket which has passed, for series which stopped receiving samples, and seal the store. Only does any
+     * work once per bucket, so it may be called after every round of samples.
+     * @author Griefed
+     * @param now Long. The current time, in seconds since the epoch.
+     */
+    public void seal(long now) {
+        long bucket = Math.floorDiv(now, RESOLUTION) * RESOLUTION;
+
+        if (bucket > sealed) {
+            for (int id = 0; id < size; id++) {
+                if (counts[id] > 0 && buckets[id] + RESOLUTION <= now) {
+                    try {
+                        write(id);
+                    } catch (IOException ex) {
+                        LOG.error("Could not write " + NAME + " aggregates of " + keys[id] + ".", ex);
+                    }
+                }
+            }
+
+            sealed = bucket;
+        }
+
+        STORE.seal(now);
+    }
+
+    /**
+     * Close the store. The aggregates of the current buckets are dropped, as the buckets are not complete yet.
+     * @author Griefed
+     */
+    public void close() {
+        STORE.close();
+    }
+
+    /**
+     * Getter for the name of this rollup.
+     * @author Griefed
+     * @return String. The name, for example <code>1m</code>.
+     */
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * Getter for the length of a bucket.
+     * @author Griefed
+     * @return Long. The length in seconds.
+     */
+    public long getResolution() {
+        return RESOLUTION;
+    }
+
+    /**
+     * Getter for how long aggregates are kept.
+     * @author Griefed
+     * @return Long. The retention in seconds.
+     */
+    public long getRetention() {
+        return RETENTION;
+    }
+
+    /**
+     * Getter for the store holding the aggregates.
+     * @author Griefed
+     * @return The store.
+     */
+    public TimeSeriesStore getStore() {
+        return STORE;
+    }
+}
@@ -0,0 +1,309 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file of chunks of all series, memory-mapped as a whole. Chunks are only ever appended. The file starts with a header
+ * holding the position up to which chunks were written, which is updated after every chunk, so a segment is consistent
+ * even if the application was killed while writing. The file is created at its full size, but as a sparse file, so it
+ * only occupies as much disk space as was written.<br>
+ * Every chunk is stored as series id, first and last timestamp, number of samples, length and the encoded samples. The
+ * same information, except for the samples, is kept on the heap for finding the chunks of a query without touching the file.
+ * @author Griefed
+ */
+public class TimeSeriesSegment {
+
+    private static final int MAGIC = 0x4d545331;
+    private static final int HEADER = 16;
+    private static final int CHUNK_HEADER = 28;
+
+    private final Path FILE;
+    private final long START;
+    private final FileChannel CHANNEL;
+    private final MappedByteBuffer BUFFER;
+
+    private int position;
+    private int chunks = 0;
+    private int[] series = new int[256];
+    private long[] firstSeconds = new long[256];
+    private long[] lastSeconds = new long[256];
+    private int[] offsets = new int[256];
+    private int[] counts = new int[256];
+    private long oldest = Long.MAX_VALUE;
+    private long newest = Long.MIN_VALUE;
+
+    /**
+     * Open a segment, creating it with the given capacity if it does not exist.
+     * @author Griefed
+     * @param file Path to the segment.
+     * @param start Long. Start of the window of time this segment covers, in seconds since the epoch.
+     * @param capacity Integer. The size of a new segment, in bytes.
+     * @throws IOException if the file could not be opened or mapped, or is not a segment.
+     */
+    public TimeSeriesSegment(Path file, long start, int capacity) throws IOException {
+        this.FILE = file;
+        this.START = start;
+
+        boolean created = !Files.exists(file);
+
+        if (created) {
+            this.CHANNEL = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.SPARSE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } else {
+            this.CHANNEL = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        try {
+
+            long size = created ? capacity : CHANNEL.size();
+
+            if (size < HEADER || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid segment size " + size + " of " + file);
+            }
+
+            this.BUFFER = CHANNEL.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+            if (created) {
+
+                BUFFER.putInt(0, MAGIC);
+                BUFFER.putInt(4, HEADER);
+                BUFFER.putLong(8, start);
+                this.position = HEADER;
+
+            } else {
+
+                if (BUFFER.getInt(0) != MAGIC) {
+                    throw new IOException("Not a segment: " + file);
+                }
+
+                this.position = Math.min(BUFFER.getInt(4), BUFFER.capacity());
+                index();
+
+            }
+
+        } catch (IOException | RuntimeException ex) {
+            CHANNEL.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Rebuild the chunk index of an existing segment. Stops at the first chunk which does not fit the file.
+     * @author Griefed
+     */
+    private void index() {
+        int offset = HEADER;
+
+        while (offset + CHUNK_HEADER <= position) {
+            int length = BUFFER.getInt(offset + 24);
+
+            if (length < 0 || offset + CHUNK_HEADER + length > position) {
+                break;
+            }
+
+            register(BUFFER.getInt(offset), BUFFER.getLong(offset + 4), BUFFER.getLong(offset + 12), BUFFER.getInt(offset + 20), offset + CHUNK_HEADER);
+            offset += CHUNK_HEADER + length;
+        }
+
+        position = offset;
+    }
+
+    /**
+     * Append a chunk.
+     * @author Griefed
+     * @param id Integer. The id of the series the chunk belongs to.
+     * @param chunk The chunk to append.
+     * @return Boolean. <code>false</code> if the segment is full.
+     */
+    public boolean append(int id, TimeSeriesChunk chunk) {
+        byte[] bytes = chunk.toBytes();
+
+        if (position + CHUNK_HEADER + bytes.length > BUFFER.capacity()) {
+            return false;
+        }
+
+        ByteBuffer buffer = BUFFER.duplicate();
+        buffer.position(position);
+        buffer.putInt(id).putLong(chunk.getFirstSecond()).putLong(chunk.getLastSecond()).putInt(chunk.getCount()).putInt(bytes.length).put(bytes);
+
+        register(id, chunk.getFirstSecond(), chunk.getLastSecond(), chunk.getCount(), position + CHUNK_HEADER);
+
+        position += CHUNK_HEADER + bytes.length;
+        BUFFER.putInt(4, position);
+
+        return true;
+    }
+
+    /**
+     * Add a chunk to the index.
+     * @author Griefed
+     * @param id Integer. The id of the series.
+     * @param first Long. Timestamp of the first sample.
+     * @param last Long. Timestamp of the last sample.
+     * @param count Integer. The number of samples.
+     * @param offset Integer. The position of the samples in the file.
+     */
+    private void register(int id, long first, long last, int count, int offset) {
+        if (chunks == series.length) {
+            int size = chunks * 2;
+            series = Arrays.copyOf(series, size);
+            firstSeconds = Arrays.copyOf(firstSeconds, size);
+            lastSeconds = Arrays.copyOf(lastSeconds, size);
+            offsets = Arrays.copyOf(offsets, size);
+            counts = Arrays.copyOf(counts, size);
+        }
+
+        series[chunks] = id;
+        firstSeconds[chunks] = first;
+        lastSeconds[chunks] = last;
+        offsets[chunks] = offset;
+        counts[chunks] = count;
+        chunks++;
+
+        oldest = Math.min(oldest, first);
+        newest = Math.max(newest, last);
+    }
+
+    /**
+     * Read the samples of the selected series which lie in the given range. Chunks are read in the order they were
+     * written, so the samples of every series arrive in order.
+     * @author Griefed
+     * @param selected Whether a series is selected, by id. Series beyond the end of the array are not.
+     * @param from Long. Start of the range, inclusive, in seconds since the epoch.
+     * @param to Long. End of the range, inclusive, in seconds since the epoch.
+     * @param consumer Receives every sample in range.
+     */
+    public void read(boolean[] selected, long from, long to, SeriesConsumer consumer) {
+        if (newest < from || oldest > to) {
+            return;
+        }
+
+        for (int i = 0; i < chunks; i++) {
+            int id = series[i];
+
+            if (id < selected.length && selected[id] && lastSeconds[i] >= from && firstSeconds[i] <= to) {
+                TimeSeriesChunk.read(BUFFER, offsets[i], counts[i], from, to, (second, value) -> consumer.accept(id, second, value));
+            }
+        }
+    }
+
+    /**
+     * Visit the last timestamp of every chunk, for restoring the last timestamp of every series after a restart.
+     * @author Griefed
+     * @param consumer Receives the series id and the last timestamp of every chunk.
+     */
+    public void lastSeconds(SeriesConsumer consumer) {
+        for (int i = 0; i < chunks; i++) {
+            consumer.accept(series[i], lastSeconds[i], Double.NaN);
+        }
+    }
+
+    /**
+     * Write everything appended so far to disk.
+     * @author Griefed
+     */
+    public void force() {
+        BUFFER.force();
+    }
+
+    /**
+     * Close the file. The mapping stays valid until it is garbage collected, so the segment must not be read afterwards.
+     * @author Griefed
+     * @throws IOException if the file could not be closed.
+     */
+    public void close() throws IOException {
+        force();
+        CHANNEL.close();
+    }
+
+    /**
+     * Close and delete the file.
+     * @author Griefed
+     * @throws IOException if the file could not be deleted.
+     */
+    public void delete() throws IOException {
+        CHANNEL.close();
+        Files.deleteIfExists(FILE);
+    }
+
+    /**
+     * Getter for the start of the window of time this segment covers.
+     * @author Griefed
+     * @return Long. Seconds since the epoch.
+     */
+    public long getStart() {
+        return START;
+    }
+
+    /**
+     * Getter for the timestamp of the newest sample in this segment.
+     * @author Griefed
+     * @return Long. Seconds since the epoch, {@link Long#MIN_VALUE} if the segment is empty.
+     */
+    public long getNewest() {
+        return newest;
+    }
+
+    /**
+     * Getter for the number of bytes written.
+     * @author Griefed
+     * @return Integer. The number of bytes, including headers.
+     */
+    public int getSize() {
+        return position;
+    }
+
+    /**
+     * Getter for the number of chunks in this segment.
+     * @author Griefed
+     * @return Integer. The number of chunks.
+     */
+    public int getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Receives decoded samples of several series.
+     * @author Griefed
+     */
+    @FunctionalInterface
+    public interface SeriesConsumer {
+
+        /**
+         * Receive a sample.
+         * @author Griefed
+         * @param id Integer. The id of the series.
+         * @param second Long. Timestamp of the sample, in seconds since the epoch.
+         * @param value Double. Value of the sample.
+         */
+        void accept(int id, long second, double value);
+    }
+}
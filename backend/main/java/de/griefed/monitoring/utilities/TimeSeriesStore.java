@@ -0,0 +1,484 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An append-only store for numeric samples of many series, kept in one directory. Every series is identified by a key,
+ * which is assigned an id once and listed in <code>series.idx</code>. Samples are collected in one open
+ * {@link TimeSeriesChunk} per series. Once the window of time of a chunk has passed, the chunk is appended to the current
+ * {@link TimeSeriesSegment}. Segments cover a fixed span of time and are deleted as a whole once all of their samples
+ * are older than the retention.<br>
+ * Appending is serialized, queries run concurrently with each other.
+ * @author Griefed
+ */
+public class TimeSeriesStore {
+
+    private static final Logger LOG = LogManager.getLogger(TimeSeriesStore.class);
+    private static final String INDEX = "series.idx";
+    private static final Pattern SEGMENT = Pattern.compile("segment-(\\d+)\\.dat");
+
+    private final Path DIRECTORY;
+    private final long CHUNK;
+    private final long SPAN;
+    private final int CAPACITY;
+    private final long RETENTION;
+    private final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+    private final List<String> KEYS = new ArrayList<>(1024);
+    private final Map<String, Integer> IDS = new HashMap<>(1024);
+    private final List<TimeSeriesSegment> SEGMENTS = new ArrayList<>();
+    private final BufferedWriter INDEX_WRITER;
+
+    private long[] lastSeconds = new long[1024];
+    private TimeSeriesChunk[] open = new TimeSeriesChunk[1024];
+    private long sealed = Long.MIN_VALUE;
+    private long samples = 0;
+    private long rejected = 0;
+
+    /**
+     * Open a store, creating the directory if it does not exist. Existing series and segments are picked up, so appending
+     * continues where it left off.
+     * @author Griefed
+     * @param directory Path to the directory of the store.
+     * @param chunkSeconds Long. The window of time covered by a chunk, in seconds.
+     * @param segmentSeconds Long. The span of time covered by a segment, in seconds.
+     * @param segmentCapacity Integer. The maximum size of a segment, in bytes.
+     * @param retentionSeconds Long. How long samples are kept, in seconds.
+     * @throws IOException if the directory, the series index or a segment could not be read or created.
+     */
+    public TimeSeriesStore(Path directory, long chunkSeconds, long segmentSeconds, int segmentCapacity, long retentionSeconds) throws IOException {
+        this.DIRECTORY = directory;
+        this.CHUNK = chunkSeconds;
+        this.SPAN = segmentSeconds;
+        this.CAPACITY = segmentCapacity;
+        this.RETENTION = retentionSeconds;
+
+        Files.createDirectories(directory);
+
+        Arrays.fill(lastSeconds, Long.MIN_VALUE);
+
+        Path index = directory.resolve(INDEX);
+        if (Files.exists(index)) {
+            try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+
+                    if (tab < 0 || !line.substring(0, tab).equals(String.valueOf(KEYS.size()))) {
+                        LOG.warn("Ignoring malformed series index entry in " + index + ": " + line);
+                        break;
+                    }
+
+                    register(line.substring(tab + 1));
+                }
+            }
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparing(Path::toString));
+
+        for (Path file : files) {
+            Matcher matcher = SEGMENT.matcher(file.getFileName().toString());
+
+            if (matcher.matches()) {
+                TimeSeriesSegment segment = new TimeSeriesSegment(file, Long.parseLong(matcher.group(1)), CAPACITY);
+                segment.lastSeconds((id, second, value) -> {
+                    if (id < KEYS.size()) {
+                        lastSeconds[id] = Math.max(lastSeconds[id], second);
+                    }
+                });
+                SEGMENTS.add(segment);
+            }
+        }
+
+        SEGMENTS.sort(Comparator.comparingLong(TimeSeriesSegment::getStart));
+
+        this.INDEX_WRITER = Files.newBufferedWriter(index, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        LOG.info("Opened time series store " + directory + " with " + KEYS.size() + " series in " + SEGMENTS.size() + " segments.");
+    }
+
+    /**
+     * Register a series in memory.
+     * @author Griefed
+     * @param key String. The key of the series.
+     * @return Integer. The id of the series.
+     */
+    private int register(String key) {
+        int id = KEYS.size();
+
+        KEYS.add(key);
+        IDS.put(key, id);
+
+        if (id == open.length) {
+            open = Arrays.copyOf(open, id * 2);
+            lastSeconds = Arrays.copyOf(lastSeconds, id * 2);
+            Arrays.fill(lastSeconds, id, id * 2, Long.MIN_VALUE);
+        }
+
+        return id;
+    }
+
+    /**
+     * Getter for the id of a series. Series which do not exist yet are created.
+     * @author Griefed
+     * @param key String. The key of the series. Must not contain line breaks.
+     * @return Integer. The id of the series.
+     * @throws IOException if a new series could not be written to the series index.
+     */
+    public int id(String key) throws IOException {
+        LOCK.writeLock().lock();
+        try {
+
+            Integer id = IDS.get(key);
+
+            if (id == null) {
+                id = register(key);
+                INDEX_WRITER.write(id + "\t" + key + "\n");
+                INDEX_WRITER.flush();
+            }
+
+            return id;
+
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Getter for the id of an existing series.
+     * @author Griefed
+     * @param key String. The key of the series.
+     * @return Integer. The id of the series, <code>-1</code> if it does not exist.
+     */
+    public int find(String key) {
+        LOCK.readLock().lock();
+        try {
+            return IDS.getOrDefault(key, -1);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append a sample to a series. Samples which are not newer than the last sample of the series are rejected.
+     * @author Griefed
+     * @param id Integer. The id of the series, as returned by {@link #id(String)}.
+     * @param second Long. Timestamp of the sample, in seconds since the epoch.
+     * @param value Double. Value of the sample.
+     * @return Boolean. <code>true</code> if the sample was appended.
+     */
+    public boolean append(int id, long second, double value) {
+        LOCK.writeLock().lock();
+        try {
+
+            if (second <= lastSeconds[id]) {
+                rejected++;
+                return false;
+            }
+
+            long window = Math.floorDiv(second, CHUNK) * CHUNK;
+            TimeSeriesChunk chunk = open[id];
+
+            if (chunk != null && chunk.getWindow() != window) {
+                write(id, chunk);
+                chunk = null;
+            }
+
+            if (chunk == null) {
+                chunk = new TimeSeriesChunk(window);
+                open[id] = chunk;
+            }
+
+            chunk.append(second, value);
+            lastSeconds[id] = second;
+            samples++;
+
+            return true;
+
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Append every chunk whose window of time has passed to the current segment, and delete segments older than the
+     * retention. Only does any work once per window of time, so it may be called after every round of samples.
+     * @author Griefed
+     * @param now Long. The current time, in seconds since the epoch.
+     */
+    public void seal(long now) {
+        long window = Math.floorDiv(now, CHUNK) * CHUNK;
+
+        LOCK.writeLock().lock();
+        try {
+
+            if (window <= sealed) {
+                return;
+            }
+
+            for (int id = 0; id < KEYS.size(); id++) {
+                if (open[id] != null && open[id].getWindow() + CHUNK <= now) {
+                    write(id, open[id]);
+                    open[id] = null;
+                }
+            }
+
+            if (!SEGMENTS.isEmpty()) {
+                SEGMENTS.get(SEGMENTS.size() - 1).force();
+            }
+
+            retain(now);
+            sealed = window;
+
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Append a chunk to the current segment, starting a new segment if the span of the current one has passed or it is full.
+     * @author Griefed
+     * @param id Integer. The id of the series.
+     * @param chunk The chunk to append.
+     */
+    private void write(int id, TimeSeriesChunk chunk) {
+        TimeSeriesSegment segment = SEGMENTS.isEmpty() ? null : SEGMENTS.get(SEGMENTS.size() - 1);
+
+        try {
+
+            if (segment == null || chunk.getFirstSecond() >= Math.floorDiv(segment.getStart(), SPAN) * SPAN + SPAN || !segment.append(id, chunk)) {
+                segment = roll(chunk.getFirstSecond());
+
+                if (!segment.append(id, chunk)) {
+                    LOG.warn("Chunk of series " + KEYS.get(id) + " does not fit into a segment. Dropping " + chunk.getCount() + " samples.");
+                }
+            }
+
+        } catch (IOException ex) {
+
+            LOG.error("Could not create segment in " + DIRECTORY + ". Dropping " + chunk.getCount() + " samples of series " + KEYS.get(id) + ".", ex);
+
+        }
+    }
+
+    /**
+     * Start a new segment. The previous one is kept open for queries.
+     * @author Griefed
+     * @param second Long. Timestamp of the first sample which goes into the new segment.
+     * @return The new segment.
+     * @throws IOException if the segment could not be created.
+     */
+    private TimeSeriesSegment roll(long second) throws IOException {
+        long start = Math.floorDiv(second, SPAN) * SPAN;
+
+        if (!SEGMENTS.isEmpty()) {
+            TimeSeriesSegment previous = SEGMENTS.get(SEGMENTS.size() - 1);
+            previous.force();
+
+            // A full segment is followed by another one in the same span.
+            start = Math.max(start, previous.getStart() + 1);
+        }
+
+        TimeSeriesSegment segment = new TimeSeriesSegment(DIRECTORY.resolve(String.format("segment-%012d.dat", start)), start, CAPACITY);
+        SEGMENTS.add(segment);
+
+        return segment;
+    }
+
+    /**
+     * Delete all segments, except for the current one, whose samples are all older than the retention.
+     * @author Griefed
+     * @param now Long. The current time, in seconds since the epoch.
+     */
+    private void retain(long now) {
+        long cutoff = now - RETENTION;
+
+        while (SEGMENTS.size() > 1 && Math.max(SEGMENTS.get(0).getNewest(), SEGMENTS.get(0).getStart()) < cutoff) {
+            TimeSeriesSegment segment = SEGMENTS.remove(0);
+
+            try {
+                segment.delete();
+                LOG.debug("Deleted expired segment starting at " + segment.getStart() + " from " + DIRECTORY + ".");
+            } catch (IOException ex) {
+                LOG.error("Could not delete expired segment starting at " + segment.getStart() + " from " + DIRECTORY + ".", ex);
+            }
+        }
+    }
+
+    /**
+     * Read the samples of the selected series which lie in the given range, from the segments and the open chunks. The
+     * samples of every series arrive in order, but samples of different series are interleaved.
+     * @author Griefed
+     * @param selected Whether a series is selected, by id.
+     * @param from Long. Start of the range, inclusive, in seconds since the epoch.
+     * @param to Long. End of the range, inclusive, in seconds since the epoch.
+     * @param consumer Receives every sample in range.
+     */
+    public void read(boolean[] selected, long from, long to, TimeSeriesSegment.SeriesConsumer consumer) {
+        LOCK.readLock().lock();
+        try {
+
+            for (TimeSeriesSegment segment : SEGMENTS) {
+                segment.read(selected, from, to, consumer);
+            }
+
+            for (int id = 0; id < Math.min(selected.length, KEYS.size()); id++) {
+                TimeSeriesChunk chunk = open[id];
+
+                if (selected[id] && chunk != null && chunk.getLastSecond() >= from && chunk.getFirstSecond() <= to) {
+                    int series = id;
+                    chunk.read(from, to, (second, value) -> consumer.accept(series, second, value));
+                }
+            }
+
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Getter for the keys of all series.
+     * @author Griefed
+     * @return List of keys, by id.
+     */
+    public List<String> getKeys() {
+        LOCK.readLock().lock();
+        try {
+            return new ArrayList<>(KEYS);
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Getter for the timestamp of the newest sample of any series.
+     * @author Griefed
+     * @return Long. Seconds since the epoch, {@link Long#MIN_VALUE} if the store holds no samples.
+     */
+    public long getNewestSecond() {
+        LOCK.readLock().lock();
+        try {
+
+            long newest = Long.MIN_VALUE;
+            for (int id = 0; id < KEYS.size(); id++) {
+                newest = Math.max(newest, lastSeconds[id]);
+            }
+            return newest;
+
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Getter for the number of series.
+     * @author Griefed
+     * @return Integer. The number of series, every id is below it.
+     */
+    public int getSize() {
+        LOCK.readLock().lock();
+        try {
+            return KEYS.size();
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append all open chunks and close all segments and the series index. The store must not be used afterwards.
+     * @author Griefed
+     */
+    public void close() {
+        LOCK.writeLock().lock();
+        try {
+
+            for (int id = 0; id < KEYS.size(); id++) {
+                if (open[id] != null) {
+                    write(id, open[id]);
+                    open[id] = null;
+                }
+            }
+
+            for (TimeSeriesSegment segment : SEGMENTS) {
+                segment.close();
+            }
+
+            INDEX_WRITER.close();
+
+        } catch (IOException ex) {
+
+            LOG.error("Could not close time series store " + DIRECTORY + ".", ex);
+
+        } finally {
+            LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Getter for the statistics of this store.
+     * @author Griefed
+     * @return String in JSON format. The number of series, segments and chunks, the bytes written, and the number of samples
+     * appended and rejected.
+     */
+    public String getStatistics() {
+        LOCK.readLock().lock();
+        try {
+
+            long chunks = 0;
+            long bytes = 0;
+            for (TimeSeriesSegment segment : SEGMENTS) {
+                chunks += segment.getChunks();
+                bytes += segment.getSize();
+            }
+
+            return "{\"series\": " + KEYS.size() +
+                    ",\"segments\": " + SEGMENTS.size() +
+                    ",\"chunks\": " + chunks +
+                    ",\"bytes\": " + bytes +
+                    ",\"samples\": " + samples +
+                    ",\"rejected\": " + rejected + "}";
+
+        } finally {
+            LOCK.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import java.util.Locale;
+
+/**
+ * Formats raw values into human-readable strings. Formatting is independent of the locale of the host, so the same
+ * value always results in the same string, no matter where Monitoring runs.
+ * @author Griefed
+ */
+public final class Units {
+
+    private static final double GIGABYTE = 1073741824D;
+
+    /**
+     * Constructor. Not to be instantiated, all methods are static.
+     * @author Griefed
+     */
+    private Units() {}
+
+    /**
+     * Format a number of bytes as gigabytes with two decimals.
+     * @author Griefed
+     * @param bytes Long. The number of bytes.
+     * @return String. For example <code>15.63 GB</code>.
+     */
+    public static String gigabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.2f GB", bytes / GIGABYTE);
+    }
+
+    /**
+     * Format a percentage with two decimals.
+     * @author Griefed
+     * @param percent Double. The percentage, from 0 to 100.
+     * @return String. For example <code>93.12 %</code>.
+     */
+    public static String percent(double percent) {
+        return String.format(Locale.ROOT, "%.2f %%", percent);
+    }
+
+    /**
+     * Calculate how many percent of a total are used.
+     * @author Griefed
+     * @param total Long. The total amount.
+     * @param free Long. The amount which is not used.
+     * @return Double. The used percentage, from 0 to 100. <code>0</code> if the total is not known.
+     */
+    public static double usedPercent(long total, long free) {
+        if (total <= 0) {
+            return 0D;
+        }
+
+        return 100D - (100D * free / total);
+    }
+}
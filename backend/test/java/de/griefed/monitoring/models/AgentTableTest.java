@@ -0,0 +1,159 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for querying pages of agents from an {@link AgentTable}.
+ * @author Griefed
+ */
+class AgentTableTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private AgentTable table;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        List<String> agents = Arrays.asList("10.0.0.1", "10.0.0.2", "10.0.0.3", "10.0.1.1", "10.0.1.2");
+        List<String> documents = Arrays.asList(
+                "{\"status\": 0,\"host\": {\"host_name\": \"Web-1\"},\"disks\": [{\"name\": \"sda\",\"used_percent\": 10},{\"name\": \"sdb\",\"used_percent\": 20}]}",
+                "{\"status\": 1,\"message\": \"Host down or unreachable.\"}",
+                "{\"status\": 0,\"host\": {\"host_name\": \"db-1\"}}",
+                "{\"status\": 2,\"message\": \"Agent did not answer in time.\"}",
+                "{\"status\": 0,\"host\": {\"host_name\": \"web-2\"}}"
+        );
+
+        List<JsonNode> roots = new ArrayList<>();
+        for (String document : documents) {
+            roots.add(MAPPER.readTree(document));
+        }
+
+        table = new AgentTable(new Snapshot("{}"), agents, documents, roots, null);
+    }
+
+    @Test
+    void pagesFollowTheCursor() throws IOException {
+        JsonNode page = query(null, null, null, null, 0, 2, "agent");
+        assertEquals(5, page.path("total").asInt());
+        assertEquals("[\"10.0.0.1\",\"10.0.0.2\"]", agents(page));
+        assertEquals("10.0.0.2", page.path("next").asText());
+
+        page = query(null, null, null, page.path("next").asText(), 0, 2, "agent");
+        assertEquals("[\"10.0.0.3\",\"10.0.1.1\"]", agents(page));
+
+        page = query(null, null, null, page.path("next").asText(), 0, 2, "agent");
+        assertEquals("[\"10.0.1.2\"]", agents(page));
+        assertTrue(page.path("next").isNull());
+
+        page = query(null, null, null, null, 3, 1, "agent");
+        assertEquals("[\"10.0.1.1\"]", agents(page));
+        assertEquals("10.0.1.1", page.path("next").asText());
+    }
+
+    @Test
+    void agentsAreFilteredByStatusAndName() throws IOException {
+        JsonNode page = query(Collections.singletonList(0), "web", null, null, 0, 10, "agent");
+        assertEquals(2, page.path("total").asInt());
+        assertEquals("[\"10.0.0.1\",\"10.0.1.2\"]", agents(page));
+
+        page = query(Arrays.asList(1, 2), "10.0.", null, null, 0, 10, "agent");
+        assertEquals("[\"10.0.0.2\",\"10.0.1.1\"]", agents(page));
+
+        page = query(null, null, "DB", null, 0, 10, "agent");
+        assertEquals("[\"10.0.0.3\"]", agents(page));
+
+        // The cursor skips agents which do not match as well.
+        page = query(Collections.singletonList(0), null, null, "10.0.0.1", 0, 1, "agent");
+        assertEquals("[\"10.0.0.3\"]", agents(page));
+        assertEquals("10.0.0.3", page.path("next").asText());
+    }
+
+    @Test
+    void fieldsAreProjectedIntoLists() throws IOException {
+        JsonNode page = query(null, null, null, null, 0, 1, "status,disks.used_percent,disks.1.name,cpu.load");
+
+        assertEquals("[{\"agent\":\"10.0.0.1\",\"status\":0,\"disks.used_percent\":[10,20],\"disks.1.name\":\"sdb\"}]",
+                page.path("agents").toString());
+    }
+
+    @Test
+    void invalidPagesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> table.query(null, null, null, "10.0.9.9", 0, 2, null));
+        assertThrows(IllegalArgumentException.class, () -> table.query(null, null, null, null, 0, 0, null));
+        assertThrows(IllegalArgumentException.class, () -> table.query(null, null, null, null, -1, 2, null));
+    }
+
+    @Test
+    void malformedDocumentsAreListedAsUnreachable() throws IOException {
+        AgentTable malformed = new AgentTable(new Snapshot("{}"), Collections.singletonList("10.0.0.1"),
+                Collections.singletonList("{\"status\": 0,"), Collections.singletonList(null), null);
+
+        JsonNode page = MAPPER.readTree(malformed.query(Collections.singletonList(2), null, null, null, 0, 1,
+                Collections.singletonList("agent")));
+        assertEquals("[\"10.0.0.1\"]", agents(page));
+    }
+
+    /**
+     * Query a page of agents and parse it.
+     * @author Griefed
+     * @param statuses Collection of Integer. Only agents with one of these statuses.
+     * @param prefix String. Only agents whose address or host name starts with it.
+     * @param name String. Only agents whose address or host name contains it.
+     * @param after String. Only agents after this one.
+     * @param offset Integer. The number of matching agents to skip.
+     * @param limit Integer. The maximum number of agents to return.
+     * @param fields String. Comma-separated dotted paths of the values to return.
+     * @return The parsed page.
+     * @throws IOException if the page could not be parsed.
+     */
+    private JsonNode query(List<Integer> statuses, String prefix, String name, String after, int offset, int limit, String fields) throws IOException {
+        return MAPPER.readTree(table.query(statuses, prefix, name, after, offset, limit, Arrays.asList(fields.split(","))));
+    }
+
+    /**
+     * Getter for the addresses of the agents of a page.
+     * @author Griefed
+     * @param page The parsed page.
+     * @return String in JSON format. The addresses, as a list.
+     */
+    private String agents(JsonNode page) {
+        List<String> agents = new ArrayList<>();
+        page.path("agents").forEach(agent -> agents.add(agent.path("agent").asText()));
+        return MAPPER.valueToTree(agents).toString();
+    }
+}
@@ -0,0 +1,64 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.models;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the ETags of {@link Snapshot}.
+ * @author Griefed
+ */
+class SnapshotTest {
+
+    @Test
+    void compressedBodyHasItsOwnEtag() {
+        Snapshot snapshot = new Snapshot("{\"agent\":\"a\"}");
+
+        assertNotEquals(snapshot.getEtag(), snapshot.getGzipEtag());
+        assertTrue(snapshot.getGzipEtag().startsWith("\"") && snapshot.getGzipEtag().endsWith("\""));
+    }
+
+    @Test
+    void eitherEtagMatches() {
+        Snapshot snapshot = new Snapshot("{\"agent\":\"a\"}");
+
+        assertTrue(snapshot.matches(snapshot.getEtag()));
+        assertTrue(snapshot.matches(snapshot.getGzipEtag()));
+        assertTrue(snapshot.matches("\"other\", W/" + snapshot.getGzipEtag()));
+        assertTrue(snapshot.matches("*"));
+    }
+
+    @Test
+    void etagsOfOtherDocumentsDoNotMatch() {
+        Snapshot snapshot = new Snapshot("{\"agent\":\"a\"}");
+        Snapshot other = new Snapshot("{\"agent\":\"b\"}");
+
+        assertFalse(snapshot.matches(other.getEtag()));
+        assertFalse(snapshot.matches(other.getGzipEtag()));
+        assertFalse(snapshot.matches(null));
+    }
+}
@@ -0,0 +1,84 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for merging the answers of agents in {@link AgentDeltaService}.
+ * @author Griefed
+ */
+class AgentDeltaServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final AgentDeltaService agentDeltaService = new AgentDeltaService();
+
+    @Test
+    void componentNamesAreEscaped() throws IOException {
+        JsonNode document = MAPPER.readTree(agentDeltaService.merge("10.0.0.1",
+                "{\"cpu\": {\"load\": 1},\"quote\\\"and\\\\backslash\": [2]}"));
+
+        assertEquals("10.0.0.1", document.path("agent").asText());
+        assertEquals(1, document.path("cpu").path("load").asInt());
+        assertEquals("[2]", document.path("quote\"and\\backslash").toString());
+    }
+
+    @Test
+    void deltasKeepUnchangedComponents() throws IOException {
+        agentDeltaService.merge("10.0.0.1", "{\"epoch\": \"e1\",\"versions\": {\"cpu\": 1,\"memory\": 1},\"cpu\": 1,\"memory\": 2}");
+        assertEquals("?epoch=e1&versions=cpu:1,memory:1", agentDeltaService.query("10.0.0.1"));
+
+        JsonNode document = MAPPER.readTree(agentDeltaService.merge("10.0.0.1",
+                "{\"epoch\": \"e1\",\"delta\": true,\"versions\": {\"cpu\": 2,\"memory\": 1},\"cpu\": 3}"));
+        assertEquals(3, document.path("cpu").asInt());
+        assertEquals(2, document.path("memory").asInt());
+
+        // A new epoch means the agent restarted, so what is left of the previous one is dropped.
+        document = MAPPER.readTree(agentDeltaService.merge("10.0.0.1",
+                "{\"epoch\": \"e2\",\"delta\": true,\"versions\": {\"cpu\": 1},\"cpu\": 4}"));
+        assertEquals(4, document.path("cpu").asInt());
+        assertTrue(document.path("memory").isMissingNode());
+    }
+
+    @Test
+    void agentsWhichAreNoLongerConfiguredAreForgotten() {
+        agentDeltaService.merge("10.0.0.1", "{\"epoch\": \"e1\",\"versions\": {\"cpu\": 1},\"cpu\": 1}");
+        agentDeltaService.merge("10.0.0.2", "{\"epoch\": \"e1\",\"versions\": {\"cpu\": 1},\"cpu\": 1}");
+
+        agentDeltaService.retain(Collections.singletonList("10.0.0.2"));
+
+        assertEquals("", agentDeltaService.query("10.0.0.1"));
+        assertThrows(IllegalStateException.class, () -> agentDeltaService.notModified("10.0.0.1"));
+        assertEquals("?epoch=e1&versions=cpu:1", agentDeltaService.query("10.0.0.2"));
+    }
+}
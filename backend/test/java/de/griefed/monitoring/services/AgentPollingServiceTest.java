@@ -0,0 +1,123 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.ApplicationProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the deadlines of {@link AgentPollingService}.
+ * @author Griefed
+ */
+class AgentPollingServiceTest {
+
+    private AgentPollingService pollingService;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setProperty("de.griefed.monitoring.agents.parallelism", "1");
+        properties.setProperty("de.griefed.monitoring.timeout.agent", "1");
+        properties.setProperty("de.griefed.monitoring.timeout.sweep", "10");
+
+        pollingService = new AgentPollingService(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pollingService.shutdown();
+    }
+
+    @Test
+    void hungAgentDoesNotTimeOutAgentsQueuedBehindIt() {
+        String[] filled = new String[2];
+        List<String> documents = pollingService.poll(Arrays.asList("hung", "fast"), agent -> {
+            if (agent.equals("hung")) {
+                // Like a blocking socket read, which does not react to being interrupted.
+                long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+                while (System.nanoTime() < end) {
+                    Thread.interrupted();
+                }
+            }
+            return agent;
+        }, agent -> "timeout " + agent, (index, document) -> filled[index] = document);
+
+        assertEquals(Arrays.asList("timeout hung", "fast"), documents);
+        // The hung agent answered before the fast one was started, but after its slot was filled.
+        assertEquals(documents, Arrays.asList(filled));
+    }
+
+    @Test
+    void asyncAgentsKeepConfiguredOrder() {
+        List<String> documents = pollingService.pollAsync(Arrays.asList("a", "b", "c"),
+                agent -> CompletableFuture.completedFuture(agent.toUpperCase()),
+                agent -> "timeout " + agent, (index, document) -> {}, 2);
+
+        assertEquals(Arrays.asList("A", "B", "C"), documents);
+    }
+
+    @Test
+    void lateDocumentsAreNotPassedOn() {
+        CompletableFuture<String> late = new CompletableFuture<>();
+        List<String> filled = Collections.synchronizedList(new ArrayList<>());
+
+        List<String> documents = pollingService.pollAsync(Arrays.asList("late", "fast"),
+                agent -> agent.equals("late") ? late : CompletableFuture.completedFuture(agent),
+                agent -> "timeout " + agent, (index, document) -> filled.add(index + " " + document), 2);
+
+        assertEquals(Arrays.asList("timeout late", "fast"), documents);
+
+        late.complete("late");
+
+        assertEquals(Arrays.asList("0 timeout late", "1 fast"), filled.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void agentsFinishingRightAwayDoNotGrowTheStack() {
+        List<String> agents = IntStream.range(0, 5000).mapToObj(String::valueOf).collect(Collectors.toList());
+
+        List<String> documents = pollingService.pollAsync(agents, agent -> {
+            if (Integer.parseInt(agent) % 2 == 0) {
+                // Like an address which can not even be turned into a request.
+                throw new IllegalArgumentException("Malformed address " + agent);
+            }
+            return CompletableFuture.completedFuture(agent);
+        }, agent -> "failed " + agent, (index, document) -> {}, 1);
+
+        assertEquals(agents.stream().map(agent -> Integer.parseInt(agent) % 2 == 0 ? "failed " + agent : agent)
+                .collect(Collectors.toList()), documents);
+    }
+}
@@ -0,0 +1,158 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import com.sun.net.httpserver.HttpServer;
+import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.AgentTransport;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the blocking {@link RestTemplateAgentTransport} with the non-blocking {@link WebClientAgentTransport} by
+ * polling a number of simulated agents which each take a while to answer. Every agent is reached through its own
+ * loopback address, so per-host connection limits apply as they would in a real fleet.<br>
+ * Only runs when started with <code>-Dbenchmark=true</code>.
+ * @author Griefed
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class AgentTransportBenchmark {
+
+    private static final Logger LOG = LogManager.getLogger(AgentTransportBenchmark.class);
+
+    private static final int AGENTS = 500;
+    private static final int DELAY_MILLIS = 200;
+    private static final String BODY = "{\"status\": 0,\"message\": \"Everything in order.\",\"host\": {}}";
+
+    private static HttpServer server;
+    private static ExecutorService serverThreads;
+    private static final List<String> agents = new ArrayList<>(AGENTS);
+
+    @BeforeAll
+    static void startAgents() throws IOException {
+        serverThreads = Executors.newFixedThreadPool(AGENTS);
+
+        server = HttpServer.create(new InetSocketAddress("0.0.0.0", 0), AGENTS);
+        server.setExecutor(serverThreads);
+        server.createContext("/api/v1/agent", exchange -> {
+            try {
+                Thread.sleep(DELAY_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            byte[] body = BODY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        });
+        server.start();
+
+        for (int i = 0; i < AGENTS; i++) {
+            agents.add("http://127.0.0." + (i % 250 + 1) + ":" + server.getAddress().getPort());
+        }
+    }
+
+    @AfterAll
+    static void stopAgents() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    @Test
+    void compareTransports() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setProperty("de.griefed.monitoring.agents.parallelism", "32");
+        properties.setProperty("de.griefed.monitoring.http.pool.size", String.valueOf(AGENTS));
+        properties.setProperty("de.griefed.monitoring.timeout.agent", "60");
+        properties.setProperty("de.griefed.monitoring.timeout.sweep", "600");
+
+        AgentPollingService pollingService = new AgentPollingService(properties);
+        ResolverService resolverService = new ResolverService(properties);
+        AgentTransport blocking = new RestTemplateAgentTransport(properties);
+        AgentTransport async = new WebClientAgentTransport(properties, resolverService);
+
+        try {
+
+            // Warm up both paths once so class loading and connection setup do not skew the results.
+            pollBlocking(pollingService, blocking);
+            pollAsync(pollingService, async, properties);
+
+            long blockingNanos = pollBlocking(pollingService, blocking);
+            long asyncNanos = pollAsync(pollingService, async, properties);
+
+            LOG.info(String.format("%d agents, %d ms per agent: RestTemplate %d ms, WebClient %d ms",
+                    AGENTS, DELAY_MILLIS,
+                    TimeUnit.NANOSECONDS.toMillis(blockingNanos),
+                    TimeUnit.NANOSECONDS.toMillis(asyncNanos)));
+
+        } finally {
+
+            async.close();
+            blocking.close();
+            pollingService.shutdown();
+            resolverService.shutdown();
+
+        }
+    }
+
+    private long pollBlocking(AgentPollingService pollingService, AgentTransport transport) {
+        long start = System.nanoTime();
+
+        List<String> documents = pollingService.poll(agents, agent -> transport.fetch(agent, "").join().getBody(), agent -> "", (index, document) -> {});
+
+        long duration = System.nanoTime() - start;
+        assertEquals(AGENTS, documents.stream().filter(BODY::equals).count());
+        return duration;
+    }
+
+    private long pollAsync(AgentPollingService pollingService, AgentTransport transport, ApplicationProperties properties) {
+        long start = System.nanoTime();
+
+        List<String> documents = pollingService.pollAsync(agents, agent -> transport.fetch(agent, "").thenApply(ResponseEntity::getBody), agent -> "", (index, document) -> {}, properties.getHttpPoolSize());
+
+        long duration = System.nanoTime() - start;
+        assertEquals(AGENTS, documents.stream().filter(BODY::equals).count());
+        return duration;
+    }
+}
@@ -0,0 +1,324 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.TimeSeries;
+import de.griefed.monitoring.utilities.TimeSeriesRollup;
+import de.griefed.monitoring.utilities.TimeSeriesStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for recording and querying the history in {@link HistoryService}.
+ * @author Griefed
+ */
+class HistoryServiceTest {
+
+    private static final String KEY = "host\tcpu.load";
+
+    @TempDir
+    Path directory;
+
+    private ApplicationProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ApplicationProperties();
+        properties.setProperty("de.griefed.monitoring.history.enabled", "true");
+        properties.setProperty("de.griefed.monitoring.history.directory", directory.toString());
+        properties.setProperty("de.griefed.monitoring.history.segment.size", "1");
+    }
+
+    @Test
+    void historyDefaultsToOffOnAgents() {
+        properties.remove("de.griefed.monitoring.history.enabled");
+        assertTrue(properties.isHistoryEnabled());
+
+        ReflectionTestUtils.setField(properties, "agent", true);
+        assertFalse(properties.isHistoryEnabled());
+
+        properties.setProperty("de.griefed.monitoring.history.enabled", "true");
+        assertTrue(properties.isHistoryEnabled());
+    }
+
+    @Test
+    void disksSharingANameAreKeptApart() {
+        long start = System.currentTimeMillis();
+
+        HistoryService history = new HistoryService(properties);
+        history.record("host", "{\"disks\": [" +
+                "{\"name\": \"sda1 \", \"mount\": \"/\", \"used_percent\": 10}," +
+                "{\"name\": \"sda1 \", \"mount\": \"/data\", \"used_percent\": 20}," +
+                "{\"name\": \"tmpfs\", \"used_percent\": 30}]}");
+        history.shutdown();
+
+        HistoryService reopened = new HistoryService(properties);
+        try {
+
+            Map<String, Double> values = new HashMap<>();
+            for (TimeSeries series : reopened.query("host", "disks", "*", start - 1000, System.currentTimeMillis() + 1000, 0,
+                    HistoryService.Aggregation.LAST)) {
+                assertEquals(1, series.getValues().length);
+                values.put(series.getMetric(), series.getValues()[0]);
+            }
+
+            Map<String, Double> expected = new HashMap<>();
+            expected.put("/.used_percent", 10D);
+            expected.put("/data.used_percent", 20D);
+            expected.put("tmpfs.used_percent", 30D);
+            assertEquals(expected, values);
+
+        } finally {
+            reopened.shutdown();
+        }
+    }
+
+    @Test
+    void listsAreKeyedByNameWithoutMount() {
+        HistoryService history = new HistoryService(properties);
+        history.record("agent", "{\"host\": {\"interfaces\": [{\"interface_name\": \"eth0\", \"rx_bytes_per_second\": 1}]}," +
+                "\"cpu\": {\"cores\": [1, 2]}}");
+        history.shutdown();
+
+        List<String[]> series = history.getSeries("agent", "*", "*");
+        Map<String, String> metrics = new HashMap<>();
+        for (String[] names : series) {
+            metrics.put(names[2], names[1]);
+        }
+
+        Map<String, String> expected = new HashMap<>();
+        expected.put("interfaces.eth0.rx_bytes_per_second", "host");
+        expected.put("cores.0", "cpu");
+        expected.put("cores.1", "cpu");
+        assertEquals(expected, metrics);
+    }
+
+    @Test
+    void queriesAreAnsweredFromTheCoarsestRollupWhichFits() throws IOException {
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        long start = now - TimeUnit.HOURS.toSeconds(250);
+
+        int count = (int) ((now - 60 - start) / 600);
+        long[] seconds = new long[count];
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            seconds[i] = start + i * 600L;
+            values[i] = i;
+        }
+        write(seconds, values);
+
+        HistoryService history = new HistoryService(properties);
+        try {
+
+            long recent = now - TimeUnit.HOURS.toSeconds(3);
+            assertEquals(0, resolutionOf(history, recent, 0));
+            assertEquals(60, resolutionOf(history, recent, 60));
+            assertEquals(120, resolutionOf(history, recent, 120));
+            assertEquals(900, resolutionOf(history, recent, 900));
+            assertEquals(7200, resolutionOf(history, recent, 7200));
+
+            // Raw samples are kept for 48 hours, one minute aggregates for 168 hours.
+            assertEquals(60, resolutionOf(history, now - TimeUnit.HOURS.toSeconds(72), 0));
+            assertEquals(900, resolutionOf(history, now - TimeUnit.HOURS.toSeconds(200), 0));
+            assertEquals(900, resolutionOf(history, now - TimeUnit.HOURS.toSeconds(200), 60));
+
+        } finally {
+            history.shutdown();
+        }
+    }
+
+    @Test
+    void averagesAreWeightedBySampleCount() throws IOException {
+        long minute = (TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - TimeUnit.HOURS.toSeconds(3)) / 3600 * 3600;
+
+        write(new long[] {minute, minute + 60, minute + 80, minute + 100, minute + 200},
+                new double[] {10D, 20D, 20D, 20D, 0D});
+
+        HistoryService history = new HistoryService(properties);
+        try {
+
+            assertValues(history, minute, 60, HistoryService.Aggregation.AVG, 10D, 20D);
+            assertValues(history, minute, 120, HistoryService.Aggregation.AVG, 17.5D);
+            assertValues(history, minute, 120, HistoryService.Aggregation.MIN, 10D);
+            assertValues(history, minute, 120, HistoryService.Aggregation.MAX, 20D);
+            assertValues(history, minute, 120, HistoryService.Aggregation.LAST, 20D);
+
+        } finally {
+            history.shutdown();
+        }
+    }
+
+    @Test
+    void incompleteBucketsAreRebuiltOnStartup() throws IOException {
+        long minute = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) / 60 * 60 - 120;
+
+        // The bucket of the newest sample is not complete when the history is closed, so it is not written.
+        write(new long[] {minute, minute + 30}, new double[] {1D, 3D});
+
+        HistoryService history = new HistoryService(properties);
+        try {
+
+            assertValues(history, minute, 60, HistoryService.Aggregation.AVG, 2D);
+
+        } finally {
+            history.shutdown();
+        }
+    }
+
+    @Test
+    void queriesReturningTooManyValuesAreRejected() throws IOException {
+        properties.setProperty("de.griefed.monitoring.history.query.points", "100");
+        long minute = (TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - TimeUnit.HOURS.toSeconds(3)) / 3600 * 3600;
+
+        write(new long[] {minute}, new double[] {1D});
+
+        HistoryService history = new HistoryService(properties);
+        try {
+
+            long from = TimeUnit.SECONDS.toMillis(minute);
+            long to = TimeUnit.SECONDS.toMillis(minute + 7200);
+
+            assertThrows(IllegalArgumentException.class,
+                    () -> history.query("host", "cpu", "load", from, to, TimeUnit.MINUTES.toMillis(1), HistoryService.Aggregation.AVG));
+            assertThrows(IllegalArgumentException.class,
+                    () -> history.aggregate("*", "cpu", "load", from, to, TimeUnit.MINUTES.toMillis(1),
+                            HistoryService.Aggregation.AVG, HistoryService.Statistic.MAX));
+
+            assertEquals(1, history.query("host", "cpu", "load", from, to, TimeUnit.MINUTES.toMillis(2), HistoryService.Aggregation.AVG).size());
+            assertEquals(0, history.query("agent", "cpu", "load", from, to, TimeUnit.MINUTES.toMillis(1), HistoryService.Aggregation.AVG).size());
+
+        } finally {
+            history.shutdown();
+        }
+    }
+
+    /**
+     * Write samples of a single series to the raw store and the rollups of the history, as {@link HistoryService} does,
+     * but at the given times.
+     * @author Griefed
+     * @param seconds Long array. The times of the samples, in seconds since the epoch.
+     * @param values Double array. The values of the samples.
+     * @throws IOException if the history could not be written.
+     */
+    private void write(long[] seconds, double[] values) throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(
+                directory,
+                TimeUnit.MINUTES.toSeconds(properties.getHistoryChunk()),
+                TimeUnit.HOURS.toSeconds(properties.getHistorySegment()),
+                properties.getHistorySegmentSize() * 1048576,
+                TimeUnit.HOURS.toSeconds(properties.getHistoryRetention())
+        );
+        List<TimeSeriesRollup> rollups = Arrays.asList(
+                rollup("1m", 60, properties.getHistoryRetentionMinute()),
+                rollup("15m", 900, properties.getHistoryRetentionQuarter()),
+                rollup("1h", 3600, properties.getHistoryRetentionHour())
+        );
+
+        int id = store.id(KEY);
+        for (int i = 0; i < seconds.length; i++) {
+            if (store.append(id, seconds[i], values[i])) {
+                for (TimeSeriesRollup rollup : rollups) {
+                    rollup.add(id, KEY, seconds[i], values[i]);
+                }
+            }
+
+            store.seal(seconds[i]);
+            for (TimeSeriesRollup rollup : rollups) {
+                rollup.seal(seconds[i]);
+            }
+        }
+
+        store.close();
+        rollups.forEach(TimeSeriesRollup::close);
+    }
+
+    /**
+     * Open a rollup in the layout of {@link HistoryService}.
+     * @author Griefed
+     * @param name String. The name of the rollup.
+     * @param resolution Long. The length of a bucket, in seconds.
+     * @param retention Integer. How long aggregates are kept, in hours.
+     * @return The rollup.
+     * @throws IOException if its store could not be opened.
+     */
+    private TimeSeriesRollup rollup(String name, long resolution, int retention) throws IOException {
+        long chunk = Math.min(resolution * 360, TimeUnit.DAYS.toSeconds(1));
+
+        return new TimeSeriesRollup(name, resolution, TimeUnit.HOURS.toSeconds(retention), new TimeSeriesStore(
+                directory.resolve(name),
+                chunk,
+                chunk * 28,
+                properties.getHistorySegmentSize() * 1048576,
+                TimeUnit.HOURS.toSeconds(retention)
+        ));
+    }
+
+    /**
+     * Query two hours of the series and return the resolution of the answer.
+     * @author Griefed
+     * @param history The history to query.
+     * @param from Long. Start of the range, in seconds since the epoch.
+     * @param step Long. The requested resolution, in seconds.
+     * @return Long. The resolution of the answer, in seconds.
+     */
+    private long resolutionOf(HistoryService history, long from, long step) {
+        List<TimeSeries> series = history.query("host", "cpu", "load", TimeUnit.SECONDS.toMillis(from),
+                TimeUnit.SECONDS.toMillis(from + 7200), TimeUnit.SECONDS.toMillis(step), HistoryService.Aggregation.AVG);
+
+        assertEquals(1, series.size());
+        return TimeUnit.MILLISECONDS.toSeconds(series.get(0).getResolution());
+    }
+
+    /**
+     * Check the values of the buckets of the series in the two minutes from the given time.
+     * @author Griefed
+     * @param history The history to query.
+     * @param from Long. Start of the range, in seconds since the epoch.
+     * @param step Long. The length of a bucket, in seconds.
+     * @param aggregation How the samples in a bucket are aggregated.
+     * @param expected Double array. The expected values.
+     */
+    private void assertValues(HistoryService history, long from, long step, HistoryService.Aggregation aggregation, double... expected) {
+        List<TimeSeries> series = history.query("host", "cpu", "load", TimeUnit.SECONDS.toMillis(from),
+                TimeUnit.SECONDS.toMillis(from + 119), TimeUnit.SECONDS.toMillis(step), aggregation);
+
+        assertEquals(1, series.size());
+        assertEquals(Arrays.toString(expected), Arrays.toString(series.get(0).getValues()), aggregation.name());
+    }
+}
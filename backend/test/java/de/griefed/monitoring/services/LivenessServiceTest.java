@@ -0,0 +1,95 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.ApplicationProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for the verdicts of {@link LivenessService}.
+ * @author Griefed
+ */
+class LivenessServiceTest {
+
+    private ApplicationProperties properties;
+    private ResolverService resolverService;
+    private LivenessService livenessService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        properties = new ApplicationProperties();
+        resolverService = new ResolverService(properties);
+        livenessService = new LivenessService(properties, resolverService);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        livenessService.shutdown();
+        resolverService.shutdown();
+    }
+
+    @Test
+    void hostRefusingEveryPortIsUp() throws Exception {
+        int port = closedPort();
+        properties.setProperty("de.griefed.monitoring.scan.ports", String.valueOf(port));
+
+        assertTrue(livenessService.probe("http://127.0.0.1:" + port).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void hostAcceptingAPortIsUp() throws Exception {
+        try (ServerSocket server = new ServerSocket(0)) {
+            properties.setProperty("de.griefed.monitoring.scan.ports", String.valueOf(closedPort()));
+
+            assertTrue(livenessService.probe("http://127.0.0.1:" + server.getLocalPort()).get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void unresolvableHostIsDown() throws Exception {
+        properties.setProperty("de.griefed.monitoring.scan.ports", String.valueOf(closedPort()));
+
+        assertFalse(livenessService.probe("http://nonexistent.invalid:8080").get(10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Find a port on the loopback interface which nothing listens on.
+     * @author Griefed
+     * @return Integer. A port which refuses connections.
+     * @throws IOException if no port could be bound.
+     */
+    private int closedPort() throws IOException {
+        try (ServerSocket server = new ServerSocket(0)) {
+            return server.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.Snapshot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for dropping stalled subscribers of {@link StreamService}.
+ * @author Griefed
+ */
+class StreamServiceTest {
+
+    private StreamService streamService;
+    private CountDownLatch release;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setProperty("de.griefed.monitoring.stream.threads", "4");
+        properties.setProperty("de.griefed.monitoring.stream.send.timeout", "1");
+
+        streamService = new StreamService(properties);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        streamService.shutdown();
+    }
+
+    @Test
+    void everyStalledSubscriberIsDroppedWhileWritesAreStuck() throws InterruptedException {
+        Client first = new Client(release);
+        Client second = new Client(release);
+        Client reading = new Client(null);
+
+        streamService.subscribe(first);
+        streamService.subscribe(second);
+        streamService.subscribe(reading);
+
+        streamService.publish("host", new Snapshot("{\"cpu\": 1}"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (streamService.getSubscriberCount() > 1 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+
+        // Both writes are still stuck, yet both subscribers were dropped.
+        assertEquals(1, streamService.getSubscriberCount());
+        assertEquals(1, reading.EVENTS.size());
+        assertFalse(first.completed.await(0, TimeUnit.SECONDS));
+
+        streamService.publish("host", new Snapshot("{\"cpu\": 2}"));
+        assertTrue(reading.await(2));
+
+        // Once the writes return, the streams of the dropped subscribers are completed by their senders.
+        release.countDown();
+        assertTrue(first.completed.await(2, TimeUnit.SECONDS));
+        assertTrue(second.completed.await(2, TimeUnit.SECONDS));
+        assertEquals(1, first.EVENTS.size());
+    }
+
+    /**
+     * A client, which either takes every event or never reads, so every write to it blocks while holding the lock of
+     * the emitter, as the writes of Spring do.
+     * @author Griefed
+     */
+    private static final class Client extends ResponseBodyEmitter {
+
+        private final CountDownLatch RELEASE;
+        private final List<Object> EVENTS = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        /**
+         * Constructor.
+         * @author Griefed
+         * @param release Released once writes return, <code>null</code> for a client which reads.
+         */
+        private Client(CountDownLatch release) {
+            this.RELEASE = release;
+        }
+
+        @Override
+        public synchronized void send(Object object, MediaType mediaType) {
+            EVENTS.add(object);
+
+            if (RELEASE != null) {
+                while (true) {
+                    try {
+                        RELEASE.await();
+                        return;
+                    } catch (InterruptedException ignored) {
+                        // Like a blocking socket write, which does not react to being interrupted.
+                    }
+                }
+            }
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+        }
+
+        /**
+         * Wait for a second event.
+         * @author Griefed
+         * @param seconds Integer. How long to wait.
+         * @return Boolean. <code>true</code> if the client received two events in time.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        private boolean await(int seconds) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            while (EVENTS.size() < 2 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            return EVENTS.size() >= 2;
+        }
+    }
+}
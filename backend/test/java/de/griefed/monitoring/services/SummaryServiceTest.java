@@ -0,0 +1,169 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.griefed.monitoring.ApplicationProperties;
+import de.griefed.monitoring.models.Snapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Tests for the contributions of agents to the summary of {@link SummaryService}.
+ * @author Griefed
+ */
+class SummaryServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private SummaryService summaryService;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationProperties properties = new ApplicationProperties();
+        properties.setProperty("de.griefed.monitoring.summary.top", "2");
+
+        summaryService = new SummaryService(properties);
+    }
+
+    @Test
+    void updatesReplaceThePreviousContribution() throws IOException {
+        update("a", agent(50, 40, 10, 95));
+        update("b", agent(20, 95, 50));
+        update("a", agent(10, 20, 30, 5));
+
+        JsonNode summary = summary();
+
+        assertEquals(2, summary.path("agents").asInt());
+        assertEquals(2, summary.path("status").path("ok").asInt());
+        assertEquals(2, summary.path("cpu").path("reporting").asInt());
+        assertEquals(15D, summary.path("cpu").path("average_percent").asDouble());
+        assertEquals("[0,1,1,0,0,0,0,0,0,0]", summary.path("cpu").path("histogram").toString());
+        assertEquals(1, summary.path("memory").path("hosts_above_threshold").asInt());
+        assertEquals(0, summary.path("disks").path("disks_above_threshold").asInt());
+        assertEquals(2000L, summary.path("memory").path("total_bytes").asLong());
+        assertEquals(3000L, summary.path("disks").path("total_bytes").asLong());
+        assertEquals("[{\"agent\":\"b\",\"percent\":50.0},{\"agent\":\"a\",\"percent\":30.0}]",
+                summary.path("disks").path("top").toString());
+    }
+
+    @Test
+    void hostsWhichAreDownOnlyCountTowardsTheirStatus() throws IOException {
+        update("a", agent(50, 40, 10));
+        update("b", "{\"status\": 1,\"message\": \"Host down or unreachable.\",\"agent\": \"b\"}");
+        update("c", "{\"status\": 2,\"message\": \"Agent did not answer in time.\",\"agent\": \"c\"}");
+
+        JsonNode summary = summary();
+
+        assertEquals(3, summary.path("agents").asInt());
+        assertEquals("{\"ok\":1,\"host_down\":1,\"agent_unreachable\":1}", summary.path("status").toString());
+        assertEquals(1, summary.path("cpu").path("reporting").asInt());
+        assertEquals(50D, summary.path("cpu").path("average_percent").asDouble());
+        assertEquals(1000L, summary.path("memory").path("total_bytes").asLong());
+    }
+
+    @Test
+    void unchangedDocumentsDoNotRebuildTheSummary() throws IOException {
+        String document = agent(50, 40, 10);
+        update("a", document);
+
+        Snapshot summary = summaryService.getSummary();
+        update("a", document);
+        assertSame(summary, summaryService.getSummary());
+
+        update("a", agent(60, 40, 10));
+        assertNotSame(summary, summaryService.getSummary());
+    }
+
+    @Test
+    void agentsWhichAreNoLongerConfiguredAreRemoved() throws IOException {
+        update("a", agent(50, 40, 10));
+        update("b", agent(20, 95, 95));
+
+        summaryService.retain(Collections.singletonList("a"));
+
+        JsonNode summary = summary();
+
+        assertEquals(1, summary.path("agents").asInt());
+        assertEquals(50D, summary.path("cpu").path("average_percent").asDouble());
+        assertEquals(0, summary.path("memory").path("hosts_above_threshold").asInt());
+        assertEquals(0, summary.path("disks").path("hosts_above_threshold").asInt());
+        assertEquals("[{\"agent\":\"a\",\"percent\":10.0}]", summary.path("disks").path("top").toString());
+
+        summaryService.retain(Arrays.asList("a", "b"));
+        assertEquals(1, summary().path("agents").asInt());
+    }
+
+    /**
+     * Pass a document to the summary, parsed as the sweep does.
+     * @author Griefed
+     * @param agent String. The agent.
+     * @param document String in JSON format. The document of the agent.
+     * @throws IOException if the document could not be parsed.
+     */
+    private void update(String agent, String document) throws IOException {
+        summaryService.update(agent, document, MAPPER.readTree(document));
+    }
+
+    /**
+     * Getter for the current summary.
+     * @author Griefed
+     * @return The parsed summary.
+     * @throws IOException if the summary could not be parsed.
+     */
+    private JsonNode summary() throws IOException {
+        return MAPPER.readTree(summaryService.getSummary().getJson());
+    }
+
+    /**
+     * Build the document of an agent which is up, with 1000 bytes of memory and 1000 bytes on every disk.
+     * @author Griefed
+     * @param cpu Double. The CPU load in percent.
+     * @param memory Double. The memory usage in percent.
+     * @param disks Double array. The usage of every disk in percent.
+     * @return String in JSON format. The document.
+     */
+    private String agent(double cpu, double memory, double... disks) {
+        StringBuilder document = new StringBuilder()
+                .append("{\"status\": 0,\"cpu\": {\"processes\": 100,\"load\": {\"system_percent\": ").append(cpu).append("}},")
+                .append("\"memory\": {\"used_percent\": ").append(memory)
+                .append(",\"total_bytes\": 1000,\"available_bytes\": ").append((long) (1000 - memory * 10)).append("},")
+                .append("\"disks\": [");
+
+        for (int i = 0; i < disks.length; i++) {
+            document.append(i > 0 ? "," : "").append("{\"used_percent\": ").append(disks[i])
+                    .append(",\"total_bytes\": 1000,\"free_bytes\": ").append((long) (1000 - disks[i] * 10)).append("}");
+        }
+
+        return document.append("]}").toString();
+    }
+}
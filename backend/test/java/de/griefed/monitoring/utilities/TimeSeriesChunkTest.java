@@ -0,0 +1,181 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Round trip tests for the encoding of {@link TimeSeriesChunk}.
+ * @author Griefed
+ */
+class TimeSeriesChunkTest {
+
+    private static final long START = 1_600_000_000L;
+
+    @Test
+    void everyDeltaOfDeltaBoundaryRoundTrips() {
+        // The delta of delta of every sample, at the edges of every encoded width.
+        long[] deltaOfDeltas = {10, 0, 64, -63, 65, -64, 256, -255, 257, -256, 2048, -2047, 2049, -2048, 100_000, -100_000};
+
+        long[] seconds = new long[deltaOfDeltas.length + 1];
+        double[] values = new double[seconds.length];
+        seconds[0] = START;
+        long delta = 0;
+
+        for (int i = 0; i < deltaOfDeltas.length; i++) {
+            delta += deltaOfDeltas[i];
+            seconds[i + 1] = seconds[i] + delta;
+            values[i + 1] = i;
+        }
+
+        assertRoundTrip(seconds, values);
+    }
+
+    @Test
+    void edgeValuesRoundTripBitForBit() {
+        double[] values = {
+                0D, -0D, 0D, Double.NaN, Double.longBitsToDouble(0x7ff8000000000001L), Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.MIN_VALUE, -Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE,
+                Double.MIN_NORMAL, 1D, 1D, Math.nextUp(1D), -1D, 42.5, 42.5, 1e-300, 1e300, Double.NaN, 0D
+        };
+
+        long[] seconds = new long[values.length];
+        for (int i = 0; i < seconds.length; i++) {
+            seconds[i] = START + i * 30L;
+        }
+
+        assertRoundTrip(seconds, values);
+    }
+
+    @Test
+    void randomSamplesRoundTrip() {
+        Random random = new Random(42);
+        long[] seconds = new long[10_000];
+        double[] values = new double[seconds.length];
+        seconds[0] = START;
+
+        for (int i = 1; i < seconds.length; i++) {
+            seconds[i] = seconds[i - 1] + (random.nextInt(10) == 0 ? 1 + random.nextInt(5000) : 30);
+
+            switch (random.nextInt(4)) {
+                case 0:
+                    values[i] = values[i - 1];
+                    break;
+                case 1:
+                    values[i] = random.nextInt(100);
+                    break;
+                case 2:
+                    values[i] = random.nextDouble() * 100D;
+                    break;
+                default:
+                    values[i] = Double.longBitsToDouble(random.nextLong());
+            }
+        }
+
+        assertRoundTrip(seconds, values);
+    }
+
+    @Test
+    void readOnlyReturnsSamplesInRange() {
+        TimeSeriesChunk chunk = new TimeSeriesChunk(START);
+        for (int i = 0; i < 10; i++) {
+            chunk.append(START + i * 10L, i);
+        }
+
+        List<Long> seconds = new ArrayList<>();
+        chunk.read(START + 20, START + 50, (second, value) -> seconds.add(second));
+
+        List<Long> expected = new ArrayList<>();
+        for (long second = START + 20; second <= START + 50; second += 10) {
+            expected.add(second);
+        }
+
+        assertEquals(expected, seconds);
+        assertEquals(START, chunk.getFirstSecond());
+        assertEquals(START + 90, chunk.getLastSecond());
+        assertEquals(10, chunk.getCount());
+    }
+
+    /**
+     * Encode the samples, then decode them from the open chunk and from its bytes at an offset in a larger buffer, and
+     * compare the raw bits of every value.
+     * @author Griefed
+     * @param seconds Long array. Timestamps of the samples, increasing.
+     * @param values Double array. Values of the samples.
+     */
+    private void assertRoundTrip(long[] seconds, double[] values) {
+        TimeSeriesChunk chunk = new TimeSeriesChunk(START);
+        for (int i = 0; i < seconds.length; i++) {
+            chunk.append(seconds[i], values[i]);
+        }
+
+        long[] expectedBits = new long[values.length];
+        for (int i = 0; i < values.length; i++) {
+            expectedBits[i] = Double.doubleToRawLongBits(values[i]);
+        }
+
+        List<long[]> decoded = new ArrayList<>();
+        chunk.read(Long.MIN_VALUE, Long.MAX_VALUE, (second, value) -> decoded.add(new long[] {second, Double.doubleToRawLongBits(value)}));
+        assertSamples(seconds, expectedBits, decoded);
+
+        // Exactly as many bytes as the chunk needs, so the last bits are read byte by byte.
+        byte[] bytes = chunk.toBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(bytes.length + 3);
+        buffer.position(3);
+        buffer.put(bytes);
+
+        decoded.clear();
+        TimeSeriesChunk.read(buffer, 3, chunk.getCount(), Long.MIN_VALUE, Long.MAX_VALUE,
+                (second, value) -> decoded.add(new long[] {second, Double.doubleToRawLongBits(value)}));
+        assertSamples(seconds, expectedBits, decoded);
+    }
+
+    /**
+     * Compare decoded samples with the expected ones.
+     * @author Griefed
+     * @param seconds Long array. The expected timestamps.
+     * @param bits Long array. The expected raw bits of the values.
+     * @param decoded List of long arrays. Timestamp and raw bits of every decoded sample.
+     */
+    private void assertSamples(long[] seconds, long[] bits, List<long[]> decoded) {
+        assertEquals(seconds.length, decoded.size());
+
+        long[] decodedSeconds = new long[decoded.size()];
+        long[] decodedBits = new long[decoded.size()];
+        for (int i = 0; i < decoded.size(); i++) {
+            decodedSeconds[i] = decoded.get(i)[0];
+            decodedBits[i] = decoded.get(i)[1];
+        }
+
+        assertArrayEquals(seconds, decodedSeconds);
+        assertArrayEquals(bits, decodedBits);
+    }
+}
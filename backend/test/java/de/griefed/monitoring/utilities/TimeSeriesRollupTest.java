@@ -0,0 +1,127 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests for the aggregates written by {@link TimeSeriesRollup}.
+ * @author Griefed
+ */
+class TimeSeriesRollupTest {
+
+    private static final long BUCKET = 1_600_000_020L / 60 * 60;
+    private static final String KEY = "host\tcpu.load";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void bucketIsWrittenWhenTheNextOneStarts() throws IOException {
+        TimeSeriesRollup rollup = open();
+
+        rollup.add(0, KEY, BUCKET, 4D);
+        rollup.add(0, KEY, BUCKET + 20, Double.NaN);
+        rollup.add(0, KEY, BUCKET + 30, 1D);
+        rollup.add(0, KEY, BUCKET + 50, 7D);
+        assertEquals(Collections.emptyList(), rollup.getStore().getKeys());
+
+        rollup.add(0, KEY, BUCKET + 60, 100D);
+
+        assertAggregates(rollup.getStore(), BUCKET, 1D, 7D, 4D, 7D, 3D);
+        rollup.getStore().close();
+    }
+
+    @Test
+    void sealWritesBucketsWhichPassed() throws IOException {
+        TimeSeriesRollup rollup = open();
+
+        rollup.add(0, KEY, BUCKET + 10, 2D);
+        rollup.seal(BUCKET + 59);
+        assertEquals(Collections.emptyList(), rollup.getStore().getKeys());
+
+        rollup.seal(BUCKET + 60);
+        assertAggregates(rollup.getStore(), BUCKET, 2D, 2D, 2D, 2D, 1D);
+        rollup.getStore().close();
+    }
+
+    @Test
+    void closeDropsIncompleteBucket() throws IOException {
+        TimeSeriesRollup rollup = open();
+
+        rollup.add(0, KEY, BUCKET, 1D);
+        rollup.add(0, KEY, BUCKET + 60, 2D);
+        rollup.close();
+
+        TimeSeriesStore store = new TimeSeriesStore(directory, 3600, 86400, 65536, 86400);
+        try {
+            // Only the complete bucket was written, the one which was still open at close is not.
+            assertAggregates(store, BUCKET, 1D, 1D, 1D, 1D, 1D);
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * Open a rollup with buckets of one minute.
+     * @author Griefed
+     * @return The rollup.
+     * @throws IOException if its store could not be opened.
+     */
+    private TimeSeriesRollup open() throws IOException {
+        return new TimeSeriesRollup("1m", 60, 86400, new TimeSeriesStore(directory, 3600, 86400, 65536, 86400));
+    }
+
+    /**
+     * Check that every aggregate of the series holds exactly one bucket with the given value.
+     * @author Griefed
+     * @param store The store of the rollup.
+     * @param bucket Long. The start of the bucket.
+     * @param expected Double array. Minimum, maximum, average, last value and number of samples.
+     */
+    private void assertAggregates(TimeSeriesStore store, long bucket, double... expected) {
+        for (int aggregate = 0; aggregate < TimeSeriesRollup.AGGREGATES.length; aggregate++) {
+            int id = store.find(KEY + "\t" + TimeSeriesRollup.AGGREGATES[aggregate]);
+
+            boolean[] selected = new boolean[store.getSize()];
+            selected[id] = true;
+
+            List<double[]> samples = new ArrayList<>();
+            store.read(selected, Long.MIN_VALUE, Long.MAX_VALUE, (series, second, value) -> samples.add(new double[] {second, value}));
+
+            assertEquals(1, samples.size(), TimeSeriesRollup.AGGREGATES[aggregate]);
+            assertEquals(Arrays.toString(new double[] {bucket, expected[aggregate]}), Arrays.toString(samples.get(0)),
+                    TimeSeriesRollup.AGGREGATES[aggregate]);
+        }
+    }
+}
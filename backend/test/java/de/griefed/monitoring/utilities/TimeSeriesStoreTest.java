@@ -0,0 +1,196 @@
+/* MIT License
+ *
+ * Copyright (c) 2021 SUK-IT
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package de.griefed.monitoring.utilities;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests for writing, rolling over, reopening and expiring a {@link TimeSeriesStore}.
+ * @author Griefed
+ */
+class TimeSeriesStoreTest {
+
+    private static final long START = 1_600_000_000L;
+    private static final long DAY = 86400L;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void samplesSurviveReopening() throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(directory, 600, 3600, 65536, 10 * DAY);
+        int cpu = store.id("host\tcpu.load");
+        int disk = store.id("host\tdisks./.used_percent");
+
+        Map<Integer, List<Long>> expected = new HashMap<>();
+        for (int i = 0; i < 500; i++) {
+            long second = START + i * 30L;
+            append(store, expected, cpu, second);
+            append(store, expected, disk, second + 1);
+            store.seal(second);
+        }
+        store.close();
+
+        TimeSeriesStore reopened = new TimeSeriesStore(directory, 600, 3600, 65536, 10 * DAY);
+        try {
+
+            assertEquals(Arrays.asList("host\tcpu.load", "host\tdisks./.used_percent"), reopened.getKeys());
+            assertEquals(cpu, reopened.find("host\tcpu.load"));
+            assertEquals(expected, readAll(reopened));
+
+            // Appending continues where it left off, older samples are still rejected.
+            long last = START + 499 * 30L;
+            assertFalse(reopened.append(cpu, last, last));
+            assertTrue(reopened.append(cpu, last + 30, last + 30));
+            expected.get(cpu).add(last + 30);
+            assertEquals(expected, readAll(reopened));
+
+            assertEquals(2, reopened.id("host\tmemory.used_percent"));
+
+        } finally {
+            reopened.close();
+        }
+
+        TimeSeriesStore again = new TimeSeriesStore(directory, 600, 3600, 65536, 10 * DAY);
+        try {
+            assertEquals(3, again.getSize());
+            assertEquals(expected, readAll(again));
+        } finally {
+            again.close();
+        }
+    }
+
+    @Test
+    void segmentsRollOverBySpanAndWhenFull() throws IOException {
+        // Room for only a few chunks per segment.
+        TimeSeriesStore store = new TimeSeriesStore(directory, 60, 3600, 256, 10 * DAY);
+        int id = store.id("host\tcpu.load");
+
+        Map<Integer, List<Long>> expected = new HashMap<>();
+        for (int i = 0; i < 3 * 3600 / 10; i++) {
+            long second = START + i * 10L;
+            append(store, expected, id, second);
+            store.seal(second);
+        }
+
+        assertEquals(expected, readAll(store));
+        store.close();
+
+        int segments = countSegments();
+        // Three spans of an hour, each of which needs several segments.
+        assertTrue(segments > 3, "Only " + segments + " segments");
+
+        TimeSeriesStore reopened = new TimeSeriesStore(directory, 60, 3600, 256, 10 * DAY);
+        try {
+            assertEquals(expected, readAll(reopened));
+        } finally {
+            reopened.close();
+        }
+    }
+
+    @Test
+    void expiredSegmentsAreDeleted() throws IOException {
+        TimeSeriesStore store = new TimeSeriesStore(directory, 60, 600, 65536, 3600);
+        int id = store.id("host\tcpu.load");
+
+        long last = START;
+        for (int i = 0; i < 4 * 3600 / 30; i++) {
+            last = START + i * 30L;
+            store.append(id, last, last);
+            store.seal(last);
+        }
+
+        List<Long> seconds = readAll(store).get(id);
+        store.close();
+
+        // Whole segments are deleted, so up to one more span than the retention is kept.
+        assertTrue(seconds.get(0) >= last - 3600 - 600, "Oldest sample " + (last - seconds.get(0)) + " seconds old");
+        assertEquals(last, (long) seconds.get(seconds.size() - 1));
+        assertTrue(countSegments() <= 3600 / 600 + 2);
+    }
+
+    /**
+     * Append a sample whose value is its timestamp and remember it.
+     * @author Griefed
+     * @param store The store to append to.
+     * @param expected The samples appended so far, by series.
+     * @param id Integer. The series.
+     * @param second Long. The timestamp of the sample.
+     */
+    private void append(TimeSeriesStore store, Map<Integer, List<Long>> expected, int id, long second) {
+        assertTrue(store.append(id, second, second));
+        expected.computeIfAbsent(id, key -> new ArrayList<>()).add(second);
+    }
+
+    /**
+     * Read every sample of every series, checking that its value is its timestamp.
+     * @author Griefed
+     * @param store The store to read.
+     * @return Map of timestamps by series.
+     */
+    private Map<Integer, List<Long>> readAll(TimeSeriesStore store) {
+        boolean[] selected = new boolean[store.getSize()];
+        Arrays.fill(selected, true);
+
+        Map<Integer, List<Long>> samples = new HashMap<>();
+        store.read(selected, Long.MIN_VALUE, Long.MAX_VALUE, (id, second, value) -> {
+            if (value != second) {
+                assertEquals(second, value, 0D);
+            }
+            samples.computeIfAbsent(id, key -> new ArrayList<>()).add(second);
+        });
+
+        return samples;
+    }
+
+    /**
+     * Count the segments in the directory of the store.
+     * @author Griefed
+     * @return Integer. The number of segment files.
+     * @throws IOException if the directory could not be listed.
+     */
+    private int countSegments() throws IOException {
+        int segments = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "segment-*.dat")) {
+            for (Path ignored : stream) {
+                segments++;
+            }
+        }
+        return segments;
+    }
+}